@@ -1,7 +1,10 @@
 plugins {
     id("io.quarkus") version "3.24.3" apply false
+    alias(libs.plugins.jmh) apply false
 }
 
+val jmhLibraryVersion = libs.versions.jmh.get()
+
 allprojects {
     group = "com.pipeline"
     version = "1.0.0-SNAPSHOT"
@@ -17,6 +20,15 @@ subprojects {
         options.encoding = "UTF-8"
         options.compilerArgs.add("-parameters")
     }
+
+    // Benchmarks in src/jmh; run a single suite with -Pjmh.includes=<BenchmarkClass>
+    pluginManager.withPlugin("me.champeau.jmh") {
+        extensions.configure<me.champeau.jmh.JmhParameters> {
+            jmhVersion.set(jmhLibraryVersion)
+            providers.gradleProperty("jmh.includes").orNull?.let { includes.add(it) }
+            resultFormat.set("JSON")
+        }
+    }
 }
 
 allprojects {
@@ -1,5 +1,6 @@
 package com.rokkon.pipeline.consul.config;
 
+import com.rokkon.pipeline.consul.discovery.InstanceSelector;
 import io.smallrye.config.ConfigMapping;
 import io.smallrye.config.WithDefault;
 import io.smallrye.config.WithName;
@@ -43,6 +44,12 @@ public interface PipelineConsulConfig {
          */
         @WithName("cleanup")
         CleanupSettings cleanup();
+
+        /**
+         * Settings of the CONSUL_DIRECT service discovery
+         */
+        @WithName("discovery")
+        DiscoverySettings discovery();
         
         interface WatchSettings {
             /**
@@ -59,6 +66,51 @@ public interface PipelineConsulConfig {
             @WithDefault("30m")
             Duration interval();
         }
+
+        interface DiscoverySettings {
+            /**
+             * How an instance is picked among the healthy instances of a service
+             */
+            @WithDefault("POWER_OF_TWO_CHOICES")
+            InstanceSelector.Strategy strategy();
+
+            /**
+             * How long the first lookup of a service waits for its instance table to be loaded
+             */
+            @WithDefault("10s")
+            Duration initialLoadTimeout();
+
+            /**
+             * Whether instances with a health check in WARNING state still receive calls; by default only
+             * instances whose checks all pass do
+             */
+            @WithDefault("false")
+            boolean acceptWarning();
+
+            /**
+             * Consecutive failed calls after which an instance is ejected
+             */
+            @WithDefault("5")
+            int ejectionConsecutiveFailures();
+
+            /**
+             * Ejection time of a first ejection; repeated ejections last proportionally longer
+             */
+            @WithDefault("30s")
+            Duration ejectionBaseTime();
+
+            /**
+             * Upper bound of the ejection time
+             */
+            @WithDefault("5m")
+            Duration ejectionMaxTime();
+
+            /**
+             * Maximum percentage of a service's instances that may be ejected at the same time
+             */
+            @WithDefault("50")
+            int ejectionMaxPercent();
+        }
     }
     
     interface ClusterSettings {
@@ -0,0 +1,253 @@
+package com.rokkon.pipeline.consul.discovery;
+
+import com.rokkon.pipeline.consul.config.ConsulConfiguration;
+import com.rokkon.pipeline.consul.config.PipelineConsulConfig;
+import com.rokkon.pipeline.engine.grpc.discovery.ServiceDiscovery;
+import com.rokkon.pipeline.engine.grpc.discovery.ServiceDiscoveryImpl;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.stork.api.ServiceInstance;
+import io.vertx.ext.consul.Check;
+import io.vertx.ext.consul.CheckStatus;
+import io.vertx.ext.consul.ConsulClientOptions;
+import io.vertx.ext.consul.ServiceEntry;
+import io.vertx.ext.consul.ServiceEntryList;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.ext.consul.Watch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CONSUL_DIRECT {@link ServiceDiscovery} that answers lookups from memory.
+ * <p>
+ * The first lookup of a service starts a Consul watch (a blocking health query) on it and waits for the initial
+ * instance table; from then on the watch keeps the {@link ServiceInstanceTable} current and lookups never go to the
+ * network. {@link #discoverService(String)} picks an instance with the configured {@link InstanceSelector.Strategy}.
+ * Callers that report call outcomes through {@link #select(String)} or {@link #begin(String, ServiceInstance)} feed
+ * the latency and in-flight statistics used for selection, and instances that keep failing are ejected as
+ * configured by {@link OutlierEjection}.
+ * <p>
+ * Only instances whose health checks all pass are used, plus those in WARNING state if {@code acceptWarning} is
+ * set. If the initial query of a service fails, the lookups waiting for it fail right away instead of timing out.
+ */
+@ApplicationScoped
+@ServiceDiscoveryImpl(ServiceDiscoveryImpl.Type.CONSUL_DIRECT)
+public class ConsulDirectServiceDiscovery implements ServiceDiscovery {
+
+    private static final Logger LOG = Logger.getLogger(ConsulDirectServiceDiscovery.class);
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    ConsulConfiguration consulConfig;
+
+    @Inject
+    PipelineConsulConfig pipelineConfig;
+
+    private final Map<String, ServiceInstanceTable> tables = new ConcurrentHashMap<>();
+    private final Map<String, Watch<ServiceEntryList>> watches = new ConcurrentHashMap<>();
+    private final AtomicLong instanceIds = new AtomicLong();
+    private InstanceSelector selector;
+    private OutlierEjection ejection;
+    private Duration initialLoadTimeout;
+    private boolean acceptWarning;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public ConsulDirectServiceDiscovery() {
+        // Default constructor for CDI
+    }
+
+    @PostConstruct
+    void init() {
+        PipelineConsulConfig.ConsulSettings.DiscoverySettings settings = pipelineConfig.consul().discovery();
+        selector = new InstanceSelector(settings.strategy());
+        ejection = new OutlierEjection(settings.ejectionConsecutiveFailures(), settings.ejectionBaseTime(),
+            settings.ejectionMaxTime(), settings.ejectionMaxPercent());
+        initialLoadTimeout = settings.initialLoadTimeout();
+        acceptWarning = settings.acceptWarning();
+        LOG.infof("CONSUL_DIRECT service discovery using %s selection", settings.strategy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        watches.values().forEach(Watch::stop);
+        watches.clear();
+        tables.clear();
+    }
+
+    @Override
+    public Uni<ServiceInstance> discoverService(String serviceName) {
+        return table(serviceName).map(table -> selectEntry(table).instance());
+    }
+
+    @Override
+    public Uni<List<ServiceInstance>> discoverAllInstances(String serviceName) {
+        return table(serviceName).map(table -> instancesOf(table.entries()));
+    }
+
+    /**
+     * Emits the instances of the service whenever the Consul watch reports a change, starting with the current ones.
+     *
+     * @param serviceName the service to watch
+     * @return a Multi of instance lists
+     */
+    @Override
+    public Multi<List<ServiceInstance>> watchInstances(String serviceName) {
+        return table(serviceName).onItem().transformToMulti(table -> Multi.createFrom().<List<ServiceInstance>>emitter(emitter -> {
+            Runnable unregister = table.addListener(entries -> emitter.emit(instancesOf(entries)));
+            emitter.onTermination(unregister);
+            emitter.emit(instancesOf(table.entries()));
+        }));
+    }
+
+    /**
+     * Selects an instance and starts tracking a call to it.
+     *
+     * @param serviceName the service to call
+     * @return the started call, to be completed by the caller
+     */
+    public Uni<InstanceCall> select(String serviceName) {
+        return table(serviceName).map(table -> new InstanceCall(table, selectEntry(table), ejection));
+    }
+
+    /**
+     * Starts tracking a call to an instance obtained from {@link #discoverService(String)}.
+     *
+     * @param serviceName the service the instance belongs to
+     * @param instance the instance
+     * @return the started call, to be completed by the caller
+     */
+    public InstanceCall begin(String serviceName, ServiceInstance instance) {
+        ServiceInstanceTable table = tables.get(serviceName);
+        if (table == null) {
+            return InstanceCall.untracked(instance);
+        }
+        return table.entry(instance)
+            .map(entry -> new InstanceCall(table, entry, ejection))
+            .orElseGet(() -> InstanceCall.untracked(instance));
+    }
+
+    /**
+     * Returns the current statistics of the known instances of a service, without triggering a lookup.
+     *
+     * @param serviceName the service
+     * @return the instance statistics, empty if the service was never looked up
+     */
+    public List<InstanceStatus> instances(String serviceName) {
+        ServiceInstanceTable table = tables.get(serviceName);
+        if (table == null) {
+            return List.of();
+        }
+        long now = System.nanoTime();
+        return table.entries().stream()
+            .map(entry -> new InstanceStatus(entry.endpoint(), entry.stats().snapshot(now)))
+            .toList();
+    }
+
+    /**
+     * Statistics of one instance.
+     *
+     * @param endpoint the instance endpoint
+     * @param stats the call statistics
+     */
+    public record InstanceStatus(ServiceInstanceTable.Endpoint endpoint, InstanceStats.Snapshot stats) {
+    }
+
+    private Uni<ServiceInstanceTable> table(String serviceName) {
+        ServiceInstanceTable table = tables.computeIfAbsent(serviceName, this::watch);
+        if (table.isLoaded()) {
+            return Uni.createFrom().item(table);
+        }
+        return Uni.createFrom().completionStage(table.loaded())
+            .ifNoItem().after(initialLoadTimeout)
+            .failWith(() -> new IllegalStateException("Timed out loading instances of service " + serviceName));
+    }
+
+    private static List<ServiceInstance> instancesOf(List<ServiceInstanceTable.Entry> entries) {
+        return entries.stream().map(ServiceInstanceTable.Entry::instance).toList();
+    }
+
+    private ServiceInstanceTable.Entry selectEntry(ServiceInstanceTable table) {
+        ServiceInstanceTable.Entry entry = selector.select(table.entries(), System.nanoTime());
+        if (entry == null) {
+            throw new IllegalStateException("No healthy instances of service " + table.serviceName());
+        }
+        return entry;
+    }
+
+    private ServiceInstanceTable watch(String serviceName) {
+        ServiceInstanceTable table = new ServiceInstanceTable(serviceName, instanceIds::incrementAndGet);
+        Watch<ServiceEntryList> watch = Watch.service(serviceName, vertx, clientOptions());
+        watch.setHandler(result -> {
+            if (result.succeeded()) {
+                table.update(endpoints(result.nextResult(), acceptWarning));
+            } else {
+                LOG.warnf(result.cause(), "Watch failed for service: %s", serviceName);
+                // The watch retries on its own; until then waiting lookups shouldn't sit out the load timeout
+                table.loadFailed(new IllegalStateException("Failed to load instances of service " + serviceName,
+                    result.cause()));
+            }
+        }).start();
+        watches.put(serviceName, watch);
+        LOG.debugf("Started instance watch for service %s", serviceName);
+        return table;
+    }
+
+    private ConsulClientOptions clientOptions() {
+        ConsulClientOptions options = new ConsulClientOptions()
+            .setHost(consulConfig.host())
+            .setPort(consulConfig.port())
+            .setSsl(consulConfig.secure())
+            .setTrustAll(consulConfig.trustAll())
+            .setTimeout((int) consulConfig.timeout().toMillis());
+        consulConfig.token().ifPresent(options::setAclToken);
+        consulConfig.datacenter().ifPresent(options::setDc);
+        return options;
+    }
+
+    static List<ServiceInstanceTable.Endpoint> endpoints(ServiceEntryList serviceList, boolean acceptWarning) {
+        if (serviceList == null || serviceList.getList() == null) {
+            return List.of();
+        }
+        List<ServiceInstanceTable.Endpoint> endpoints = new ArrayList<>(serviceList.getList().size());
+        for (ServiceEntry entry : serviceList.getList()) {
+            if (!healthy(entry, acceptWarning)) {
+                continue;
+            }
+            String host = entry.getService().getAddress();
+            if ((host == null || host.isBlank()) && entry.getNode() != null) {
+                host = entry.getNode().getAddress();
+            }
+            endpoints.add(new ServiceInstanceTable.Endpoint(entry.getService().getId(), host,
+                entry.getService().getPort(), false));
+        }
+        return endpoints;
+    }
+
+    private static boolean healthy(ServiceEntry entry, boolean acceptWarning) {
+        List<Check> checks = entry.getChecks();
+        if (checks == null) {
+            return true;
+        }
+        for (Check check : checks) {
+            CheckStatus status = check.getStatus();
+            if (status != CheckStatus.PASSING && !(acceptWarning && status == CheckStatus.WARNING)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+package com.rokkon.pipeline.consul.discovery;
+
+import io.smallrye.stork.api.ServiceInstance;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A call in progress to a service instance. Its outcome feeds the latency, in-flight and failure statistics that
+ * drive instance selection and outlier ejection, so every call must be completed with exactly one of
+ * {@link #succeeded()} or {@link #failed(Throwable)}; further completions are ignored.
+ */
+public final class InstanceCall {
+
+    private final ServiceInstance instance;
+    private final ServiceInstanceTable table;
+    private final ServiceInstanceTable.Entry entry;
+    private final OutlierEjection ejection;
+    private final long startNanos;
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    InstanceCall(ServiceInstanceTable table, ServiceInstanceTable.Entry entry, OutlierEjection ejection) {
+        this.instance = entry.instance();
+        this.table = table;
+        this.entry = entry;
+        this.ejection = ejection;
+        this.startNanos = System.nanoTime();
+        entry.stats().callStarted();
+    }
+
+    private InstanceCall(ServiceInstance instance) {
+        this.instance = instance;
+        this.table = null;
+        this.entry = null;
+        this.ejection = null;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Creates a call that isn't tracked, for instances that are no longer in the table.
+     */
+    static InstanceCall untracked(ServiceInstance instance) {
+        return new InstanceCall(instance);
+    }
+
+    /**
+     * Returns the instance the call goes to.
+     *
+     * @return the instance
+     */
+    public ServiceInstance instance() {
+        return instance;
+    }
+
+    /**
+     * Completes the call successfully.
+     */
+    public void succeeded() {
+        if (entry != null && completed.compareAndSet(false, true)) {
+            entry.stats().callSucceeded(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Completes the call as failed, counting towards outlier ejection of the instance.
+     *
+     * @param failure the failure, for diagnostics
+     */
+    public void failed(Throwable failure) {
+        if (entry != null && completed.compareAndSet(false, true)) {
+            long now = System.nanoTime();
+            table.recordFailure(entry, now - startNanos, now, ejection);
+        }
+    }
+}
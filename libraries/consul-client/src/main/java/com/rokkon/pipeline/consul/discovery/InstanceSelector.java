@@ -0,0 +1,117 @@
+package com.rokkon.pipeline.consul.discovery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the instance for a call from a {@link ServiceInstanceTable} based on live call statistics.
+ * <p>
+ * Ejected instances are skipped. If every instance is ejected, all of them are considered again, as sending
+ * traffic to a possibly unhealthy instance beats failing every call.
+ */
+public final class InstanceSelector {
+
+    /**
+     * Selection strategy.
+     */
+    public enum Strategy {
+        /**
+         * Compare two random instances and pick the one with the lower expected cost (average latency scaled by
+         * in-flight calls). Close to optimal while touching only two entries per call.
+         */
+        POWER_OF_TWO_CHOICES,
+
+        /**
+         * Pick the instance with the fewest in-flight calls, lower expected cost breaking ties.
+         */
+        LEAST_OUTSTANDING_REQUESTS
+    }
+
+    private final Strategy strategy;
+
+    public InstanceSelector(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Selects an instance.
+     *
+     * @param entries the candidate instances
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return the selected entry, or null if there are no candidates
+     */
+    public ServiceInstanceTable.Entry select(List<ServiceInstanceTable.Entry> entries, long nowNanos) {
+        List<ServiceInstanceTable.Entry> candidates = available(entries, nowNanos);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        return switch (strategy) {
+            case POWER_OF_TWO_CHOICES -> powerOfTwoChoices(candidates);
+            case LEAST_OUTSTANDING_REQUESTS -> leastOutstanding(candidates);
+        };
+    }
+
+    /**
+     * Returns the strategy of this selector.
+     *
+     * @return the strategy
+     */
+    public Strategy strategy() {
+        return strategy;
+    }
+
+    private static List<ServiceInstanceTable.Entry> available(List<ServiceInstanceTable.Entry> entries, long nowNanos) {
+        List<ServiceInstanceTable.Entry> available = null;
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).stats().isEjected(nowNanos)) {
+                if (available == null) {
+                    available = new ArrayList<>(entries.subList(0, i));
+                }
+            } else if (available != null) {
+                available.add(entries.get(i));
+            }
+        }
+        if (available == null) {
+            return entries;
+        }
+        return available.isEmpty() ? entries : available;
+    }
+
+    private static ServiceInstanceTable.Entry powerOfTwoChoices(List<ServiceInstanceTable.Entry> candidates) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstanceTable.Entry a = candidates.get(first);
+        ServiceInstanceTable.Entry b = candidates.get(second);
+        return a.stats().cost() <= b.stats().cost() ? a : b;
+    }
+
+    private static ServiceInstanceTable.Entry leastOutstanding(List<ServiceInstanceTable.Entry> candidates) {
+        // Start at a random offset so ties don't always go to the same instance
+        int offset = ThreadLocalRandom.current().nextInt(candidates.size());
+        ServiceInstanceTable.Entry best = null;
+        int bestInFlight = Integer.MAX_VALUE;
+        double bestCost = Double.MAX_VALUE;
+        for (int i = 0; i < candidates.size(); i++) {
+            ServiceInstanceTable.Entry entry = candidates.get((offset + i) % candidates.size());
+            int inFlight = entry.stats().inFlight();
+            if (inFlight > bestInFlight) {
+                continue;
+            }
+            double cost = entry.stats().cost();
+            if (inFlight < bestInFlight || cost < bestCost) {
+                best = entry;
+                bestInFlight = inFlight;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+}
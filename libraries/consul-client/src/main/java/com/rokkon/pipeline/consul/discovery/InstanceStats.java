@@ -0,0 +1,118 @@
+package com.rokkon.pipeline.consul.discovery;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live call statistics of a single service instance, used for load balancing and outlier ejection.
+ * <p>
+ * Statistics belong to the Consul service ID, not to a particular snapshot of the instance table, so they survive
+ * table refreshes as long as the instance stays registered.
+ */
+public final class InstanceStats {
+
+    /**
+     * Weight of the newest sample in the latency moving average.
+     */
+    static final double LATENCY_WEIGHT = 0.3;
+
+    /**
+     * Latency assumed for instances without samples, so new instances are tried but not flooded.
+     */
+    static final double DEFAULT_LATENCY_NANOS = Duration.ofMillis(10).toNanos();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile double latencyNanos = -1;
+    private volatile long ejectedUntilNanos;
+    private int consecutiveFailures;
+    private int ejections;
+    private long lastEjectionEndNanos;
+
+    void callStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    synchronized void callSucceeded(long latency) {
+        inFlight.decrementAndGet();
+        successes.increment();
+        consecutiveFailures = 0;
+        recordLatency(latency);
+    }
+
+    /**
+     * Records a failed call.
+     *
+     * @return the number of consecutive failures including this one
+     */
+    synchronized int callFailed(long latency) {
+        inFlight.decrementAndGet();
+        failures.increment();
+        recordLatency(latency);
+        return ++consecutiveFailures;
+    }
+
+    /**
+     * Ejects the instance. Each ejection within {@code maxTime} of the previous one lasts one {@code baseTime}
+     * longer, up to {@code maxTime}.
+     */
+    synchronized void eject(long nowNanos, Duration baseTime, Duration maxTime) {
+        if (nowNanos - lastEjectionEndNanos > maxTime.toNanos()) {
+            ejections = 0;
+        }
+        ejections++;
+        long duration = Math.min(baseTime.toNanos() * ejections, maxTime.toNanos());
+        ejectedUntilNanos = nowNanos + duration;
+        lastEjectionEndNanos = ejectedUntilNanos;
+        consecutiveFailures = 0;
+    }
+
+    boolean isEjected(long nowNanos) {
+        long until = ejectedUntilNanos;
+        return until != 0 && nowNanos - until < 0;
+    }
+
+    /**
+     * Returns the expected cost of sending one more call to this instance: its average latency scaled by the
+     * number of calls it already has to work through.
+     */
+    double cost() {
+        double latency = latencyNanos;
+        return (latency < 0 ? DEFAULT_LATENCY_NANOS : latency) * (inFlight.get() + 1);
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    private void recordLatency(long latency) {
+        double previous = latencyNanos;
+        latencyNanos = previous < 0 ? latency : previous + LATENCY_WEIGHT * (latency - previous);
+    }
+
+    /**
+     * Returns a point-in-time view of the statistics.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return the snapshot
+     */
+    public Snapshot snapshot(long nowNanos) {
+        double latency = latencyNanos;
+        return new Snapshot(inFlight.get(), successes.sum(), failures.sum(),
+            latency < 0 ? null : Duration.ofNanos((long) latency), isEjected(nowNanos));
+    }
+
+    /**
+     * Point-in-time instance statistics.
+     *
+     * @param inFlight calls currently in progress
+     * @param successes total successful calls
+     * @param failures total failed calls
+     * @param averageLatency moving average of the call latency, or null if no call completed yet
+     * @param ejected whether the instance is currently ejected
+     */
+    public record Snapshot(int inFlight, long successes, long failures, Duration averageLatency, boolean ejected) {
+    }
+}
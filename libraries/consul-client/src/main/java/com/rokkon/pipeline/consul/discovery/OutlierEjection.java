@@ -0,0 +1,42 @@
+package com.rokkon.pipeline.consul.discovery;
+
+import java.time.Duration;
+
+/**
+ * Outlier ejection settings: an instance that fails {@code consecutiveFailures} calls in a row is taken out of
+ * rotation for {@code baseTime}, repeated ejections last longer up to {@code maxTime}, and at most
+ * {@code maxPercent} of a service's instances are ejected at the same time.
+ *
+ * @param consecutiveFailures failed calls in a row that trigger an ejection
+ * @param baseTime duration of a first ejection
+ * @param maxTime upper bound of the ejection duration
+ * @param maxPercent maximum percentage of instances ejected at once
+ */
+public record OutlierEjection(int consecutiveFailures, Duration baseTime, Duration maxTime, int maxPercent) {
+
+    public OutlierEjection {
+        if (consecutiveFailures < 1) {
+            throw new IllegalArgumentException("consecutiveFailures must be at least 1");
+        }
+        if (baseTime == null || baseTime.isNegative() || maxTime == null || maxTime.compareTo(baseTime) < 0) {
+            throw new IllegalArgumentException("Ejection times must be non-negative and maxTime at least baseTime");
+        }
+        if (maxPercent < 0 || maxPercent > 100) {
+            throw new IllegalArgumentException("maxPercent must be between 0 and 100");
+        }
+    }
+
+    /**
+     * Returns how many of the given number of instances may be ejected at the same time.
+     * The last instance of a service is never ejected.
+     *
+     * @param instances number of instances of the service
+     * @return maximum number of ejected instances
+     */
+    public int maxEjected(int instances) {
+        if (instances <= 1 || maxPercent == 0) {
+            return 0;
+        }
+        return Math.min(instances - 1, Math.max(1, instances * maxPercent / 100));
+    }
+}
@@ -0,0 +1,202 @@
+package com.rokkon.pipeline.consul.discovery;
+
+import io.smallrye.stork.api.ServiceInstance;
+import io.smallrye.stork.impl.DefaultServiceInstance;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory table of the healthy instances of one service, together with their live call statistics.
+ * <p>
+ * The table is replaced wholesale by {@link #update(List)} whenever the Consul watch of the service reports a change,
+ * and read lock-free by lookups. Instances that stay registered across updates keep their {@link ServiceInstance} ID
+ * and their {@link InstanceStats}.
+ */
+public final class ServiceInstanceTable {
+
+    private static final Logger LOG = Logger.getLogger(ServiceInstanceTable.class);
+
+    /**
+     * A registered instance of the service as reported by Consul.
+     *
+     * @param consulId the Consul service ID
+     * @param host the address to connect to
+     * @param port the port to connect to
+     * @param secure whether the instance expects TLS
+     */
+    public record Endpoint(String consulId, String host, int port, boolean secure) {
+    }
+
+    /**
+     * An instance in the table.
+     *
+     * @param endpoint the endpoint it was created from
+     * @param instance the instance handed out to callers
+     * @param stats its call statistics
+     */
+    public record Entry(Endpoint endpoint, ServiceInstance instance, InstanceStats stats) {
+    }
+
+    private final String serviceName;
+    private final LongSupplier instanceIds;
+    private volatile CompletableFuture<ServiceInstanceTable> loaded = new CompletableFuture<>();
+    private final List<Consumer<List<Entry>>> listeners = new CopyOnWriteArrayList<>();
+    private volatile List<Entry> entries = List.of();
+    private volatile Map<Long, Entry> entriesByInstanceId = Map.of();
+
+    /**
+     * Creates an empty table.
+     *
+     * @param serviceName the service the table holds instances of
+     * @param instanceIds source of unique {@link ServiceInstance} IDs
+     */
+    public ServiceInstanceTable(String serviceName, LongSupplier instanceIds) {
+        this.serviceName = serviceName;
+        this.instanceIds = instanceIds;
+    }
+
+    /**
+     * Replaces the instances of the table.
+     *
+     * @param endpoints the currently healthy endpoints
+     */
+    public synchronized void update(List<Endpoint> endpoints) {
+        Map<String, Entry> previous = new HashMap<>();
+        for (Entry entry : entries) {
+            previous.put(entry.endpoint().consulId(), entry);
+        }
+        List<Entry> updated = new ArrayList<>(endpoints.size());
+        Map<Long, Entry> byId = new HashMap<>();
+        for (Endpoint endpoint : endpoints) {
+            Entry entry = previous.get(endpoint.consulId());
+            if (entry == null || !entry.endpoint().equals(endpoint)) {
+                ServiceInstance instance = new DefaultServiceInstance(instanceIds.getAsLong(), endpoint.host(),
+                    endpoint.port(), Optional.empty(), endpoint.secure());
+                entry = new Entry(endpoint, instance, entry == null ? new InstanceStats() : entry.stats());
+            }
+            updated.add(entry);
+            byId.put(entry.instance().getId(), entry);
+        }
+        entries = List.copyOf(updated);
+        entriesByInstanceId = Map.copyOf(byId);
+        if (!loaded.isDone()) {
+            LOG.debugf("Loaded %d instances of service %s", updated.size(), serviceName);
+        } else if (updated.size() != previous.size()) {
+            LOG.debugf("Service %s now has %d instances (was %d)", serviceName, updated.size(), previous.size());
+        }
+        loaded.complete(this);
+        for (Consumer<List<Entry>> listener : listeners) {
+            listener.accept(entries);
+        }
+    }
+
+    /**
+     * Fails the lookups waiting for the first update, e.g. because the initial Consul query failed. Later lookups
+     * wait for the next update again. Does nothing once the table is loaded, since stale instances beat none.
+     *
+     * @param cause why the table could not be loaded
+     */
+    public synchronized void loadFailed(Throwable cause) {
+        CompletableFuture<ServiceInstanceTable> failed = loaded;
+        if (failed.isDone()) {
+            return;
+        }
+        loaded = new CompletableFuture<>();
+        failed.completeExceptionally(cause);
+    }
+
+    /**
+     * Registers a listener called with the new entries after every update.
+     *
+     * @param listener the listener
+     * @return an action that unregisters the listener
+     */
+    public Runnable addListener(Consumer<List<Entry>> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Returns a stage that completes with this table once the first update arrived.
+     *
+     * @return the load stage
+     */
+    public CompletionStage<ServiceInstanceTable> loaded() {
+        return loaded;
+    }
+
+    /**
+     * Returns whether the first update arrived.
+     *
+     * @return true if the table is loaded
+     */
+    public boolean isLoaded() {
+        return loaded.isDone();
+    }
+
+    /**
+     * Returns the current instances.
+     *
+     * @return an immutable snapshot of the entries
+     */
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Looks up the entry of an instance handed out by this table.
+     *
+     * @param instance the instance
+     * @return the entry, or empty if the instance is no longer registered
+     */
+    public Optional<Entry> entry(ServiceInstance instance) {
+        return Optional.ofNullable(entriesByInstanceId.get(instance.getId()));
+    }
+
+    /**
+     * Records a failed call and ejects the instance if it crossed the failure threshold and the ejection budget of
+     * the service allows it.
+     *
+     * @param entry the instance the call went to
+     * @param latencyNanos duration of the call
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @param ejection the ejection settings
+     * @return true if the instance was ejected
+     */
+    public boolean recordFailure(Entry entry, long latencyNanos, long nowNanos, OutlierEjection ejection) {
+        int failures = entry.stats().callFailed(latencyNanos);
+        if (failures < ejection.consecutiveFailures() || entry.stats().isEjected(nowNanos)) {
+            return false;
+        }
+        synchronized (this) {
+            List<Entry> current = entries;
+            long ejected = current.stream().filter(e -> e.stats().isEjected(nowNanos)).count();
+            if (ejected >= ejection.maxEjected(current.size())) {
+                return false;
+            }
+            entry.stats().eject(nowNanos, ejection.baseTime(), ejection.maxTime());
+        }
+        LOG.warnf("Ejected instance %s of service %s at %s:%d after %d consecutive failures",
+            entry.endpoint().consulId(), serviceName, entry.endpoint().host(), entry.endpoint().port(), failures);
+        return true;
+    }
+
+    /**
+     * Returns the service the table holds instances of.
+     *
+     * @return the service name
+     */
+    public String serviceName() {
+        return serviceName;
+    }
+}
@@ -5,6 +5,7 @@ import com.rokkon.pipeline.config.model.PipelineConfig;
 import com.rokkon.pipeline.config.service.ClusterService;
 import com.rokkon.pipeline.config.service.PipelineConfigService;
 import com.rokkon.pipeline.engine.validation.CompositeValidator;
+import com.rokkon.pipeline.api.validation.ValidationMode;
 import com.rokkon.pipeline.api.validation.ValidationResult;
 import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
 import io.quarkus.cache.CacheInvalidate;
@@ -102,15 +103,17 @@ public class PipelineConfigServiceImpl implements PipelineConfigService {
                                                 PipelineConfig config) {
         LOG.info("Updating pipeline '{}' in cluster '{}'", pipelineId, clusterName);
 
-        // Validate the configuration
-        ValidationResult validationResult = validator.validate(config);
-        if (!validationResult.valid()) {
-            return Uni.createFrom().item(validationResult);
-        }
-
-        // Check if pipeline exists
+        // Check if pipeline exists; the stored version lets validation re-check only the changed steps
         return getPipeline(clusterName, pipelineId)
                 .flatMap(existing -> {
+                    // Validate the configuration first, so invalid configs report their errors even when missing
+                    ValidationResult validationResult = existing.isPresent()
+                            ? validator.validateUpdate(existing.get(), config, ValidationMode.PRODUCTION)
+                            : validator.validate(config);
+                    if (!validationResult.valid()) {
+                        return Uni.createFrom().item(validationResult);
+                    }
+
                     if (existing.isEmpty()) {
                         return Uni.createFrom().item(
                                 ValidationResultFactory.failure(
@@ -161,18 +161,18 @@ public class PipelineDefinitionServiceImpl implements PipelineDefinitionService
     public Uni<PipelineConfig> getDefinition(@CacheKey String pipelineId) {
         String key = kvPrefix + PIPELINES_DEFINITIONS_PATH + pipelineId;
         return consulClient.getValue(key)
-            .map(keyValue -> {
-                if (keyValue != null && keyValue.getValue() != null) {
-                    try {
-                        String json = keyValue.getValue();
-                        return objectMapper.readValue(json, PipelineConfig.class);
-                    } catch (Exception e) {
-                        LOG.error("Failed to parse pipeline definition '{}'", pipelineId, e);
-                        return null;
-                    }
-                }
-                return null;
-            });
+            .map(keyValue -> keyValue != null && keyValue.getValue() != null
+                ? parseDefinition(pipelineId, keyValue.getValue())
+                : null);
+    }
+
+    private PipelineConfig parseDefinition(String pipelineId, String json) {
+        try {
+            return objectMapper.readValue(json, PipelineConfig.class);
+        } catch (Exception e) {
+            LOG.error("Failed to parse pipeline definition '{}'", pipelineId, e);
+            return null;
+        }
     }
 
     @Override
@@ -263,70 +263,78 @@ public class PipelineDefinitionServiceImpl implements PipelineDefinitionService
     @CacheInvalidate(cacheName = CACHE_PIPELINE_DEFINITIONS)
     @CacheInvalidate(cacheName = CACHE_PIPELINE_METADATA)
     public Uni<ValidationResult> updateDefinition(@CacheKey String pipelineId, PipelineConfig definition, ValidationMode validationMode) {
-        // Check if exists
-        return definitionExists(pipelineId)
-            .flatMap(exists -> {
-                if (!exists) {
+        // Check if exists, keeping the stored definition for the incremental validation
+        String key = kvPrefix + PIPELINES_DEFINITIONS_PATH + pipelineId;
+        return consulClient.getValue(key)
+            .flatMap(keyValue -> {
+                if (keyValue == null || keyValue.getValue() == null) {
                     return Uni.createFrom().item(ValidationResultFactory.failure("Pipeline definition '" + pipelineId + "' not found"));
                 }
 
-                // Validate the pipeline configuration with the specified mode
-                ValidationResult validationResult = pipelineValidator.validate(definition, validationMode);
-                // Check validation results based on mode
-                if (validationMode == ValidationMode.PRODUCTION && !validationResult.valid()) {
-                    // Production mode requires no errors
-                    return Uni.createFrom().item(validationResult);
-                } else if ((validationMode == ValidationMode.DESIGN || validationMode == ValidationMode.TESTING) && validationResult.hasErrors()) {
-                    // Design and Testing modes only fail on errors, allow warnings
-                    return Uni.createFrom().item(validationResult);
-                }
+                // Validate against the stored definition so only changed steps are re-checked
+                PipelineConfig previous = parseDefinition(pipelineId, keyValue.getValue());
+                return storeUpdatedDefinition(pipelineId, previous, definition, validationMode);
+            });
+    }
 
-                try {
-                    // Update in Consul
-                    String json = objectMapper.writeValueAsString(definition);
-                    String key = kvPrefix + PIPELINES_DEFINITIONS_PATH + pipelineId;
+    private Uni<ValidationResult> storeUpdatedDefinition(String pipelineId, PipelineConfig previous,
+                                                         PipelineConfig definition, ValidationMode validationMode) {
+        // Validate the pipeline configuration with the specified mode
+        ValidationResult validationResult = pipelineValidator.validateUpdate(previous, definition, validationMode);
+        // Check validation results based on mode
+        if (validationMode == ValidationMode.PRODUCTION && !validationResult.valid()) {
+            // Production mode requires no errors
+            return Uni.createFrom().item(validationResult);
+        } else if ((validationMode == ValidationMode.DESIGN || validationMode == ValidationMode.TESTING) && validationResult.hasErrors()) {
+            // Design and Testing modes only fail on errors, allow warnings
+            return Uni.createFrom().item(validationResult);
+        }
 
-                    return consulClient.putValue(key, json)
-                        .flatMap(success -> {
-                            if (!success) {
-                                return Uni.createFrom().item(ValidationResultFactory.failure("Failed to update pipeline definition in Consul"));
-                            }
+        try {
+            // Update in Consul
+            String json = objectMapper.writeValueAsString(definition);
+            String key = kvPrefix + PIPELINES_DEFINITIONS_PATH + pipelineId;
+
+            return consulClient.putValue(key, json)
+                .flatMap(success -> {
+                    if (!success) {
+                        return Uni.createFrom().item(ValidationResultFactory.failure("Failed to update pipeline definition in Consul"));
+                    }
+
+                    // Update metadata reactively
+                    return getMetadata(pipelineId)
+                        .onItem().transformToUni(metadata -> {
+                            metadata.put(MODIFIED_AT_KEY, Instant.now().toString());
+                            metadata.put(MODIFIED_BY_KEY, SYSTEM_USER); // TODO: Add user context
+                            metadata.put(VALIDATION_MODE_KEY, validationMode.toString());
+                            metadata.put(HAS_WARNINGS_KEY, String.valueOf(validationResult.hasWarnings()));
 
-                            // Update metadata reactively
-                            return getMetadata(pipelineId)
-                                .onItem().transformToUni(metadata -> {
-                                    metadata.put(MODIFIED_AT_KEY, Instant.now().toString());
-                                    metadata.put(MODIFIED_BY_KEY, SYSTEM_USER); // TODO: Add user context
-                                    metadata.put(VALIDATION_MODE_KEY, validationMode.toString());
-                                    metadata.put(HAS_WARNINGS_KEY, String.valueOf(validationResult.hasWarnings()));
-
-                                    try {
-                                        String metadataKey = kvPrefix + PIPELINES_DEFINITIONS_PATH + pipelineId + PIPELINE_METADATA_SUFFIX;
-                                        String metadataJson = objectMapper.writeValueAsString(metadata);
-
-                                        return consulClient.putValue(metadataKey, metadataJson)
-                                            .map(metaSuccess -> {
-                                                if (metaSuccess) {
-                                                    LOG.info("Updated pipeline definition '{}' in Consul", pipelineId);
-                                                    // Preserve warnings from original validation
-                                                    return validationResult.hasWarnings() ? 
-                                                        ValidationResultFactory.successWithWarnings(validationResult.warnings()) :
-                                                        ValidationResultFactory.success();
-                                                } else {
-                                                    return ValidationResultFactory.failure("Failed to update metadata");
-                                                }
-                                            });
-                                    } catch (JsonProcessingException e) {
-                                        LOG.error("Failed to serialize metadata", e);
-                                        return Uni.createFrom().item(ValidationResultFactory.failure("Failed to serialize metadata: " + e.getMessage()));
-                                    }
-                                });
+                            try {
+                                String metadataKey = kvPrefix + PIPELINES_DEFINITIONS_PATH + pipelineId + PIPELINE_METADATA_SUFFIX;
+                                String metadataJson = objectMapper.writeValueAsString(metadata);
+
+                                return consulClient.putValue(metadataKey, metadataJson)
+                                    .map(metaSuccess -> {
+                                        if (metaSuccess) {
+                                            LOG.info("Updated pipeline definition '{}' in Consul", pipelineId);
+                                            // Preserve warnings from original validation
+                                            return validationResult.hasWarnings() ? 
+                                                ValidationResultFactory.successWithWarnings(validationResult.warnings()) :
+                                                ValidationResultFactory.success();
+                                        } else {
+                                            return ValidationResultFactory.failure("Failed to update metadata");
+                                        }
+                                    });
+                            } catch (JsonProcessingException e) {
+                                LOG.error("Failed to serialize metadata", e);
+                                return Uni.createFrom().item(ValidationResultFactory.failure("Failed to serialize metadata: " + e.getMessage()));
+                            }
                         });
-                } catch (JsonProcessingException e) {
-                    LOG.error("Failed to serialize pipeline definition", e);
-                    return Uni.createFrom().item(ValidationResultFactory.failure("Failed to serialize pipeline definition: " + e.getMessage()));
-                }
-            });
+                });
+        } catch (JsonProcessingException e) {
+            LOG.error("Failed to serialize pipeline definition", e);
+            return Uni.createFrom().item(ValidationResultFactory.failure("Failed to serialize pipeline definition: " + e.getMessage()));
+        }
     }
 
     @Override
@@ -0,0 +1,198 @@
+package com.rokkon.pipeline.consul.discovery;
+
+import io.vertx.ext.consul.Check;
+import io.vertx.ext.consul.CheckStatus;
+import io.vertx.ext.consul.Service;
+import io.vertx.ext.consul.ServiceEntry;
+import io.vertx.ext.consul.ServiceEntryList;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the instance tables, instance selection and outlier ejection of the CONSUL_DIRECT service discovery.
+ */
+class InstanceSelectorTest {
+
+    private static final OutlierEjection EJECTION =
+        new OutlierEjection(3, Duration.ofSeconds(30), Duration.ofMinutes(5), 50);
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private ServiceInstanceTable table(int instances) {
+        ServiceInstanceTable table = new ServiceInstanceTable("echo", ids::incrementAndGet);
+        List<ServiceInstanceTable.Endpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < instances; i++) {
+            endpoints.add(new ServiceInstanceTable.Endpoint("echo-" + i, "10.0.0." + i, 9000, false));
+        }
+        table.update(endpoints);
+        return table;
+    }
+
+    private static ServiceEntry serviceEntry(String id, CheckStatus... statuses) {
+        List<Check> checks = new ArrayList<>();
+        for (CheckStatus status : statuses) {
+            checks.add(new Check().setStatus(status));
+        }
+        return new ServiceEntry()
+            .setService(new Service().setId(id).setAddress("10.0.0.1").setPort(9000))
+            .setChecks(checks);
+    }
+
+    @Test
+    void endpoints_keepOnlyPassingInstancesUnlessWarningIsAccepted() {
+        ServiceEntryList entries = new ServiceEntryList().setList(List.of(
+            serviceEntry("passing", CheckStatus.PASSING, CheckStatus.PASSING),
+            serviceEntry("warning", CheckStatus.PASSING, CheckStatus.WARNING),
+            serviceEntry("critical", CheckStatus.WARNING, CheckStatus.CRITICAL)));
+
+        assertEquals(List.of("passing"), ConsulDirectServiceDiscovery.endpoints(entries, false).stream()
+            .map(ServiceInstanceTable.Endpoint::consulId).toList());
+        assertEquals(List.of("passing", "warning"), ConsulDirectServiceDiscovery.endpoints(entries, true).stream()
+            .map(ServiceInstanceTable.Endpoint::consulId).toList());
+    }
+
+    @Test
+    void loadFailed_failsWaitingLookupsUntilTheFirstUpdate() {
+        ServiceInstanceTable table = new ServiceInstanceTable("echo", ids::incrementAndGet);
+        CompletableFuture<ServiceInstanceTable> waiting = table.loaded().toCompletableFuture();
+
+        table.loadFailed(new IllegalStateException("consul down"));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, waiting::get);
+        assertEquals("consul down", failure.getCause().getMessage());
+        assertFalse(table.isLoaded());
+
+        CompletableFuture<ServiceInstanceTable> retry = table.loaded().toCompletableFuture();
+        table.update(List.of(new ServiceInstanceTable.Endpoint("echo-0", "10.0.0.0", 9000, false)));
+        assertSame(table, retry.join());
+
+        table.loadFailed(new IllegalStateException("consul down again"));
+        assertTrue(table.isLoaded());
+        assertEquals(1, table.entries().size());
+    }
+
+    @Test
+    void update_keepsIdentityAndStatsOfRetainedInstances() {
+        ServiceInstanceTable table = table(2);
+        ServiceInstanceTable.Entry first = table.entries().get(0);
+        first.stats().callStarted();
+
+        table.update(List.of(first.endpoint(), new ServiceInstanceTable.Endpoint("echo-9", "10.0.0.9", 9000, false)));
+
+        assertTrue(table.isLoaded());
+        assertEquals(2, table.entries().size());
+        assertSame(first.instance(), table.entries().get(0).instance());
+        assertEquals(1, table.entries().get(0).stats().inFlight());
+        assertTrue(table.entry(first.instance()).isPresent());
+    }
+
+    @Test
+    void powerOfTwoChoices_prefersIdleFastInstances() {
+        ServiceInstanceTable table = table(2);
+        ServiceInstanceTable.Entry busy = table.entries().get(0);
+        for (int i = 0; i < 10; i++) {
+            busy.stats().callStarted();
+        }
+        InstanceSelector selector = new InstanceSelector(InstanceSelector.Strategy.POWER_OF_TWO_CHOICES);
+
+        for (int i = 0; i < 100; i++) {
+            assertSame(table.entries().get(1), selector.select(table.entries(), System.nanoTime()));
+        }
+    }
+
+    @Test
+    void leastOutstanding_spreadsLoad() {
+        ServiceInstanceTable table = table(4);
+        InstanceSelector selector = new InstanceSelector(InstanceSelector.Strategy.LEAST_OUTSTANDING_REQUESTS);
+        Map<String, Integer> selections = new HashMap<>();
+
+        for (int i = 0; i < 8; i++) {
+            ServiceInstanceTable.Entry entry = selector.select(table.entries(), System.nanoTime());
+            entry.stats().callStarted();
+            selections.merge(entry.endpoint().consulId(), 1, Integer::sum);
+        }
+
+        assertEquals(4, selections.size());
+        selections.values().forEach(count -> assertEquals(2, count));
+    }
+
+    @Test
+    void consecutiveFailures_ejectInstance() {
+        ServiceInstanceTable table = table(2);
+        ServiceInstanceTable.Entry failing = table.entries().get(0);
+        InstanceSelector selector = new InstanceSelector(InstanceSelector.Strategy.POWER_OF_TWO_CHOICES);
+        long now = System.nanoTime();
+
+        boolean ejected = false;
+        for (int i = 0; i < 3; i++) {
+            failing.stats().callStarted();
+            ejected = table.recordFailure(failing, 1_000_000, now, EJECTION);
+        }
+
+        assertTrue(ejected);
+        assertTrue(failing.stats().snapshot(now).ejected());
+        for (int i = 0; i < 20; i++) {
+            assertSame(table.entries().get(1), selector.select(table.entries(), now));
+        }
+        assertFalse(failing.stats().isEjected(now + Duration.ofSeconds(31).toNanos()));
+    }
+
+    @Test
+    void ejection_respectsMaxPercentAndNeverEjectsLastInstance() {
+        ServiceInstanceTable table = table(2);
+        long now = System.nanoTime();
+        for (ServiceInstanceTable.Entry entry : table.entries()) {
+            for (int i = 0; i < 3; i++) {
+                entry.stats().callStarted();
+                table.recordFailure(entry, 1_000_000, now, EJECTION);
+            }
+        }
+
+        long ejected = table.entries().stream().filter(e -> e.stats().isEjected(now)).count();
+        assertEquals(1, ejected);
+
+        ServiceInstanceTable single = table(1);
+        ServiceInstanceTable.Entry only = single.entries().get(0);
+        for (int i = 0; i < 5; i++) {
+            only.stats().callStarted();
+            assertFalse(single.recordFailure(only, 1_000_000, now, EJECTION));
+        }
+    }
+
+    @Test
+    void allEjected_fallsBackToAllInstances() {
+        ServiceInstanceTable table = table(1);
+        ServiceInstanceTable.Entry only = table.entries().get(0);
+        long now = System.nanoTime();
+        only.stats().eject(now, Duration.ofSeconds(30), Duration.ofMinutes(5));
+
+        InstanceSelector selector = new InstanceSelector(InstanceSelector.Strategy.LEAST_OUTSTANDING_REQUESTS);
+
+        assertSame(only, selector.select(table.entries(), now));
+        assertNull(selector.select(List.of(), now));
+    }
+
+    @Test
+    void repeatedEjections_lastLonger() {
+        InstanceStats stats = new InstanceStats();
+        long now = System.nanoTime();
+
+        stats.eject(now, Duration.ofSeconds(30), Duration.ofMinutes(5));
+        long afterFirst = now + Duration.ofSeconds(31).toNanos();
+        assertFalse(stats.isEjected(afterFirst));
+
+        stats.eject(afterFirst, Duration.ofSeconds(30), Duration.ofMinutes(5));
+        assertTrue(stats.isEjected(afterFirst + Duration.ofSeconds(45).toNanos()));
+        assertFalse(stats.isEjected(afterFirst + Duration.ofSeconds(61).toNanos()));
+    }
+}
@@ -31,6 +31,7 @@ dependencies {
     implementation("io.quarkus:quarkus-smallrye-openapi")
     implementation("io.quarkus:quarkus-cache")
     implementation("io.quarkus:quarkus-mutiny")
+    implementation("io.grpc:grpc-api")
 
     // Swagger annotations - included with quarkus-smallrye-openapi
 
@@ -17,6 +17,18 @@ public interface ConfigValidator<T extends ConfigValidatable> {
      */
     ValidationResult validate(T config);
 
+    /**
+     * Validates the given configuration object and reports all errors and warnings into the collector.
+     * Composite validators use this to accumulate the results of many validators without creating an
+     * intermediate result per validator. The default implementation adds the result of {@link #validate}.
+     *
+     * @param config The configuration object to validate
+     * @param issues The collector to report errors and warnings into
+     */
+    default void validateInto(T config, ValidationIssueCollector issues) {
+        issues.add(validate(config));
+    }
+
     /**
      * Returns the name of this validator for error reporting.
      * 
@@ -25,4 +25,24 @@ public interface ModeAwareValidator<T extends ConfigValidatable> extends ConfigV
     default ValidationResult validate(T config) {
         return validate(config, ValidationMode.PRODUCTION);
     }
+
+    /**
+     * Validates the given configuration object using the specified validation mode and reports all errors
+     * and warnings into the collector. The default implementation adds the result of {@link #validate(ConfigValidatable, ValidationMode)}.
+     *
+     * @param config The configuration object to validate
+     * @param mode The validation mode to apply
+     * @param issues The collector to report errors and warnings into
+     */
+    default void validateInto(T config, ValidationMode mode, ValidationIssueCollector issues) {
+        issues.add(validate(config, mode));
+    }
+
+    /**
+     * Default implementation delegates to mode-aware validateInto with PRODUCTION mode.
+     */
+    @Override
+    default void validateInto(T config, ValidationIssueCollector issues) {
+        validateInto(config, ValidationMode.PRODUCTION, issues);
+    }
 }
\ No newline at end of file
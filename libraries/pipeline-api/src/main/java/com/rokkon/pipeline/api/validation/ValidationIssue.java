@@ -0,0 +1,114 @@
+package com.rokkon.pipeline.api.validation;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A single structured validation error or warning.
+ * <p>
+ * Besides a machine-readable code and the step and field it refers to, an issue carries a
+ * {@link String#format(String, Object...)} template and its arguments. The human-readable message is only
+ * formatted the first time {@link #message()} is called, so validators can report issues without paying for
+ * string building when nobody reads the messages.
+ */
+public final class ValidationIssue {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final String code;
+    private final String stepId;
+    private final String field;
+    private final String template;
+    private final Object[] args;
+    private volatile String message;
+
+    private ValidationIssue(String code, String stepId, String field, String template, Object[] args, String message) {
+        this.code = code;
+        this.stepId = stepId;
+        this.field = field;
+        this.template = Objects.requireNonNull(template, "template cannot be null");
+        this.args = args;
+        this.message = message;
+    }
+
+    /**
+     * Creates an issue whose message is formatted lazily from the template and arguments.
+     *
+     * @param code machine-readable issue code, may be null
+     * @param stepId the step the issue refers to, or null for pipeline-level issues
+     * @param field the configuration field the issue refers to, may be null
+     * @param template the {@link String#format(String, Object...)} message template
+     * @param args the template arguments
+     * @return the issue
+     */
+    public static ValidationIssue of(String code, String stepId, String field, String template, Object... args) {
+        // Callers may reuse the varargs array; the issue must not change with it
+        Object[] copy = args == null || args.length == 0 ? NO_ARGS : args.clone();
+        return new ValidationIssue(code, stepId, field, template, copy, null);
+    }
+
+    /**
+     * Wraps an already formatted message, e.g. one taken from an existing {@link ValidationResult}.
+     *
+     * @param message the message, used verbatim
+     * @return the issue
+     */
+    public static ValidationIssue message(String message) {
+        return new ValidationIssue(null, null, null, message, NO_ARGS, message);
+    }
+
+    /**
+     * Returns the formatted message, formatting it on first access.
+     *
+     * @return the human-readable message
+     */
+    public String message() {
+        String formatted = message;
+        if (formatted == null) {
+            formatted = args.length == 0 ? template : String.format(template, args);
+            message = formatted;
+        }
+        return formatted;
+    }
+
+    public String code() {
+        return code;
+    }
+
+    public String stepId() {
+        return stepId;
+    }
+
+    public String field() {
+        return field;
+    }
+
+    public String template() {
+        return template;
+    }
+
+    public Object[] args() {
+        return args.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ValidationIssue other)) return false;
+        return Objects.equals(code, other.code)
+            && Objects.equals(stepId, other.stepId)
+            && Objects.equals(field, other.field)
+            && template.equals(other.template)
+            && Arrays.equals(args, other.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(code, stepId, field, template, Arrays.hashCode(args));
+    }
+
+    @Override
+    public String toString() {
+        return code == null ? message() : code + ": " + message();
+    }
+}
@@ -0,0 +1,62 @@
+package com.rokkon.pipeline.api.validation;
+
+/**
+ * Sink that validators report structured errors and warnings into.
+ * See {@link ConfigValidator#validateInto(ConfigValidatable, ValidationIssueCollector)}.
+ */
+public interface ValidationIssueCollector {
+
+    /**
+     * Reports an error.
+     *
+     * @param issue the error
+     */
+    void addError(ValidationIssue issue);
+
+    /**
+     * Reports a warning.
+     *
+     * @param issue the warning
+     */
+    void addWarning(ValidationIssue issue);
+
+    /**
+     * Reports all errors and warnings of an existing result, taking over its validity.
+     *
+     * @param result the result to add, ignored if null
+     */
+    void add(ValidationResult result);
+
+    /**
+     * Returns true if any errors have been reported.
+     *
+     * @return true if there are any errors
+     */
+    boolean hasErrors();
+
+    /**
+     * Reports an error whose message is formatted lazily.
+     *
+     * @param code machine-readable issue code
+     * @param stepId the step the error refers to, or null for pipeline-level errors
+     * @param field the configuration field the error refers to, may be null
+     * @param template the message template
+     * @param args the template arguments
+     */
+    default void addError(String code, String stepId, String field, String template, Object... args) {
+        addError(ValidationIssue.of(code, stepId, field, template, args));
+    }
+
+    /**
+     * Reports a warning whose message is formatted lazily.
+     *
+     * @param code machine-readable issue code
+     * @param stepId the step the warning refers to, or null for pipeline-level warnings
+     * @param field the configuration field the warning refers to, may be null
+     * @param template the message template
+     * @param args the template arguments
+     */
+    default void addWarning(String code, String stepId, String field, String template, Object... args) {
+        addWarning(ValidationIssue.of(code, stepId, field, template, args));
+    }
+}
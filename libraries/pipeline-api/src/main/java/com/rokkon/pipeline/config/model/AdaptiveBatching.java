@@ -0,0 +1,79 @@
+package com.rokkon.pipeline.config.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+/**
+ * Bounds for adaptive producer batching of a Kafka output.
+ * <p>
+ * When set on a {@link KafkaTransportConfig}, the producer starts from the configured {@code batchSize} and
+ * {@code lingerMs} and retunes both within these bounds from the record sizes, send latency and throughput it
+ * observes on the topic: larger batches for large documents, shorter linger when traffic is too thin to fill a batch.
+ * This record is immutable.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Adaptive Kafka producer batching bounds")
+public record AdaptiveBatching(
+        @JsonProperty("minBatchSize")
+        @Schema(description = "Smallest producer batch size in bytes", defaultValue = "16384")
+        Integer minBatchSize,
+
+        @JsonProperty("maxBatchSize")
+        @Schema(description = "Largest producer batch size in bytes", defaultValue = "1048576")
+        Integer maxBatchSize,
+
+        @JsonProperty("minLingerMs")
+        @Schema(description = "Shortest producer linger time in milliseconds", defaultValue = "0")
+        Integer minLingerMs,
+
+        @JsonProperty("maxLingerMs")
+        @Schema(description = "Longest producer linger time in milliseconds", defaultValue = "100")
+        Integer maxLingerMs,
+
+        @JsonProperty("adjustIntervalMs")
+        @Schema(description = "How often the settings are re-evaluated, in milliseconds", defaultValue = "30000")
+        Integer adjustIntervalMs
+) {
+    /**
+     * Default bounds: 16 KiB to 1 MiB batches, 0 to 100 ms linger, re-evaluated every 30 seconds.
+     */
+    public static final AdaptiveBatching DEFAULTS = new AdaptiveBatching(null, null, null, null, null);
+
+    public AdaptiveBatching {
+        minBatchSize = (minBatchSize == null) ? 16384 : minBatchSize;
+        maxBatchSize = (maxBatchSize == null) ? 1024 * 1024 : maxBatchSize;
+        minLingerMs = (minLingerMs == null) ? 0 : minLingerMs;
+        maxLingerMs = (maxLingerMs == null) ? 100 : maxLingerMs;
+        adjustIntervalMs = (adjustIntervalMs == null) ? 30000 : adjustIntervalMs;
+        if (minBatchSize <= 0 || maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException("AdaptiveBatching batch sizes must be positive with minBatchSize <= maxBatchSize.");
+        }
+        if (minLingerMs < 0 || maxLingerMs < minLingerMs) {
+            throw new IllegalArgumentException("AdaptiveBatching linger times must be non-negative with minLingerMs <= maxLingerMs.");
+        }
+        if (adjustIntervalMs <= 0) {
+            throw new IllegalArgumentException("AdaptiveBatching adjustIntervalMs must be positive.");
+        }
+    }
+
+    /**
+     * Clamps a batch size into the bounds.
+     *
+     * @param batchSize the batch size in bytes
+     * @return the clamped batch size
+     */
+    public int clampBatchSize(long batchSize) {
+        return (int) Math.max(minBatchSize, Math.min(maxBatchSize, batchSize));
+    }
+
+    /**
+     * Clamps a linger time into the bounds.
+     *
+     * @param lingerMs the linger time in milliseconds
+     * @return the clamped linger time
+     */
+    public int clampLingerMs(long lingerMs) {
+        return (int) Math.max(minLingerMs, Math.min(maxLingerMs, lingerMs));
+    }
+}
@@ -0,0 +1,108 @@
+package com.rokkon.pipeline.config.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+/**
+ * Message compression used for calls to a gRPC output.
+ * <p>
+ * Messages smaller than {@code minMessageBytes} are sent uncompressed even when a codec is set, since
+ * compressing small requests costs more CPU than the bytes it saves. A codec the target module did not
+ * advertise is downgraded when the call is made (zstd falls back to gzip, which every gRPC runtime reads).
+ * This record is immutable.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "gRPC message compression policy")
+public record CompressionPolicy(
+        @JsonProperty("codec")
+        @Schema(description = "Compression codec", defaultValue = "NONE")
+        Codec codec,
+
+        @JsonProperty("minMessageBytes")
+        @Schema(description = "Smallest serialized message that gets compressed", defaultValue = "4096")
+        Integer minMessageBytes
+) {
+    /**
+     * Default size threshold: messages below 4 KiB are sent uncompressed.
+     */
+    public static final int DEFAULT_MIN_MESSAGE_BYTES = 4096;
+
+    /**
+     * Policy that never compresses.
+     */
+    public static final CompressionPolicy NONE = new CompressionPolicy(Codec.NONE, null);
+
+    public CompressionPolicy {
+        if (minMessageBytes != null && minMessageBytes < 0) {
+            throw new IllegalArgumentException("CompressionPolicy minMessageBytes cannot be negative.");
+        }
+        codec = (codec == null) ? Codec.NONE : codec;
+        minMessageBytes = (minMessageBytes == null) ? DEFAULT_MIN_MESSAGE_BYTES : minMessageBytes;
+    }
+
+    /**
+     * Creates a policy compressing messages of the default threshold and above with the given codec.
+     *
+     * @param codec the codec
+     * @return the policy
+     */
+    public static CompressionPolicy of(Codec codec) {
+        return new CompressionPolicy(codec, null);
+    }
+
+    /**
+     * Returns whether this policy compresses anything.
+     *
+     * @return true if a codec is set
+     */
+    public boolean enabled() {
+        return codec != Codec.NONE;
+    }
+
+    /**
+     * Returns whether a message of the given serialized size is compressed under this policy.
+     *
+     * @param serializedBytes the size of the message
+     * @return true if the message should be compressed
+     */
+    public boolean compresses(int serializedBytes) {
+        return enabled() && serializedBytes >= minMessageBytes;
+    }
+
+    /**
+     * Compression codecs, named by their gRPC message encoding.
+     */
+    @Schema(description = "gRPC message compression codec")
+    public enum Codec {
+        /**
+         * No compression.
+         */
+        NONE("identity"),
+
+        /**
+         * gzip; supported by every gRPC runtime.
+         */
+        GZIP("gzip"),
+
+        /**
+         * Zstandard; better ratio and much faster than gzip, but only readable by modules that registered the codec.
+         */
+        ZSTD("zstd");
+
+        private final String encoding;
+
+        Codec(String encoding) {
+            this.encoding = encoding;
+        }
+
+        /**
+         * Returns the name of this codec in the {@code grpc-encoding} header.
+         *
+         * @return the message encoding
+         */
+        public String encoding() {
+            return encoding;
+        }
+    }
+}
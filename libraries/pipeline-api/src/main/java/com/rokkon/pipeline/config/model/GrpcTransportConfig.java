@@ -35,23 +35,43 @@ import java.util.Map;
  *   <li>{@code loadBalancingPolicy} - Override Consul's default</li>
  * </ul>
  * 
+ * <h2>Compression:</h2>
+ * Large text documents compress well; {@code compression} selects the codec and size threshold for
+ * calls to this output. Without it, messages are sent uncompressed.
+ * 
  * @param serviceName Consul service name of the TARGET gRPC service
  * @param grpcClientProperties Additional gRPC client properties like timeout, loadBalancingPolicy
+ * @param compression Message compression for calls to this output, or null for none
  * @see PipelineStepConfig.OutputTarget
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Schema(description = "gRPC transport configuration")
 public record GrpcTransportConfig(
         @JsonProperty("serviceName") String serviceName, // Consul service name of the TARGET gRPC service
-        @JsonProperty("grpcClientProperties") Map<String, String> grpcClientProperties
-        // e.g., timeout, loadBalancingPolicy for THIS output call
+        @JsonProperty("grpcClientProperties") Map<String, String> grpcClientProperties, // e.g., timeout, loadBalancingPolicy for THIS output call
+        @JsonProperty("compression") CompressionPolicy compression
 ) {
     @JsonCreator
     public GrpcTransportConfig(
             @JsonProperty("serviceName") String serviceName,
-            @JsonProperty("grpcClientProperties") Map<String, String> grpcClientProperties
+            @JsonProperty("grpcClientProperties") Map<String, String> grpcClientProperties,
+            @JsonProperty("compression") CompressionPolicy compression
     ) {
         this.serviceName = serviceName; // Can be null if not a GRPC output, validation by OutputTarget
         this.grpcClientProperties = (grpcClientProperties == null) ? Collections.emptyMap() : Map.copyOf(grpcClientProperties);
+        this.compression = compression;
+    }
+
+    public GrpcTransportConfig(String serviceName, Map<String, String> grpcClientProperties) {
+        this(serviceName, grpcClientProperties, null);
+    }
+
+    /**
+     * Returns the compression policy to apply, falling back to no compression.
+     *
+     * @return the effective compression policy
+     */
+    public CompressionPolicy effectiveCompression() {
+        return compression == null ? CompressionPolicy.NONE : compression;
     }
 }
@@ -0,0 +1,78 @@
+package com.rokkon.pipeline.config.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+/**
+ * Controls how much step history a {@code PipeStream} carries from hop to hop.
+ * <p>
+ * The engine applies the policy every time it dispatches a stream, so the history sent to a step
+ * (both in the stream and in {@code ServiceMetadata.history}) stays bounded no matter how long the
+ * pipeline or its retry chains get. A pipeline without a policy keeps the complete history.
+ * This record is immutable.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Step history retention policy")
+public record HistoryPolicy(
+        @JsonProperty("maxRecords")
+        @Schema(description = "Maximum number of most recent history records to keep; unbounded if not set", example = "5")
+        Integer maxRecords,
+
+        @JsonProperty("logRetention")
+        @Schema(description = "What to do with processor logs and error details of kept records", defaultValue = "KEEP")
+        LogRetention logRetention
+) {
+    /**
+     * Policy that keeps the complete history.
+     */
+    public static final HistoryPolicy KEEP_ALL = new HistoryPolicy(null, LogRetention.KEEP);
+
+    public HistoryPolicy {
+        if (maxRecords != null && maxRecords < 1) {
+            throw new IllegalArgumentException("HistoryPolicy maxRecords must be positive if set.");
+        }
+        logRetention = (logRetention == null) ? LogRetention.KEEP : logRetention;
+    }
+
+    /**
+     * Creates a policy that keeps only the given number of most recent records.
+     *
+     * @param maxRecords the number of records to keep
+     * @return the policy
+     */
+    public static HistoryPolicy keepLast(int maxRecords) {
+        return new HistoryPolicy(maxRecords, LogRetention.KEEP);
+    }
+
+    /**
+     * Returns whether this policy leaves the history untouched.
+     *
+     * @return true if nothing is dropped or moved
+     */
+    public boolean keepsAll() {
+        return maxRecords == null && logRetention == LogRetention.KEEP;
+    }
+
+    /**
+     * Defines what happens to the bulky parts of a history record: its processor logs and the
+     * input state captured with its error.
+     */
+    @Schema(description = "Retention of processor logs in step history")
+    public enum LogRetention {
+        /**
+         * Records are kept as they are.
+         */
+        KEEP,
+
+        /**
+         * Records are reduced to a summary: step, hop, status, timing and the error code and message.
+         */
+        SUMMARY,
+
+        /**
+         * Processor logs are moved to a side store and replaced by a reference; everything else is kept.
+         */
+        OFFLOAD
+    }
+}
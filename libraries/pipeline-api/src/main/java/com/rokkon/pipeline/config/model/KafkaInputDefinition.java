@@ -1,5 +1,6 @@
 package com.rokkon.pipeline.config.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
@@ -9,13 +10,37 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Kafka input of a pipeline step.
+ * <p>
+ * With {@link ProcessingOrder#PARTITION} (the default) records of a partition are processed one after another,
+ * so a step's throughput is capped by the partition count. With {@link ProcessingOrder#KEY} records of one partition
+ * are processed concurrently, up to the instance's {@code maxParallelism}, and only records with the same ordering
+ * key are kept in order. The ordering key is the Kafka record key unless {@code orderingKeyField} names a field of
+ * the serialized {@code PipeStream}, such as {@code pipedocId}.
+ *
+ * @param listenTopics Topics to consume
+ * @param consumerGroupId Consumer group, defaulted by the engine if null
+ * @param kafkaConsumerProperties Additional Kafka consumer properties
+ * @param processingOrder Ordering guarantee for records of a partition; PARTITION if null
+ * @param orderingKeyField PipeStream field to order by in KEY mode; the record key if null
+ */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Schema(description = "Kafka input definition")
 public record KafkaInputDefinition(
         @JsonProperty("listenTopics") @NotEmpty List<String> listenTopics,
         @JsonProperty("consumerGroupId") String consumerGroupId, // Now truly optional in config
-        @JsonProperty("kafkaConsumerProperties") Map<String, String> kafkaConsumerProperties
+        @JsonProperty("kafkaConsumerProperties") Map<String, String> kafkaConsumerProperties,
+
+        @JsonProperty("processingOrder")
+        @Schema(description = "Ordering guarantee for records of a partition", defaultValue = "PARTITION")
+        ProcessingOrder processingOrder,
+
+        @JsonProperty("orderingKeyField")
+        @Schema(description = "PipeStream field to order by in KEY mode; the Kafka record key if not set", example = "pipedocId")
+        String orderingKeyField
 ) {
+    @JsonCreator
     public KafkaInputDefinition {
         if (listenTopics == null || listenTopics.isEmpty()) {
             throw new IllegalArgumentException("listenTopics cannot be null or empty");
@@ -31,5 +56,38 @@ public record KafkaInputDefinition(
         kafkaConsumerProperties = (kafkaConsumerProperties == null) ? Collections.emptyMap() : Map.copyOf(kafkaConsumerProperties);
         // No validation for consumerGroupId being null/blank here, as it's optional.
         // The engine will handle defaulting if it's null.
+        if (orderingKeyField != null && orderingKeyField.isBlank()) {
+            orderingKeyField = null;
+        }
+    }
+
+    public KafkaInputDefinition(List<String> listenTopics, String consumerGroupId,
+                                Map<String, String> kafkaConsumerProperties) {
+        this(listenTopics, consumerGroupId, kafkaConsumerProperties, null, null);
+    }
+
+    /**
+     * Returns the processing order, defaulting to {@link ProcessingOrder#PARTITION}.
+     *
+     * @return the processing order in effect
+     */
+    public ProcessingOrder effectiveProcessingOrder() {
+        return processingOrder != null ? processingOrder : ProcessingOrder.PARTITION;
+    }
+
+    /**
+     * Ordering guarantee for the records of one partition.
+     */
+    @Schema(description = "Kafka input processing order")
+    public enum ProcessingOrder {
+        /**
+         * Records of a partition are processed sequentially, in offset order.
+         */
+        PARTITION,
+
+        /**
+         * Records of a partition are processed concurrently; only records with the same ordering key stay in order.
+         */
+        KEY
     }
 }
\ No newline at end of file
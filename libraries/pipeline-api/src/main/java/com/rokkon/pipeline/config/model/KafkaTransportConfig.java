@@ -35,6 +35,7 @@ import java.util.Map;
  * @param batchSize Producer batch size in bytes
  * @param lingerMs Producer linger time in milliseconds
  * @param kafkaProducerProperties Additional Kafka producer properties
+ * @param adaptiveBatching Bounds for retuning batchSize and lingerMs at runtime, or null for static settings
  * @see PipelineStepConfig.OutputTarget
  * @see KafkaInputDefinition
  */
@@ -63,7 +64,11 @@ public record KafkaTransportConfig(
 
         @JsonProperty("kafkaProducerProperties") 
         @Schema(description = "Additional Kafka producer properties")
-        Map<String, String> kafkaProducerProperties
+        Map<String, String> kafkaProducerProperties,
+
+        @JsonProperty("adaptiveBatching")
+        @Schema(description = "Bounds for adaptive batching; batchSize and lingerMs are static if not set")
+        AdaptiveBatching adaptiveBatching
 ) {
     @JsonCreator
     public KafkaTransportConfig(
@@ -72,7 +77,8 @@ public record KafkaTransportConfig(
             @JsonProperty("compressionType") String compressionType,
             @JsonProperty("batchSize") Integer batchSize,
             @JsonProperty("lingerMs") Integer lingerMs,
-            @JsonProperty("kafkaProducerProperties") Map<String, String> kafkaProducerProperties
+            @JsonProperty("kafkaProducerProperties") Map<String, String> kafkaProducerProperties,
+            @JsonProperty("adaptiveBatching") AdaptiveBatching adaptiveBatching
     ) {
         this.topic = topic; // Can be null, validation is done by OutputTarget
 
@@ -89,6 +95,13 @@ public record KafkaTransportConfig(
         this.lingerMs = (lingerMs == null || lingerMs < 0) ? 10 : lingerMs;
 
         this.kafkaProducerProperties = (kafkaProducerProperties == null) ? Collections.emptyMap() : Map.copyOf(kafkaProducerProperties);
+
+        this.adaptiveBatching = adaptiveBatching;
+    }
+
+    public KafkaTransportConfig(String topic, String partitionKeyField, String compressionType, Integer batchSize,
+                                Integer lingerMs, Map<String, String> kafkaProducerProperties) {
+        this(topic, partitionKeyField, compressionType, batchSize, lingerMs, kafkaProducerProperties, null);
     }
 
     /**
@@ -104,13 +117,19 @@ public record KafkaTransportConfig(
     /**
      * Gets all producer properties including the explicit fields.
      * This merges the explicit fields with any additional properties.
+     * With adaptive batching these are the starting values, clamped into its bounds.
      */
     @JsonIgnore
     public Map<String, String> getAllProducerProperties() {
         Map<String, String> allProps = new java.util.HashMap<>(kafkaProducerProperties);
         allProps.put("compression.type", compressionType);
-        allProps.put("batch.size", String.valueOf(batchSize));
-        allProps.put("linger.ms", String.valueOf(lingerMs));
+        if (adaptiveBatching != null) {
+            allProps.put("batch.size", String.valueOf(adaptiveBatching.clampBatchSize(batchSize)));
+            allProps.put("linger.ms", String.valueOf(adaptiveBatching.clampLingerMs(lingerMs)));
+        } else {
+            allProps.put("batch.size", String.valueOf(batchSize));
+            allProps.put("linger.ms", String.valueOf(lingerMs));
+        }
         // Note: acks is app-controlled and should be set at the engine level
         return Collections.unmodifiableMap(allProps);
     }
@@ -1,5 +1,6 @@
 package com.rokkon.pipeline.config.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidatable;
@@ -21,13 +22,43 @@ public record PipelineConfig(
         
         @JsonProperty("pipelineSteps") 
         @Schema(description = "Map of pipeline steps by step ID")
-        Map<String, PipelineStepConfig> pipelineSteps
+        Map<String, PipelineStepConfig> pipelineSteps,
+
+        @JsonProperty("historyPolicy")
+        @Schema(description = "How much step history streams of this pipeline carry; complete history if not set")
+        HistoryPolicy historyPolicy,
+
+        @JsonProperty("pipelineTimeoutMs")
+        @Schema(description = "Time budget in milliseconds for a document to pass through the whole pipeline; unbounded if not set",
+                example = "600000")
+        Long pipelineTimeoutMs
 ) implements PipelineConfigValidatable {
+    @JsonCreator
     public PipelineConfig {
         if (name == null || name.isBlank()) {
             throw new IllegalArgumentException("PipelineConfig name cannot be null or blank.");
         }
         pipelineSteps = (pipelineSteps == null) ? Collections.emptyMap() : Map.copyOf(pipelineSteps);
         // Map.copyOf will throw NPE if map contains null keys or values.
+        if (pipelineTimeoutMs != null && pipelineTimeoutMs <= 0) {
+            throw new IllegalArgumentException("PipelineConfig pipelineTimeoutMs must be positive.");
+        }
+    }
+
+    public PipelineConfig(String name, Map<String, PipelineStepConfig> pipelineSteps) {
+        this(name, pipelineSteps, null, null);
+    }
+
+    public PipelineConfig(String name, Map<String, PipelineStepConfig> pipelineSteps, HistoryPolicy historyPolicy) {
+        this(name, pipelineSteps, historyPolicy, null);
+    }
+
+    /**
+     * Returns the history policy to apply, falling back to keeping the complete history.
+     *
+     * @return the effective history policy
+     */
+    public HistoryPolicy effectiveHistoryPolicy() {
+        return historyPolicy == null ? HistoryPolicy.KEEP_ALL : historyPolicy;
     }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.rokkon.pipeline.engine.deadline;
+
+import com.rokkon.search.sdk.ServiceMetadata;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.smallrye.mutiny.Uni;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time by which one step invocation has to finish.
+ * <p>
+ * The deadline is wall-clock time, since it is compared on other hosts after Kafka hops; clock skew between
+ * engine and module hosts shifts it by the same amount.
+ *
+ * @param stepName the step the deadline applies to
+ * @param epochMillis the deadline in milliseconds since the epoch
+ * @param bound which budget the deadline came from
+ */
+public record StepDeadline(String stepName, long epochMillis, Bound bound) {
+
+    /**
+     * Returns the time left until the deadline.
+     *
+     * @param clock the wall clock
+     * @return the remaining time, zero or negative once expired
+     */
+    public Duration remaining(Clock clock) {
+        return Duration.ofMillis(epochMillis - clock.millis());
+    }
+
+    /**
+     * Returns whether the deadline has passed.
+     *
+     * @param clock the wall clock
+     * @return true if no time is left
+     */
+    public boolean isExpired(Clock clock) {
+        return clock.millis() >= epochMillis;
+    }
+
+    /**
+     * Returns the deadline as a gRPC deadline, for {@code stub.withDeadline(...)}. gRPC sends it to the module as
+     * the {@code grpc-timeout} header, cancels the call when it passes and lets the module see the cancellation.
+     *
+     * @param clock the wall clock
+     * @return the gRPC deadline
+     */
+    public Deadline toGrpcDeadline(Clock clock) {
+        return Deadline.after(Math.max(0, epochMillis - clock.millis()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds the deadline to the metadata of a module call under {@link StepDeadlines#STEP_DEADLINE_PARAM}, for calls
+     * without a gRPC deadline of their own such as those multiplexed over {@code ProcessDataStream}.
+     *
+     * @param metadata the metadata being built
+     * @return the same builder
+     */
+    public ServiceMetadata.Builder stamp(ServiceMetadata.Builder metadata) {
+        return metadata.putContextParams(StepDeadlines.STEP_DEADLINE_PARAM, Long.toString(epochMillis));
+    }
+
+    /**
+     * Fails the work with a {@link StepTimeoutException} if it doesn't finish by the deadline.
+     * <p>
+     * The work is not subscribed at all when the deadline has already passed, and is cancelled when the deadline
+     * passes while it runs. A gRPC {@code DEADLINE_EXCEEDED} from a call made with {@link #toGrpcDeadline(Clock)}
+     * is reported as the same exception, so callers count timeouts in one place.
+     *
+     * @param work the step invocation
+     * @param clock the wall clock
+     * @param <T> the result type
+     * @return the bounded work
+     */
+    public <T> Uni<T> bound(Uni<T> work, Clock clock) {
+        Duration remaining = remaining(clock);
+        if (remaining.isZero() || remaining.isNegative()) {
+            return Uni.createFrom().failure(() -> new StepTimeoutException(this, true, null));
+        }
+        return work
+            .ifNoItem().after(remaining).failWith(() -> new StepTimeoutException(this, false, null))
+            .onFailure(e -> Status.fromThrowable(e).getCode() == Status.Code.DEADLINE_EXCEEDED)
+            .transform(e -> new StepTimeoutException(this, false, e));
+    }
+
+    /**
+     * The budget a deadline was derived from.
+     */
+    public enum Bound {
+        /** The step's own {@code stepTimeoutMs}. */
+        STEP,
+        /** The remainder of the pipeline's {@code pipelineTimeoutMs}. */
+        PIPELINE
+    }
+}
@@ -0,0 +1,118 @@
+package com.rokkon.pipeline.engine.deadline;
+
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.config.model.PipelineInstance;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
+import com.rokkon.search.model.PipeStream;
+import com.rokkon.search.sdk.ServiceMetadata;
+import org.jboss.logging.Logger;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Derives step deadlines from the configured time budgets.
+ * <p>
+ * A pipeline with {@code pipelineTimeoutMs} gets an absolute deadline when a document enters it, stored under
+ * {@link #PIPELINE_DEADLINE_PARAM} in the {@code PipeStream}'s context parameters; the engine copies those into
+ * {@code ServiceMetadata.context_params}, and they travel with the stream across Kafka hops. Each step invocation
+ * then gets the earlier of that deadline and {@code stepTimeoutMs} from now, the instance's
+ * {@code StepConfigOverride.stepTimeoutMs} taking precedence over the step's own. A document whose pipeline
+ * deadline has passed is dropped at the next step instead of occupying a module nobody waits for anymore.
+ */
+public final class StepDeadlines {
+
+    private static final Logger LOG = Logger.getLogger(StepDeadlines.class);
+
+    /**
+     * Context parameter holding the pipeline deadline in milliseconds since the epoch.
+     */
+    public static final String PIPELINE_DEADLINE_PARAM = "rokkon.pipeline_deadline_epoch_ms";
+
+    /**
+     * Context parameter of {@code ServiceMetadata} holding the deadline of the current step invocation in
+     * milliseconds since the epoch.
+     */
+    public static final String STEP_DEADLINE_PARAM = "rokkon.step_deadline_epoch_ms";
+
+    private StepDeadlines() {
+    }
+
+    /**
+     * Starts the pipeline budget of a stream entering a pipeline. Streams that already carry a deadline, e.g. when
+     * re-entering after a retry, keep it.
+     *
+     * @param stream the stream being built
+     * @param pipeline the pipeline the stream enters
+     * @param clock the wall clock
+     * @return the same builder
+     */
+    public static PipeStream.Builder startPipeline(PipeStream.Builder stream, PipelineConfig pipeline, Clock clock) {
+        if (pipeline.pipelineTimeoutMs() != null && !stream.containsContextParams(PIPELINE_DEADLINE_PARAM)) {
+            long deadline = clock.millis() + pipeline.pipelineTimeoutMs();
+            stream.putContextParams(PIPELINE_DEADLINE_PARAM, Long.toString(deadline));
+        }
+        return stream;
+    }
+
+    /**
+     * Returns the deadline for invoking a step on a stream.
+     *
+     * @param contextParams the stream's context parameters
+     * @param step the step to invoke
+     * @param override the pipeline instance's override of the step, may be null
+     * @param clock the wall clock
+     * @return the deadline, or empty if neither the step nor the pipeline has a budget
+     */
+    public static Optional<StepDeadline> forStep(Map<String, String> contextParams, PipelineStepConfig step,
+                                                 PipelineInstance.StepConfigOverride override, Clock clock) {
+        Long stepTimeoutMs = override != null && override.stepTimeoutMs() != null
+            ? override.stepTimeoutMs()
+            : step.stepTimeoutMs();
+        OptionalLong pipelineDeadline = parse(contextParams, PIPELINE_DEADLINE_PARAM);
+        if (stepTimeoutMs != null && stepTimeoutMs > 0) {
+            long stepDeadline = clock.millis() + stepTimeoutMs;
+            if (pipelineDeadline.isEmpty() || stepDeadline <= pipelineDeadline.getAsLong()) {
+                return Optional.of(new StepDeadline(step.stepName(), stepDeadline, StepDeadline.Bound.STEP));
+            }
+        }
+        if (pipelineDeadline.isPresent()) {
+            return Optional.of(new StepDeadline(step.stepName(), pipelineDeadline.getAsLong(), StepDeadline.Bound.PIPELINE));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the deadline the engine attached to a module call, for modules that want to stop early.
+     *
+     * @param metadata the call's metadata
+     * @return the deadline, or empty if the call has none
+     */
+    public static Optional<StepDeadline> fromMetadata(ServiceMetadata metadata) {
+        OptionalLong step = parse(metadata.getContextParamsMap(), STEP_DEADLINE_PARAM);
+        if (step.isPresent()) {
+            return Optional.of(new StepDeadline(metadata.getPipeStepName(), step.getAsLong(), StepDeadline.Bound.STEP));
+        }
+        OptionalLong pipeline = parse(metadata.getContextParamsMap(), PIPELINE_DEADLINE_PARAM);
+        if (pipeline.isPresent()) {
+            return Optional.of(new StepDeadline(metadata.getPipeStepName(), pipeline.getAsLong(),
+                StepDeadline.Bound.PIPELINE));
+        }
+        return Optional.empty();
+    }
+
+    private static OptionalLong parse(Map<String, String> contextParams, String key) {
+        String value = contextParams.get(key);
+        if (value == null) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            LOG.debugf("Ignoring malformed deadline %s=%s", key, value);
+            return OptionalLong.empty();
+        }
+    }
+}
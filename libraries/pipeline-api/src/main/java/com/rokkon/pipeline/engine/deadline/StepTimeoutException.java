@@ -0,0 +1,43 @@
+package com.rokkon.pipeline.engine.deadline;
+
+/**
+ * Thrown when a step invocation misses its {@link StepDeadline}.
+ */
+public class StepTimeoutException extends RuntimeException {
+
+    private final transient StepDeadline deadline;
+    private final boolean beforeDispatch;
+
+    /**
+     * Creates the exception.
+     *
+     * @param deadline the deadline that passed
+     * @param beforeDispatch true if the deadline had passed before the step was invoked
+     * @param cause the underlying failure, e.g. a gRPC {@code DEADLINE_EXCEEDED}, or null
+     */
+    public StepTimeoutException(StepDeadline deadline, boolean beforeDispatch, Throwable cause) {
+        super((beforeDispatch ? "Deadline of step '" + deadline.stepName() + "' expired before dispatch"
+            : "Step '" + deadline.stepName() + "' did not finish by its deadline") + " (" + deadline.bound() + " budget)",
+            cause);
+        this.deadline = deadline;
+        this.beforeDispatch = beforeDispatch;
+    }
+
+    /**
+     * Returns the deadline that passed.
+     *
+     * @return the deadline
+     */
+    public StepDeadline deadline() {
+        return deadline;
+    }
+
+    /**
+     * Returns whether the step was never invoked because its deadline had already passed.
+     *
+     * @return true if the deadline expired before dispatch
+     */
+    public boolean beforeDispatch() {
+        return beforeDispatch;
+    }
+}
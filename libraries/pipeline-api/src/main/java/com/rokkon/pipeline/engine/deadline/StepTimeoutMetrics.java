@@ -0,0 +1,59 @@
+package com.rokkon.pipeline.engine.deadline;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-step counters of missed deadlines.
+ */
+public final class StepTimeoutMetrics {
+
+    private final Map<String, Counters> steps = new ConcurrentHashMap<>();
+
+    /**
+     * Counts a missed deadline.
+     *
+     * @param timeout the timeout raised by {@link StepDeadline#bound}
+     */
+    public void record(StepTimeoutException timeout) {
+        Counters counters = steps.computeIfAbsent(timeout.deadline().stepName(), step -> new Counters());
+        if (timeout.beforeDispatch()) {
+            counters.expiredBeforeDispatch.increment();
+        } else {
+            counters.timedOut.increment();
+        }
+        if (timeout.deadline().bound() == StepDeadline.Bound.PIPELINE) {
+            counters.pipelineBudget.increment();
+        }
+    }
+
+    /**
+     * Returns a point-in-time view of the counters, by step name.
+     *
+     * @return the snapshots, sorted by step name
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> snapshot = new TreeMap<>();
+        steps.forEach((step, counters) -> snapshot.put(step, new Snapshot(counters.expiredBeforeDispatch.sum(),
+            counters.timedOut.sum(), counters.pipelineBudget.sum())));
+        return snapshot;
+    }
+
+    private static final class Counters {
+        private final LongAdder expiredBeforeDispatch = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAdder pipelineBudget = new LongAdder();
+    }
+
+    /**
+     * Point-in-time timeout counters of one step.
+     *
+     * @param expiredBeforeDispatch documents dropped because their deadline had passed before the step was invoked
+     * @param timedOut invocations cancelled because they ran past their deadline
+     * @param pipelineBudget timeouts of either kind where the pipeline's budget, not the step's, was the limit
+     */
+    public record Snapshot(long expiredBeforeDispatch, long timedOut, long pipelineBudget) {
+    }
+}
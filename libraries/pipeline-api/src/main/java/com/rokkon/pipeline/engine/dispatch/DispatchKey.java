@@ -0,0 +1,61 @@
+package com.rokkon.pipeline.engine.dispatch;
+
+import com.rokkon.pipeline.config.model.PipelineInstance;
+
+import java.util.Map;
+
+/**
+ * Where a step invocation is queued in a {@link PriorityDispatchQueue}.
+ *
+ * @param priorityClass the document's priority class
+ * @param flow the flow the invocation belongs to, one per pipeline instance and step
+ * @param weight the flow's share within its priority class, from 1 to 1000
+ */
+public record DispatchKey(PriorityClass priorityClass, String flow, int weight) {
+
+    /**
+     * Weight of flows whose instance and step set no priority; the middle of the range instances may use.
+     */
+    public static final int DEFAULT_WEIGHT = 100;
+
+    public DispatchKey {
+        if (priorityClass == null) {
+            throw new IllegalArgumentException("priorityClass cannot be null");
+        }
+        if (flow == null || flow.isBlank()) {
+            throw new IllegalArgumentException("flow cannot be null or blank");
+        }
+        if (weight < 1 || weight > 1000) {
+            throw new IllegalArgumentException("weight must be between 1 and 1000");
+        }
+    }
+
+    /**
+     * Returns the key for invoking a step on a stream.
+     * <p>
+     * The stream's priority class decides the level. Within it, the flow's weight is the instance's {@code priority},
+     * or {@link #DEFAULT_WEIGHT} if unset. The step's {@code StepConfigOverride.priority} is relative to that, with
+     * {@link #DEFAULT_WEIGHT} meaning the instance's own weight: a step priority of 50 halves it and 200 doubles it,
+     * capped at 1000. Steps with the same priority therefore keep the order of their instances.
+     *
+     * @param contextParams the stream's context parameters
+     * @param instance the pipeline instance running the step, may be null
+     * @param stepName the step
+     * @return the dispatch key
+     */
+    public static DispatchKey forStep(Map<String, String> contextParams, PipelineInstance instance, String stepName) {
+        PriorityClass priorityClass = PriorityClass.fromContextParams(contextParams);
+        if (instance == null) {
+            return new DispatchKey(priorityClass, stepName, DEFAULT_WEIGHT);
+        }
+        int weight = instance.priority() != null ? instance.priority() : DEFAULT_WEIGHT;
+        PipelineInstance.StepConfigOverride override =
+            instance.configOverrides() == null ? null : instance.configOverrides().get(stepName);
+        if (override != null && override.priority() != null) {
+            // Step priorities are not range-checked by the instance
+            long scaled = (long) weight * override.priority() / DEFAULT_WEIGHT;
+            weight = (int) Math.max(1, Math.min(1000, scaled));
+        }
+        return new DispatchKey(priorityClass, instance.instanceId() + "/" + stepName, weight);
+    }
+}
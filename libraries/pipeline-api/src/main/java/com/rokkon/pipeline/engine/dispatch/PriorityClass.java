@@ -0,0 +1,78 @@
+package com.rokkon.pipeline.engine.dispatch;
+
+import com.rokkon.search.engine.ConnectorRequest;
+import com.rokkon.search.model.PipeStream;
+
+import java.util.Map;
+
+/**
+ * Priority of a document, set by the connector through {@code ConnectorRequest.priority} and carried with the
+ * stream under {@link #CONTEXT_PARAM} so every hop dispatches it at the same priority.
+ */
+public enum PriorityClass {
+    /** Bulk work such as backfills; {@code priority = 0}. */
+    LOW,
+    /** The default; {@code priority = 1} or unset. */
+    NORMAL,
+    /** Interactive work such as on-demand re-indexing; {@code priority = 2}. */
+    HIGH;
+
+    /**
+     * Context parameter holding the priority class name.
+     */
+    public static final String CONTEXT_PARAM = "rokkon.priority";
+
+    /**
+     * Maps a {@code ConnectorRequest.priority} value; values outside 0 to 2 are clamped.
+     *
+     * @param priority the request priority
+     * @return the priority class
+     */
+    public static PriorityClass fromRequestPriority(int priority) {
+        if (priority <= 0) {
+            return LOW;
+        }
+        return priority == 1 ? NORMAL : HIGH;
+    }
+
+    /**
+     * Returns the priority class of a connector request.
+     *
+     * @param request the request
+     * @return the priority class, {@link #NORMAL} if the request has none
+     */
+    public static PriorityClass of(ConnectorRequest request) {
+        return request.hasPriority() ? fromRequestPriority(request.getPriority()) : NORMAL;
+    }
+
+    /**
+     * Returns the priority class carried in a stream's context parameters.
+     *
+     * @param contextParams the context parameters
+     * @return the priority class, {@link #NORMAL} if absent or unknown
+     */
+    public static PriorityClass fromContextParams(Map<String, String> contextParams) {
+        String value = contextParams.get(CONTEXT_PARAM);
+        if (value != null) {
+            for (PriorityClass priorityClass : values()) {
+                if (priorityClass.name().equals(value)) {
+                    return priorityClass;
+                }
+            }
+        }
+        return NORMAL;
+    }
+
+    /**
+     * Records the priority of a connector request on the stream created for it. The request's own
+     * {@code priority} field wins over a {@link #CONTEXT_PARAM} the connector may have put in its context
+     * parameters.
+     *
+     * @param stream the stream being built
+     * @param request the connector request
+     * @return the same builder
+     */
+    public static PipeStream.Builder stamp(PipeStream.Builder stream, ConnectorRequest request) {
+        return stream.putContextParams(CONTEXT_PARAM, of(request).name());
+    }
+}
@@ -0,0 +1,49 @@
+package com.rokkon.pipeline.engine.dispatch;
+
+import java.time.Duration;
+
+/**
+ * Settings of a {@link PriorityDispatchQueue}.
+ *
+ * @param lowWeight dispatch share of {@link PriorityClass#LOW}
+ * @param normalWeight dispatch share of {@link PriorityClass#NORMAL}
+ * @param highWeight dispatch share of {@link PriorityClass#HIGH}
+ * @param maxLevelWait longest a non-empty priority class may go without a dispatch before it is served next
+ * @param maxQueuedPerLevel invocations a priority class may queue before further offers are refused
+ */
+public record PriorityDispatchSettings(int lowWeight, int normalWeight, int highWeight, Duration maxLevelWait,
+                                       int maxQueuedPerLevel) {
+
+    /**
+     * Default settings: high, normal and low priority dispatched 16:4:1, no class waits longer than five seconds,
+     * and up to 10,000 queued invocations per class.
+     */
+    public static final PriorityDispatchSettings DEFAULTS =
+        new PriorityDispatchSettings(1, 4, 16, Duration.ofSeconds(5), 10_000);
+
+    public PriorityDispatchSettings {
+        if (lowWeight < 1 || normalWeight < 1 || highWeight < 1) {
+            throw new IllegalArgumentException("weights must be positive");
+        }
+        if (maxLevelWait == null || maxLevelWait.isNegative() || maxLevelWait.isZero()) {
+            throw new IllegalArgumentException("maxLevelWait must be positive");
+        }
+        if (maxQueuedPerLevel < 1) {
+            throw new IllegalArgumentException("maxQueuedPerLevel must be positive");
+        }
+    }
+
+    /**
+     * Returns the dispatch share of a priority class.
+     *
+     * @param priorityClass the priority class
+     * @return the weight
+     */
+    public int weight(PriorityClass priorityClass) {
+        return switch (priorityClass) {
+            case LOW -> lowWeight;
+            case NORMAL -> normalWeight;
+            case HIGH -> highWeight;
+        };
+    }
+}
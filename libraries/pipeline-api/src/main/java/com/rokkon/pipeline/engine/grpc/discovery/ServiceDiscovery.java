@@ -1,8 +1,10 @@
 package com.rokkon.pipeline.engine.grpc.discovery;
 
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.stork.api.ServiceInstance;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -25,4 +27,19 @@ public interface ServiceDiscovery {
      * @return A Uni containing all available service instances
      */
     Uni<List<ServiceInstance>> discoverAllInstances(String serviceName);
+
+    /**
+     * Watch the healthy instances of a service.
+     * <p>
+     * Emits the current instances and then the instances after every membership change. The default
+     * implementation polls {@link #discoverAllInstances(String)} every five seconds; implementations that
+     * are notified of changes should emit them as they happen.
+     *
+     * @param serviceName The name of the service to watch
+     * @return A Multi emitting the healthy instances whenever they may have changed
+     */
+    default Multi<List<ServiceInstance>> watchInstances(String serviceName) {
+        return Multi.createFrom().ticks().startingAfter(Duration.ZERO).every(Duration.ofSeconds(5))
+            .onItem().transformToUniAndConcatenate(tick -> discoverAllInstances(serviceName));
+    }
 }
\ No newline at end of file
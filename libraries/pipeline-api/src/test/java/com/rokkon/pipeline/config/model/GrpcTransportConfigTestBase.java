@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Base test class for GrpcTransportConfig serialization/deserialization.
@@ -172,4 +173,47 @@ public abstract class GrpcTransportConfigTestBase {
         assertThat(config.serviceName()).isNull();
         assertThat(config.grpcClientProperties()).isEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCompressionSerialization() throws Exception {
+        GrpcTransportConfig original = new GrpcTransportConfig(
+                "chunker-service",
+                Map.of(),
+                new CompressionPolicy(CompressionPolicy.Codec.ZSTD, 8192)
+        );
+
+        String json = getObjectMapper().writeValueAsString(original);
+        assertThat(json).contains("\"codec\":\"ZSTD\"");
+        assertThat(json).contains("\"minMessageBytes\":8192");
+
+        GrpcTransportConfig deserialized = getObjectMapper().readValue(json, GrpcTransportConfig.class);
+        assertThat(deserialized.compression()).isEqualTo(original.compression());
+        assertThat(deserialized.effectiveCompression().compresses(8192)).isTrue();
+        assertThat(deserialized.effectiveCompression().compresses(8191)).isFalse();
+    }
+
+    @Test
+    public void testCompressionDefaults() throws Exception {
+        GrpcTransportConfig withoutCompression = new GrpcTransportConfig("plain-service", Map.of());
+        assertThat(withoutCompression.compression()).isNull();
+        assertThat(withoutCompression.effectiveCompression().enabled()).isFalse();
+        assertThat(getObjectMapper().writeValueAsString(withoutCompression)).doesNotContain("compression");
+
+        GrpcTransportConfig gzip = getObjectMapper().readValue("""
+            {
+                "serviceName": "gzip-service",
+                "compression": { "codec": "GZIP" }
+            }
+            """, GrpcTransportConfig.class);
+        assertThat(gzip.compression().codec()).isEqualTo(CompressionPolicy.Codec.GZIP);
+        assertThat(gzip.compression().minMessageBytes()).isEqualTo(CompressionPolicy.DEFAULT_MIN_MESSAGE_BYTES);
+    }
+
+    @Test
+    public void testCompressionValidation() {
+        assertThatThrownBy(() -> new CompressionPolicy(CompressionPolicy.Codec.GZIP, -1))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("minMessageBytes cannot be negative");
+        assertThat(new CompressionPolicy(null, 0).compresses(1_000_000)).isFalse();
+    }
+}
@@ -0,0 +1,22 @@
+package com.rokkon.pipeline.config.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.test.junit.QuarkusTest;
+
+import jakarta.inject.Inject;
+
+/**
+ * Unit tests for HistoryPolicy using Quarkus-injected ObjectMapper.
+ * All test logic is in HistoryPolicyTestBase.
+ */
+@QuarkusTest
+public class HistoryPolicyTest extends HistoryPolicyTestBase {
+
+    @Inject
+    ObjectMapper objectMapper;
+    
+    @Override
+    protected ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.rokkon.pipeline.config.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Base test class for HistoryPolicy that contains all test logic.
+ */
+public abstract class HistoryPolicyTestBase {
+
+    protected abstract ObjectMapper getObjectMapper();
+
+    @Test
+    public void testSerialization() throws Exception {
+        HistoryPolicy policy = new HistoryPolicy(5, HistoryPolicy.LogRetention.OFFLOAD);
+        String json = getObjectMapper().writeValueAsString(policy);
+
+        assertThat(json).contains("\"maxRecords\":5");
+        assertThat(json).contains("\"logRetention\":\"OFFLOAD\"");
+    }
+
+    @Test
+    public void testDeserializationDefaults() throws Exception {
+        HistoryPolicy policy = getObjectMapper().readValue("{\"maxRecords\":3}", HistoryPolicy.class);
+
+        assertThat(policy.maxRecords()).isEqualTo(3);
+        assertThat(policy.logRetention()).isEqualTo(HistoryPolicy.LogRetention.KEEP);
+        assertThat(policy.keepsAll()).isFalse();
+    }
+
+    @Test
+    public void testKeepAll() {
+        assertThat(HistoryPolicy.KEEP_ALL.keepsAll()).isTrue();
+        assertThat(new HistoryPolicy(null, null).keepsAll()).isTrue();
+        assertThat(new HistoryPolicy(null, HistoryPolicy.LogRetention.SUMMARY).keepsAll()).isFalse();
+        assertThat(HistoryPolicy.keepLast(10).maxRecords()).isEqualTo(10);
+    }
+
+    @Test
+    public void testValidation() {
+        assertThatThrownBy(() -> new HistoryPolicy(0, HistoryPolicy.LogRetention.KEEP))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("maxRecords must be positive");
+    }
+
+    @Test
+    public void testPipelineConfigRoundTrip() throws Exception {
+        PipelineConfig config = new PipelineConfig("history-pipeline", Map.of(),
+            new HistoryPolicy(2, HistoryPolicy.LogRetention.SUMMARY));
+
+        String json = getObjectMapper().writeValueAsString(config);
+        assertThat(json).contains("\"historyPolicy\"");
+
+        PipelineConfig deserialized = getObjectMapper().readValue(json, PipelineConfig.class);
+        assertThat(deserialized.historyPolicy()).isEqualTo(config.historyPolicy());
+        assertThat(deserialized.effectiveHistoryPolicy()).isEqualTo(config.historyPolicy());
+    }
+
+    @Test
+    public void testPipelineConfigWithoutPolicy() throws Exception {
+        PipelineConfig config = new PipelineConfig("plain-pipeline", Map.of());
+
+        String json = getObjectMapper().writeValueAsString(config);
+        assertThat(json).doesNotContain("historyPolicy");
+        assertThat(config.effectiveHistoryPolicy()).isEqualTo(HistoryPolicy.KEEP_ALL);
+    }
+}
@@ -242,4 +242,45 @@ public abstract class KafkaInputDefinitionTestBase {
             .containsEntry("enable.auto.commit", "false")
             .containsEntry("max.poll.records", "500");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testProcessingOrderDefaultsToPartition() throws Exception {
+        KafkaInputDefinition config = new KafkaInputDefinition(List.of("docs"), "group", Map.of());
+
+        assertThat(config.processingOrder()).isNull();
+        assertThat(config.effectiveProcessingOrder()).isEqualTo(KafkaInputDefinition.ProcessingOrder.PARTITION);
+        assertThat(config.orderingKeyField()).isNull();
+
+        String json = getObjectMapper().writeValueAsString(config);
+        assertThat(json).doesNotContain("processingOrder").doesNotContain("orderingKeyField");
+    }
+
+    @Test
+    public void testKeyOrderedConfiguration() throws Exception {
+        String json = """
+            {
+                "listenTopics": ["pipeline.chunker.output"],
+                "consumerGroupId": "embedder-group",
+                "processingOrder": "KEY",
+                "orderingKeyField": "pipedocId"
+            }
+            """;
+
+        KafkaInputDefinition config = getObjectMapper().readValue(json, KafkaInputDefinition.class);
+
+        assertThat(config.effectiveProcessingOrder()).isEqualTo(KafkaInputDefinition.ProcessingOrder.KEY);
+        assertThat(config.orderingKeyField()).isEqualTo("pipedocId");
+
+        KafkaInputDefinition roundTripped = getObjectMapper().readValue(
+            getObjectMapper().writeValueAsString(config), KafkaInputDefinition.class);
+        assertThat(roundTripped).isEqualTo(config);
+    }
+
+    @Test
+    public void testBlankOrderingKeyFieldMeansRecordKey() {
+        KafkaInputDefinition config = new KafkaInputDefinition(
+                List.of("docs"), null, null, KafkaInputDefinition.ProcessingOrder.KEY, "  ");
+
+        assertThat(config.orderingKeyField()).isNull();
+    }
+}
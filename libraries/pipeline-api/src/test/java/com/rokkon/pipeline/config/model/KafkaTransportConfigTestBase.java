@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Base test class for KafkaTransportConfig serialization/deserialization.
@@ -211,4 +212,48 @@ public abstract class KafkaTransportConfigTestBase {
             .containsEntry("acks", "all")
             .hasSize(8); // 3 explicit + 5 additional
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAdaptiveBatching() throws Exception {
+        String json = """
+            {
+                "topic": "adaptive-topic",
+                "batchSize": 4096,
+                "lingerMs": 500,
+                "adaptiveBatching": {
+                    "minBatchSize": 16384,
+                    "maxBatchSize": 2097152,
+                    "maxLingerMs": 50
+                }
+            }
+            """;
+
+        KafkaTransportConfig config = getObjectMapper().readValue(json, KafkaTransportConfig.class);
+
+        assertThat(config.adaptiveBatching().maxBatchSize()).isEqualTo(2097152);
+        assertThat(config.adaptiveBatching().minLingerMs()).isZero();
+        assertThat(config.adaptiveBatching().adjustIntervalMs()).isEqualTo(30000);
+        // Starting values are clamped into the adaptive bounds
+        assertThat(config.getAllProducerProperties())
+            .containsEntry("batch.size", "16384")
+            .containsEntry("linger.ms", "50");
+
+        KafkaTransportConfig roundTripped = getObjectMapper().readValue(
+                getObjectMapper().writeValueAsString(config), KafkaTransportConfig.class);
+        assertThat(roundTripped).isEqualTo(config);
+        assertThat(new KafkaTransportConfig("static-topic", null, null, null, null, null).adaptiveBatching()).isNull();
+    }
+
+    @Test
+    public void testAdaptiveBatchingValidation() {
+        assertThatThrownBy(() -> new AdaptiveBatching(65536, 16384, null, null, null))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("minBatchSize <= maxBatchSize");
+        assertThatThrownBy(() -> new AdaptiveBatching(null, null, 20, 10, null))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("minLingerMs <= maxLingerMs");
+        assertThatThrownBy(() -> new AdaptiveBatching(null, null, null, null, 0))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("adjustIntervalMs must be positive");
+    }
+}
@@ -299,4 +299,19 @@ public abstract class PipelineConfigTestBase {
         assertThatThrownBy(() -> new PipelineConfig("test", stepsWithNull))
             .isInstanceOf(NullPointerException.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPipelineTimeout() throws Exception {
+        PipelineConfig config = new PipelineConfig("timed", Map.of(), null, 600_000L);
+
+        String json = getObjectMapper().writeValueAsString(config);
+        assertThat(json).contains("\"pipelineTimeoutMs\":600000");
+        assertThat(getObjectMapper().readValue(json, PipelineConfig.class).pipelineTimeoutMs()).isEqualTo(600_000L);
+
+        assertThat(getObjectMapper().writeValueAsString(new PipelineConfig("untimed", Map.of())))
+            .doesNotContain("pipelineTimeoutMs");
+        assertThatThrownBy(() -> new PipelineConfig("timed", Map.of(), null, 0L))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("PipelineConfig pipelineTimeoutMs must be positive.");
+    }
+}
@@ -0,0 +1,147 @@
+package com.rokkon.pipeline.engine.deadline;
+
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.config.model.PipelineInstance;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
+import com.rokkon.pipeline.config.model.StepType;
+import com.rokkon.search.model.PipeStream;
+import com.rokkon.search.sdk.ServiceMetadata;
+import io.grpc.Status;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StepDeadlinesTest {
+
+    private static final Clock START = Clock.fixed(Instant.ofEpochMilli(1_700_000_000_000L), ZoneOffset.UTC);
+
+    private static PipelineStepConfig step(Long stepTimeoutMs) {
+        return new PipelineStepConfig("embed", StepType.PIPELINE, null, null, null, List.of(), null,
+            0, 1000L, 30000L, 2.0, stepTimeoutMs, new PipelineStepConfig.ProcessorInfo("embedder", null));
+    }
+
+    private static Map<String, String> startedPipeline(long timeoutMs) {
+        PipelineConfig pipeline = new PipelineConfig("docs", Map.of(), null, timeoutMs);
+        return StepDeadlines.startPipeline(PipeStream.newBuilder().setStreamId("s"), pipeline, START)
+            .getContextParamsMap();
+    }
+
+    @Test
+    void startPipeline_stampsDeadlineOnce() {
+        PipelineConfig pipeline = new PipelineConfig("docs", Map.of(), null, 60_000L);
+        PipeStream.Builder stream = PipeStream.newBuilder().setStreamId("s");
+
+        StepDeadlines.startPipeline(stream, pipeline, START);
+        StepDeadlines.startPipeline(stream, pipeline, Clock.offset(START, Duration.ofMinutes(5)));
+
+        assertThat(stream.getContextParamsMap())
+            .containsEntry(StepDeadlines.PIPELINE_DEADLINE_PARAM, Long.toString(START.millis() + 60_000));
+        assertThat(StepDeadlines.startPipeline(PipeStream.newBuilder(), new PipelineConfig("docs", Map.of()), START)
+            .getContextParamsMap()).isEmpty();
+    }
+
+    @Test
+    void forStep_takesTheEarlierOfStepAndPipelineBudget() {
+        Map<String, String> params = startedPipeline(60_000);
+
+        StepDeadline stepBound = StepDeadlines.forStep(params, step(5_000L), null, START).orElseThrow();
+        assertThat(stepBound.bound()).isEqualTo(StepDeadline.Bound.STEP);
+        assertThat(stepBound.epochMillis()).isEqualTo(START.millis() + 5_000);
+
+        Clock late = Clock.offset(START, Duration.ofSeconds(58));
+        StepDeadline pipelineBound = StepDeadlines.forStep(params, step(5_000L), null, late).orElseThrow();
+        assertThat(pipelineBound.bound()).isEqualTo(StepDeadline.Bound.PIPELINE);
+        assertThat(pipelineBound.remaining(late)).isEqualTo(Duration.ofSeconds(2));
+
+        assertThat(StepDeadlines.forStep(params, step(null), null, START).orElseThrow().bound())
+            .isEqualTo(StepDeadline.Bound.PIPELINE);
+        assertThat(StepDeadlines.forStep(Map.of(), step(null), null, START)).isEmpty();
+    }
+
+    @Test
+    void forStep_prefersInstanceOverride() {
+        PipelineInstance.StepConfigOverride override = new PipelineInstance.StepConfigOverride(null, null, null, 1_000L, null);
+
+        StepDeadline deadline = StepDeadlines.forStep(Map.of(), step(5_000L), override, START).orElseThrow();
+
+        assertThat(deadline.epochMillis()).isEqualTo(START.millis() + 1_000);
+    }
+
+    @Test
+    void forStep_ignoresMalformedDeadline() {
+        Map<String, String> params = Map.of(StepDeadlines.PIPELINE_DEADLINE_PARAM, "soon");
+
+        assertThat(StepDeadlines.forStep(params, step(null), null, START)).isEmpty();
+    }
+
+    @Test
+    void stamp_roundTripsThroughServiceMetadata() {
+        StepDeadline deadline = new StepDeadline("embed", START.millis() + 750, StepDeadline.Bound.STEP);
+        ServiceMetadata metadata = deadline.stamp(ServiceMetadata.newBuilder().setPipeStepName("embed")).build();
+
+        assertThat(StepDeadlines.fromMetadata(metadata)).contains(deadline);
+        assertThat(deadline.toGrpcDeadline(START).timeRemaining(TimeUnit.MILLISECONDS)).isBetween(700L, 750L);
+        assertThat(StepDeadlines.fromMetadata(ServiceMetadata.getDefaultInstance())).isEmpty();
+    }
+
+    @Test
+    void bound_skipsWorkWhenAlreadyExpired() {
+        StepDeadline deadline = new StepDeadline("embed", START.millis(), StepDeadline.Bound.PIPELINE);
+        AtomicBoolean subscribed = new AtomicBoolean();
+        StepTimeoutMetrics metrics = new StepTimeoutMetrics();
+
+        Uni<String> bounded = deadline.bound(Uni.createFrom().item(() -> {
+            subscribed.set(true);
+            return "done";
+        }), START).onFailure(StepTimeoutException.class).invoke(e -> metrics.record((StepTimeoutException) e));
+
+        assertThatThrownBy(() -> bounded.await().atMost(Duration.ofSeconds(5)))
+            .isInstanceOf(StepTimeoutException.class)
+            .hasMessageContaining("expired before dispatch");
+        assertThat(subscribed).isFalse();
+        assertThat(metrics.snapshot()).containsEntry("embed", new StepTimeoutMetrics.Snapshot(1, 0, 1));
+    }
+
+    @Test
+    void bound_cancelsWorkPastItsDeadline() {
+        Clock clock = Clock.systemUTC();
+        StepDeadline deadline = new StepDeadline("embed", clock.millis() + 50, StepDeadline.Bound.STEP);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        StepTimeoutMetrics metrics = new StepTimeoutMetrics();
+
+        Uni<String> slow = Uni.createFrom().<String>nothing().onCancellation().invoke(() -> cancelled.set(true));
+        Uni<String> bounded = deadline.bound(slow, clock)
+            .onFailure(StepTimeoutException.class).invoke(e -> metrics.record((StepTimeoutException) e));
+
+        assertThatThrownBy(() -> bounded.await().atMost(Duration.ofSeconds(5)))
+            .isInstanceOf(StepTimeoutException.class)
+            .hasMessageContaining("did not finish");
+        assertThat(cancelled).isTrue();
+        assertThat(metrics.snapshot()).containsEntry("embed", new StepTimeoutMetrics.Snapshot(0, 1, 0));
+    }
+
+    @Test
+    void bound_reportsGrpcDeadlineExceededAsTimeout() {
+        StepDeadline deadline = new StepDeadline("embed", Clock.systemUTC().millis() + 60_000, StepDeadline.Bound.STEP);
+
+        Uni<String> call = Uni.createFrom().failure(Status.DEADLINE_EXCEEDED.asRuntimeException());
+
+        assertThatThrownBy(() -> deadline.bound(call, Clock.systemUTC()).await().atMost(Duration.ofSeconds(5)))
+            .isInstanceOf(StepTimeoutException.class)
+            .hasCauseInstanceOf(io.grpc.StatusRuntimeException.class);
+        Uni<String> failing = Uni.createFrom().failure(Status.UNAVAILABLE.asRuntimeException());
+        assertThatThrownBy(() -> deadline.bound(failing, Clock.systemUTC()).await().atMost(Duration.ofSeconds(5)))
+            .isInstanceOf(io.grpc.StatusRuntimeException.class);
+    }
+}
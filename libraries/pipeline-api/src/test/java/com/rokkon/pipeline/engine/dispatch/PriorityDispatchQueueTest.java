@@ -0,0 +1,172 @@
+package com.rokkon.pipeline.engine.dispatch;
+
+import com.rokkon.pipeline.config.model.PipelineInstance;
+import com.rokkon.search.engine.ConnectorRequest;
+import com.rokkon.search.model.PipeStream;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PriorityDispatchQueueTest {
+
+    private final AtomicLong now = new AtomicLong(System.nanoTime());
+
+    private PriorityDispatchQueue<String> queue(PriorityDispatchSettings settings) {
+        return new PriorityDispatchQueue<>(settings, now::get);
+    }
+
+    private static DispatchKey key(PriorityClass priorityClass, String flow) {
+        return new DispatchKey(priorityClass, flow, DispatchKey.DEFAULT_WEIGHT);
+    }
+
+    @Test
+    void priorityClasses_shareDispatchesByWeight() throws InterruptedException {
+        PriorityDispatchQueue<String> queue = queue(PriorityDispatchSettings.DEFAULTS);
+        for (int i = 0; i < 1000; i++) {
+            queue.offer(key(PriorityClass.LOW, "backfill"), "LOW");
+            queue.offer(key(PriorityClass.NORMAL, "crawl"), "NORMAL");
+            queue.offer(key(PriorityClass.HIGH, "reindex"), "HIGH");
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 210; i++) {
+            counts.merge(queue.take(), 1, Integer::sum);
+        }
+
+        assertThat(counts).containsEntry("HIGH", 160).containsEntry("NORMAL", 40).containsEntry("LOW", 10);
+    }
+
+    @Test
+    void highPriority_overtakesQueuedBulkWork() throws InterruptedException {
+        PriorityDispatchQueue<String> queue = queue(PriorityDispatchSettings.DEFAULTS);
+        for (int i = 0; i < 10_000; i++) {
+            queue.offer(key(PriorityClass.LOW, "backfill"), "bulk-" + i);
+        }
+        queue.offer(key(PriorityClass.HIGH, "reindex"), "interactive");
+
+        assertThat(queue.take()).isEqualTo("interactive");
+        assertThat(queue.take()).isEqualTo("bulk-0");
+    }
+
+    @Test
+    void flowsWithinAClass_shareByWeightInOfferOrder() throws InterruptedException {
+        PriorityDispatchQueue<String> queue = queue(PriorityDispatchSettings.DEFAULTS);
+        for (int i = 0; i < 100; i++) {
+            queue.offer(new DispatchKey(PriorityClass.NORMAL, "heavy", 300), "heavy-" + i);
+            queue.offer(new DispatchKey(PriorityClass.NORMAL, "light", 100), "light-" + i);
+        }
+
+        int heavy = 0;
+        int lastHeavy = -1;
+        for (int i = 0; i < 40; i++) {
+            String item = queue.take();
+            if (item.startsWith("heavy")) {
+                heavy++;
+                int index = Integer.parseInt(item.substring("heavy-".length()));
+                assertThat(index).isGreaterThan(lastHeavy);
+                lastHeavy = index;
+            }
+        }
+
+        assertThat(heavy).isBetween(29, 31);
+    }
+
+    @Test
+    void starvedClass_isServedAfterMaxLevelWait() throws InterruptedException {
+        PriorityDispatchQueue<String> queue = queue(new PriorityDispatchSettings(1, 1, 1000, Duration.ofSeconds(1), 10_000));
+        queue.offer(key(PriorityClass.LOW, "backfill"), "LOW");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        for (int i = 0; i < 5000; i++) {
+            queue.offer(key(PriorityClass.HIGH, "reindex"), "HIGH");
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(queue.take()).isEqualTo("HIGH");
+        }
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+
+        assertThat(queue.take()).isEqualTo("LOW");
+        PriorityDispatchQueue.LevelStats low = queue.stats().get(PriorityClass.LOW);
+        assertThat(low.promotions()).isEqualTo(1);
+        assertThat(low.dispatched()).isEqualTo(1);
+        assertThat(low.maxWait()).isEqualTo(Duration.ofMillis(1600));
+    }
+
+    @Test
+    void fullClass_refusesOffers() {
+        PriorityDispatchQueue<String> queue = queue(new PriorityDispatchSettings(1, 4, 16, Duration.ofSeconds(5), 2));
+
+        assertThat(queue.offer(key(PriorityClass.LOW, "backfill"), "a")).isTrue();
+        assertThat(queue.offer(key(PriorityClass.LOW, "backfill"), "b")).isTrue();
+        assertThat(queue.offer(key(PriorityClass.LOW, "backfill"), "c")).isFalse();
+        assertThat(queue.offer(key(PriorityClass.HIGH, "reindex"), "d")).isTrue();
+
+        PriorityDispatchQueue.LevelStats low = queue.stats().get(PriorityClass.LOW);
+        assertThat(low.depth()).isEqualTo(2);
+        assertThat(low.refused()).isEqualTo(1);
+        assertThat(queue.size()).isEqualTo(3);
+    }
+
+    @Test
+    void take_waitsForAnOffer() throws Exception {
+        PriorityDispatchQueue<String> queue = new PriorityDispatchQueue<>(PriorityDispatchSettings.DEFAULTS);
+        CompletableFuture<String> taken = CompletableFuture.supplyAsync(() -> {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(queue.poll(Duration.ofMillis(10))).isNull();
+        Thread.sleep(50);
+        queue.offer(key(PriorityClass.NORMAL, "crawl"), "doc");
+
+        assertThat(taken.get(5, TimeUnit.SECONDS)).isEqualTo("doc");
+    }
+
+    @Test
+    void dispatchKey_followsRequestInstanceAndStepPriorities() {
+        ConnectorRequest request = ConnectorRequest.newBuilder().setConnectorType("web").setPriority(2).build();
+        Map<String, String> params = PriorityClass.stamp(
+            PipeStream.newBuilder().putContextParams(PriorityClass.CONTEXT_PARAM, "LOW"), request).getContextParamsMap();
+        PipelineInstance instance = new PipelineInstance("prod-1", "docs", "production", null, null, null,
+            Map.of("embed", new PipelineInstance.StepConfigOverride(null, null, null, null, 5000)),
+            null, 300, null, null, null, null, null, null);
+
+        DispatchKey embed = DispatchKey.forStep(params, instance, "embed");
+        DispatchKey chunk = DispatchKey.forStep(params, instance, "chunk");
+
+        assertThat(embed).isEqualTo(new DispatchKey(PriorityClass.HIGH, "prod-1/embed", 1000));
+        assertThat(chunk).isEqualTo(new DispatchKey(PriorityClass.HIGH, "prod-1/chunk", 300));
+        assertThat(DispatchKey.forStep(Map.of(), null, "chunk"))
+            .isEqualTo(new DispatchKey(PriorityClass.NORMAL, "chunk", DispatchKey.DEFAULT_WEIGHT));
+        assertThat(PriorityClass.of(ConnectorRequest.getDefaultInstance())).isEqualTo(PriorityClass.NORMAL);
+        assertThat(PriorityClass.fromRequestPriority(0)).isEqualTo(PriorityClass.LOW);
+    }
+
+    @Test
+    void stepPriority_scalesInstanceWeightAndKeepsInstanceOrder() {
+        Map<String, PipelineInstance.StepConfigOverride> overrides =
+            Map.of("embed", new PipelineInstance.StepConfigOverride(null, null, null, null, 50));
+        PipelineInstance batch = new PipelineInstance("batch-1", "docs", "production", null, null, null,
+            overrides, null, 100, null, null, null, null, null, null);
+        PipelineInstance live = new PipelineInstance("live-1", "docs", "production", null, null, null,
+            overrides, null, 800, null, null, null, null, null, null);
+
+        DispatchKey batchEmbed = DispatchKey.forStep(Map.of(), batch, "embed");
+        DispatchKey liveEmbed = DispatchKey.forStep(Map.of(), live, "embed");
+
+        assertThat(batchEmbed.weight()).isEqualTo(50);
+        assertThat(liveEmbed.weight()).isEqualTo(400);
+        assertThat(liveEmbed.weight()).isGreaterThan(batchEmbed.weight());
+        assertThat(DispatchKey.forStep(Map.of(), live, "chunk").weight()).isEqualTo(800);
+    }
+}
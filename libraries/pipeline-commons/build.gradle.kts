@@ -1,6 +1,7 @@
 plugins {
     `java-library`
     id("io.quarkus")
+    id("me.champeau.jmh")
 }
 
 repositories {
@@ -27,6 +28,8 @@ dependencies {
     // Quarkus dependencies
     implementation("io.quarkus:quarkus-arc")
     implementation("io.quarkus:quarkus-jackson")
+    implementation("io.quarkus:quarkus-mutiny")
+    implementation("io.quarkus:quarkus-smallrye-stork")
 
 
     // Utilities
@@ -34,9 +37,14 @@ dependencies {
 
     // gRPC and Protobuf
     //implementation("io.grpc:grpc-testing")
+    implementation("io.quarkus:quarkus-grpc")
+    implementation(libs.zstd.jni)
     implementation("com.google.protobuf:protobuf-java")
     implementation("com.google.protobuf:protobuf-java-util")
 
+    // Kafka client support
+    implementation("org.apache.kafka:kafka-clients")
+
     // Testing
     testImplementation("io.quarkus:quarkus-junit5")
     testImplementation("io.quarkus:quarkus-junit5-mockito")
@@ -44,6 +52,9 @@ dependencies {
     testImplementation(libs.assertj)
     testImplementation(libs.jimfs)
     testImplementation("com.github.marschall:memoryfilesystem:2.7.0")
+
+    // Benchmarks read the data-util corpus
+    jmh(project(":libraries:data-util"))
 }
 
 java {
@@ -62,4 +73,4 @@ tasks.named("compileJava") {
 
 tasks.withType<Test> {
     systemProperty("java.util.logging.manager", "org.jboss.logmanager.LogManager")
-}
\ No newline at end of file
+}
@@ -0,0 +1,137 @@
+package com.rokkon.pipeline.commons.delta.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.rokkon.pipeline.commons.delta.PipeDocDeltas;
+import com.rokkon.search.model.Blob;
+import com.rokkon.search.model.ChunkEmbedding;
+import com.rokkon.search.model.Embedding;
+import com.rokkon.search.model.PipeDoc;
+import com.rokkon.search.model.SemanticChunk;
+import com.rokkon.search.model.SemanticProcessingResult;
+import com.rokkon.search.sdk.ProcessResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares returning a full output document with returning a delta, for a step that only adds keywords and one
+ * named embedding to a large document. Each variant serializes the response, parses it again as the engine would and
+ * resolves the resulting document; {@link #moduleDiff()} measures the module-side cost of computing the delta.
+ * The round trips count the parsed response bytes in {@link ResponseBytes}; JMH reports them per time unit, so
+ * multiplied by the score they give the wire size of one response.
+ * <p>
+ * Run with {@code ./gradlew :libraries:pipeline-commons:jmh -Pjmh.includes=PipeDocDeltaBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipeDocDeltaBenchmark {
+
+    @Param({"64", "1024"})
+    public int bodyKb;
+
+    @Param({"1024"})
+    public int blobKb;
+
+    @Param({"100"})
+    public int chunks;
+
+    @Param({"384"})
+    public int dimensions;
+
+    private PipeDoc input;
+    private PipeDoc output;
+    private byte[] fullResponse;
+    private byte[] deltaResponse;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        byte[] blob = new byte[blobKb * 1024];
+        random.nextBytes(blob);
+
+        SemanticProcessingResult.Builder result = SemanticProcessingResult.newBuilder()
+            .setResultId("result-1")
+            .setSourceFieldName("body");
+        for (int i = 0; i < chunks; i++) {
+            ChunkEmbedding.Builder embedding = ChunkEmbedding.newBuilder().setTextContent("chunk text " + i);
+            for (int d = 0; d < dimensions; d++) {
+                embedding.addVector(random.nextFloat());
+            }
+            result.addChunks(SemanticChunk.newBuilder().setChunkId("chunk-" + i).setChunkNumber(i).setEmbeddingInfo(embedding));
+        }
+
+        input = PipeDoc.newBuilder()
+            .setId("doc-1")
+            .setTitle("Benchmark document")
+            .setBody("x".repeat(bodyKb * 1024))
+            .addKeywords("existing")
+            .addSemanticResults(result)
+            .setBlob(Blob.newBuilder().setData(ByteString.copyFrom(blob)).setMimeType("application/pdf"))
+            .build();
+
+        Embedding.Builder titleEmbedding = Embedding.newBuilder();
+        for (int d = 0; d < dimensions; d++) {
+            titleEmbedding.addVector(random.nextFloat());
+        }
+        output = input.toBuilder()
+            .addKeywords("added-1")
+            .addKeywords("added-2")
+            .putNamedEmbeddings("title", titleEmbedding.build())
+            .build();
+
+        ProcessResponse full = ProcessResponse.newBuilder().setSuccess(true).setOutputDoc(output).build();
+        fullResponse = full.toByteArray();
+        deltaResponse = PipeDocDeltas.toDeltaResponse(input, full).toByteArray();
+    }
+
+    @Benchmark
+    public PipeDoc fullResponseRoundTrip(ResponseBytes bytes) throws InvalidProtocolBufferException {
+        bytes.responseBytes += fullResponse.length;
+        ProcessResponse response = ProcessResponse.parseFrom(fullResponse);
+        return PipeDocDeltas.resolveOutput(input, response);
+    }
+
+    @Benchmark
+    public PipeDoc deltaResponseRoundTrip(ResponseBytes bytes) throws InvalidProtocolBufferException {
+        bytes.responseBytes += deltaResponse.length;
+        ProcessResponse response = ProcessResponse.parseFrom(deltaResponse);
+        return PipeDocDeltas.resolveOutput(input, response);
+    }
+
+    @Benchmark
+    public byte[] fullResponseSerialize() {
+        return ProcessResponse.newBuilder().setSuccess(true).setOutputDoc(output).build().toByteArray();
+    }
+
+    @Benchmark
+    public byte[] deltaResponseSerialize() {
+        ProcessResponse full = ProcessResponse.newBuilder().setSuccess(true).setOutputDoc(output).build();
+        return PipeDocDeltas.toDeltaResponse(input, full).toByteArray();
+    }
+
+    @Benchmark
+    public Object moduleDiff() {
+        return PipeDocDeltas.diff(input, output);
+    }
+
+    /**
+     * Response bytes parsed, reported by JMH as a secondary result.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ResponseBytes {
+
+        public long responseBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            responseBytes = 0;
+        }
+    }
+}
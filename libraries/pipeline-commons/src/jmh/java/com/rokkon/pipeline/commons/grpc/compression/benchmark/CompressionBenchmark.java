@@ -0,0 +1,114 @@
+package com.rokkon.pipeline.commons.grpc.compression.benchmark;
+
+import com.rokkon.pipeline.config.model.CompressionPolicy;
+import com.rokkon.pipeline.commons.grpc.compression.ZstdCodec;
+import com.rokkon.search.model.PipeDoc;
+import com.rokkon.search.util.ProtobufTestDataHelper;
+import io.grpc.Codec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU cost of compressing the data-util corpus with each codec against the bytes it saves.
+ * <p>
+ * Every document is serialized once up front; each invocation compresses the whole corpus the way the
+ * {@code CompressionInterceptor} would, leaving documents below {@code minMessageBytes} uncompressed. The
+ * {@link CorpusBytes} counters report serialized and wire bytes per time unit next to the score; their quotient is
+ * the compression ratio.
+ * <p>
+ * Run with {@code ./gradlew :libraries:pipeline-commons:jmh -Pjmh.includes=CompressionBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    /**
+     * {@code tika}: parsed documents with extracted text; {@code chunker}: documents with chunk text and metadata.
+     */
+    @Param({"tika", "chunker"})
+    public String corpus;
+
+    @Param({"NONE", "GZIP", "ZSTD"})
+    public CompressionPolicy.Codec codec;
+
+    @Param({"0", "4096"})
+    public int minMessageBytes;
+
+    private List<byte[]> messages;
+    private long rawBytes;
+    private Codec compressor;
+    private CompressionPolicy policy;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 20);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ProtobufTestDataHelper helper = new ProtobufTestDataHelper();
+        Collection<PipeDoc> docs = "tika".equals(corpus)
+            ? helper.getTikaPipeDocuments()
+            : helper.getChunkerPipeDocuments();
+        if (docs.isEmpty()) {
+            throw new IllegalStateException("No documents found for corpus " + corpus);
+        }
+        messages = docs.stream().map(PipeDoc::toByteArray).toList();
+        policy = new CompressionPolicy(codec, minMessageBytes);
+        compressor = switch (codec) {
+            case NONE -> Codec.Identity.NONE;
+            case GZIP -> new Codec.Gzip();
+            case ZSTD -> new ZstdCodec();
+        };
+        rawBytes = messages.stream().mapToLong(message -> message.length).sum();
+    }
+
+    @Benchmark
+    public long compressCorpus(CorpusBytes bytes) throws IOException {
+        long wire = 0;
+        for (byte[] message : messages) {
+            if (!policy.compresses(message.length)) {
+                wire += message.length;
+                continue;
+            }
+            buffer.reset();
+            try (OutputStream out = compressor.compress(buffer)) {
+                out.write(message);
+            }
+            wire += buffer.size();
+        }
+        bytes.rawBytes += rawBytes;
+        bytes.wireBytes += wire;
+        return wire;
+    }
+
+    /**
+     * Bytes compressed per invocation, reported by JMH as secondary results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class CorpusBytes {
+
+        /**
+         * Serialized size of the corpus.
+         */
+        public long rawBytes;
+
+        /**
+         * Size of the corpus on the wire, uncompressed documents included.
+         */
+        public long wireBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rawBytes = 0;
+            wireBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.rokkon.pipeline.commons.wire.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.rokkon.pipeline.commons.wire.WireFieldExtractor;
+import com.rokkon.search.model.Blob;
+import com.rokkon.search.model.PipeDoc;
+import com.rokkon.search.model.PipeStream;
+import com.rokkon.search.model.StepExecutionRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares extracting a partition key from a serialized {@link PipeStream} with {@link WireFieldExtractor} against
+ * parsing the whole stream, for documents with a growing blob. {@link #wireDocumentId()} and
+ * {@link #wireContextParam()} should stay flat as the blob grows, while {@link #parseDocumentId()} grows with it.
+ * <p>
+ * Run with {@code ./gradlew :libraries:pipeline-commons:jmh -Pjmh.includes=WireFieldExtractorBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFieldExtractorBenchmark {
+
+    @Param({"0", "64", "4096"})
+    public int blobKb;
+
+    @Param({"16"})
+    public int bodyKb;
+
+    private byte[] serialized;
+    private ByteBuffer direct;
+    private WireFieldExtractor documentId;
+    private WireFieldExtractor tenant;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] blob = new byte[blobKb * 1024];
+        new Random(42).nextBytes(blob);
+        PipeDoc.Builder document = PipeDoc.newBuilder()
+            .setTitle("Benchmark document")
+            .setBody("x".repeat(bodyKb * 1024))
+            .setBlob(Blob.newBuilder().setData(ByteString.copyFrom(blob)).setMimeType("application/pdf"))
+            .setId("doc-1");
+        PipeStream.Builder stream = PipeStream.newBuilder()
+            .setStreamId("stream-1")
+            .setCurrentPipelineName("pipeline")
+            .setTargetStepName("chunker")
+            .setDocument(document)
+            .putContextParams("tenant_id", "acme");
+        for (int i = 0; i < 10; i++) {
+            stream.addHistory(StepExecutionRecord.newBuilder().setStepName("step-" + i).setHopNumber(i));
+        }
+        serialized = stream.build().toByteArray();
+        direct = ByteBuffer.allocateDirect(serialized.length);
+        direct.put(serialized).flip();
+        documentId = WireFieldExtractor.forPipeStream(WireFieldExtractor.PIPEDOC_ID);
+        tenant = WireFieldExtractor.forPipeStream("context_params.tenant_id");
+    }
+
+    @Benchmark
+    public String parseDocumentId() throws InvalidProtocolBufferException {
+        return PipeStream.parseFrom(serialized).getDocument().getId();
+    }
+
+    @Benchmark
+    public Optional<String> wireDocumentId() {
+        return documentId.extract(serialized);
+    }
+
+    @Benchmark
+    public Optional<String> wireDocumentIdDirectBuffer() {
+        return documentId.extract(direct);
+    }
+
+    @Benchmark
+    public Optional<String> wireContextParam() {
+        return tenant.extract(serialized);
+    }
+}
@@ -0,0 +1,25 @@
+package com.rokkon.pipeline.commons.blob;
+
+import com.rokkon.search.model.BlobReference;
+
+/**
+ * Thrown when referenced blob content can't be resolved, e.g. because it was deleted or lives in another store.
+ */
+public class BlobNotFoundException extends RuntimeException {
+
+    private final transient BlobReference reference;
+
+    public BlobNotFoundException(BlobReference reference, String message) {
+        super(message);
+        this.reference = reference;
+    }
+
+    /**
+     * Returns the reference that could not be resolved.
+     *
+     * @return the reference
+     */
+    public BlobReference reference() {
+        return reference;
+    }
+}
@@ -0,0 +1,145 @@
+package com.rokkon.pipeline.commons.blob;
+
+import com.google.protobuf.ByteString;
+import com.rokkon.search.model.Blob;
+import com.rokkon.search.model.BlobReference;
+import com.rokkon.search.model.PipeDoc;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Helpers for passing {@link Blob} content by reference.
+ * <p>
+ * Whoever first receives a document (typically the engine on ingest) calls {@link #offload(PipeDoc, BlobStore, long)},
+ * which moves large inline content into a {@link BlobStore}. From then on every hop, Kafka record and
+ * {@code FailedStepInputState} only carries the small {@link BlobReference}. Steps that need the bytes call
+ * {@link #content(Blob, BlobStore)}; steps that don't never fetch them.
+ */
+public final class BlobReferences {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private BlobReferences() {
+        // Utility class
+    }
+
+    /**
+     * Returns whether the blob's content is held by reference.
+     *
+     * @param blob the blob
+     * @return true if the blob carries a reference instead of inline data
+     */
+    public static boolean isReference(Blob blob) {
+        return blob.getContentCase() == Blob.ContentCase.REFERENCE;
+    }
+
+    /**
+     * Moves the document's blob content into the store if it is inline and at least {@code thresholdBytes} large.
+     *
+     * @param doc the document
+     * @param store the store to move the content to
+     * @param thresholdBytes minimum size of content that is moved
+     * @return the document with a blob reference, or the same document if nothing was moved
+     */
+    public static PipeDoc offload(PipeDoc doc, BlobStore store, long thresholdBytes) {
+        if (!doc.hasBlob()) {
+            return doc;
+        }
+        Blob blob = offload(doc.getBlob(), store, thresholdBytes);
+        return blob == doc.getBlob() ? doc : doc.toBuilder().setBlob(blob).build();
+    }
+
+    /**
+     * Moves the blob's content into the store if it is inline and at least {@code thresholdBytes} large.
+     * All other blob fields are kept.
+     *
+     * @param blob the blob
+     * @param store the store to move the content to
+     * @param thresholdBytes minimum size of content that is moved
+     * @return the blob with a reference, or the same blob if nothing was moved
+     */
+    public static Blob offload(Blob blob, BlobStore store, long thresholdBytes) {
+        if (blob.getContentCase() != Blob.ContentCase.DATA || blob.getData().size() < thresholdBytes) {
+            return blob;
+        }
+        BlobReference reference = store.put(blob.getData());
+        Blob.Builder builder = blob.toBuilder().setReference(reference);
+        if (!builder.hasBlobId()) {
+            builder.setBlobId(reference.getSha256());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the blob's content, fetching it from the store if the blob holds a reference.
+     *
+     * @param blob the blob
+     * @param store the store holding referenced content
+     * @return the content
+     * @throws BlobNotFoundException if the referenced content is not in the store
+     */
+    public static ByteString content(Blob blob, BlobStore store) {
+        if (!isReference(blob)) {
+            return blob.getData();
+        }
+        BlobReference reference = blob.getReference();
+        if (!store.storeId().equals(reference.getStoreId())) {
+            throw new BlobNotFoundException(reference, "Blob " + reference.getSha256() + " belongs to store '"
+                + reference.getStoreId() + "', not '" + store.storeId() + "'");
+        }
+        return store.get(reference)
+            .orElseThrow(() -> new BlobNotFoundException(reference, "Blob " + reference.getSha256() + " not found"));
+    }
+
+    /**
+     * Returns the blob with its content inline, e.g. before handing it to a consumer that doesn't know about
+     * blob stores.
+     *
+     * @param blob the blob
+     * @param store the store holding referenced content
+     * @return the blob with inline data, or the same blob if it already was inline
+     * @throws BlobNotFoundException if the referenced content is not in the store
+     */
+    public static Blob inline(Blob blob, BlobStore store) {
+        if (!isReference(blob)) {
+            return blob;
+        }
+        return blob.toBuilder().setData(content(blob, store)).build();
+    }
+
+    /**
+     * Returns the size of the blob's content without fetching it.
+     *
+     * @param blob the blob
+     * @return the content size in bytes
+     */
+    public static long size(Blob blob) {
+        return isReference(blob) ? blob.getReference().getSizeBytes() : blob.getData().size();
+    }
+
+    /**
+     * Computes the lowercase hex SHA-256 used as content address.
+     *
+     * @param content the content
+     * @return the hash
+     */
+    public static String sha256(ByteString content) {
+        MessageDigest digest = newDigest();
+        for (ByteBuffer buffer : content.asReadOnlyByteBufferList()) {
+            digest.update(buffer);
+        }
+        return HEX.formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
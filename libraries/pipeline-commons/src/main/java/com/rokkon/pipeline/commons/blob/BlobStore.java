@@ -0,0 +1,60 @@
+package com.rokkon.pipeline.commons.blob;
+
+import com.google.protobuf.ByteString;
+import com.rokkon.search.model.BlobReference;
+
+import java.util.Optional;
+
+/**
+ * Content-addressed storage for binary payloads.
+ * <p>
+ * Content is keyed by its SHA-256, so storing the same bytes twice returns the same {@link BlobReference}
+ * and keeps a single copy. Pipelines pass the reference in {@code Blob.reference} instead of the bytes in
+ * {@code Blob.data}, and only steps that actually need the content fetch it, see {@link BlobReferences}.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface BlobStore {
+
+    /**
+     * Returns the identifier written into {@link BlobReference#getStoreId()} by this store.
+     *
+     * @return the store ID
+     */
+    String storeId();
+
+    /**
+     * Stores content, unless content with the same hash is already present.
+     *
+     * @param content the content to store
+     * @return the reference to the content
+     * @throws java.io.UncheckedIOException if the content could not be written
+     */
+    BlobReference put(ByteString content);
+
+    /**
+     * Fetches content.
+     *
+     * @param reference the reference returned by {@link #put(ByteString)}
+     * @return the content, or empty if this store doesn't hold it
+     * @throws java.io.UncheckedIOException if the content could not be read
+     */
+    Optional<ByteString> get(BlobReference reference);
+
+    /**
+     * Returns whether the store holds the referenced content.
+     *
+     * @param reference the reference to check
+     * @return true if the content is present
+     */
+    boolean contains(BlobReference reference);
+
+    /**
+     * Removes content. References to it can no longer be resolved afterwards.
+     *
+     * @param reference the reference to remove
+     * @return true if the content was present
+     * @throws java.io.UncheckedIOException if the content could not be removed
+     */
+    boolean delete(BlobReference reference);
+}
@@ -0,0 +1,263 @@
+package com.rokkon.pipeline.commons.blob;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import com.rokkon.search.model.BlobReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * {@link BlobStore} that keeps every blob in its own file below a root directory, fanned out by the first
+ * characters of the hash ({@code ab/cd/abcd...}).
+ * <p>
+ * Files are written to a temporary name and moved into place, so readers never see partial content. On the
+ * default file system, blobs of at least {@code mapThresholdBytes} are memory-mapped instead of read, so fetching
+ * a large payload doesn't copy it onto the heap. Any other {@link java.nio.file.FileSystem}, such as an in-memory
+ * one in tests, is read normally.
+ * <p>
+ * References usually arrive over the wire, so their hash is only accepted if it is a lowercase hex SHA-256. The
+ * hash is computed from the content that is written, and an existing file of the wrong size is rewritten rather than
+ * trusted. Reads only check the size by default, since re-hashing every blob on every read costs more than the
+ * transfer it saves; {@link #verify(BlobReference)} checks the hash of a stored blob explicitly, and the
+ * {@code verifyOnRead} setting does so on every read.
+ */
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileSystemBlobStore.class);
+
+    /**
+     * Default size from which blobs are memory-mapped.
+     */
+    public static final long DEFAULT_MAP_THRESHOLD_BYTES = 64 * 1024;
+
+    private static final Pattern SHA256 = Pattern.compile("^[0-9a-f]{64}$");
+
+    private final String storeId;
+    private final Path root;
+    private final long mapThresholdBytes;
+    private final boolean mappable;
+    private final boolean verifyOnRead;
+
+    /**
+     * Creates a store below the given directory, creating it if necessary.
+     *
+     * @param storeId the store ID written into references
+     * @param root the root directory
+     * @param mapThresholdBytes size from which blobs are memory-mapped, or a negative value to never map
+     * @param verifyOnRead whether {@link #get(BlobReference)} checks the content against the reference's hash
+     */
+    public FileSystemBlobStore(String storeId, Path root, long mapThresholdBytes, boolean verifyOnRead) {
+        this.storeId = storeId;
+        this.root = root;
+        this.mapThresholdBytes = mapThresholdBytes;
+        this.mappable = mapThresholdBytes >= 0 && root.getFileSystem() == FileSystems.getDefault();
+        this.verifyOnRead = verifyOnRead;
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create blob store directory " + root, e);
+        }
+    }
+
+    /**
+     * Creates a store below the given directory that doesn't verify hashes on read.
+     *
+     * @param storeId the store ID written into references
+     * @param root the root directory
+     * @param mapThresholdBytes size from which blobs are memory-mapped, or a negative value to never map
+     */
+    public FileSystemBlobStore(String storeId, Path root, long mapThresholdBytes) {
+        this(storeId, root, mapThresholdBytes, false);
+    }
+
+    /**
+     * Creates a store below the given directory with the default map threshold.
+     *
+     * @param storeId the store ID written into references
+     * @param root the root directory
+     */
+    public FileSystemBlobStore(String storeId, Path root) {
+        this(storeId, root, DEFAULT_MAP_THRESHOLD_BYTES);
+    }
+
+    @Override
+    public String storeId() {
+        return storeId;
+    }
+
+    @Override
+    public BlobReference put(ByteString content) {
+        String sha256 = BlobReferences.sha256(content);
+        Path target = pathFor(sha256);
+        if (!hasSize(target, content.size())) {
+            write(target, content);
+        }
+        return BlobReference.newBuilder()
+            .setSha256(sha256)
+            .setSizeBytes(content.size())
+            .setStoreId(storeId)
+            .setLocation(target.toUri().toString())
+            .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the reference doesn't carry a valid hash
+     * @throws java.io.UncheckedIOException if the content could not be read or doesn't match the reference's size,
+     *         or its hash if {@code verifyOnRead} is set
+     */
+    @Override
+    public Optional<ByteString> get(BlobReference reference) {
+        try {
+            ByteString content = read(reference);
+            if (verifyOnRead && !matchesHash(reference, content)) {
+                throw new IOException("Content of blob " + reference.getSha256() + " doesn't match its hash");
+            }
+            return Optional.of(content);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read blob " + reference.getSha256(), e);
+        }
+    }
+
+    /**
+     * Checks that a stored blob still matches its reference, e.g. from a periodic scrub.
+     *
+     * @param reference the blob's reference
+     * @return true if the blob is stored with the reference's size and hash
+     * @throws IllegalArgumentException if the reference doesn't carry a valid hash
+     * @throws java.io.UncheckedIOException if the content could not be read
+     */
+    public boolean verify(BlobReference reference) {
+        try {
+            return matchesHash(reference, read(reference));
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (SizeMismatchException e) {
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read blob " + reference.getSha256(), e);
+        }
+    }
+
+    @Override
+    public boolean contains(BlobReference reference) {
+        return Files.exists(pathFor(reference.getSha256()));
+    }
+
+    @Override
+    public boolean delete(BlobReference reference) {
+        try {
+            return Files.deleteIfExists(pathFor(reference.getSha256()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete blob " + reference.getSha256(), e);
+        }
+    }
+
+    /**
+     * Returns the root directory of this store.
+     *
+     * @return the root directory
+     */
+    public Path root() {
+        return root;
+    }
+
+    private ByteString read(BlobReference reference) throws IOException {
+        Path path = pathFor(reference.getSha256());
+        if (mappable && reference.getSizeBytes() >= mapThresholdBytes) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                checkSize(reference, channel.size());
+                // The mapping stays valid after the channel is closed
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return UnsafeByteOperations.unsafeWrap(mapped);
+            }
+        }
+        ByteString content = ByteString.copyFrom(Files.readAllBytes(path));
+        checkSize(reference, content.size());
+        return content;
+    }
+
+    private static boolean matchesHash(BlobReference reference, ByteString content) {
+        return BlobReferences.sha256(content).equals(reference.getSha256());
+    }
+
+    private static void checkSize(BlobReference reference, long size) throws IOException {
+        if (size != reference.getSizeBytes()) {
+            throw new SizeMismatchException("Blob " + reference.getSha256() + " has " + size
+                + " bytes, but its reference says " + reference.getSizeBytes());
+        }
+    }
+
+    private static boolean hasSize(Path path, long size) {
+        try {
+            return Files.size(path) == size;
+        } catch (IOException e) {
+            // Missing or unreadable; writing it again is the fix either way
+            return false;
+        }
+    }
+
+    private Path pathFor(String sha256) {
+        // Only a plain hash may be resolved, anything else could point outside the root
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            throw new IllegalArgumentException("Invalid blob hash: " + sha256);
+        }
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    private void write(Path target, ByteString content) {
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                content.writeTo(out);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target);
+            }
+            temp = null;
+        } catch (FileAlreadyExistsException e) {
+            // Another writer stored the same content first
+            LOG.debug("Blob {} was stored concurrently", target.getFileName());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write blob " + target.getFileName(), e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    LOG.warn("Failed to delete temporary blob file {}", temp, e);
+                }
+            }
+        }
+    }
+
+    private static final class SizeMismatchException extends IOException {
+
+        private SizeMismatchException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.rokkon.pipeline.commons.blob;
+
+import com.google.protobuf.ByteString;
+import com.rokkon.search.model.BlobReference;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heap-backed {@link BlobStore}, intended for tests and single-process setups.
+ */
+public class InMemoryBlobStore implements BlobStore {
+
+    private final String storeId;
+    private final Map<String, ByteString> contents = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty store.
+     *
+     * @param storeId the store ID written into references
+     */
+    public InMemoryBlobStore(String storeId) {
+        this.storeId = storeId;
+    }
+
+    @Override
+    public String storeId() {
+        return storeId;
+    }
+
+    @Override
+    public BlobReference put(ByteString content) {
+        String sha256 = BlobReferences.sha256(content);
+        contents.putIfAbsent(sha256, content);
+        return BlobReference.newBuilder()
+            .setSha256(sha256)
+            .setSizeBytes(content.size())
+            .setStoreId(storeId)
+            .build();
+    }
+
+    @Override
+    public Optional<ByteString> get(BlobReference reference) {
+        return Optional.ofNullable(contents.get(reference.getSha256()));
+    }
+
+    @Override
+    public boolean contains(BlobReference reference) {
+        return contents.containsKey(reference.getSha256());
+    }
+
+    @Override
+    public boolean delete(BlobReference reference) {
+        return contents.remove(reference.getSha256()) != null;
+    }
+
+    /**
+     * Returns the number of distinct contents held.
+     *
+     * @return the number of blobs
+     */
+    public int size() {
+        return contents.size();
+    }
+}
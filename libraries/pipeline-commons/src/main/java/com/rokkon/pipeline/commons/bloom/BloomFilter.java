@@ -0,0 +1,114 @@
+package com.rokkon.pipeline.commons.bloom;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over 64-bit hashes, for answering "definitely never seen" without touching the index behind it.
+ * <p>
+ * The filter is sized for an expected number of keys and false positive rate and derives its probe positions from
+ * one 64-bit hash by double hashing, so callers hash each key once, e.g. with {@link #hash(CharSequence)}. Adding
+ * and probing are lock-free and may happen from any thread.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+
+    /**
+     * Creates a filter.
+     *
+     * @param expectedKeys number of keys the filter is sized for; more keys raise the false positive rate
+     * @param falsePositiveRate wanted rate of {@link #mightContain(long)} answering true for an absent key
+     */
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys < 0) {
+            throw new IllegalArgumentException("expectedKeys must not be negative");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        long keys = Math.max(1, expectedKeys);
+        long optimalBits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBits + 63) >>> 6));
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / keys * Math.log(2)));
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param hash the key's 64-bit hash
+     */
+    public void put(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((bits.get(word) & mask) == 0) {
+                bits.getAndAccumulate(word, mask, (current, add) -> current | add);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a key may have been added.
+     *
+     * @param hash the key's 64-bit hash
+     * @return false if the key was definitely never added
+     */
+    public boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the size of the bit array.
+     *
+     * @return the number of bits
+     */
+    public long bitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Hashes a string key: 64-bit FNV-1a over its characters, mixed with the MurmurHash3 finalizer so both halves of
+     * the result are usable as independent hashes.
+     *
+     * @param key the key
+     * @return the 64-bit hash
+     */
+    public static long hash(CharSequence key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Mixes a 64-bit value with the MurmurHash3 finalizer, e.g. to turn a truncated digest or a counter into a hash.
+     *
+     * @param value the value
+     * @return the mixed value
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
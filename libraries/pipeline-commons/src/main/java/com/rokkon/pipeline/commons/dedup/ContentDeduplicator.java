@@ -0,0 +1,497 @@
+package com.rokkon.pipeline.commons.dedup;
+
+import com.rokkon.connector.coordinator.ConnectorPolicy;
+import com.rokkon.pipeline.commons.blob.BlobReferences;
+import com.rokkon.pipeline.commons.bloom.BloomFilter;
+import com.rokkon.search.engine.ConnectorRequest;
+import com.rokkon.search.model.ActionType;
+import com.rokkon.search.model.Blob;
+import com.rokkon.search.model.PipeDoc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Ingest-time deduplication of connector documents by content, for connectors whose {@link ConnectorPolicy} has
+ * {@code deduplication_enabled}.
+ * <p>
+ * A document's content hash covers its body, normalized to NFKC, lower case and single spaces, and its blob's
+ * SHA-256, so the same page from two mirrors or the same attachment shared twice hash alike. The seen-set keeps
+ * the hashes in two generations of {@link DedupSettings#maxEntries()} / 2: a Bloom filter answers for most new
+ * content, and a hash table of the full 128-bit hashes confirms every filter hit, so no unique document is ever
+ * dropped. When the current generation fills up the older one is forgotten and a duplicate found in the older one
+ * is carried into the current one, so content that keeps coming back stays known.
+ * <p>
+ * Content is recorded when it is ingested, before the pipeline has processed it, together with the ID of the
+ * document that brought it. A document with that same ID is never its duplicate, so a connector can resend a
+ * document whose run failed, or send it again unchanged, and it goes through. Documents without an ID are always
+ * compared by content alone.
+ * <p>
+ * With a directory, each generation's hashes are also appended to a file and replayed on startup. Appends are
+ * buffered, so a crash may forget the last few hashes and let their duplicates through once.
+ */
+public final class ContentDeduplicator implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContentDeduplicator.class);
+
+    private static final String SUFFIX = ".hashes";
+    private static final int RECORD_BYTES = 24;
+    private static final int BUFFER_BYTES = RECORD_BYTES * 2048;
+    private static final long ABSENT = Long.MIN_VALUE;
+    private static final long NO_ID = 0;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Path directory;
+    private final DedupSettings settings;
+    private final long generationEntries;
+    private final Map<String, Counters> connectors = new ConcurrentHashMap<>();
+    private final LongAdder bloomRejections = new LongAdder();
+    private final LongAdder exactChecks = new LongAdder();
+    private Generation current;
+    private Generation previous;
+    private boolean closed;
+
+    /**
+     * Creates a deduplicator.
+     *
+     * @param directory directory the seen-set is kept in across restarts, or null to keep it in memory only
+     * @param settings the deduplication settings
+     */
+    public ContentDeduplicator(Path directory, DedupSettings settings) {
+        this.directory = directory;
+        this.settings = settings;
+        this.generationEntries = settings.maxEntries() / 2;
+        try {
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open deduplication store " + directory, e);
+        }
+    }
+
+    /**
+     * Applies deduplication to a connector request: a new document whose content was already ingested is marked
+     * {@link ActionType#NO_OP}, so the engine skips its steps. Requests of connectors without
+     * {@code deduplication_enabled}, and updates and deletes, pass unchanged.
+     *
+     * @param policy the sending connector's policy
+     * @param request the request
+     * @return the request, marked {@link ActionType#NO_OP} if it is a duplicate
+     */
+    public ConnectorRequest deduplicate(ConnectorPolicy policy, ConnectorRequest request) {
+        if (!policy.getDeduplicationEnabled()
+            || request.hasActionType() && request.getActionType() != ActionType.CREATE) {
+            return request;
+        }
+        return isDuplicate(request.getConnectorId(), request.getDocument())
+            ? request.toBuilder().setActionType(ActionType.NO_OP).build()
+            : request;
+    }
+
+    /**
+     * Checks a document against the seen-set and adds it if new.
+     *
+     * @param connectorId the connector the document came from, for the statistics
+     * @param doc the document
+     * @return true if a document with another ID and the same content was seen before; false for new content, for
+     *         the document that first brought the content, and for documents with neither body nor blob
+     */
+    public boolean isDuplicate(String connectorId, PipeDoc doc) {
+        Counters counters = connectors.computeIfAbsent(connectorId, id -> new Counters());
+        ByteBuffer hash = contentHash(doc);
+        if (hash == null) {
+            counters.skipped.increment();
+            return false;
+        }
+        boolean duplicate = checkAndAdd(hash.getLong(0), hash.getLong(8), documentKey(doc.getId()));
+        counters.checked.increment();
+        if (duplicate) {
+            counters.duplicates.increment();
+        }
+        return duplicate;
+    }
+
+    /**
+     * Writes buffered hashes to the generation files.
+     */
+    public synchronized void flush() {
+        try {
+            current.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write deduplication store " + directory, e);
+        }
+    }
+
+    /**
+     * Returns the seen-set size and the duplicate rates per connector. They are not published anywhere; the caller
+     * exports them to its metrics.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        Map<String, ConnectorStats> perConnector = new TreeMap<>();
+        connectors.forEach((connectorId, counters) -> perConnector.put(connectorId,
+            new ConnectorStats(counters.checked.sum(), counters.duplicates.sum(), counters.skipped.sum())));
+        long entries;
+        synchronized (this) {
+            entries = current.table.size + (previous != null ? previous.table.size : 0);
+        }
+        return new Stats(entries, bloomRejections.sum(), exactChecks.sum(), perConnector);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current.close();
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    private synchronized boolean checkAndAdd(long high, long low, long document) {
+        if (closed) {
+            throw new IllegalStateException("Deduplicator is closed");
+        }
+        try {
+            long first = current.find(high, low);
+            if (first != ABSENT) {
+                return isOther(first, document);
+            }
+            long older = previous != null ? previous.find(high, low) : ABSENT;
+            if (current.table.size >= generationEntries) {
+                rotate();
+            }
+            // Content carried over from the older generation keeps the document that first brought it
+            current.add(high, low, older != ABSENT ? older : document);
+            return older != ABSENT && isOther(older, document);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write deduplication store " + directory, e);
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (previous != null) {
+            previous.delete();
+        }
+        current.flush();
+        current.closeChannel();
+        previous = current;
+        current = newGeneration(previous.number + 1);
+        LOG.debug("Started deduplication generation {}", current.number);
+    }
+
+    private void load() throws IOException {
+        if (directory == null) {
+            current = newGeneration(0);
+            return;
+        }
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), path);
+                } catch (NumberFormatException e) {
+                    LOG.warn("Ignoring unexpected file {} in deduplication directory", path);
+                }
+            }
+        }
+        while (files.size() > 2) {
+            Files.deleteIfExists(files.pollFirstEntry().getValue());
+        }
+        if (files.isEmpty()) {
+            current = newGeneration(0);
+            return;
+        }
+        if (files.size() == 2) {
+            Map.Entry<Long, Path> older = files.pollFirstEntry();
+            previous = newGeneration(older.getKey());
+            previous.replay();
+            previous.closeChannel();
+        }
+        current = newGeneration(files.firstKey());
+        current.replay();
+        LOG.info("Loaded {} content hashes from {}", current.table.size
+            + (previous != null ? previous.table.size : 0), directory);
+    }
+
+    private static boolean isOther(long first, long document) {
+        return first == NO_ID || first != document;
+    }
+
+    /**
+     * Returns a 64-bit key of a document ID, {@link #NO_ID} for none.
+     */
+    private static long documentKey(String id) {
+        if (id.isEmpty()) {
+            return NO_ID;
+        }
+        long key = BloomFilter.hash(id);
+        return key == NO_ID || key == ABSENT ? 1 : key;
+    }
+
+    private Generation newGeneration(long number) throws IOException {
+        FileChannel channel = directory == null ? null : FileChannel.open(directory.resolve(number + SUFFIX),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Generation(number, channel, generationEntries, settings.falsePositiveRate());
+    }
+
+    /**
+     * Returns the content hash of a document, or null if it has neither body nor blob content.
+     */
+    static ByteBuffer contentHash(PipeDoc doc) {
+        String body = doc.hasBody() ? normalize(doc.getBody()) : "";
+        String blob = doc.hasBlob() ? blobHash(doc.getBlob()) : null;
+        if (body.isEmpty() && blob == null) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(body.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        if (blob != null) {
+            digest.update(blob.getBytes(StandardCharsets.US_ASCII));
+        }
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    private static String normalize(String body) {
+        String normalized = Normalizer.normalize(body, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+    }
+
+    private static String blobHash(Blob blob) {
+        return switch (blob.getContentCase()) {
+            case DATA -> blob.getData().isEmpty() ? null : BlobReferences.sha256(blob.getData());
+            // A reference without a hash says nothing about the content
+            case REFERENCE -> blob.getReference().getSha256().isEmpty() ? null : blob.getReference().getSha256();
+            default -> null;
+        };
+    }
+
+    /**
+     * Seen-set size and duplicate rates.
+     *
+     * @param entries content hashes remembered
+     * @param bloomRejections checks answered by a Bloom filter alone
+     * @param exactChecks checks that probed a hash table
+     * @param connectors duplicate counts per connector ID
+     */
+    public record Stats(long entries, long bloomRejections, long exactChecks, Map<String, ConnectorStats> connectors) {
+    }
+
+    /**
+     * Deduplication counts of one connector.
+     *
+     * @param checked documents checked against the seen-set
+     * @param duplicates documents found to be duplicates
+     * @param skipped documents without content to hash
+     */
+    public record ConnectorStats(long checked, long duplicates, long skipped) {
+
+        /**
+         * Returns the share of checked documents that were duplicates.
+         *
+         * @return the duplicate rate, or 0.0 if nothing was checked
+         */
+        public double duplicateRate() {
+            return checked == 0 ? 0.0 : (double) duplicates / checked;
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder checked = new LongAdder();
+        private final LongAdder duplicates = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+    }
+
+    private final class Generation {
+        private final long number;
+        private final BloomFilter bloom;
+        private final HashTable table;
+        private FileChannel channel;
+        private final ByteBuffer pending;
+
+        private Generation(long number, FileChannel channel, long entries, double falsePositiveRate) {
+            this.number = number;
+            this.channel = channel;
+            this.bloom = new BloomFilter(entries, falsePositiveRate);
+            this.table = new HashTable(entries);
+            this.pending = channel == null ? null : ByteBuffer.allocate(BUFFER_BYTES);
+        }
+
+        /**
+         * Returns the key of the document that brought the content, or {@link #ABSENT} if it isn't known.
+         */
+        private long find(long high, long low) {
+            if (!bloom.mightContain(high)) {
+                bloomRejections.increment();
+                return ABSENT;
+            }
+            exactChecks.increment();
+            return table.find(high, low);
+        }
+
+        private void add(long high, long low, long document) throws IOException {
+            bloom.put(high);
+            table.add(high, low, document);
+            if (pending != null) {
+                if (pending.remaining() < RECORD_BYTES) {
+                    flush();
+                }
+                pending.putLong(high).putLong(low).putLong(document);
+            }
+        }
+
+        private void replay() throws IOException {
+            long size = channel.size();
+            long complete = size - size % RECORD_BYTES;
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            long position = 0;
+            while (position < complete) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), complete - position));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of deduplication file " + number + SUFFIX);
+                    }
+                }
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_BYTES) {
+                    long high = buffer.getLong();
+                    long low = buffer.getLong();
+                    long document = buffer.getLong();
+                    if (table.size < generationEntries) {
+                        bloom.put(high);
+                        table.add(high, low, document);
+                    }
+                }
+                position += buffer.limit();
+            }
+            if (complete < size) {
+                LOG.warn("Dropping {} torn bytes at the end of deduplication file {}{}", size - complete, number,
+                    SUFFIX);
+                channel.truncate(complete);
+            }
+            channel.position(complete);
+        }
+
+        private void flush() throws IOException {
+            if (channel == null || pending.position() == 0) {
+                return;
+            }
+            pending.flip();
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+            pending.clear();
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOG.warn("Failed to close deduplication file {}{}", number, SUFFIX, e);
+                }
+                channel = null;
+            }
+        }
+
+        private void close() {
+            try {
+                flush();
+            } catch (IOException e) {
+                LOG.warn("Failed to write deduplication file {}{}", number, SUFFIX, e);
+            }
+            closeChannel();
+        }
+
+        private void delete() {
+            closeChannel();
+            if (directory != null) {
+                try {
+                    Files.deleteIfExists(directory.resolve(number + SUFFIX));
+                } catch (IOException e) {
+                    LOG.warn("Failed to delete deduplication file {}{}", number, SUFFIX, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Open-addressing map of 128-bit hashes to document keys with linear probing, sized once for a generation.
+     */
+    private static final class HashTable {
+        private final long[] slots;
+        private final int mask;
+        private long size;
+
+        private HashTable(long entries) {
+            int capacity = Integer.highestOneBit((int) Math.max(2, Math.min(1 << 27, entries * 2 - 1))) << 1;
+            this.slots = new long[capacity * 3];
+            this.mask = capacity - 1;
+        }
+
+        private long find(long high, long low) {
+            if (high == 0 && low == 0) {
+                low = 1;
+            }
+            for (int slot = (int) BloomFilter.mix(low) & mask; ; slot = (slot + 1) & mask) {
+                long storedHigh = slots[slot * 3];
+                long storedLow = slots[slot * 3 + 1];
+                if (storedHigh == 0 && storedLow == 0) {
+                    return ABSENT;
+                }
+                if (storedHigh == high && storedLow == low) {
+                    return slots[slot * 3 + 2];
+                }
+            }
+        }
+
+        private void add(long high, long low, long document) {
+            if (high == 0 && low == 0) {
+                // The all-zero pair marks empty slots
+                low = 1;
+            }
+            for (int slot = (int) BloomFilter.mix(low) & mask; ; slot = (slot + 1) & mask) {
+                long storedHigh = slots[slot * 3];
+                long storedLow = slots[slot * 3 + 1];
+                if (storedHigh == high && storedLow == low) {
+                    return;
+                }
+                if (storedHigh == 0 && storedLow == 0) {
+                    slots[slot * 3] = high;
+                    slots[slot * 3 + 1] = low;
+                    slots[slot * 3 + 2] = document;
+                    size++;
+                    return;
+                }
+            }
+        }
+    }
+}
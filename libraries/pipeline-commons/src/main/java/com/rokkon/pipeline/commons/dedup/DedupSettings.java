@@ -0,0 +1,25 @@
+package com.rokkon.pipeline.commons.dedup;
+
+/**
+ * Settings of a {@link ContentDeduplicator}.
+ *
+ * @param maxEntries content hashes remembered; the oldest half is forgotten at once when the newer half fills up.
+ *                   Each takes about 48 bytes of heap and 24 bytes on disk
+ * @param falsePositiveRate rate at which the Bloom filter sends new content on to the exact check
+ */
+public record DedupSettings(long maxEntries, double falsePositiveRate) {
+
+    /**
+     * Default settings: one million content hashes, about 48 MiB of heap, with a 1% Bloom filter.
+     */
+    public static final DedupSettings DEFAULTS = new DedupSettings(1_000_000, 0.01);
+
+    public DedupSettings {
+        if (maxEntries < 2 || maxEntries > 1L << 28) {
+            throw new IllegalArgumentException("maxEntries must be between 2 and 2^28");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.rokkon.pipeline.commons.delta;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.Message;
+import com.rokkon.search.model.PipeDoc;
+import com.rokkon.search.sdk.ProcessResponse;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Creates and applies delta responses, in which a step returns only the parts of a {@link PipeDoc} it changed.
+ * <p>
+ * A delta is a partial {@link PipeDoc} plus a {@link FieldMask} naming the fields it carries
+ * ({@code ProcessResponse.output_doc} and {@code ProcessResponse.output_doc_mask}). Listed singular fields replace
+ * the current value, listed repeated fields are appended to and listed map fields are upserted by key, so a step
+ * that adds keywords or one {@code named_embeddings} entry doesn't send the body, blob and existing results back.
+ * <p>
+ * Modules call {@link #toDeltaResponse(PipeDoc, ProcessResponse)} on a full response to shrink it; the engine calls
+ * {@link #resolveOutput(PipeDoc, ProcessResponse)} to get the complete document either way.
+ */
+public final class PipeDocDeltas {
+
+    private PipeDocDeltas() {
+        // Utility class
+    }
+
+    /**
+     * A partial document and the mask of the fields it carries.
+     *
+     * @param partial the partial document
+     * @param mask the fields to take from the partial document
+     */
+    public record Delta(PipeDoc partial, FieldMask mask) {
+    }
+
+    /**
+     * Returns the document a step produced, merging a delta response into the document that was sent.
+     *
+     * @param input the document sent to the step
+     * @param response the step's response
+     * @return the resulting document; the input itself if the response carries no output document
+     * @throws IllegalArgumentException if the mask names fields that don't exist in {@link PipeDoc}
+     */
+    public static PipeDoc resolveOutput(PipeDoc input, ProcessResponse response) {
+        if (response.hasOutputDocMask()) {
+            return merge(input, response.getOutputDoc(), response.getOutputDocMask());
+        }
+        return response.hasOutputDoc() ? response.getOutputDoc() : input;
+    }
+
+    /**
+     * Merges a delta into a document.
+     *
+     * @param base the document to merge into
+     * @param partial the partial document
+     * @param mask the fields to take from the partial document
+     * @return the merged document
+     * @throws IllegalArgumentException if the mask names fields that don't exist or can't be traversed
+     */
+    public static PipeDoc merge(PipeDoc base, PipeDoc partial, FieldMask mask) {
+        if (mask.getPathsCount() == 0) {
+            return base;
+        }
+        PipeDoc.Builder builder = base.toBuilder();
+        for (String path : mask.getPathsList()) {
+            merge(builder, partial, path, path.split("\\."), 0);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Computes the delta between a document and its updated version, on top-level fields.
+     *
+     * @param original the document the step received
+     * @param updated the document the step produced
+     * @return the delta, or empty if the change can't be expressed as one (a repeated field that was not only
+     *         appended to, or a removed map entry)
+     */
+    public static Optional<Delta> diff(PipeDoc original, PipeDoc updated) {
+        PipeDoc.Builder partial = PipeDoc.newBuilder();
+        FieldMask.Builder mask = FieldMask.newBuilder();
+        for (FieldDescriptor field : PipeDoc.getDescriptor().getFields()) {
+            if (field.isMapField()) {
+                if (!diffMap(field, original, updated, partial)) {
+                    return Optional.empty();
+                }
+                if (partial.getRepeatedFieldCount(field) > 0) {
+                    mask.addPaths(field.getName());
+                }
+            } else if (field.isRepeated()) {
+                List<?> before = (List<?>) original.getField(field);
+                List<?> after = (List<?>) updated.getField(field);
+                if (after.size() < before.size() || !after.subList(0, before.size()).equals(before)) {
+                    return Optional.empty();
+                }
+                if (after.size() > before.size()) {
+                    for (Object item : after.subList(before.size(), after.size())) {
+                        partial.addRepeatedField(field, item);
+                    }
+                    mask.addPaths(field.getName());
+                }
+            } else if (original.hasField(field) != updated.hasField(field)
+                || !Objects.equals(original.getField(field), updated.getField(field))) {
+                if (updated.hasField(field)) {
+                    partial.setField(field, updated.getField(field));
+                }
+                mask.addPaths(field.getName());
+            }
+        }
+        return Optional.of(new Delta(partial.build(), mask.build()));
+    }
+
+    /**
+     * Turns a response carrying a full output document into a delta response, if the change is expressible as
+     * a delta. Responses that already are deltas, carry no document or can't be expressed as a delta are
+     * returned unchanged.
+     *
+     * @param input the document the step received
+     * @param response the step's response
+     * @return the delta response, or the same response
+     */
+    public static ProcessResponse toDeltaResponse(PipeDoc input, ProcessResponse response) {
+        if (!response.hasOutputDoc() || response.hasOutputDocMask()) {
+            return response;
+        }
+        return diff(input, response.getOutputDoc())
+            .map(delta -> response.toBuilder()
+                .setOutputDoc(delta.partial())
+                .setOutputDocMask(delta.mask())
+                .build())
+            .orElse(response);
+    }
+
+    private static void merge(Message.Builder target, Message source, String path, String[] parts, int index) {
+        FieldDescriptor field = target.getDescriptorForType().findFieldByName(parts[index]);
+        if (field == null) {
+            throw new IllegalArgumentException("Unknown field '" + parts[index] + "' in mask path '" + path + "'");
+        }
+        if (index < parts.length - 1) {
+            if (field.isRepeated() || field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+                throw new IllegalArgumentException("Mask path '" + path + "' traverses non-message or repeated field '"
+                    + field.getName() + "'");
+            }
+            if (!target.hasField(field) && !source.hasField(field)) {
+                return;
+            }
+            merge(target.getFieldBuilder(field), (Message) source.getField(field), path, parts, index + 1);
+        } else if (field.isRepeated()) {
+            // Map entries are appended as well; a later entry replaces an earlier one with the same key
+            for (Object item : (List<?>) source.getField(field)) {
+                target.addRepeatedField(field, item);
+            }
+        } else if (source.hasField(field)) {
+            target.setField(field, source.getField(field));
+        } else {
+            target.clearField(field);
+        }
+    }
+
+    private static boolean diffMap(FieldDescriptor field, PipeDoc original, PipeDoc updated, PipeDoc.Builder partial) {
+        FieldDescriptor keyField = field.getMessageType().findFieldByNumber(1);
+        Map<Object, Object> before = new HashMap<>();
+        for (Object entry : (List<?>) original.getField(field)) {
+            before.put(((Message) entry).getField(keyField), entry);
+        }
+        int retained = 0;
+        for (Object entry : (List<?>) updated.getField(field)) {
+            Object previous = before.get(((Message) entry).getField(keyField));
+            if (previous == null || !previous.equals(entry)) {
+                partial.addRepeatedField(field, entry);
+            }
+            if (previous != null) {
+                retained++;
+            }
+        }
+        return retained == before.size();
+    }
+}
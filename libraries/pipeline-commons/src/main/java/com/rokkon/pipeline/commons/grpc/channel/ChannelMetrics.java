@@ -0,0 +1,103 @@
+package com.rokkon.pipeline.commons.grpc.channel;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RPC counters of one pooled channel, recorded by the interceptor returned from {@link #interceptor()}.
+ */
+public final class ChannelMetrics {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    void started() {
+        inFlight.incrementAndGet();
+    }
+
+    void completed(long latency, boolean ok) {
+        inFlight.decrementAndGet();
+        calls.increment();
+        if (!ok) {
+            failures.increment();
+        }
+        latencyNanos.add(latency);
+        maxLatencyNanos.accumulate(latency);
+    }
+
+    /**
+     * Returns an interceptor recording every call made through it.
+     *
+     * @return the interceptor
+     */
+    ClientInterceptor interceptor() {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                                       CallOptions callOptions, Channel next) {
+                return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+                    @Override
+                    public void start(Listener<RespT> responseListener, Metadata headers) {
+                        long start = System.nanoTime();
+                        started();
+                        try {
+                            super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                                @Override
+                                public void onClose(Status status, Metadata trailers) {
+                                    completed(System.nanoTime() - start, status.isOk());
+                                    super.onClose(status, trailers);
+                                }
+                            }, headers);
+                        } catch (RuntimeException e) {
+                            completed(System.nanoTime() - start, false);
+                            throw e;
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns a point-in-time view of the counters.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long completed = calls.sum();
+        return new Snapshot(inFlight.get(), completed, failures.sum(),
+            completed == 0 ? Duration.ZERO : Duration.ofNanos(latencyNanos.sum() / completed),
+            Duration.ofNanos(maxLatencyNanos.get()));
+    }
+
+    /**
+     * Point-in-time channel counters.
+     *
+     * @param inFlight calls currently in progress
+     * @param calls completed calls
+     * @param failures completed calls that ended with a non-OK status
+     * @param averageLatency average duration of completed calls
+     * @param maxLatency longest completed call
+     */
+    public record Snapshot(int inFlight, long calls, long failures, Duration averageLatency, Duration maxLatency) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.rokkon.pipeline.commons.grpc.channel;
+
+import java.time.Duration;
+
+/**
+ * Settings of a {@link GrpcChannelManager}.
+ *
+ * @param subchannelsPerInstance maximum number of connections opened to one instance; more connections spread
+ *                               calls over more HTTP/2 connections when a single one runs into its concurrent
+ *                               stream limit
+ * @param idleTimeout time without calls after which the connections to an instance are closed
+ * @param idleCheckInterval how often idle connections are looked for
+ * @param maxInboundMessageSize largest response accepted, in bytes
+ */
+public record ChannelPoolSettings(int subchannelsPerInstance, Duration idleTimeout, Duration idleCheckInterval,
+                                  int maxInboundMessageSize) {
+
+    /**
+     * Default settings: two connections per instance, closed after five minutes without calls, 64 MiB responses.
+     */
+    public static final ChannelPoolSettings DEFAULTS =
+        new ChannelPoolSettings(2, Duration.ofMinutes(5), Duration.ofSeconds(30), 64 * 1024 * 1024);
+
+    public ChannelPoolSettings {
+        if (subchannelsPerInstance < 1) {
+            throw new IllegalArgumentException("subchannelsPerInstance must be at least 1");
+        }
+        if (idleTimeout == null || idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("idleTimeout must be positive");
+        }
+        if (idleCheckInterval == null || idleCheckInterval.isNegative() || idleCheckInterval.isZero()) {
+            throw new IllegalArgumentException("idleCheckInterval must be positive");
+        }
+        if (maxInboundMessageSize < 1) {
+            throw new IllegalArgumentException("maxInboundMessageSize must be positive");
+        }
+    }
+}
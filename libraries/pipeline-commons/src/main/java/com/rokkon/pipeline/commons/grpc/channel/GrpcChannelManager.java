@@ -0,0 +1,345 @@
+package com.rokkon.pipeline.commons.grpc.channel;
+
+import com.rokkon.pipeline.commons.grpc.compression.GrpcCompression;
+import com.rokkon.pipeline.engine.grpc.discovery.ServiceDiscovery;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
+import io.smallrye.stork.api.ServiceInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Pool of reusable gRPC channels to the instances of discovered services.
+ * <p>
+ * Channels are keyed by service and instance address, so every call to the same instance reuses the same
+ * connections instead of paying for a new TCP (and TLS) handshake. Up to
+ * {@link ChannelPoolSettings#subchannelsPerInstance()} connections are opened per instance: a new one is only added
+ * when every existing one has calls in flight, and calls go to the connection with the fewest in flight.
+ * <p>
+ * The first channel requested for a service subscribes to {@link ServiceDiscovery#watchInstances(String)}; the
+ * connections of instances that leave the service are shut down as soon as the change is seen. A watch that fails is
+ * subscribed to again with an exponential back-off, so pruning doesn't stop when discovery is briefly unreachable.
+ * Connections without calls for {@link ChannelPoolSettings#idleTimeout()} are closed in the background (a connection
+ * counts as used from the moment it is handed out), and services left without connections stop being watched.
+ */
+public class GrpcChannelManager implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GrpcChannelManager.class);
+
+    private static final Duration WATCH_RETRY_INITIAL_BACKOFF = Duration.ofMillis(100);
+    private static final Duration WATCH_RETRY_MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final ServiceDiscovery discovery;
+    private final ChannelPoolSettings settings;
+    private final Function<ServiceInstance, ManagedChannel> channelFactory;
+    private final Map<String, ServicePool> services = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper;
+    private volatile boolean closed;
+
+    /**
+     * Creates a manager that opens plaintext or TLS channels as reported by {@link ServiceInstance#isSecure()}, able
+     * to send and read gzip and zstd messages.
+     *
+     * @param discovery the discovery used to find and watch instances
+     * @param settings the pool settings
+     */
+    public GrpcChannelManager(ServiceDiscovery discovery, ChannelPoolSettings settings) {
+        this(discovery, settings, instance -> defaultChannel(instance, settings));
+    }
+
+    /**
+     * Creates a manager with a custom channel factory.
+     *
+     * @param discovery the discovery used to find and watch instances
+     * @param settings the pool settings
+     * @param channelFactory creates one connection to an instance each time it is called
+     */
+    public GrpcChannelManager(ServiceDiscovery discovery, ChannelPoolSettings settings,
+                              Function<ServiceInstance, ManagedChannel> channelFactory) {
+        this.discovery = discovery;
+        this.settings = settings;
+        this.channelFactory = channelFactory;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "grpc-channel-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.idleCheckInterval().toMillis();
+        reaper.scheduleWithFixedDelay(() -> closeIdle(System.nanoTime()), interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Discovers an instance of a service and returns a pooled channel to it.
+     *
+     * @param serviceName the service to call
+     * @return a Uni with the channel
+     */
+    public Uni<PooledChannel> channel(String serviceName) {
+        return discovery.discoverService(serviceName).map(instance -> channel(serviceName, instance));
+    }
+
+    /**
+     * Returns a pooled channel to an instance of a service.
+     *
+     * @param serviceName the service the instance belongs to
+     * @param instance the instance to call
+     * @return the channel
+     */
+    public PooledChannel channel(String serviceName, ServiceInstance instance) {
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("Channel manager is closed");
+            }
+            PooledChannel channel = services.computeIfAbsent(serviceName, this::watch).acquire(instance);
+            if (channel != null) {
+                return channel;
+            }
+            // The pool was retired by the idle reaper between lookup and acquire; a fresh one is created on retry.
+        }
+    }
+
+    /**
+     * Returns the metrics of every open channel.
+     *
+     * @return the channel statistics
+     */
+    public List<ChannelStats> stats() {
+        List<ChannelStats> stats = new ArrayList<>();
+        for (ServicePool service : services.values()) {
+            service.collect(stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Statistics of one pooled channel.
+     *
+     * @param serviceName the service
+     * @param host the instance host
+     * @param port the instance port
+     * @param subchannel the index of the connection among those to the instance
+     * @param metrics the call counters
+     */
+    public record ChannelStats(String serviceName, String host, int port, int subchannel,
+                               ChannelMetrics.Snapshot metrics) {
+    }
+
+    /**
+     * Closes the channels that had no calls for the idle timeout.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return the number of channels closed
+     */
+    int closeIdle(long nowNanos) {
+        long idleNanos = settings.idleTimeout().toNanos();
+        int closedChannels = 0;
+        for (ServicePool service : services.values()) {
+            closedChannels += service.closeIdle(nowNanos, idleNanos);
+            if (service.retireIfEmpty()) {
+                services.remove(service.serviceName, service);
+                LOG.debug("Stopped watching idle service {}", service.serviceName);
+            }
+        }
+        return closedChannels;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        reaper.shutdownNow();
+        for (ServicePool service : services.values()) {
+            service.shutdown();
+        }
+        services.clear();
+    }
+
+    private ServicePool watch(String serviceName) {
+        ServicePool pool = new ServicePool(serviceName);
+        pool.subscription = discovery.watchInstances(serviceName)
+            .onFailure().invoke(failure -> LOG.warn("Instance watch failed for service {}; resubscribing", serviceName,
+                failure))
+            .onFailure().retry().withBackOff(WATCH_RETRY_INITIAL_BACKOFF, WATCH_RETRY_MAX_BACKOFF).indefinitely()
+            .subscribe().with(pool::retain);
+        return pool;
+    }
+
+    private static ManagedChannel defaultChannel(ServiceInstance instance, ChannelPoolSettings settings) {
+        ManagedChannelBuilder<?> builder = ManagedChannelBuilder.forAddress(instance.getHost(), instance.getPort())
+            .maxInboundMessageSize(settings.maxInboundMessageSize())
+            .compressorRegistry(GrpcCompression.compressorRegistry())
+            .decompressorRegistry(GrpcCompression.decompressorRegistry());
+        if (instance.isSecure()) {
+            builder.useTransportSecurity();
+        } else {
+            builder.usePlaintext();
+        }
+        return builder.build();
+    }
+
+    private static String address(String host, int port) {
+        return host + ":" + port;
+    }
+
+    /**
+     * Channels to the instances of one service.
+     */
+    private final class ServicePool {
+
+        private final String serviceName;
+        private final Map<String, InstancePool> instances = new ConcurrentHashMap<>();
+        private volatile Cancellable subscription;
+        private boolean retired;
+
+        ServicePool(String serviceName) {
+            this.serviceName = serviceName;
+        }
+
+        synchronized PooledChannel acquire(ServiceInstance instance) {
+            if (retired) {
+                return null;
+            }
+            return instances.computeIfAbsent(address(instance.getHost(), instance.getPort()),
+                address -> new InstancePool(serviceName, instance)).acquire();
+        }
+
+        void retain(List<ServiceInstance> current) {
+            Set<String> live = new HashSet<>();
+            for (ServiceInstance instance : current) {
+                live.add(address(instance.getHost(), instance.getPort()));
+            }
+            instances.entrySet().removeIf(entry -> {
+                if (live.contains(entry.getKey())) {
+                    return false;
+                }
+                LOG.debug("Instance {} left service {}; closing its channels", entry.getKey(), serviceName);
+                entry.getValue().shutdown();
+                return true;
+            });
+        }
+
+        int closeIdle(long nowNanos, long idleNanos) {
+            int closedChannels = 0;
+            for (Map.Entry<String, InstancePool> entry : instances.entrySet()) {
+                closedChannels += entry.getValue().closeIdle(nowNanos, idleNanos);
+            }
+            return closedChannels;
+        }
+
+        synchronized boolean retireIfEmpty() {
+            instances.values().removeIf(InstancePool::isEmpty);
+            if (!instances.isEmpty()) {
+                return false;
+            }
+            retired = true;
+            Cancellable watch = subscription;
+            if (watch != null) {
+                watch.cancel();
+            }
+            return true;
+        }
+
+        void collect(List<ChannelStats> stats) {
+            for (InstancePool instance : instances.values()) {
+                instance.collect(stats);
+            }
+        }
+
+        synchronized void shutdown() {
+            retired = true;
+            Cancellable watch = subscription;
+            if (watch != null) {
+                watch.cancel();
+            }
+            instances.values().forEach(InstancePool::shutdownNow);
+            instances.clear();
+        }
+    }
+
+    /**
+     * Connections to one instance.
+     */
+    private final class InstancePool {
+
+        private final String serviceName;
+        private final ServiceInstance instance;
+        private final List<PooledChannel> channels = new ArrayList<>();
+        private int nextSubchannel;
+
+        InstancePool(String serviceName, ServiceInstance instance) {
+            this.serviceName = serviceName;
+            this.instance = instance;
+        }
+
+        synchronized PooledChannel acquire() {
+            channels.removeIf(PooledChannel::isShutdown);
+            PooledChannel least = null;
+            for (PooledChannel channel : channels) {
+                if (least == null || channel.metrics().inFlight() < least.metrics().inFlight()) {
+                    least = channel;
+                }
+            }
+            if (least != null && (least.metrics().inFlight() == 0 || channels.size() >= settings.subchannelsPerInstance())) {
+                // Marked used under the same lock closeIdle takes, so the reaper can't close it before its first call
+                least.markUsed(System.nanoTime());
+                return least;
+            }
+            PooledChannel created = new PooledChannel(serviceName, nextSubchannel++, channelFactory.apply(instance));
+            channels.add(created);
+            LOG.debug("Opened channel {} of {} to {} at {}:{}", channels.size(), settings.subchannelsPerInstance(),
+                serviceName, instance.getHost(), instance.getPort());
+            return created;
+        }
+
+        synchronized int closeIdle(long nowNanos, long idleNanos) {
+            int before = channels.size();
+            channels.removeIf(channel -> {
+                if (!channel.isIdle(nowNanos, idleNanos)) {
+                    return false;
+                }
+                channel.shutdown();
+                return true;
+            });
+            int closedChannels = before - channels.size();
+            if (closedChannels > 0) {
+                LOG.debug("Closed {} idle channels to {} at {}:{}", closedChannels, serviceName, instance.getHost(),
+                    instance.getPort());
+            }
+            return closedChannels;
+        }
+
+        synchronized boolean isEmpty() {
+            return channels.isEmpty();
+        }
+
+        synchronized void collect(List<ChannelStats> stats) {
+            for (PooledChannel channel : channels) {
+                stats.add(new ChannelStats(serviceName, instance.getHost(), instance.getPort(), channel.subchannel(),
+                    channel.metrics().snapshot()));
+            }
+        }
+
+        synchronized void shutdown() {
+            channels.forEach(PooledChannel::shutdown);
+            channels.clear();
+        }
+
+        synchronized void shutdownNow() {
+            channels.forEach(PooledChannel::shutdownNow);
+            channels.clear();
+        }
+    }
+}
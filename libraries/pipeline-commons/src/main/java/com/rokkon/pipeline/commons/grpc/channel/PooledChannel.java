@@ -0,0 +1,91 @@
+package com.rokkon.pipeline.commons.grpc.channel;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+
+/**
+ * One connection to a service instance, handed out by {@link GrpcChannelManager}.
+ * <p>
+ * Calls made through it are counted in its {@link ChannelMetrics}. The channel is owned by the manager; callers must
+ * not shut it down and should obtain a channel per call (or per stream) rather than hold on to it, so that the
+ * manager can spread calls and close idle connections.
+ */
+public final class PooledChannel extends Channel {
+
+    private final String serviceName;
+    private final int subchannel;
+    private final ManagedChannel delegate;
+    private final Channel intercepted;
+    private final ChannelMetrics metrics = new ChannelMetrics();
+    private volatile long lastUsedNanos = System.nanoTime();
+
+    PooledChannel(String serviceName, int subchannel, ManagedChannel delegate) {
+        this.serviceName = serviceName;
+        this.subchannel = subchannel;
+        this.delegate = delegate;
+        this.intercepted = ClientInterceptors.intercept(delegate, metrics.interceptor());
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method,
+                                                         CallOptions callOptions) {
+        lastUsedNanos = System.nanoTime();
+        return intercepted.newCall(method, callOptions);
+    }
+
+    @Override
+    public String authority() {
+        return delegate.authority();
+    }
+
+    /**
+     * Returns the service this channel connects to.
+     *
+     * @return the service name
+     */
+    public String serviceName() {
+        return serviceName;
+    }
+
+    /**
+     * Returns the index of this connection among the connections to the same instance.
+     *
+     * @return the subchannel index
+     */
+    public int subchannel() {
+        return subchannel;
+    }
+
+    /**
+     * Returns the call counters of this channel.
+     *
+     * @return the metrics
+     */
+    public ChannelMetrics metrics() {
+        return metrics;
+    }
+
+    void markUsed(long nowNanos) {
+        lastUsedNanos = nowNanos;
+    }
+
+    boolean isIdle(long nowNanos, long idleNanos) {
+        return metrics.inFlight() == 0 && nowNanos - lastUsedNanos >= idleNanos;
+    }
+
+    boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    void shutdown() {
+        delegate.shutdown();
+    }
+
+    void shutdownNow() {
+        delegate.shutdownNow();
+    }
+}
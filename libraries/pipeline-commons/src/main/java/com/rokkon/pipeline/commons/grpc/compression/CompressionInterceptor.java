@@ -0,0 +1,48 @@
+package com.rokkon.pipeline.commons.grpc.compression;
+
+import com.google.protobuf.MessageLite;
+import com.rokkon.pipeline.config.model.CompressionPolicy;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.MethodDescriptor;
+
+/**
+ * Client interceptor applying a {@link CompressionPolicy} to outgoing messages.
+ * <p>
+ * The call is opened with the policy's codec, and each message is compressed only if its serialized size reaches
+ * the policy's threshold. The size of a protobuf message is computed once and cached by the message, so the check
+ * adds nothing to the serialization that follows.
+ */
+public final class CompressionInterceptor implements ClientInterceptor {
+
+    private final CompressionPolicy policy;
+
+    /**
+     * Creates an interceptor for a negotiated policy.
+     *
+     * @param policy the policy, usually the result of {@link GrpcCompression#negotiate}
+     */
+    public CompressionInterceptor(CompressionPolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions, Channel next) {
+        if (!policy.enabled()) {
+            return next.newCall(method, callOptions);
+        }
+        ClientCall<ReqT, RespT> call = next.newCall(method, callOptions.withCompression(policy.codec().encoding()));
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(call) {
+            @Override
+            public void sendMessage(ReqT message) {
+                boolean compress = !(message instanceof MessageLite lite) || policy.compresses(lite.getSerializedSize());
+                delegate().setMessageCompression(compress);
+                super.sendMessage(message);
+            }
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package com.rokkon.pipeline.commons.grpc.compression;
+
+import com.rokkon.pipeline.config.model.CompressionPolicy;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Compression negotiation between the engine and modules.
+ * <p>
+ * Modules list the encodings they can read under {@link #ACCEPT_ENCODING_KEY} in the metadata of their
+ * {@code ServiceRegistrationResponse}, for example {@code "zstd,gzip"}. The engine combines that with the
+ * {@link CompressionPolicy} of the output through {@link #negotiate(CompressionPolicy, Set)} and applies the result
+ * with a {@link CompressionInterceptor}. Both sides need channels and servers built with
+ * {@link #compressorRegistry()} and {@link #decompressorRegistry()} to use zstd.
+ */
+public final class GrpcCompression {
+
+    /**
+     * Registration metadata key listing the message encodings a module accepts, comma separated.
+     */
+    public static final String ACCEPT_ENCODING_KEY = "grpc.accept-encoding";
+
+    private static final Codec ZSTD = new ZstdCodec();
+
+    private static final CompressorRegistry COMPRESSORS = createCompressorRegistry();
+
+    private static final DecompressorRegistry DECOMPRESSORS =
+        DecompressorRegistry.getDefaultInstance().with(ZSTD, true);
+
+    private GrpcCompression() {
+    }
+
+    /**
+     * Returns a compressor registry with gzip and zstd, for channels and servers that send compressed messages.
+     *
+     * @return the compressor registry
+     */
+    public static CompressorRegistry compressorRegistry() {
+        return COMPRESSORS;
+    }
+
+    /**
+     * Returns a decompressor registry with identity, gzip and zstd, all advertised in {@code grpc-accept-encoding}.
+     *
+     * @return the decompressor registry
+     */
+    public static DecompressorRegistry decompressorRegistry() {
+        return DECOMPRESSORS;
+    }
+
+    /**
+     * Formats the codecs a module accepts as the value of {@link #ACCEPT_ENCODING_KEY}.
+     *
+     * @param codecs the accepted codecs
+     * @return the metadata value
+     */
+    public static String advertise(Set<CompressionPolicy.Codec> codecs) {
+        return codecs.stream()
+            .filter(codec -> codec != CompressionPolicy.Codec.NONE)
+            .map(CompressionPolicy.Codec::encoding)
+            .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Reads the codecs a module advertised in its registration metadata.
+     *
+     * @param metadata the {@code ServiceRegistrationResponse} metadata
+     * @return the advertised codecs; empty if the module did not advertise any
+     */
+    public static Set<CompressionPolicy.Codec> advertised(Map<String, String> metadata) {
+        Set<CompressionPolicy.Codec> codecs = EnumSet.noneOf(CompressionPolicy.Codec.class);
+        String value = metadata.get(ACCEPT_ENCODING_KEY);
+        if (value == null) {
+            return codecs;
+        }
+        for (String encoding : value.split(",")) {
+            String trimmed = encoding.trim();
+            for (CompressionPolicy.Codec codec : CompressionPolicy.Codec.values()) {
+                if (codec.encoding().equalsIgnoreCase(trimmed)) {
+                    codecs.add(codec);
+                }
+            }
+        }
+        return codecs;
+    }
+
+    /**
+     * Resolves the policy to use for calls to a module.
+     * <p>
+     * gzip is always allowed since every gRPC runtime reads it. zstd is only used if the module advertised it and
+     * falls back to gzip otherwise.
+     *
+     * @param configured the policy configured for the output
+     * @param advertised the codecs the module advertised
+     * @return the policy to apply
+     */
+    public static CompressionPolicy negotiate(CompressionPolicy configured, Set<CompressionPolicy.Codec> advertised) {
+        if (configured.codec() == CompressionPolicy.Codec.ZSTD && !advertised.contains(CompressionPolicy.Codec.ZSTD)) {
+            return new CompressionPolicy(CompressionPolicy.Codec.GZIP, configured.minMessageBytes());
+        }
+        return configured;
+    }
+
+    private static CompressorRegistry createCompressorRegistry() {
+        CompressorRegistry registry = CompressorRegistry.newEmptyInstance();
+        registry.register(new Codec.Gzip());
+        registry.register(ZSTD);
+        return registry;
+    }
+}
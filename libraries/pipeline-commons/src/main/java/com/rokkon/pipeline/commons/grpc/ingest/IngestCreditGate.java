@@ -0,0 +1,226 @@
+package com.rokkon.pipeline.commons.grpc.ingest;
+
+import com.rokkon.search.engine.ProcessResponse;
+import com.rokkon.search.engine.ProcessStatus;
+import com.rokkon.search.model.PipeStream;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.operators.multi.processors.UnicastProcessor;
+import io.smallrye.mutiny.subscription.MultiSubscriber;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Connector-side end of {@code PipeStreamEngine.processPipeStream} flow control.
+ * <p>
+ * The gate only pulls a stream from the connector's source when the engine has granted a credit, so the engine's
+ * capacity is turned directly into reactive-streams demand on the source: a connector built as a {@link Multi}
+ * slows down automatically when the engine stops granting credits. {@link #throttled()} additionally reports
+ * whether the engine's last response asked the sender to slow down, for connectors that want to back off
+ * upstream work such as crawling.
+ * <p>
+ * Streams are kept until the engine has answered them. A stream the engine {@link ProcessStatus#REJECTED} is sent
+ * again with the next granted credit, before anything new is pulled from the source, and the call is only
+ * half-closed once every stream has been answered with something other than a rejection. Streams are matched to
+ * responses by stream ID, which must be unique within a call; streams without an ID are not retried, their
+ * rejection only shows in {@link #responses()}.
+ * <p>
+ * A gate handles a single call and can't be reused.
+ */
+public final class IngestCreditGate {
+
+    private final UnicastProcessor<PipeStream> outbound = UnicastProcessor.create();
+    private final AtomicInteger credits = new AtomicInteger();
+    private Multi<ProcessResponse> responses;
+    private volatile boolean throttled;
+    private volatile int lastQueueDepth;
+
+    // Guarded by this, so credits granted while the source subscribes are requested exactly once
+    private Subscription upstream;
+    private boolean cancelled;
+    // Also guarded by this, which serializes everything sent on outbound
+    private final Map<String, PipeStream> unanswered = new HashMap<>();
+    private final Deque<PipeStream> retries = new ArrayDeque<>();
+    private boolean sourceCompleted;
+    private boolean outboundCompleted;
+    private long retried;
+
+    private IngestCreditGate() {
+    }
+
+    /**
+     * Sends a connector's streams to the engine, pulling from the source only as credits are granted.
+     *
+     * @param source the streams to send
+     * @param call the streaming call, typically {@code stub::processPipeStream}
+     * @return the gate, whose {@link #responses()} must be subscribed to start sending
+     */
+    public static IngestCreditGate open(Multi<PipeStream> source,
+                                        Function<Multi<PipeStream>, Multi<ProcessResponse>> call) {
+        IngestCreditGate gate = new IngestCreditGate();
+        gate.responses = call.apply(gate.outbound)
+            .onSubscription().invoke(() -> source.subscribe().withSubscriber(gate.new Forwarder()))
+            .onItem().invoke(gate::onResponse)
+            .onTermination().invoke(gate::cancelUpstream);
+        return gate;
+    }
+
+    /**
+     * Returns the engine's responses. Subscribing starts the call.
+     *
+     * @return the responses, including {@link ProcessStatus#FLOW_CONTROL} updates
+     */
+    public Multi<ProcessResponse> responses() {
+        return responses;
+    }
+
+    /**
+     * Returns whether the engine's last response asked the sender to slow down.
+     *
+     * @return true if the last response was {@link ProcessStatus#THROTTLED} or {@link ProcessStatus#REJECTED}
+     */
+    public boolean throttled() {
+        return throttled;
+    }
+
+    /**
+     * Returns the credits granted by the engine and not yet used.
+     *
+     * @return the available credits
+     */
+    public int availableCredits() {
+        return credits.get();
+    }
+
+    /**
+     * Returns the number of rejected streams waiting to be sent again.
+     *
+     * @return the streams waiting for a credit to be retried
+     */
+    public synchronized int pendingRetries() {
+        return retries.size();
+    }
+
+    /**
+     * Returns how often a rejected stream was sent again.
+     *
+     * @return the number of retries sent
+     */
+    public synchronized long retried() {
+        return retried;
+    }
+
+    /**
+     * Returns the engine's queue depth as reported in its last response.
+     *
+     * @return the last reported queue depth
+     */
+    public int lastQueueDepth() {
+        return lastQueueDepth;
+    }
+
+    private void onResponse(ProcessResponse response) {
+        switch (response.getStatus()) {
+            case THROTTLED, REJECTED -> throttled = true;
+            case ACCEPTED, FLOW_CONTROL -> throttled = false;
+            default -> {
+                // ERROR and unknown statuses don't change the throttling state
+            }
+        }
+        lastQueueDepth = response.getQueueDepth();
+        synchronized (this) {
+            if (response.getStatus() != ProcessStatus.FLOW_CONTROL && !response.getStreamId().isEmpty()) {
+                PipeStream answered = unanswered.remove(response.getStreamId());
+                if (answered != null && response.getStatus() == ProcessStatus.REJECTED) {
+                    retries.addLast(answered);
+                }
+            }
+            int granted = response.getCredits();
+            if (granted > 0) {
+                credits.addAndGet(granted);
+                // Rejected streams go first; only the remaining credits become demand on the source
+                while (granted > 0 && !retries.isEmpty()) {
+                    retried++;
+                    send(retries.pollFirst());
+                    granted--;
+                }
+                if (granted > 0 && upstream != null) {
+                    upstream.request(granted);
+                }
+            }
+            completeIfDone();
+        }
+    }
+
+    private synchronized void send(PipeStream stream) {
+        credits.decrementAndGet();
+        if (!stream.getStreamId().isEmpty()) {
+            unanswered.put(stream.getStreamId(), stream);
+        }
+        outbound.onNext(stream);
+    }
+
+    private synchronized void completeIfDone() {
+        if (sourceCompleted && !outboundCompleted && unanswered.isEmpty() && retries.isEmpty()) {
+            outboundCompleted = true;
+            outbound.onComplete();
+        }
+    }
+
+    private synchronized void cancelUpstream() {
+        cancelled = true;
+        if (upstream != null) {
+            upstream.cancel();
+            upstream = null;
+        }
+    }
+
+    /**
+     * Forwards source items to the call, requesting exactly as many items as the engine granted credits.
+     */
+    private final class Forwarder implements MultiSubscriber<PipeStream> {
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            synchronized (IngestCreditGate.this) {
+                if (cancelled || upstream != null) {
+                    subscription.cancel();
+                    return;
+                }
+                upstream = subscription;
+                // Credits may have arrived before the source subscribed
+                int granted = credits.get();
+                if (granted > 0) {
+                    subscription.request(granted);
+                }
+            }
+        }
+
+        @Override
+        public void onItem(PipeStream stream) {
+            send(Objects.requireNonNull(stream));
+        }
+
+        @Override
+        public void onFailure(Throwable failure) {
+            synchronized (IngestCreditGate.this) {
+                outbound.onError(failure);
+            }
+        }
+
+        @Override
+        public void onCompletion() {
+            synchronized (IngestCreditGate.this) {
+                sourceCompleted = true;
+                // Stay open until the engine has answered, so rejected streams can still be sent again
+                completeIfDone();
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.rokkon.pipeline.commons.grpc.ingest;
+
+import com.rokkon.search.engine.ProcessResponse;
+import com.rokkon.search.engine.ProcessStatus;
+import com.rokkon.search.model.PipeStream;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Engine-side credit accounting for {@code PipeStreamEngine.processPipeStream}.
+ * <p>
+ * The controller bounds the number of streams the engine holds in memory: streams admitted but not yet handed
+ * downstream, plus the downstream queue depth, plus credits granted to senders but not yet used, never exceed
+ * {@code capacity}. Each connection gets a {@link Window} that hands out at most {@code maxWindow} credits at a
+ * time. Responses switch from {@link ProcessStatus#ACCEPTED} to {@link ProcessStatus#THROTTLED} once the
+ * engine is above the throttle watermark, which tells connectors to slow down before they run out of credits.
+ * <p>
+ * {@link #serve(Multi, Function)} wires this into a {@code processPipeStream} implementation.
+ */
+public final class IngestFlowController {
+
+    /**
+     * Default maximum number of credits per connection.
+     */
+    public static final int DEFAULT_MAX_WINDOW = 64;
+
+    /**
+     * Default fraction of capacity above which responses are {@link ProcessStatus#THROTTLED}.
+     */
+    public static final double DEFAULT_THROTTLE_RATIO = 0.8;
+
+    /**
+     * Default interval at which stalled connections are checked for new credits.
+     */
+    public static final Duration DEFAULT_REPLENISH_INTERVAL = Duration.ofMillis(100);
+
+    private final int capacity;
+    private final int maxWindow;
+    private final int throttleWatermark;
+    private final IntSupplier downstreamDepth;
+    private final Duration replenishInterval;
+
+    // Guarded by this
+    private int admitted;
+    private int granted;
+
+    /**
+     * Creates a controller.
+     *
+     * @param capacity maximum number of streams held by the engine, including granted credits
+     * @param maxWindow maximum number of credits a single connection holds
+     * @param throttleRatio fraction of capacity above which responses are {@link ProcessStatus#THROTTLED}
+     * @param downstreamDepth current depth of the queue streams are handed to, e.g. the Kafka producer buffer
+     * @param replenishInterval interval at which stalled connections are checked for new credits
+     */
+    public IngestFlowController(int capacity, int maxWindow, double throttleRatio, IntSupplier downstreamDepth,
+                                Duration replenishInterval) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        if (maxWindow < 1) {
+            throw new IllegalArgumentException("maxWindow must be at least 1");
+        }
+        if (throttleRatio <= 0 || throttleRatio > 1) {
+            throw new IllegalArgumentException("throttleRatio must be in (0, 1]");
+        }
+        this.capacity = capacity;
+        this.maxWindow = maxWindow;
+        this.throttleWatermark = (int) Math.ceil(capacity * throttleRatio);
+        this.downstreamDepth = Objects.requireNonNull(downstreamDepth, "downstreamDepth cannot be null");
+        this.replenishInterval = Objects.requireNonNull(replenishInterval, "replenishInterval cannot be null");
+    }
+
+    /**
+     * Creates a controller with the default window, throttle ratio and replenish interval.
+     *
+     * @param capacity maximum number of streams held by the engine, including granted credits
+     * @param downstreamDepth current depth of the queue streams are handed to
+     */
+    public IngestFlowController(int capacity, IntSupplier downstreamDepth) {
+        this(capacity, DEFAULT_MAX_WINDOW, DEFAULT_THROTTLE_RATIO, downstreamDepth, DEFAULT_REPLENISH_INTERVAL);
+    }
+
+    /**
+     * Implements {@code processPipeStream} on top of a handler for single streams.
+     * The handler's Uni should complete once the stream has been handed downstream.
+     *
+     * @param streams the streams sent by the connector
+     * @param handler hands a single stream downstream and returns the engine's response
+     * @return the responses to send back, starting with the initial credit grant
+     */
+    public Multi<ProcessResponse> serve(Multi<PipeStream> streams, Function<PipeStream, Uni<ProcessResponse>> handler) {
+        return Multi.createFrom().deferred(() -> {
+            Window window = openWindow();
+            AtomicBoolean done = new AtomicBoolean();
+
+            Multi<ProcessResponse> responses = streams.onItem().transformToUni(stream -> {
+                    if (!window.admit()) {
+                        return Uni.createFrom().item(window.rejected(stream));
+                    }
+                    return Uni.createFrom().deferred(() -> handler.apply(stream))
+                        .onFailure().recoverWithItem(failure -> error(stream, failure))
+                        .eventually(this::release)
+                        .map(window::respond);
+                })
+                .merge(maxWindow)
+                .onTermination().invoke(() -> {
+                    done.set(true);
+                    window.close();
+                });
+
+            // A connection that used up its credits while the engine was full only gets new ones from here
+            // (a tick that grants nothing emits nothing, as Mutiny streams can't carry null)
+            Multi<ProcessResponse> replenished = Multi.createFrom().ticks().every(replenishInterval)
+                .select().first(tick -> !done.get())
+                .onItem().transformToMultiAndConcatenate(tick -> Multi.createFrom().item(window::replenish));
+
+            return Multi.createBy().merging().streams(
+                Multi.createFrom().item(window.open()), responses, replenished);
+        });
+    }
+
+    /**
+     * Opens the credit window of a new connection.
+     *
+     * @return the window
+     */
+    public Window openWindow() {
+        return new Window();
+    }
+
+    /**
+     * Marks an admitted stream as handed downstream, freeing its capacity.
+     */
+    public synchronized void release() {
+        if (admitted > 0) {
+            admitted--;
+        }
+    }
+
+    /**
+     * Returns the number of streams held by the engine: admitted streams plus the downstream queue depth.
+     *
+     * @return the current depth
+     */
+    public synchronized int depth() {
+        return admitted + Math.max(0, downstreamDepth.getAsInt());
+    }
+
+    /**
+     * Returns the number of credits granted to connections and not yet used.
+     *
+     * @return the outstanding credits
+     */
+    public synchronized int outstandingCredits() {
+        return granted;
+    }
+
+    private int available() {
+        return Math.max(0, capacity - depth() - granted);
+    }
+
+    private boolean throttled() {
+        return depth() + granted >= throttleWatermark;
+    }
+
+    private static ProcessResponse error(PipeStream stream, Throwable failure) {
+        return ProcessResponse.newBuilder()
+            .setStreamId(stream.getStreamId())
+            .setStatus(ProcessStatus.ERROR)
+            .setMessage(failure.getMessage() == null ? failure.getClass().getSimpleName() : failure.getMessage())
+            .setTimestamp(System.currentTimeMillis())
+            .build();
+    }
+
+    /**
+     * The credits of a single {@code processPipeStream} connection.
+     */
+    public final class Window {
+
+        // Guarded by the controller
+        private int outstanding;
+        private boolean closed;
+
+        private Window() {
+        }
+
+        /**
+         * Returns the initial grant to send when the connection is opened.
+         *
+         * @return a {@link ProcessStatus#FLOW_CONTROL} response
+         */
+        public ProcessResponse open() {
+            synchronized (IngestFlowController.this) {
+                return flowControl(grant());
+            }
+        }
+
+        /**
+         * Consumes a credit for an incoming stream.
+         *
+         * @return true if the sender held a credit and the stream was admitted
+         */
+        public boolean admit() {
+            synchronized (IngestFlowController.this) {
+                if (closed || outstanding == 0) {
+                    return false;
+                }
+                outstanding--;
+                granted--;
+                admitted++;
+                return true;
+            }
+        }
+
+        /**
+         * Adds flow-control information to the response for an admitted stream, granting new credits if there is
+         * capacity.
+         *
+         * @param response the handler's response
+         * @return the response to send
+         */
+        public ProcessResponse respond(ProcessResponse response) {
+            synchronized (IngestFlowController.this) {
+                ProcessResponse.Builder builder = response.toBuilder().setCredits(grant()).setQueueDepth(depth());
+                if (response.getStatus() == ProcessStatus.ACCEPTED && throttled()) {
+                    builder.setStatus(ProcessStatus.THROTTLED);
+                }
+                return builder.build();
+            }
+        }
+
+        /**
+         * Builds the response for a stream sent without a credit.
+         *
+         * @param stream the rejected stream
+         * @return a {@link ProcessStatus#REJECTED} response
+         */
+        public ProcessResponse rejected(PipeStream stream) {
+            synchronized (IngestFlowController.this) {
+                return ProcessResponse.newBuilder()
+                    .setStreamId(stream.getStreamId())
+                    .setStatus(ProcessStatus.REJECTED)
+                    .setMessage("No credits left, wait for the engine to grant more")
+                    .setQueueDepth(depth())
+                    .setTimestamp(System.currentTimeMillis())
+                    .build();
+            }
+        }
+
+        /**
+         * Grants new credits to a connection that has none left, if the engine has capacity again.
+         *
+         * @return a {@link ProcessStatus#FLOW_CONTROL} response, or null if nothing was granted
+         */
+        public ProcessResponse replenish() {
+            synchronized (IngestFlowController.this) {
+                if (outstanding > 0) {
+                    return null;
+                }
+                int credits = grant();
+                return credits > 0 ? flowControl(credits) : null;
+            }
+        }
+
+        /**
+         * Returns the window's unused credits to the controller.
+         */
+        public void close() {
+            synchronized (IngestFlowController.this) {
+                closed = true;
+                granted -= outstanding;
+                outstanding = 0;
+            }
+        }
+
+        private int grant() {
+            if (closed) {
+                return 0;
+            }
+            int credits = Math.min(maxWindow - outstanding, available());
+            if (credits <= 0) {
+                return 0;
+            }
+            outstanding += credits;
+            granted += credits;
+            return credits;
+        }
+
+        private ProcessResponse flowControl(int credits) {
+            return ProcessResponse.newBuilder()
+                .setStatus(ProcessStatus.FLOW_CONTROL)
+                .setCredits(credits)
+                .setQueueDepth(depth())
+                .setTimestamp(System.currentTimeMillis())
+                .build();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.rokkon.pipeline.commons.grpc.processor;
+
+import com.rokkon.search.sdk.BatchProcessingCapability;
+import com.rokkon.search.sdk.PipeStepProcessor;
+import com.rokkon.search.sdk.ProcessBatchRequest;
+import com.rokkon.search.sdk.ProcessBatchResponse;
+import com.rokkon.search.sdk.ProcessStreamRequest;
+import com.rokkon.search.sdk.ProcessStreamResponse;
+import com.rokkon.search.sdk.ServiceRegistrationResponse;
+import com.rokkon.search.sdk.StreamingCapability;
+import io.grpc.Status;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Base class for modules that process one document at a time but want to accept {@code ProcessDataBatch} calls
+ * and {@code ProcessDataStream} channels.
+ * <p>
+ * Subclasses implement {@code processData}, {@code testProcessData} and {@code getServiceRegistration} as usual and
+ * add their capabilities to the registration response via {@link #withCapabilities}. Batches are
+ * expanded into single-document calls by {@link ProcessBatchSupport} and streams are served by
+ * {@link ProcessStreamSupport}; modules that can process documents more efficiently as a group can override
+ * {@link #processDataBatch(ProcessBatchRequest)} instead.
+ */
+public abstract class BatchingPipeStepProcessor implements PipeStepProcessor {
+
+    @Override
+    public Uni<ProcessBatchResponse> processDataBatch(ProcessBatchRequest request) {
+        int maxBatchSize = maxBatchSize();
+        if (maxBatchSize > 0 && request.getItemsCount() > maxBatchSize) {
+            return Uni.createFrom().failure(Status.INVALID_ARGUMENT
+                .withDescription("Batch of " + request.getItemsCount() + " items exceeds the maximum of " + maxBatchSize)
+                .asRuntimeException());
+        }
+        long maxBatchBytes = maxBatchBytes();
+        if (maxBatchBytes > 0 && request.getSerializedSize() > maxBatchBytes) {
+            return Uni.createFrom().failure(Status.INVALID_ARGUMENT
+                .withDescription("Batch of " + request.getSerializedSize() + " bytes exceeds the maximum of " + maxBatchBytes)
+                .asRuntimeException());
+        }
+        return ProcessBatchSupport.processBatch(request, this::processData, Math.max(1, maxBatchConcurrency()));
+    }
+
+    @Override
+    public Multi<ProcessStreamResponse> processDataStream(Multi<ProcessStreamRequest> requests) {
+        return ProcessStreamSupport.serve(requests, this::processData, streamWindow());
+    }
+
+    /**
+     * Returns the maximum number of items accepted per batch.
+     *
+     * @return the maximum batch size, 0 for no limit
+     */
+    protected int maxBatchSize() {
+        return ProcessBatchSupport.DEFAULT_MAX_BATCH_SIZE;
+    }
+
+    /**
+     * Returns the largest batch request accepted, in serialized bytes.
+     *
+     * @return the maximum batch size in bytes, 0 for no limit
+     */
+    protected long maxBatchBytes() {
+        return 0;
+    }
+
+    /**
+     * Returns how many items of a batch are processed concurrently. Defaults to 1, so processors that are
+     * not safe for concurrent use keep their current behaviour.
+     *
+     * @return the number of items in flight per batch
+     */
+    protected int maxBatchConcurrency() {
+        return 1;
+    }
+
+    /**
+     * Returns how many requests of a stream are processed concurrently, which is also the number of credits
+     * granted when the stream is opened.
+     *
+     * @return the stream window
+     */
+    protected int streamWindow() {
+        return ProcessStreamSupport.DEFAULT_WINDOW;
+    }
+
+    /**
+     * Returns the batch capability this module advertises.
+     *
+     * @return the batch capability
+     */
+    protected BatchProcessingCapability batchCapability() {
+        return ProcessBatchSupport.capability(maxBatchSize(), maxBatchBytes(), maxBatchConcurrency());
+    }
+
+    /**
+     * Returns the streaming capability this module advertises.
+     *
+     * @return the streaming capability
+     */
+    protected StreamingCapability streamingCapability() {
+        return ProcessStreamSupport.capability(streamWindow());
+    }
+
+    /**
+     * Adds this module's batch and streaming capabilities to a registration response.
+     *
+     * @param registration the registration response being built
+     * @return the same builder
+     */
+    protected ServiceRegistrationResponse.Builder withCapabilities(ServiceRegistrationResponse.Builder registration) {
+        return registration
+            .setBatchCapability(batchCapability())
+            .setStreamingCapability(streamingCapability());
+    }
+}
@@ -0,0 +1,297 @@
+package com.rokkon.pipeline.commons.grpc.processor;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.rokkon.search.sdk.BatchProcessingCapability;
+import com.rokkon.search.sdk.PipeStepProcessor;
+import com.rokkon.search.sdk.ProcessBatchItem;
+import com.rokkon.search.sdk.ProcessBatchItemResult;
+import com.rokkon.search.sdk.ProcessBatchRequest;
+import com.rokkon.search.sdk.ProcessBatchResponse;
+import com.rokkon.search.sdk.ProcessRequest;
+import com.rokkon.search.sdk.ProcessResponse;
+import com.rokkon.search.sdk.ServiceMetadata;
+import com.rokkon.search.sdk.ServiceRegistrationResponse;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Helpers for the {@code ProcessDataBatch} RPC of {@link PipeStepProcessor}.
+ * <p>
+ * Modules that only know how to process a single {@link ProcessRequest} can implement
+ * {@code processDataBatch} by delegating to {@link #processBatch(ProcessBatchRequest, Function)}, which
+ * expands the batch into individual requests and collects the per-item responses. A failing item is reported
+ * as an unsuccessful {@link ProcessResponse} and never fails the rest of the batch.
+ * <p>
+ * The engine side uses {@link #supportsBatch(ServiceRegistrationResponse)},
+ * {@link #maxBatchSize(ServiceRegistrationResponse, int)} and {@link #maxBatchBytes(ServiceRegistrationResponse)}
+ * to decide whether and how to batch for a module, and {@link #split(ProcessBatchRequest, int, long)} to cut a
+ * batch into requests the module accepts.
+ */
+public final class ProcessBatchSupport {
+
+    /**
+     * Batch size advertised by {@link #capability(int, long, int)} callers that have no specific limit in mind.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private ProcessBatchSupport() {
+        // Utility class
+    }
+
+    /**
+     * Processes all items of a batch one after another with a single-document processor.
+     *
+     * @param batch the batch request
+     * @param processor the single-document processor, typically {@code this::processData}
+     * @return the batch response with one result per item, in request order
+     */
+    public static Uni<ProcessBatchResponse> processBatch(ProcessBatchRequest batch,
+                                                         Function<ProcessRequest, Uni<ProcessResponse>> processor) {
+        return processBatch(batch, processor, 1);
+    }
+
+    /**
+     * Processes the items of a batch with a single-document processor, running up to {@code maxConcurrency}
+     * items at the same time.
+     *
+     * @param batch the batch request
+     * @param processor the single-document processor, typically {@code this::processData}
+     * @param maxConcurrency maximum number of items in flight, values below 1 are treated as 1
+     * @return the batch response with one result per item, in request order
+     */
+    public static Uni<ProcessBatchResponse> processBatch(ProcessBatchRequest batch,
+                                                         Function<ProcessRequest, Uni<ProcessResponse>> processor,
+                                                         int maxConcurrency) {
+        List<ProcessRequest> requests = expand(batch);
+        if (requests.isEmpty()) {
+            return Uni.createFrom().item(ProcessBatchResponse.getDefaultInstance());
+        }
+
+        ProcessResponse[] responses = new ProcessResponse[requests.size()];
+        Multi<Integer> indexes = Multi.createFrom().range(0, requests.size());
+        // Items may complete out of order when running concurrently, so responses are stored by index
+        Multi<Integer> completed = indexes.onItem().transformToUni(index ->
+                invokeSafely(processor, requests.get(index))
+                    .map(response -> {
+                        responses[index] = response;
+                        return index;
+                    }))
+            .merge(Math.max(1, maxConcurrency));
+
+        return completed.collect().asList()
+            .map(ignored -> toBatchResponse(batch, Arrays.asList(responses)));
+    }
+
+    /**
+     * Expands a batch into the single-document requests that {@code ProcessData} would have received.
+     * The shared configuration and metadata instances are reused; per-item metadata is only built for
+     * items that override the stream ID, hop number or context parameters.
+     *
+     * @param batch the batch request
+     * @return one request per item, in request order
+     */
+    public static List<ProcessRequest> expand(ProcessBatchRequest batch) {
+        List<ProcessRequest> requests = new ArrayList<>(batch.getItemsCount());
+        ServiceMetadata shared = batch.getMetadata();
+        for (ProcessBatchItem item : batch.getItemsList()) {
+            ProcessRequest.Builder request = ProcessRequest.newBuilder()
+                .setDocument(item.getDocument())
+                .setConfig(batch.getConfig());
+            if (batch.hasMetadata() || hasMetadataOverrides(item)) {
+                request.setMetadata(itemMetadata(shared, item));
+            }
+            requests.add(request.build());
+        }
+        return requests;
+    }
+
+    /**
+     * Splits a batch into batches of at most {@code maxItems} items and at most {@code maxBytes} serialized bytes,
+     * keeping the item order. Every part carries the batch's shared configuration and metadata, which count
+     * towards each part's size. An item that exceeds {@code maxBytes} on its own is sent alone, so the module can
+     * reject it without failing its neighbours.
+     *
+     * @param batch the batch to split
+     * @param maxItems maximum number of items per part, 0 for no limit
+     * @param maxBytes maximum serialized size of a part, 0 for no limit
+     * @return the parts, in order; the batch itself if it is within both limits
+     */
+    public static List<ProcessBatchRequest> split(ProcessBatchRequest batch, int maxItems, long maxBytes) {
+        int itemLimit = maxItems > 0 ? maxItems : Integer.MAX_VALUE;
+        long byteLimit = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        if (batch.getItemsCount() <= itemLimit && batch.getSerializedSize() <= byteLimit) {
+            return List.of(batch);
+        }
+
+        ProcessBatchRequest shared = batch.toBuilder().clearItems().build();
+        long sharedBytes = shared.getSerializedSize();
+        List<ProcessBatchRequest> parts = new ArrayList<>();
+        ProcessBatchRequest.Builder part = shared.toBuilder();
+        long partBytes = sharedBytes;
+        for (ProcessBatchItem item : batch.getItemsList()) {
+            long itemBytes = CodedOutputStream.computeMessageSize(ProcessBatchRequest.ITEMS_FIELD_NUMBER, item);
+            if (part.getItemsCount() > 0
+                    && (part.getItemsCount() == itemLimit || partBytes + itemBytes > byteLimit)) {
+                parts.add(part.build());
+                part = shared.toBuilder();
+                partBytes = sharedBytes;
+            }
+            part.addItems(item);
+            partBytes += itemBytes;
+        }
+        if (part.getItemsCount() > 0) {
+            parts.add(part.build());
+        }
+        return parts;
+    }
+
+    /**
+     * Builds a failed response for an item whose processing threw or returned nothing.
+     *
+     * @param error the failure, may be null
+     * @return an unsuccessful response carrying the error in {@code error_details}
+     */
+    public static ProcessResponse failure(Throwable error) {
+        String type = error == null ? "NullResponse" : error.getClass().getSimpleName();
+        String message = error == null || error.getMessage() == null ? "Processor returned no response" : error.getMessage();
+        return ProcessResponse.newBuilder()
+            .setSuccess(false)
+            .setErrorDetails(Struct.newBuilder()
+                .putFields("error_type", Value.newBuilder().setStringValue(type).build())
+                .putFields("error_message", Value.newBuilder().setStringValue(message).build())
+                .build())
+            .addProcessorLogs("Batch item failed: " + message)
+            .build();
+    }
+
+    /**
+     * Creates the capability a module advertises in {@link ServiceRegistrationResponse#getBatchCapability()},
+     * without a limit on the batch size in bytes.
+     *
+     * @param maxBatchSize maximum number of items per batch, 0 for no limit
+     * @param maxConcurrency maximum number of items processed concurrently, 0 if the module decides
+     * @return the batch capability
+     */
+    public static BatchProcessingCapability capability(int maxBatchSize, int maxConcurrency) {
+        return capability(maxBatchSize, 0, maxConcurrency);
+    }
+
+    /**
+     * Creates the capability a module advertises in {@link ServiceRegistrationResponse#getBatchCapability()}.
+     *
+     * @param maxBatchSize maximum number of items per batch, 0 for no limit
+     * @param maxBatchBytes maximum serialized size of a batch request in bytes, 0 for no limit
+     * @param maxConcurrency maximum number of items processed concurrently, 0 if the module decides
+     * @return the batch capability
+     */
+    public static BatchProcessingCapability capability(int maxBatchSize, long maxBatchBytes, int maxConcurrency) {
+        return BatchProcessingCapability.newBuilder()
+            .setSupported(true)
+            .setMaxBatchSize(Math.max(0, maxBatchSize))
+            .setMaxBatchBytes(Math.max(0, maxBatchBytes))
+            .setMaxConcurrency(Math.max(0, maxConcurrency))
+            .build();
+    }
+
+    /**
+     * Returns whether a module advertised support for {@code ProcessDataBatch}.
+     *
+     * @param registration the module's registration response
+     * @return true if the engine may send batches to the module
+     */
+    public static boolean supportsBatch(ServiceRegistrationResponse registration) {
+        return registration != null
+            && registration.hasBatchCapability()
+            && registration.getBatchCapability().getSupported();
+    }
+
+    /**
+     * Returns the batch size to use for a module, capping the engine's preferred size by the module's limit.
+     *
+     * @param registration the module's registration response
+     * @param preferred the batch size the engine would like to use
+     * @return the negotiated batch size, or 1 if the module does not support batches
+     */
+    public static int maxBatchSize(ServiceRegistrationResponse registration, int preferred) {
+        if (!supportsBatch(registration)) {
+            return 1;
+        }
+        int limit = registration.getBatchCapability().getMaxBatchSize();
+        int size = limit > 0 ? Math.min(limit, preferred) : preferred;
+        return Math.max(1, size);
+    }
+
+    /**
+     * Returns the largest batch request in bytes a module accepts.
+     *
+     * @param registration the module's registration response
+     * @return the module's limit, or 0 if it has none or does not support batches
+     */
+    public static long maxBatchBytes(ServiceRegistrationResponse registration) {
+        if (!supportsBatch(registration)) {
+            return 0;
+        }
+        return Math.max(0, registration.getBatchCapability().getMaxBatchBytes());
+    }
+
+    /**
+     * Invokes a single-document processor, turning exceptions, failures and null responses into failed responses.
+     */
+    static Uni<ProcessResponse> invokeSafely(Function<ProcessRequest, Uni<ProcessResponse>> processor,
+                                             ProcessRequest request) {
+        Uni<ProcessResponse> response;
+        try {
+            response = processor.apply(request);
+        } catch (RuntimeException e) {
+            return Uni.createFrom().item(failure(e));
+        }
+        if (response == null) {
+            return Uni.createFrom().item(failure(null));
+        }
+        return response
+            .onItem().ifNull().continueWith(() -> failure(null))
+            .onFailure().recoverWithItem(ProcessBatchSupport::failure);
+    }
+
+    private static ProcessBatchResponse toBatchResponse(ProcessBatchRequest batch, List<ProcessResponse> responses) {
+        ProcessBatchResponse.Builder builder = ProcessBatchResponse.newBuilder();
+        int failed = 0;
+        for (int i = 0; i < responses.size(); i++) {
+            ProcessResponse response = responses.get(i);
+            if (!response.getSuccess()) {
+                failed++;
+            }
+            builder.addResults(ProcessBatchItemResult.newBuilder()
+                .setItemId(batch.getItems(i).getItemId())
+                .setResponse(response));
+        }
+        return builder.setFailedCount(failed).build();
+    }
+
+    private static boolean hasMetadataOverrides(ProcessBatchItem item) {
+        return item.hasStreamId() || item.hasCurrentHopNumber() || item.getContextParamsCount() > 0;
+    }
+
+    private static ServiceMetadata itemMetadata(ServiceMetadata shared, ProcessBatchItem item) {
+        if (!hasMetadataOverrides(item)) {
+            return shared;
+        }
+        // toBuilder() shares the immutable history list, so the history is not copied per item
+        ServiceMetadata.Builder metadata = shared.toBuilder();
+        if (item.hasStreamId()) {
+            metadata.setStreamId(item.getStreamId());
+        }
+        if (item.hasCurrentHopNumber()) {
+            metadata.setCurrentHopNumber(item.getCurrentHopNumber());
+        }
+        metadata.putAllContextParams(item.getContextParamsMap());
+        return metadata.build();
+    }
+}
@@ -0,0 +1,268 @@
+package com.rokkon.pipeline.commons.grpc.processor;
+
+import com.rokkon.search.sdk.ProcessRequest;
+import com.rokkon.search.sdk.ProcessResponse;
+import com.rokkon.search.sdk.ProcessStreamRequest;
+import com.rokkon.search.sdk.ProcessStreamResponse;
+import com.rokkon.search.sdk.StreamingCapability;
+import io.grpc.Status;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.operators.multi.processors.UnicastProcessor;
+import io.smallrye.mutiny.subscription.Cancellable;
+import io.smallrye.mutiny.subscription.UniEmitter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Engine-side end of a {@code ProcessDataStream}, multiplexing {@code ProcessData} calls to one module instance
+ * over a single long-lived stream.
+ * <p>
+ * Every call gets a correlation ID and only goes out while the channel holds a credit and is below the module's
+ * in-flight limit. Calls that can't be sent yet wait in a bounded queue; once that is full, new calls fail with
+ * {@code RESOURCE_EXHAUSTED}, which gives callers back-pressure from a saturated module. When the stream ends,
+ * all outstanding calls fail and the channel stays closed; callers then fall back to unary calls or open a new
+ * channel.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class ProcessStreamChannel implements AutoCloseable {
+
+    /**
+     * Default maximum number of calls waiting for a credit.
+     */
+    public static final int DEFAULT_MAX_QUEUED = 1024;
+
+    private final UnicastProcessor<ProcessStreamRequest> outbound = UnicastProcessor.create();
+    private final Map<Long, UniEmitter<? super ProcessResponse>> inFlight = new HashMap<>();
+    private final Deque<Pending> queued = new ArrayDeque<>();
+    private final int maxQueued;
+    private volatile Cancellable inbound;
+
+    // All fields below are guarded by this
+    private long nextCorrelationId = 1;
+    private int credits;
+    private int maxInFlight;
+    private boolean closed;
+
+    private ProcessStreamChannel(StreamingCapability capability, int maxQueued) {
+        this.maxQueued = maxQueued;
+        // Don't send anything before the module grants credits, but cap in-flight requests at the advertised limit
+        this.maxInFlight = capability != null && capability.getMaxInFlight() > 0 ? capability.getMaxInFlight() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Opens a channel.
+     *
+     * @param call the streaming call, typically {@code stub::processDataStream}
+     * @param capability the module's advertised streaming capability, may be null
+     * @return the open channel
+     */
+    public static ProcessStreamChannel open(Function<Multi<ProcessStreamRequest>, Multi<ProcessStreamResponse>> call,
+                                            StreamingCapability capability) {
+        return open(call, capability, DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * Opens a channel.
+     *
+     * @param call the streaming call, typically {@code stub::processDataStream}
+     * @param capability the module's advertised streaming capability, may be null
+     * @param maxQueued maximum number of calls waiting for a credit
+     * @return the open channel
+     */
+    public static ProcessStreamChannel open(Function<Multi<ProcessStreamRequest>, Multi<ProcessStreamResponse>> call,
+                                            StreamingCapability capability, int maxQueued) {
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued cannot be negative");
+        }
+        ProcessStreamChannel channel = new ProcessStreamChannel(capability, maxQueued);
+        channel.start(call);
+        return channel;
+    }
+
+    /**
+     * Opens the stream. Kept out of the constructor so the module's first messages can't reach a channel
+     * that is still being constructed.
+     */
+    private void start(Function<Multi<ProcessStreamRequest>, Multi<ProcessStreamResponse>> call) {
+        inbound = call.apply(outbound).subscribe().with(this::onMessage, this::onFailure, this::onCompletion);
+    }
+
+    /**
+     * Sends a request over the stream.
+     *
+     * @param request the request
+     * @return the module's response
+     */
+    public Uni<ProcessResponse> process(ProcessRequest request) {
+        return Uni.createFrom().emitter(emitter -> submit(request, emitter));
+    }
+
+    /**
+     * Returns whether the stream is still open.
+     *
+     * @return true if calls can still be sent
+     */
+    public synchronized boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Returns the number of requests sent and not yet answered.
+     *
+     * @return the number of requests in flight
+     */
+    public synchronized int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Returns the number of calls waiting for a credit.
+     *
+     * @return the number of queued calls
+     */
+    public synchronized int queued() {
+        return queued.size();
+    }
+
+    /**
+     * Returns the number of requests that may currently be sent.
+     *
+     * @return the available credits
+     */
+    public synchronized int availableCredits() {
+        return credits;
+    }
+
+    /**
+     * Completes the stream. Outstanding calls fail with {@code CANCELLED}.
+     */
+    @Override
+    public void close() {
+        List<UniEmitter<? super ProcessResponse>> outstanding = shutdown();
+        if (outstanding == null) {
+            return;
+        }
+        Cancellable subscription = inbound;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        failAll(outstanding, Status.CANCELLED.withDescription("Process stream closed").asRuntimeException());
+    }
+
+    private synchronized void submit(ProcessRequest request, UniEmitter<? super ProcessResponse> emitter) {
+        if (closed) {
+            emitter.fail(Status.UNAVAILABLE.withDescription("Process stream is closed").asRuntimeException());
+            return;
+        }
+        Pending pending = new Pending(nextCorrelationId++, request, emitter);
+        if (queued.isEmpty() && canSend()) {
+            send(pending);
+        } else if (queued.size() < maxQueued) {
+            queued.addLast(pending);
+            emitter.onTermination(() -> dequeue(pending));
+        } else {
+            emitter.fail(Status.RESOURCE_EXHAUSTED
+                .withDescription("Process stream has " + queued.size() + " calls waiting for credits")
+                .asRuntimeException());
+        }
+    }
+
+    private boolean canSend() {
+        return credits > 0 && inFlight.size() < maxInFlight;
+    }
+
+    private void send(Pending pending) {
+        credits--;
+        inFlight.put(pending.correlationId(), pending.emitter());
+        outbound.onNext(ProcessStreamRequest.newBuilder()
+            .setCorrelationId(pending.correlationId())
+            .setRequest(pending.request())
+            .build());
+    }
+
+    private void drain() {
+        while (!queued.isEmpty() && canSend()) {
+            Pending pending = queued.pollFirst();
+            if (!pending.emitter().isCancelled()) {
+                send(pending);
+            }
+        }
+    }
+
+    private synchronized void dequeue(Pending pending) {
+        queued.remove(pending);
+    }
+
+    private void onMessage(ProcessStreamResponse message) {
+        UniEmitter<? super ProcessResponse> completed = null;
+        synchronized (this) {
+            switch (message.getPayloadCase()) {
+                case WINDOW -> {
+                    credits += message.getWindow().getCredits();
+                    if (message.getWindow().getMaxInFlight() > 0) {
+                        maxInFlight = message.getWindow().getMaxInFlight();
+                    }
+                }
+                case RESULT -> {
+                    credits += message.getResult().getCredits();
+                    completed = inFlight.remove(message.getResult().getCorrelationId());
+                }
+                default -> {
+                    // Unknown payloads from newer modules are ignored
+                }
+            }
+            drain();
+        }
+        // Complete outside the lock, callers may immediately submit the next request
+        if (completed != null) {
+            completed.complete(message.getResult().getResponse());
+        }
+    }
+
+    private void onFailure(Throwable failure) {
+        List<UniEmitter<? super ProcessResponse>> outstanding = shutdown();
+        if (outstanding != null) {
+            failAll(outstanding, failure);
+        }
+    }
+
+    private void onCompletion() {
+        List<UniEmitter<? super ProcessResponse>> outstanding = shutdown();
+        if (outstanding != null) {
+            failAll(outstanding, Status.UNAVAILABLE.withDescription("Process stream completed by module").asRuntimeException());
+        }
+    }
+
+    /**
+     * Marks the channel closed and returns the calls that still need an answer, or null if it was already closed.
+     */
+    private synchronized List<UniEmitter<? super ProcessResponse>> shutdown() {
+        if (closed) {
+            return null;
+        }
+        closed = true;
+        List<UniEmitter<? super ProcessResponse>> outstanding = new ArrayList<>(inFlight.values());
+        queued.forEach(pending -> outstanding.add(pending.emitter()));
+        inFlight.clear();
+        queued.clear();
+        outbound.onComplete();
+        return outstanding;
+    }
+
+    private static void failAll(List<UniEmitter<? super ProcessResponse>> emitters, Throwable failure) {
+        for (UniEmitter<? super ProcessResponse> emitter : emitters) {
+            emitter.fail(failure);
+        }
+    }
+
+    private record Pending(long correlationId, ProcessRequest request, UniEmitter<? super ProcessResponse> emitter) {
+    }
+}
@@ -0,0 +1,115 @@
+package com.rokkon.pipeline.commons.grpc.processor;
+
+import com.rokkon.search.sdk.PipeStepProcessor;
+import com.rokkon.search.sdk.ProcessRequest;
+import com.rokkon.search.sdk.ProcessResponse;
+import com.rokkon.search.sdk.ProcessStreamRequest;
+import com.rokkon.search.sdk.ProcessStreamResponse;
+import com.rokkon.search.sdk.ProcessStreamResult;
+import com.rokkon.search.sdk.ProcessStreamWindow;
+import com.rokkon.search.sdk.ServiceRegistrationResponse;
+import com.rokkon.search.sdk.StreamingCapability;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+import java.util.function.Function;
+
+/**
+ * Module-side helpers for the {@code ProcessDataStream} RPC of {@link PipeStepProcessor}.
+ * <p>
+ * {@link #serve(Multi, Function, int)} answers a stream with a single-document processor: it opens the stream
+ * by granting {@code window} credits, processes up to {@code window} requests at the same time and returns one
+ * credit with every result. Results are emitted as soon as they complete, so they may be out of request order.
+ */
+public final class ProcessStreamSupport {
+
+    /**
+     * Window advertised by modules that have no specific limit in mind.
+     */
+    public static final int DEFAULT_WINDOW = 16;
+
+    private ProcessStreamSupport() {
+        // Utility class
+    }
+
+    /**
+     * Serves a {@code ProcessDataStream} with a single-document processor.
+     *
+     * @param requests the requests sent by the engine
+     * @param processor the single-document processor, typically {@code this::processData}
+     * @param window the number of credits granted up front and the maximum number of requests in flight
+     * @return the messages to send back to the engine
+     */
+    public static Multi<ProcessStreamResponse> serve(Multi<ProcessStreamRequest> requests,
+                                                     Function<ProcessRequest, Uni<ProcessResponse>> processor,
+                                                     int window) {
+        int effectiveWindow = Math.max(1, window);
+        Multi<ProcessStreamResponse> results = requests.onItem().transformToUni(request ->
+                ProcessBatchSupport.invokeSafely(processor, request.getRequest())
+                    .map(response -> result(request.getCorrelationId(), response, 1)))
+            .merge(effectiveWindow);
+
+        return Multi.createBy().concatenating().streams(
+            Multi.createFrom().item(window(effectiveWindow, effectiveWindow)),
+            results);
+    }
+
+    /**
+     * Creates a flow-control update.
+     *
+     * @param credits additional requests the engine may send
+     * @param maxInFlight maximum number of requests in flight, 0 to leave the limit unchanged
+     * @return the window message
+     */
+    public static ProcessStreamResponse window(int credits, int maxInFlight) {
+        return ProcessStreamResponse.newBuilder()
+            .setWindow(ProcessStreamWindow.newBuilder()
+                .setCredits(Math.max(0, credits))
+                .setMaxInFlight(Math.max(0, maxInFlight)))
+            .build();
+    }
+
+    /**
+     * Creates the result message for one request.
+     *
+     * @param correlationId the correlation ID of the request
+     * @param response the processing response
+     * @param credits credits returned with the result
+     * @return the result message
+     */
+    public static ProcessStreamResponse result(long correlationId, ProcessResponse response, int credits) {
+        return ProcessStreamResponse.newBuilder()
+            .setResult(ProcessStreamResult.newBuilder()
+                .setCorrelationId(correlationId)
+                .setResponse(response)
+                .setCredits(Math.max(0, credits)))
+            .build();
+    }
+
+    /**
+     * Creates the capability a module advertises in {@link ServiceRegistrationResponse#getStreamingCapability()}.
+     *
+     * @param window the credits granted when a stream is opened, also used as the in-flight limit
+     * @return the streaming capability
+     */
+    public static StreamingCapability capability(int window) {
+        int effectiveWindow = Math.max(1, window);
+        return StreamingCapability.newBuilder()
+            .setSupported(true)
+            .setInitialWindow(effectiveWindow)
+            .setMaxInFlight(effectiveWindow)
+            .build();
+    }
+
+    /**
+     * Returns whether a module advertised support for {@code ProcessDataStream}.
+     *
+     * @param registration the module's registration response
+     * @return true if the engine may open a stream to the module
+     */
+    public static boolean supportsStreaming(ServiceRegistrationResponse registration) {
+        return registration != null
+            && registration.hasStreamingCapability()
+            && registration.getStreamingCapability().getSupported();
+    }
+}
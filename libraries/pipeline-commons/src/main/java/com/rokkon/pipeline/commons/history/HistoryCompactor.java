@@ -0,0 +1,210 @@
+package com.rokkon.pipeline.commons.history;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.rokkon.pipeline.commons.blob.BlobNotFoundException;
+import com.rokkon.pipeline.commons.blob.BlobStore;
+import com.rokkon.pipeline.config.model.HistoryPolicy;
+import com.rokkon.search.model.BlobReference;
+import com.rokkon.search.model.ErrorData;
+import com.rokkon.search.model.PipeStream;
+import com.rokkon.search.model.StepExecutionRecord;
+import com.rokkon.search.sdk.ServiceMetadata;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Applies a {@link HistoryPolicy} to the step history of a stream right before it is dispatched.
+ * <p>
+ * Without a policy every {@code ProcessRequest} carries the full history, so the last step of a long
+ * pipeline or a long retry chain receives one record per earlier hop, each with its processor logs and
+ * possibly the captured input state of a failure. The compactor drops the oldest records beyond
+ * {@link HistoryPolicy#maxRecords()} (counting them in {@code compacted_history_records}) and, depending on
+ * {@link HistoryPolicy#logRetention()}, reduces the remaining records to a summary or moves their logs to a
+ * {@link BlobStore}. Compacting an already compacted history is a no-op, so it is safe to apply on every hop.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class HistoryCompactor {
+
+    private final HistoryPolicy policy;
+    private final BlobStore logStore;
+    private final HistoryMetrics metrics;
+
+    /**
+     * Creates a compactor.
+     *
+     * @param policy the policy to apply
+     * @param logStore store for offloaded processor logs; required for {@link HistoryPolicy.LogRetention#OFFLOAD}
+     * @param metrics metrics to record every dispatch in
+     */
+    public HistoryCompactor(HistoryPolicy policy, BlobStore logStore, HistoryMetrics metrics) {
+        this.policy = Objects.requireNonNull(policy, "policy cannot be null");
+        this.metrics = Objects.requireNonNull(metrics, "metrics cannot be null");
+        if (policy.logRetention() == HistoryPolicy.LogRetention.OFFLOAD && logStore == null) {
+            throw new IllegalArgumentException("A log store is required to offload processor logs");
+        }
+        this.logStore = logStore;
+    }
+
+    /**
+     * Creates a compactor for a policy that doesn't offload logs.
+     *
+     * @param policy the policy to apply
+     * @param metrics metrics to record every dispatch in
+     */
+    public HistoryCompactor(HistoryPolicy policy, HistoryMetrics metrics) {
+        this(policy, null, metrics);
+    }
+
+    /**
+     * Applies the policy to the stream's history.
+     *
+     * @param stream the stream about to be dispatched
+     * @return the stream with compacted history, or the same stream if nothing changed
+     */
+    public PipeStream compact(PipeStream stream) {
+        Compaction compaction = compact(stream.getHistoryList());
+        if (!compaction.changed()) {
+            return stream;
+        }
+        return stream.toBuilder()
+            .clearHistory()
+            .addAllHistory(compaction.history())
+            .setCompactedHistoryRecords(stream.getCompactedHistoryRecords() + compaction.dropped())
+            .build();
+    }
+
+    /**
+     * Applies the policy to the history in the metadata of a step call.
+     *
+     * @param metadata the metadata about to be sent
+     * @return the metadata with compacted history, or the same metadata if nothing changed
+     */
+    public ServiceMetadata compact(ServiceMetadata metadata) {
+        Compaction compaction = compact(metadata.getHistoryList());
+        if (!compaction.changed()) {
+            return metadata;
+        }
+        return metadata.toBuilder()
+            .clearHistory()
+            .addAllHistory(compaction.history())
+            .setCompactedHistoryRecords(metadata.getCompactedHistoryRecords() + compaction.dropped())
+            .build();
+    }
+
+    /**
+     * Returns the policy this compactor applies.
+     *
+     * @return the policy
+     */
+    public HistoryPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * Returns the processor logs of a record, fetching them from the store if they were offloaded.
+     *
+     * @param record the history record
+     * @param logStore the store the logs were offloaded to
+     * @return the processor logs
+     * @throws BlobNotFoundException if the offloaded logs are not in the store
+     */
+    public static List<String> processorLogs(StepExecutionRecord record, BlobStore logStore) {
+        if (!record.hasProcessorLogsRef()) {
+            return record.getProcessorLogsList();
+        }
+        BlobReference reference = record.getProcessorLogsRef();
+        try {
+            return StepExecutionRecord.parseFrom(logStore.get(reference)
+                    .orElseThrow(() -> new BlobNotFoundException(reference,
+                        "Processor logs " + reference.getSha256() + " of step '" + record.getStepName() + "' not found")))
+                .getProcessorLogsList();
+        } catch (InvalidProtocolBufferException e) {
+            throw new UncheckedIOException("Failed to parse processor logs " + reference.getSha256(), e);
+        }
+    }
+
+    /**
+     * Computes the serialized size of a history.
+     *
+     * @param history the history records
+     * @return the size in bytes
+     */
+    public static long historyBytes(List<StepExecutionRecord> history) {
+        long bytes = 0;
+        for (StepExecutionRecord record : history) {
+            bytes += record.getSerializedSize();
+        }
+        return bytes;
+    }
+
+    private Compaction compact(List<StepExecutionRecord> history) {
+        long before = historyBytes(history);
+        if (policy.keepsAll()) {
+            metrics.record(before, before, 0, 0, 0);
+            return new Compaction(history, 0, false);
+        }
+
+        int dropped = policy.maxRecords() == null ? 0 : Math.max(0, history.size() - policy.maxRecords());
+        int summarized = 0;
+        int offloaded = 0;
+        List<StepExecutionRecord> compacted = new ArrayList<>(history.size() - dropped);
+        for (StepExecutionRecord record : history.subList(dropped, history.size())) {
+            StepExecutionRecord result = switch (policy.logRetention()) {
+                case KEEP -> record;
+                case SUMMARY -> summarize(record);
+                case OFFLOAD -> offloadLogs(record);
+            };
+            if (result != record) {
+                if (policy.logRetention() == HistoryPolicy.LogRetention.SUMMARY) {
+                    summarized++;
+                } else {
+                    offloaded++;
+                }
+            }
+            compacted.add(result);
+        }
+
+        boolean changed = dropped > 0 || summarized > 0 || offloaded > 0;
+        long after = changed ? historyBytes(compacted) : before;
+        metrics.record(before, after, dropped, summarized, offloaded);
+        return new Compaction(changed ? compacted : history, dropped, changed);
+    }
+
+    private static StepExecutionRecord summarize(StepExecutionRecord record) {
+        boolean bulkyError = record.hasErrorInfo()
+            && (record.getErrorInfo().hasInputStateAtFailure() || record.getErrorInfo().hasTechnicalDetails());
+        if (record.getProcessorLogsCount() == 0 && !bulkyError) {
+            return record;
+        }
+        StepExecutionRecord.Builder builder = record.toBuilder().clearProcessorLogs();
+        if (bulkyError) {
+            ErrorData errorInfo = record.getErrorInfo().toBuilder()
+                .clearInputStateAtFailure()
+                .clearTechnicalDetails()
+                .build();
+            builder.setErrorInfo(errorInfo);
+        }
+        return builder.build();
+    }
+
+    private StepExecutionRecord offloadLogs(StepExecutionRecord record) {
+        if (record.getProcessorLogsCount() == 0) {
+            return record;
+        }
+        StepExecutionRecord logs = StepExecutionRecord.newBuilder()
+            .addAllProcessorLogs(record.getProcessorLogsList())
+            .build();
+        BlobReference reference = logStore.put(logs.toByteString());
+        return record.toBuilder()
+            .clearProcessorLogs()
+            .setProcessorLogsRef(reference)
+            .build();
+    }
+
+    private record Compaction(List<StepExecutionRecord> history, int dropped, boolean changed) {
+    }
+}
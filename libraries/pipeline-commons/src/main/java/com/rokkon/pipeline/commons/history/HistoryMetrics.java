@@ -0,0 +1,75 @@
+package com.rokkon.pipeline.commons.history;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the step history carried by dispatched streams.
+ * <p>
+ * Every dispatch that passes through a {@link HistoryCompactor} is recorded with the serialized size of
+ * the history before and after the policy was applied, so the effect of a policy on per-hop payload size
+ * can be read off directly.
+ */
+public class HistoryMetrics {
+
+    private final LongAdder dispatches = new LongAdder();
+    private final LongAdder bytesBefore = new LongAdder();
+    private final LongAdder bytesAfter = new LongAdder();
+    private final LongAccumulator maxBytesAfter = new LongAccumulator(Math::max, 0);
+    private final LongAdder recordsDropped = new LongAdder();
+    private final LongAdder recordsSummarized = new LongAdder();
+    private final LongAdder logsOffloaded = new LongAdder();
+
+    void record(long before, long after, int dropped, int summarized, int offloaded) {
+        dispatches.increment();
+        bytesBefore.add(before);
+        bytesAfter.add(after);
+        maxBytesAfter.accumulate(after);
+        recordsDropped.add(dropped);
+        recordsSummarized.add(summarized);
+        logsOffloaded.add(offloaded);
+    }
+
+    /**
+     * Returns a snapshot of the counters.
+     *
+     * @return the history statistics
+     */
+    public Stats stats() {
+        return new Stats(dispatches.sum(), bytesBefore.sum(), bytesAfter.sum(), maxBytesAfter.get(),
+            recordsDropped.sum(), recordsSummarized.sum(), logsOffloaded.sum());
+    }
+
+    /**
+     * Point-in-time history statistics.
+     *
+     * @param dispatches number of dispatches recorded
+     * @param bytesBefore total serialized history size before the policy was applied
+     * @param bytesAfter total serialized history size actually dispatched
+     * @param maxBytesAfter largest serialized history dispatched with a single hop
+     * @param recordsDropped number of records dropped because of the record limit
+     * @param recordsSummarized number of records reduced to a summary
+     * @param logsOffloaded number of records whose logs were moved to the side store
+     */
+    public record Stats(long dispatches, long bytesBefore, long bytesAfter, long maxBytesAfter,
+                        long recordsDropped, long recordsSummarized, long logsOffloaded) {
+
+        /**
+         * Returns the average serialized history size dispatched per hop.
+         *
+         * @return average bytes per hop, or 0.0 if nothing was recorded
+         */
+        public double averageBytesPerHop() {
+            return dispatches == 0 ? 0.0 : (double) bytesAfter / dispatches;
+        }
+
+        /**
+         * Returns the number of history bytes the policy kept off the wire.
+         *
+         * @return saved bytes
+         */
+        public long savedBytes() {
+            return bytesBefore - bytesAfter;
+        }
+    }
+}
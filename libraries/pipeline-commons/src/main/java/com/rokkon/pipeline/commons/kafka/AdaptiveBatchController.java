@@ -0,0 +1,240 @@
+package com.rokkon.pipeline.commons.kafka;
+
+import com.rokkon.pipeline.config.model.AdaptiveBatching;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides the producer batch size and linger time of one topic from observed traffic.
+ * <p>
+ * Observations are collected over a window of {@link AdaptiveBatching#adjustIntervalMs()}; at the end of each window
+ * {@link #evaluate(long)} derives new settings:
+ * <ul>
+ *   <li><b>Batch size</b> holds {@value #TARGET_RECORDS_PER_BATCH} records of the average observed size, so topics
+ *       carrying large documents get large batches instead of one record per request.</li>
+ *   <li><b>Linger</b> is the time the topic needs to fill such a batch. When traffic is too thin to fill one within
+ *       the maximum linger, waiting only adds latency and linger drops to the minimum.</li>
+ *   <li><b>Send latency</b> well above linger means requests queue up at the broker; linger is then doubled so the
+ *       same traffic goes out in fewer, larger requests.</li>
+ * </ul>
+ * New settings are only reported when they differ from the current ones by more than {@value #HYSTERESIS_PERCENT}%,
+ * since applying them means replacing the producer.
+ */
+public final class AdaptiveBatchController {
+
+    /**
+     * Number of average-sized records a batch should hold.
+     */
+    public static final int TARGET_RECORDS_PER_BATCH = 16;
+
+    /**
+     * Minimum relative change, in percent, before new settings are applied.
+     */
+    public static final int HYSTERESIS_PERCENT = 25;
+
+    private static final int BATCH_ALIGNMENT = 1024;
+
+    private final AdaptiveBatching bounds;
+    private final long intervalNanos;
+    private final LongAdder records = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder acks = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder reconfigurations = new LongAdder();
+    private volatile long windowStartNanos;
+    private volatile int batchSize;
+    private volatile int lingerMs;
+    private volatile Stats lastWindow;
+
+    /**
+     * Creates a controller.
+     *
+     * @param bounds the bounds to tune within
+     * @param initialBatchSize the starting batch size, clamped into the bounds
+     * @param initialLingerMs the starting linger time, clamped into the bounds
+     * @param nowNanos the current {@link System#nanoTime()}
+     */
+    public AdaptiveBatchController(AdaptiveBatching bounds, int initialBatchSize, int initialLingerMs, long nowNanos) {
+        this.bounds = bounds;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(bounds.adjustIntervalMs());
+        this.batchSize = bounds.clampBatchSize(initialBatchSize);
+        this.lingerMs = bounds.clampLingerMs(initialLingerMs);
+        this.windowStartNanos = nowNanos;
+        this.lastWindow = new Stats(batchSize, lingerMs, 0, 0, 0, 0, 0, 0, Decision.INITIAL);
+    }
+
+    /**
+     * Records a record handed to the producer.
+     *
+     * @param serializedBytes the approximate serialized size of key and value
+     */
+    public void recordSent(int serializedBytes) {
+        records.increment();
+        bytes.add(serializedBytes);
+    }
+
+    /**
+     * Records the completion of a send.
+     *
+     * @param latency nanoseconds from send to acknowledgement
+     * @param succeeded whether the broker acknowledged the record
+     */
+    public void recordAcknowledged(long latency, boolean succeeded) {
+        acks.increment();
+        latencyNanos.add(latency);
+        if (!succeeded) {
+            failures.increment();
+        }
+    }
+
+    /**
+     * Returns whether the current observation window is over.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return true if {@link #evaluate(long)} should be called
+     */
+    public boolean due(long nowNanos) {
+        return nowNanos - windowStartNanos >= intervalNanos;
+    }
+
+    /**
+     * Closes the current observation window and derives new settings from it.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return the window statistics with the decision taken; {@link Stats#changed()} tells whether new settings
+     *         should be applied
+     */
+    public synchronized Stats evaluate(long nowNanos) {
+        long windowNanos = Math.max(1, nowNanos - windowStartNanos);
+        windowStartNanos = nowNanos;
+        long windowRecords = records.sumThenReset();
+        long windowBytes = bytes.sumThenReset();
+        long windowAcks = acks.sumThenReset();
+        long windowLatency = latencyNanos.sumThenReset();
+        long windowFailures = failures.sumThenReset();
+
+        double seconds = windowNanos / 1e9;
+        double recordsPerSecond = windowRecords / seconds;
+        double bytesPerSecond = windowBytes / seconds;
+        double averageRecordBytes = windowRecords == 0 ? 0 : (double) windowBytes / windowRecords;
+        double averageLatencyMs = windowAcks == 0 ? 0 : windowLatency / 1e6 / windowAcks;
+
+        if (windowRecords == 0) {
+            lastWindow = new Stats(batchSize, lingerMs, 0, 0, 0, 0, windowFailures, reconfigurations.sum(), Decision.IDLE);
+            return lastWindow;
+        }
+
+        int targetBatch = align(bounds.clampBatchSize((long) Math.ceil(averageRecordBytes * TARGET_RECORDS_PER_BATCH)));
+        double fillMs = targetBatch * 1000.0 / bytesPerSecond;
+        int targetLinger;
+        Decision reason;
+        if (fillMs > bounds.maxLingerMs()) {
+            targetLinger = bounds.minLingerMs();
+            reason = Decision.SPARSE_TRAFFIC;
+        } else {
+            targetLinger = bounds.clampLingerMs((long) Math.ceil(fillMs));
+            reason = Decision.FILL_TIME;
+        }
+        if (averageLatencyMs > 2.0 * Math.max(1, targetLinger)) {
+            targetLinger = bounds.clampLingerMs(Math.max(1, (long) targetLinger * 2));
+            reason = Decision.BACKPRESSURE;
+        }
+
+        boolean changed = differs(targetBatch, batchSize, BATCH_ALIGNMENT) || differs(targetLinger, lingerMs, 2);
+        if (changed) {
+            batchSize = targetBatch;
+            lingerMs = targetLinger;
+            reconfigurations.increment();
+        } else {
+            reason = Decision.UNCHANGED;
+        }
+        lastWindow = new Stats(batchSize, lingerMs, averageRecordBytes, recordsPerSecond, bytesPerSecond,
+            averageLatencyMs, windowFailures, reconfigurations.sum(), reason);
+        return lastWindow;
+    }
+
+    /**
+     * Returns the current batch size.
+     *
+     * @return the batch size in bytes
+     */
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the current linger time.
+     *
+     * @return the linger time in milliseconds
+     */
+    public int lingerMs() {
+        return lingerMs;
+    }
+
+    /**
+     * Returns the statistics of the last completed window.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        return lastWindow;
+    }
+
+    private int align(int batch) {
+        int aligned = (batch + BATCH_ALIGNMENT - 1) / BATCH_ALIGNMENT * BATCH_ALIGNMENT;
+        return Math.min(aligned, bounds.maxBatchSize());
+    }
+
+    private static boolean differs(int target, int current, int minimumDelta) {
+        int delta = Math.abs(target - current);
+        return delta >= minimumDelta && delta * 100L > (long) Math.max(current, 1) * HYSTERESIS_PERCENT;
+    }
+
+    /**
+     * Why the settings of a window were chosen.
+     */
+    public enum Decision {
+        /** No window evaluated yet; the configured starting values are in use. */
+        INITIAL,
+        /** No records in the window; settings were kept. */
+        IDLE,
+        /** The observed traffic did not move the settings beyond the hysteresis. */
+        UNCHANGED,
+        /** Linger was set to the time needed to fill a batch. */
+        FILL_TIME,
+        /** Traffic was too thin to fill a batch within the maximum linger; linger was minimized. */
+        SPARSE_TRAFFIC,
+        /** Send latency was high compared to linger; linger was raised to send fewer, larger requests. */
+        BACKPRESSURE
+    }
+
+    /**
+     * Settings and traffic of one observation window.
+     *
+     * @param batchSize the batch size in effect after the window
+     * @param lingerMs the linger time in effect after the window
+     * @param averageRecordBytes average serialized record size
+     * @param recordsPerSecond records sent per second
+     * @param bytesPerSecond bytes sent per second
+     * @param averageSendLatencyMs average time from send to acknowledgement
+     * @param failures sends that failed
+     * @param reconfigurations total number of setting changes so far
+     * @param decision why the settings were chosen
+     */
+    public record Stats(int batchSize, int lingerMs, double averageRecordBytes, double recordsPerSecond,
+                        double bytesPerSecond, double averageSendLatencyMs, long failures, long reconfigurations,
+                        Decision decision) {
+
+        /**
+         * Returns whether the window changed the settings.
+         *
+         * @return true if new settings should be applied
+         */
+        public boolean changed() {
+            return decision == Decision.FILL_TIME || decision == Decision.SPARSE_TRAFFIC
+                || decision == Decision.BACKPRESSURE;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.rokkon.pipeline.commons.kafka;
+
+import com.google.protobuf.MessageLite;
+import com.rokkon.pipeline.config.model.AdaptiveBatching;
+import com.rokkon.pipeline.config.model.KafkaTransportConfig;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Kafka producer for one output topic whose {@code batch.size} and {@code linger.ms} follow the traffic.
+ * <p>
+ * Kafka producers read both settings once at construction, so the adaptive mode works by replacement: every send
+ * feeds an {@link AdaptiveBatchController}, and when a window ends with new settings a producer with those settings
+ * is created and swapped in. The previous producer is flushed before the first send goes to its replacement, so
+ * records of a partition keep their order across the swap, and is then closed in the background. The flush holds up
+ * sends for at most one linger period plus the send latency, once per adjustment interval at most.
+ *
+ * @param <K> the record key type
+ * @param <V> the record value type
+ */
+public final class AdaptiveProducer<K, V> implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveProducer.class);
+
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String topic;
+    private final Map<String, Object> baseProperties;
+    private final Function<Map<String, Object>, Producer<K, V>> producerFactory;
+    private final LongSupplier nanoClock;
+    private final AdaptiveBatchController controller;
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Producer<K, V> producer;
+    private boolean closed;
+
+    /**
+     * Creates an adaptive producer for a Kafka output.
+     *
+     * @param config the output's transport configuration; must have {@code adaptiveBatching} set
+     * @param baseProperties producer properties such as bootstrap servers and serializers
+     * @param producerFactory creates a producer from properties, e.g. {@code KafkaProducer::new}
+     */
+    public AdaptiveProducer(KafkaTransportConfig config, Map<String, Object> baseProperties,
+                            Function<Map<String, Object>, Producer<K, V>> producerFactory) {
+        this(config, baseProperties, producerFactory, System::nanoTime);
+    }
+
+    AdaptiveProducer(KafkaTransportConfig config, Map<String, Object> baseProperties,
+                     Function<Map<String, Object>, Producer<K, V>> producerFactory, LongSupplier nanoClock) {
+        if (config.adaptiveBatching() == null) {
+            throw new IllegalArgumentException("Output topic " + config.topic() + " does not enable adaptive batching");
+        }
+        AdaptiveBatching bounds = config.adaptiveBatching();
+        this.topic = config.topic();
+        this.baseProperties = new HashMap<>(baseProperties);
+        this.baseProperties.putAll(config.getAllProducerProperties());
+        this.producerFactory = producerFactory;
+        this.nanoClock = nanoClock;
+        this.controller = new AdaptiveBatchController(bounds, config.batchSize(), config.lingerMs(), nanoClock.getAsLong());
+        this.producer = create();
+    }
+
+    /**
+     * Sends a record, possibly switching to new batch settings first.
+     *
+     * @param record the record
+     * @param callback called when the send completes, may be null
+     * @return the future of the send
+     * @throws IllegalStateException if this producer is closed
+     */
+    public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+        long start = nanoClock.getAsLong();
+        if (controller.due(start)) {
+            adjust(start);
+        }
+        controller.recordSent(size(record.key()) + size(record.value()));
+        swapLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Producer for topic " + topic + " is closed");
+            }
+            return producer.send(record, (metadata, exception) -> {
+                controller.recordAcknowledged(nanoClock.getAsLong() - start, exception == null);
+                if (callback != null) {
+                    callback.onCompletion(metadata, exception);
+                }
+            });
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the statistics and decision of the last evaluated window.
+     *
+     * @return the statistics
+     */
+    public AdaptiveBatchController.Stats stats() {
+        return controller.stats();
+    }
+
+    /**
+     * Returns the producer currently in use.
+     *
+     * @return the producer
+     */
+    Producer<K, V> producer() {
+        return producer;
+    }
+
+    /**
+     * Flushes the current producer.
+     */
+    public void flush() {
+        producer.flush();
+    }
+
+    @Override
+    public void close() {
+        swapLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            producer.close(CLOSE_TIMEOUT);
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void adjust(long now) {
+        AdaptiveBatchController.Stats stats;
+        synchronized (controller) {
+            if (!controller.due(now)) {
+                return;
+            }
+            stats = controller.evaluate(now);
+        }
+        if (!stats.changed()) {
+            return;
+        }
+        LOG.info("Adaptive batching for topic {}: batch.size={} linger.ms={} ({}, {} B/record, {} records/s, {} ms latency)",
+            topic, stats.batchSize(), stats.lingerMs(), stats.decision(), Math.round(stats.averageRecordBytes()),
+            Math.round(stats.recordsPerSecond()), Math.round(stats.averageSendLatencyMs()));
+        Producer<K, V> previous;
+        swapLock.writeLock().lock();
+        try {
+            if (closed) {
+                // A replacement created now would never be closed
+                return;
+            }
+            previous = producer;
+            previous.flush();
+            producer = create();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        Thread.ofVirtual().name("adaptive-producer-close-" + topic).start(() -> previous.close(CLOSE_TIMEOUT));
+    }
+
+    private Producer<K, V> create() {
+        Map<String, Object> properties = new HashMap<>(baseProperties);
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, controller.batchSize());
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, controller.lingerMs());
+        return producerFactory.apply(properties);
+    }
+
+    private static int size(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof byte[] bytes) {
+            return bytes.length;
+        }
+        if (value instanceof MessageLite message) {
+            return message.getSerializedSize();
+        }
+        if (value instanceof ByteBuffer buffer) {
+            return buffer.remaining();
+        }
+        if (value instanceof String string) {
+            // Close enough for batching decisions without encoding the string twice
+            return string.length();
+        }
+        return 0;
+    }
+}
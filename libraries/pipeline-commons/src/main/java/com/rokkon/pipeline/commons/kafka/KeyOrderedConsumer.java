@@ -0,0 +1,507 @@
+package com.rokkon.pipeline.commons.kafka;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import com.rokkon.pipeline.commons.wire.WireFieldExtractor;
+import com.rokkon.pipeline.config.model.KafkaInputDefinition;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Consumes a {@link KafkaInputDefinition} with records of one partition processed in parallel.
+ * <p>
+ * Polled records are queued per ordering key, and each key with queued records is drained by its own virtual
+ * thread, so records sharing a key are processed in offset order while different keys proceed concurrently. At most
+ * {@code maxParallelism} records are processed at any time. The ordering key is
+ * <ul>
+ *   <li>the partition in {@link KafkaInputDefinition.ProcessingOrder#PARTITION} mode, which keeps the classic
+ *       one-record-at-a-time-per-partition behaviour;</li>
+ *   <li>in {@link KafkaInputDefinition.ProcessingOrder#KEY} mode, the value of {@code orderingKeyField} read from the
+ *       serialized {@code PipeStream} with a {@link WireFieldExtractor}, otherwise the record key, and the partition
+ *       for records that have neither.</li>
+ * </ul>
+ * Since records complete out of order, the offset committed for a partition is the lowest offset still in flight,
+ * i.e. everything below it has been processed. A crash therefore redelivers records that completed above that point;
+ * processing must be idempotent, as it already has to be for at-least-once delivery.
+ * <p>
+ * When more than {@value #BUFFERED_RECORDS_PER_SLOT} records per parallelism slot are waiting, the assigned
+ * partitions are paused until half of them are done, so slow processing doesn't pull the whole topic into memory.
+ * <p>
+ * Like the underlying consumer, {@link #subscribe()}, {@link #pollOnce(Duration)} and {@link #close()} must be
+ * called from a single thread; processing never touches the consumer.
+ *
+ * @param <K> the record key type
+ * @param <V> the record value type
+ */
+public final class KeyOrderedConsumer<K, V> implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyOrderedConsumer.class);
+
+    /**
+     * Records that may wait per parallelism slot before the partitions are paused.
+     */
+    public static final int BUFFERED_RECORDS_PER_SLOT = 64;
+
+    private static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final Consumer<K, V> consumer;
+    private final KafkaInputDefinition input;
+    private final KafkaInputDefinition.ProcessingOrder order;
+    private final WireFieldExtractor keyField;
+    private final RecordProcessor<K, V> processor;
+    private final int maxParallelism;
+    private final int maxBuffered;
+    private final Duration drainTimeout;
+    private final Semaphore permits;
+    private final Map<Object, Queue<Pending<K, V>>> lanes = new HashMap<>();
+    private final Map<TopicPartition, PartitionProgress> progress = new ConcurrentHashMap<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private volatile boolean paused;
+
+    /**
+     * Creates a consumer for a step's Kafka input.
+     *
+     * @param consumer the Kafka consumer, with auto commit disabled; owned and closed by this instance
+     * @param input the step's Kafka input definition
+     * @param maxParallelism the pipeline instance's {@code maxParallelism}; the number of processors if null
+     * @param processor processes one record
+     */
+    public KeyOrderedConsumer(Consumer<K, V> consumer, KafkaInputDefinition input, Integer maxParallelism,
+                              RecordProcessor<K, V> processor) {
+        this(consumer, input, maxParallelism, processor, DEFAULT_DRAIN_TIMEOUT);
+    }
+
+    KeyOrderedConsumer(Consumer<K, V> consumer, KafkaInputDefinition input, Integer maxParallelism,
+                       RecordProcessor<K, V> processor, Duration drainTimeout) {
+        int parallelism = maxParallelism != null ? maxParallelism : Runtime.getRuntime().availableProcessors();
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("maxParallelism must be positive.");
+        }
+        this.consumer = consumer;
+        this.input = input;
+        this.order = input.effectiveProcessingOrder();
+        this.keyField = order == KafkaInputDefinition.ProcessingOrder.KEY && input.orderingKeyField() != null
+            ? WireFieldExtractor.forPipeStream(input.orderingKeyField())
+            : null;
+        this.processor = processor;
+        this.maxParallelism = parallelism;
+        this.maxBuffered = parallelism * BUFFERED_RECORDS_PER_SLOT;
+        this.drainTimeout = drainTimeout;
+        this.permits = new Semaphore(parallelism);
+    }
+
+    /**
+     * Subscribes to the input's topics. Records of revoked partitions that are still queued are dropped, and the
+     * offsets are committed once the records being processed are done, so the next owner continues with the dropped
+     * records.
+     */
+    public void subscribe() {
+        consumer.subscribe(input.listenTopics(), rebalanceListener());
+    }
+
+    /**
+     * Polls once, hands the records to the key lanes and commits the offsets completed so far.
+     *
+     * @param timeout the poll timeout
+     * @return the number of records polled
+     */
+    public int pollOnce(Duration timeout) {
+        ConsumerRecords<K, V> records = consumer.poll(timeout);
+        for (ConsumerRecord<K, V> record : records) {
+            dispatch(record);
+        }
+        applyBackpressure();
+        commitCompleted(false);
+        return records.count();
+    }
+
+    /**
+     * Returns current processing statistics.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        int activeKeys;
+        synchronized (lanes) {
+            activeKeys = lanes.size();
+        }
+        return new Stats(buffered.get(), maxParallelism - permits.availablePermits(), activeKeys,
+            processed.sum(), failed.sum(), commits.sum(), paused);
+    }
+
+    /**
+     * Waits for in-flight records, commits their offsets and closes the consumer.
+     */
+    @Override
+    public void close() {
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        for (Map.Entry<TopicPartition, PartitionProgress> entry : progress.entrySet()) {
+            if (!entry.getValue().awaitDrained(deadline)) {
+                LOG.warn("Closing consumer with records of {} still in flight; they will be redelivered", entry.getKey());
+            }
+        }
+        try {
+            commitCompleted(true);
+        } catch (KafkaException e) {
+            LOG.warn("Failed to commit offsets on close of consumer for {}", input.listenTopics(), e);
+        } finally {
+            consumer.close();
+        }
+    }
+
+    ConsumerRebalanceListener rebalanceListener() {
+        return new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                long deadline = System.nanoTime() + drainTimeout.toNanos();
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                for (TopicPartition partition : partitions) {
+                    PartitionProgress tracker = progress.remove(partition);
+                    if (tracker == null) {
+                        continue;
+                    }
+                    release(tracker);
+                    if (!tracker.awaitIdle(deadline)) {
+                        LOG.warn("Partition {} revoked with records still in flight; they will be redelivered", partition);
+                    }
+                    long offset = tracker.takeCommittable();
+                    if (offset >= 0) {
+                        offsets.put(partition, new OffsetAndMetadata(offset));
+                    }
+                }
+                if (!offsets.isEmpty()) {
+                    try {
+                        consumer.commitSync(offsets);
+                        commits.increment();
+                    } catch (KafkaException e) {
+                        LOG.warn("Failed to commit offsets of revoked partitions {}", offsets.keySet(), e);
+                    }
+                }
+            }
+
+            @Override
+            public void onPartitionsLost(Collection<TopicPartition> partitions) {
+                // Another member owns them already; committing would fail and completions no longer matter
+                for (TopicPartition partition : partitions) {
+                    PartitionProgress tracker = progress.remove(partition);
+                    if (tracker != null) {
+                        release(tracker);
+                    }
+                }
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                if (paused) {
+                    consumer.pause(partitions);
+                }
+            }
+        };
+    }
+
+    private void dispatch(ConsumerRecord<K, V> record) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        PartitionProgress tracker = progress.computeIfAbsent(partition, p -> new PartitionProgress(record.offset()));
+        tracker.dispatched(record.offset());
+        buffered.incrementAndGet();
+
+        Object key = orderingKey(record, partition);
+        Pending<K, V> pending = new Pending<>(record, tracker);
+        Queue<Pending<K, V>> lane;
+        synchronized (lanes) {
+            lane = lanes.get(key);
+            if (lane != null) {
+                lane.add(pending);
+                return;
+            }
+            lane = new ArrayDeque<>();
+            lane.add(pending);
+            lanes.put(key, lane);
+        }
+        Queue<Pending<K, V>> started = lane;
+        Thread.ofVirtual().name("kafka-key-lane-" + partition).start(() -> drain(key, started));
+    }
+
+    private void drain(Object key, Queue<Pending<K, V>> lane) {
+        while (true) {
+            Pending<K, V> next;
+            synchronized (lanes) {
+                next = lane.poll();
+                if (next == null) {
+                    lanes.remove(key);
+                    return;
+                }
+            }
+            process(next);
+        }
+    }
+
+    private void process(Pending<K, V> pending) {
+        ConsumerRecord<K, V> record = pending.record();
+        permits.acquireUninterruptibly();
+        if (!pending.tracker().start()) {
+            // Revoked or lost while waiting for a permit; the partition's next owner processes it
+            permits.release();
+            buffered.decrementAndGet();
+            return;
+        }
+        try {
+            processor.process(record);
+            processed.increment();
+        } catch (Exception e) {
+            // Retries and dead-lettering belong to the processor; a record that escapes it must not stall the partition
+            failed.increment();
+            LOG.warn("Failed to process record {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+        } finally {
+            permits.release();
+            buffered.decrementAndGet();
+            pending.tracker().completed(record.offset());
+        }
+    }
+
+    /**
+     * Stops a partition's queued records from being processed. Their offsets stay in flight, so nothing at or above
+     * the first of them is committed.
+     */
+    private void release(PartitionProgress tracker) {
+        tracker.release();
+        int dropped = 0;
+        synchronized (lanes) {
+            for (Queue<Pending<K, V>> lane : lanes.values()) {
+                int queued = lane.size();
+                lane.removeIf(pending -> pending.tracker() == tracker);
+                dropped += queued - lane.size();
+            }
+        }
+        buffered.addAndGet(-dropped);
+    }
+
+    private Object orderingKey(ConsumerRecord<K, V> record, TopicPartition partition) {
+        if (order == KafkaInputDefinition.ProcessingOrder.PARTITION) {
+            return partition;
+        }
+        if (keyField != null) {
+            Optional<String> field = extractField(record.value());
+            if (field.isPresent()) {
+                return field.get();
+            }
+        }
+        Object key = record.key();
+        if (key instanceof byte[] bytes) {
+            // Arrays compare by identity; wrap them so equal keys share a lane
+            return ByteBuffer.wrap(bytes);
+        }
+        return key != null ? key : partition;
+    }
+
+    private Optional<String> extractField(Object value) {
+        if (value instanceof byte[] bytes) {
+            return keyField.extract(bytes);
+        }
+        if (value instanceof ByteBuffer buffer) {
+            return keyField.extract(buffer);
+        }
+        if (value instanceof ByteString bytes) {
+            return keyField.extract(bytes);
+        }
+        if (value instanceof MessageLite message) {
+            // Already deserialized; consuming raw bytes avoids this re-serialization
+            return keyField.extract(message.toByteString());
+        }
+        return Optional.empty();
+    }
+
+    private void applyBackpressure() {
+        int waiting = buffered.get();
+        if (!paused && waiting >= maxBuffered) {
+            consumer.pause(consumer.assignment());
+            paused = true;
+            LOG.debug("Paused {} with {} records buffered", input.listenTopics(), waiting);
+        } else if (paused && waiting <= maxBuffered / 2) {
+            consumer.resume(consumer.paused());
+            paused = false;
+            LOG.debug("Resumed {} with {} records buffered", input.listenTopics(), waiting);
+        }
+    }
+
+    private void commitCompleted(boolean sync) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        progress.forEach((partition, tracker) -> {
+            long offset = tracker.takeCommittable();
+            if (offset >= 0) {
+                offsets.put(partition, new OffsetAndMetadata(offset));
+            }
+        });
+        if (offsets.isEmpty()) {
+            return;
+        }
+        commits.increment();
+        if (sync) {
+            consumer.commitSync(offsets);
+        } else {
+            consumer.commitAsync(offsets, (committed, exception) -> {
+                if (exception != null) {
+                    // A later commit covers these offsets; until then they are redelivered after a restart
+                    LOG.warn("Failed to commit offsets {}", committed, exception);
+                }
+            });
+        }
+    }
+
+    /**
+     * Processes one record. Called on a virtual thread; records with the same ordering key are never processed
+     * concurrently and arrive in offset order.
+     *
+     * @param <K> the record key type
+     * @param <V> the record value type
+     */
+    @FunctionalInterface
+    public interface RecordProcessor<K, V> {
+
+        /**
+         * Processes a record.
+         *
+         * @param record the record
+         * @throws Exception if processing failed; the failure is logged and counted and the record is treated as
+         *         done, so retries belong inside the processor
+         */
+        void process(ConsumerRecord<K, V> record) throws Exception;
+    }
+
+    /**
+     * Processing statistics.
+     *
+     * @param buffered records polled but not yet processed, including those being processed
+     * @param processing records being processed right now
+     * @param activeKeys ordering keys with records waiting or being processed
+     * @param processed records processed successfully
+     * @param failed records whose processing threw
+     * @param commits offset commits issued
+     * @param paused whether fetching is paused because too many records are buffered
+     */
+    public record Stats(int buffered, int processing, int activeKeys, long processed, long failed, long commits,
+                        boolean paused) {
+    }
+
+    private record Pending<K, V>(ConsumerRecord<K, V> record, PartitionProgress tracker) {
+    }
+
+    /**
+     * Tracks the offsets of one partition that are dispatched but not yet processed.
+     */
+    static final class PartitionProgress {
+
+        private final TreeSet<Long> inFlight = new TreeSet<>();
+        private long nextOffset;
+        private long committed;
+        private int running;
+        private boolean released;
+
+        PartitionProgress(long firstOffset) {
+            this.nextOffset = firstOffset;
+            this.committed = firstOffset;
+        }
+
+        synchronized void dispatched(long offset) {
+            inFlight.add(offset);
+            nextOffset = Math.max(nextOffset, offset + 1);
+        }
+
+        /**
+         * Marks a dispatched record as being processed.
+         *
+         * @return false if the partition was revoked or lost and the record must be skipped
+         */
+        synchronized boolean start() {
+            if (released) {
+                return false;
+            }
+            running++;
+            return true;
+        }
+
+        synchronized void completed(long offset) {
+            running--;
+            inFlight.remove(offset);
+            if (running == 0) {
+                notifyAll();
+            }
+        }
+
+        synchronized void release() {
+            released = true;
+        }
+
+        /**
+         * Returns the offset to commit if it advanced since the last call: the lowest offset in flight, or the offset
+         * after the last dispatched record when nothing is in flight.
+         *
+         * @return the offset to commit, or -1 if there is nothing new to commit
+         */
+        synchronized long takeCommittable() {
+            long committable = inFlight.isEmpty() ? nextOffset : inFlight.first();
+            if (committable <= committed) {
+                return -1;
+            }
+            committed = committable;
+            return committable;
+        }
+
+        synchronized boolean awaitDrained(long deadlineNanos) {
+            while (!inFlight.isEmpty()) {
+                if (!await(deadlineNanos)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        synchronized boolean awaitIdle(long deadlineNanos) {
+            while (running > 0) {
+                if (!await(deadlineNanos)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean await(long deadlineNanos) {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
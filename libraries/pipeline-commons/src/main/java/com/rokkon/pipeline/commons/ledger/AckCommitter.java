@@ -0,0 +1,359 @@
+package com.rokkon.pipeline.commons.ledger;
+
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.Timestamps;
+import com.rokkon.connector.coordinator.AckProcessedBatchRequest;
+import com.rokkon.connector.coordinator.AckProcessedBatchResponse;
+import com.rokkon.connector.coordinator.AckProcessedRequest;
+import com.rokkon.connector.coordinator.ConnectorStatus;
+import com.rokkon.connector.coordinator.LedgerEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Writes {@code AckProcessedBatch} and {@code StreamAckProcessed} acks to the ledger in group commits.
+ * <p>
+ * Submitted batches queue up while the previous commit is being written. One committer thread then takes up to
+ * {@link AckCommitterSettings#maxAcksPerCommit()} queued acks, appends them to the {@link LedgerStore} as
+ * {@code SYNC_SUCCESS} and {@code SYNC_FAILED} entries under a single lock, forces them to disk with a single
+ * {@link LedgerStore#sync()}, and only then completes the batches. Under load many connectors' batches share one
+ * fsync; when idle, a batch waits at most {@link AckCommitterSettings#maxCommitDelay()} for company.
+ * <p>
+ * A commit that fails fails all of its batches. {@link LedgerStore#appendAll(List)} writes a commit whole or not at
+ * all, so a connector retrying its batch doesn't duplicate ledger entries. Only if the append succeeds and the
+ * fsync fails may the entries still reach disk, and the retry then writes them a second time.
+ * <p>
+ * The {@code ConnectorStatus} counters are kept here as well and updated once per connector per commit, after the
+ * acks are durable; {@link #applyCounters(ConnectorStatus.Builder)} copies them into a status response.
+ */
+public final class AckCommitter implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AckCommitter.class);
+
+    /**
+     * Event type of the ledger entry written for a successful ack.
+     */
+    public static final String SYNC_SUCCESS = "SYNC_SUCCESS";
+
+    /**
+     * Event type of the ledger entry written for a failed ack.
+     */
+    public static final String SYNC_FAILED = "SYNC_FAILED";
+
+    private final LedgerStore ledger;
+    private final AckCommitterSettings settings;
+    private final LongSupplier clock;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger pendingAcks = new AtomicInteger();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder acknowledged = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final Thread committer;
+    private volatile boolean closed;
+
+    /**
+     * Creates a committer writing to the given ledger from its own thread.
+     *
+     * @param ledger the ledger
+     * @param settings the committer settings
+     */
+    public AckCommitter(LedgerStore ledger, AckCommitterSettings settings) {
+        this(ledger, settings, System::currentTimeMillis, true);
+    }
+
+    /**
+     * Creates a committer; without the committer thread, acks are only written on {@link #commitPending()}.
+     */
+    AckCommitter(LedgerStore ledger, AckCommitterSettings settings, LongSupplier clock, boolean startCommitter) {
+        this.ledger = ledger;
+        this.settings = settings;
+        this.clock = clock;
+        this.committer = startCommitter
+            ? Thread.ofPlatform().name("ledger-ack-committer").daemon().start(this::run)
+            : null;
+    }
+
+    /**
+     * Queues a batch of acks for the next group commit.
+     *
+     * @param request the batch
+     * @return completes once the batch's acks are on disk, or fails with a {@link RejectedExecutionException} if
+     *         too many acks are pending
+     */
+    public CompletableFuture<AckProcessedBatchResponse> submit(AckProcessedBatchRequest request) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Ack committer is closed"));
+        }
+        int size = request.getAcksCount();
+        // A batch larger than the whole limit is still taken when nothing else is pending
+        int pending = pendingAcks.addAndGet(size);
+        if (pending > settings.maxPendingAcks() && pending != size) {
+            pendingAcks.addAndGet(-size);
+            refused.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                "Too many pending acks, retry connector " + request.getConnectorId() + " later"));
+        }
+        Pending queued = new Pending(request, new CompletableFuture<>());
+        queue.add(queued);
+        if (closed && queue.remove(queued)) {
+            pendingAcks.addAndGet(-size);
+            queued.future.completeExceptionally(new IllegalStateException("Ack committer is closed"));
+        }
+        return queued.future;
+    }
+
+    /**
+     * Copies the ack counters of the status's connector into it. {@code items_processed_current_sync} counts every
+     * ack of the status's sync, successful or not, or of the sync acked last if the status names none. Counts are
+     * kept for the connector's most recently acked syncs, so interleaved syncs are counted apart.
+     *
+     * @param status the status being built
+     * @return the same builder
+     */
+    public ConnectorStatus.Builder applyCounters(ConnectorStatus.Builder status) {
+        Counters connector = counters.get(status.getConnectorId());
+        if (connector == null) {
+            return status;
+        }
+        synchronized (connector) {
+            if (status.getCurrentSyncId().isEmpty()) {
+                status.setCurrentSyncId(connector.syncId);
+            }
+            Long current = connector.bySync.get(status.getCurrentSyncId());
+            if (current != null) {
+                status.setItemsProcessedCurrentSync(current);
+            }
+            status.setTotalItemsProcessed(connector.total).setTotalErrors(connector.errors);
+            if (connector.lastError != null) {
+                status.setLastErrorMessage(connector.lastError);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Returns commit counts.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        return new Stats(commits.sum(), acknowledged.sum(), rejected.sum(), refused.sum(), pendingAcks.get());
+    }
+
+    /**
+     * Commits the acks already queued and stops the committer. Batches submitted afterwards fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (committer != null) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            while (!queue.isEmpty()) {
+                commitPending();
+            }
+        }
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pendingAcks.addAndGet(-pending.size());
+            pending.future.completeExceptionally(new IllegalStateException("Ack committer is closed"));
+        }
+    }
+
+    /**
+     * Writes one group commit of the acks queued right now, without waiting for more.
+     *
+     * @return the number of acks committed or rejected
+     */
+    int commitPending() {
+        Pending first = queue.poll();
+        if (first == null) {
+            return 0;
+        }
+        try {
+            return commit(gather(first, 0));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    private void run() {
+        long delayNanos = settings.maxCommitDelay().toNanos();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    commit(gather(first, delayNanos == 0 ? 0 : System.nanoTime() + delayNanos));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("Unexpected error in ack committer", e);
+            }
+        }
+    }
+
+    private List<Pending> gather(Pending first, long deadlineNanos) throws InterruptedException {
+        List<Pending> batch = new ArrayList<>();
+        batch.add(first);
+        int acks = first.size();
+        while (acks < settings.maxAcksPerCommit()) {
+            Pending next = queue.poll();
+            if (next == null && deadlineNanos != 0) {
+                long remaining = deadlineNanos - System.nanoTime();
+                next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            }
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            acks += next.size();
+        }
+        return batch;
+    }
+
+    private int commit(List<Pending> batch) {
+        long now = clock.getAsLong();
+        List<LedgerEntry> entries = new ArrayList<>();
+        Map<String, List<AckProcessedRequest>> byConnector = new HashMap<>();
+        int[] rejectedPerBatch = new int[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            AckProcessedBatchRequest request = batch.get(i).request;
+            for (AckProcessedRequest ack : request.getAcksList()) {
+                if (ack.getSyncId().isEmpty() || ack.getResourceId().isEmpty()) {
+                    rejectedPerBatch[i]++;
+                    continue;
+                }
+                entries.add(toEntry(request.getSourceId(), ack, now));
+                byConnector.computeIfAbsent(request.getConnectorId(), id -> new ArrayList<>()).add(ack);
+            }
+        }
+        int size = 0;
+        for (Pending pending : batch) {
+            size += pending.size();
+        }
+        pendingAcks.addAndGet(-size);
+        try {
+            if (!entries.isEmpty()) {
+                ledger.appendAll(entries);
+                ledger.sync();
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to commit {} acks to the ledger", entries.size(), e);
+            for (Pending pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+            return size;
+        }
+        byConnector.forEach((connectorId, acks) ->
+            counters.computeIfAbsent(connectorId, id -> new Counters()).apply(acks));
+        commits.increment();
+        acknowledged.add(entries.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            rejected.add(rejectedPerBatch[i]);
+            AckProcessedBatchResponse.Builder response = AckProcessedBatchResponse.newBuilder()
+                .setAcknowledged(pending.size() - rejectedPerBatch[i])
+                .setRejected(rejectedPerBatch[i]);
+            if (rejectedPerBatch[i] > 0) {
+                response.setMessage(rejectedPerBatch[i] + " acks without sync_id or resource_id were rejected");
+            }
+            pending.future.complete(response.build());
+        }
+        return size;
+    }
+
+    private static LedgerEntry toEntry(String sourceId, AckProcessedRequest ack, long now) {
+        LedgerEntry.Builder entry = LedgerEntry.newBuilder()
+            .setResourceId(ack.getResourceId())
+            .setSourceId(sourceId)
+            .setEventType(ack.getSuccess() ? SYNC_SUCCESS : SYNC_FAILED)
+            .setTimestamp(Timestamps.fromMillis(now))
+            .setSyncId(ack.getSyncId());
+        Struct.Builder details = Struct.newBuilder();
+        if (!ack.getStreamId().isEmpty()) {
+            details.putFields("stream_id", Value.newBuilder().setStringValue(ack.getStreamId()).build());
+        }
+        if (ack.hasErrorMessage()) {
+            details.putFields("error_message", Value.newBuilder().setStringValue(ack.getErrorMessage()).build());
+        }
+        if (ack.hasErrorDetails()) {
+            details.putFields("error_code", Value.newBuilder().setNumberValue(ack.getErrorDetails().getCode()).build());
+        }
+        if (details.getFieldsCount() > 0) {
+            entry.setEventDetails(details);
+        }
+        return entry.build();
+    }
+
+    /**
+     * Ack commit counts.
+     *
+     * @param commits group commits written
+     * @param acknowledged acks written to the ledger
+     * @param rejected acks rejected for a missing sync or resource ID
+     * @param refused batches refused because too many acks were pending
+     * @param pendingAcks acks waiting for a commit
+     */
+    public record Stats(long commits, long acknowledged, long rejected, long refused, int pendingAcks) {
+    }
+
+    private record Pending(AckProcessedBatchRequest request, CompletableFuture<AckProcessedBatchResponse> future) {
+
+        private int size() {
+            return request.getAcksCount();
+        }
+    }
+
+    private static final class Counters {
+        private static final int RECENT_SYNCS = 16;
+
+        private final Map<String, Long> bySync = new LinkedHashMap<>(RECENT_SYNCS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > RECENT_SYNCS;
+            }
+        };
+        private String syncId = "";
+        private long total;
+        private long errors;
+        private String lastError;
+
+        private synchronized void apply(List<AckProcessedRequest> acks) {
+            for (AckProcessedRequest ack : acks) {
+                syncId = ack.getSyncId();
+                bySync.merge(syncId, 1L, Long::sum);
+                total++;
+                if (!ack.getSuccess()) {
+                    errors++;
+                    if (ack.hasErrorMessage()) {
+                        lastError = ack.getErrorMessage();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.rokkon.pipeline.commons.ledger;
+
+import java.time.Duration;
+
+/**
+ * Settings of an {@link AckCommitter}.
+ *
+ * @param maxAcksPerCommit acks written to the ledger in one group commit
+ * @param maxCommitDelay longest a commit waits for more acks once it has some; zero commits whatever is queued
+ * @param maxPendingAcks acks that may wait for a commit before further batches are refused
+ */
+public record AckCommitterSettings(int maxAcksPerCommit, Duration maxCommitDelay, int maxPendingAcks) {
+
+    /**
+     * Default settings: commits of up to 4096 acks, waiting at most 2 ms for more, and up to 100,000 pending acks.
+     */
+    public static final AckCommitterSettings DEFAULTS = new AckCommitterSettings(4096, Duration.ofMillis(2), 100_000);
+
+    public AckCommitterSettings {
+        if (maxAcksPerCommit < 1) {
+            throw new IllegalArgumentException("maxAcksPerCommit must be positive");
+        }
+        if (maxCommitDelay == null || maxCommitDelay.isNegative()) {
+            throw new IllegalArgumentException("maxCommitDelay must not be negative");
+        }
+        if (maxPendingAcks < maxAcksPerCommit) {
+            throw new IllegalArgumentException("maxPendingAcks must be at least maxAcksPerCommit");
+        }
+    }
+}
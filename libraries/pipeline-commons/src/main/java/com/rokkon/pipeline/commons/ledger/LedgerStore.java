@@ -0,0 +1,1174 @@
+package com.rokkon.pipeline.commons.ledger;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.Timestamps;
+import com.rokkon.connector.coordinator.LedgerEntry;
+import com.rokkon.connector.coordinator.QueryLedgerRequest;
+import com.rokkon.connector.coordinator.QueryLedgerResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded, append-only store behind the connector coordinator's resource ledger, serving {@code QueryLedger} and
+ * {@code GetResourceState} from local disk.
+ * <p>
+ * Entries are grouped into buckets of {@link LedgerStoreSettings#bucketWidth()} by their timestamp and appended to
+ * the bucket's current segment file, {@code <bucketStart>_<segmentId>.ledger}, as length-prefixed, checksummed
+ * {@link LedgerEntry} messages. Every segment has an index: the file position, timestamp and event type of each
+ * entry, and the entries of each resource ID and each source ID. A query skips the buckets outside its time range,
+ * visits only the entries of the requested resource or source, and reads from disk only the entries it returns.
+ * <p>
+ * Only the segments still being appended to keep their index on the heap, at most
+ * {@link LedgerStoreSettings#maxUnsealedSegments()} of them. A segment is sealed when it is full, when more segments
+ * are open for appends than that, and on {@link #close()}: its index is written next to it as
+ * {@code <bucketStart>_<segmentId>.idx}, with the keys sorted so lookups are binary searches. Sealed indexes are
+ * memory-mapped on first use rather than read onto the heap, so heap use doesn't grow with the ledger, and opening
+ * the store reads only their headers. Segments without a valid index, left by a crash, are scanned and indexed
+ * again; a torn record at the end of such a segment, left by a crash during an append, is truncated away.
+ * <p>
+ * Results are ordered by bucket and then by append order. A page token names the position after the last returned
+ * entry, so the next page continues from there without rescanning; entries appended to a bucket the query has
+ * already passed are not seen by its later pages.
+ * <p>
+ * Appends reach the operating system on return but are only forced to disk by {@link #sync()}.
+ */
+public final class LedgerStore implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerStore.class);
+
+    private static final String SUFFIX = ".ledger";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final LedgerStoreSettings settings;
+    private final long bucketMillis;
+    private final LongSupplier clock;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<SegmentKey, Segment> segments = new TreeMap<>();
+    private final Map<Long, Segment> activeByBucket = new HashMap<>();
+    private long nextSegmentId;
+    private long appendSequence;
+    private boolean closed;
+
+    /**
+     * Opens the store in the given directory, creating it if necessary and indexing the segments already there.
+     *
+     * @param directory the directory holding the segment files
+     * @param settings the store settings
+     */
+    public LedgerStore(Path directory, LedgerStoreSettings settings) {
+        this(directory, settings, System::currentTimeMillis);
+    }
+
+    LedgerStore(Path directory, LedgerStoreSettings settings, LongSupplier clock) {
+        this.directory = directory;
+        this.settings = settings;
+        this.bucketMillis = settings.bucketWidth().toMillis();
+        this.clock = clock;
+        try {
+            Files.createDirectories(directory);
+            load();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Failed to open ledger " + directory, e);
+        }
+    }
+
+    /**
+     * Appends an entry. Entries without a timestamp are stamped with the current time.
+     *
+     * @param entry the entry
+     */
+    public void append(LedgerEntry entry) {
+        appendAll(List.of(entry));
+    }
+
+    /**
+     * Appends entries under one lock acquisition, in order. Entries without a timestamp are stamped with the
+     * current time. Together with one {@link #sync()} afterwards this is a group commit of the batch.
+     * <p>
+     * The batch is appended whole or not at all: if an entry can't be written, the entries before it are removed
+     * again before the failure is thrown.
+     *
+     * @param entries the entries
+     */
+    public void appendAll(List<LedgerEntry> entries) {
+        List<LedgerEntry> stored = new ArrayList<>(entries.size());
+        for (LedgerEntry entry : entries) {
+            if (entry.getResourceId().isEmpty()) {
+                throw new IllegalArgumentException("resource_id cannot be empty");
+            }
+            stored.add(entry.hasTimestamp() ? entry
+                : entry.toBuilder().setTimestamp(Timestamps.fromMillis(clock.getAsLong())).build());
+        }
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            Batch batch = new Batch();
+            try {
+                for (LedgerEntry entry : stored) {
+                    write(entry, batch);
+                }
+            } catch (IOException e) {
+                rollback(batch);
+                throw new UncheckedIOException("Failed to append to ledger " + directory, e);
+            }
+            // Segments the batch filled are only sealed once it is complete, so a failure never undoes a seal
+            batch.replaced.forEach(this::sealQuietly);
+            while (activeByBucket.size() > settings.maxUnsealedSegments()) {
+                sealQuietly(leastRecentlyAppended());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a page of entries matching a {@code QueryLedger} request. Empty IDs and unset times don't filter;
+     * {@code since} is inclusive and {@code until} exclusive, at millisecond resolution.
+     *
+     * @param request the query
+     * @return the entries and, if more may match, the token of the next page
+     * @throws IllegalArgumentException if the page token was not issued by this store
+     */
+    public QueryLedgerResponse query(QueryLedgerRequest request) {
+        int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), settings.maxPageSize())
+            : settings.defaultPageSize();
+        long since = request.hasSince() ? Timestamps.toMillis(request.getSince()) : Long.MIN_VALUE;
+        long until = request.hasUntil() ? Timestamps.toMillis(request.getUntil()) : Long.MAX_VALUE;
+        Cursor from = request.getPageToken().isEmpty() ? null : Cursor.decode(request.getPageToken());
+        QueryLedgerResponse.Builder response = QueryLedgerResponse.newBuilder();
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            Map<SegmentKey, Segment> candidates = from == null ? segments : segments.tailMap(from.segment(), true);
+            for (Segment segment : candidates.values()) {
+                if (segment.key.bucketStart() >= until) {
+                    break;
+                }
+                if (segment.count == 0 || segment.maxTimestamp < since || segment.minTimestamp >= until) {
+                    continue;
+                }
+                SegmentIndex index = segment.index();
+                int[] types = eventTypeFilter(index, request.getEventTypesList());
+                if (types != null && types.length == 0) {
+                    continue;
+                }
+                Postings postings = postings(index, request.getResourceId(),
+                    request.getSourceId().isEmpty() ? null : request.getSourceId());
+                int start = from != null && segment.key.equals(from.segment()) ? from.ordinal() : 0;
+                int end = postings == null ? segment.count : postings.size();
+                for (int i = postings == null ? start : postings.lowerBound(start); i < end; i++) {
+                    int ordinal = postings == null ? i : postings.get(i);
+                    long timestamp = index.timestamp(ordinal);
+                    if (timestamp < since || timestamp >= until
+                        || types != null && Arrays.binarySearch(types, index.type(ordinal)) < 0) {
+                        continue;
+                    }
+                    if (response.getEntriesCount() == limit) {
+                        return response.setNextPageToken(new Cursor(segment.key, ordinal).encode()).build();
+                    }
+                    response.addEntries(read(segment, index, ordinal));
+                }
+            }
+            return response.build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read ledger " + directory, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the most recent entry of a resource, as needed by {@code GetResourceState}.
+     * <p>
+     * Buckets are searched from the newest one back, so the cost grows with the age of the resource's last entry:
+     * one index lookup per segment in between.
+     *
+     * @param resourceId the resource ID
+     * @param sourceId the source ID, empty if entries carry none
+     * @return the entry with the latest timestamp, the last appended one on ties
+     */
+    public Optional<LedgerEntry> latest(String resourceId, String sourceId) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            Segment bestSegment = null;
+            SegmentIndex bestIndex = null;
+            int bestOrdinal = -1;
+            long bestTimestamp = Long.MIN_VALUE;
+            // Newest first: every entry of a bucket is newer than all entries of earlier buckets, and within a
+            // bucket later segments and ordinals were appended later, so only a strictly newer timestamp wins
+            for (Segment segment : segments.descendingMap().values()) {
+                if (bestSegment != null && segment.key.bucketStart() < bestSegment.key.bucketStart()) {
+                    break;
+                }
+                if (segment.count == 0) {
+                    continue;
+                }
+                SegmentIndex index = segment.index();
+                Postings postings = postings(index, resourceId, sourceId);
+                for (int i = postings.size() - 1; i >= 0; i--) {
+                    int ordinal = postings.get(i);
+                    long timestamp = index.timestamp(ordinal);
+                    if (bestSegment == null || timestamp > bestTimestamp) {
+                        bestSegment = segment;
+                        bestIndex = index;
+                        bestOrdinal = ordinal;
+                        bestTimestamp = timestamp;
+                    }
+                }
+            }
+            return bestSegment == null ? Optional.empty() : Optional.of(read(bestSegment, bestIndex, bestOrdinal));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read ledger " + directory, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the buckets whose whole time span lies before the cutoff.
+     *
+     * @param cutoff entries older than this may be deleted
+     * @return the number of segment files deleted
+     */
+    public int dropBucketsBefore(Instant cutoff) {
+        long cutoffMillis = cutoff.toEpochMilli();
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            Set<Segment> dropped = new HashSet<>();
+            for (Segment segment : segments.values()) {
+                if (segment.key.bucketStart() > cutoffMillis - bucketMillis) {
+                    break;
+                }
+                dropped.add(segment);
+            }
+            for (Segment segment : dropped) {
+                segments.remove(segment.key);
+                activeByBucket.remove(segment.key.bucketStart(), segment);
+                delete(segment);
+            }
+            return dropped.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forces the appended entries to disk.
+     */
+    public void sync() {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            for (Segment segment : segments.values()) {
+                if (segment.dirty) {
+                    segment.dirty = false;
+                    segment.channel.force(false);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync ledger " + directory, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the store's size.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            long entries = 0;
+            long bytes = 0;
+            int sealed = 0;
+            for (Segment segment : segments.values()) {
+                entries += segment.count;
+                bytes += segment.size;
+                if (segment.memory == null) {
+                    sealed++;
+                }
+            }
+            return new Stats(segments.size(), sealed, entries, bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            List.copyOf(activeByBucket.values()).forEach(this::sealQuietly);
+            for (Segment segment : segments.values()) {
+                segment.closeChannel();
+            }
+            segments.clear();
+            activeByBucket.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() throws IOException {
+        NavigableMap<SegmentKey, Path> found = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                String fileName = path.getFileName().toString();
+                if (fileName.endsWith(TEMP_SUFFIX)) {
+                    // An index whose write was interrupted; its segment is indexed again below
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                if (fileName.endsWith(INDEX_SUFFIX)) {
+                    continue;
+                }
+                SegmentKey key = SegmentKey.parse(fileName);
+                if (key == null) {
+                    LOG.warn("Ignoring unexpected file {} in ledger directory", path);
+                } else {
+                    found.put(key, path);
+                }
+            }
+        }
+        int recovered = 0;
+        for (Map.Entry<SegmentKey, Path> file : found.entrySet()) {
+            SegmentKey key = file.getKey();
+            Segment segment = new Segment(key, file.getValue(), directory.resolve(key.indexFileName()));
+            segments.put(key, segment);
+            nextSegmentId = Math.max(nextSegmentId, key.id() + 1);
+            if (MappedIndex.readHeader(segment)) {
+                continue;
+            }
+            segment.channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment.memory = new MemoryIndex();
+            recover(segment);
+            recovered++;
+            // Files are visited in segment order, so only the last unsealed one of a bucket stays appendable
+            Segment previous = activeByBucket.put(key.bucketStart(), segment);
+            if (previous != null) {
+                seal(previous);
+            }
+            segment.lastAppend = ++appendSequence;
+        }
+        while (activeByBucket.size() > settings.maxUnsealedSegments()) {
+            seal(leastRecentlyAppended());
+        }
+        if (!found.isEmpty()) {
+            LOG.info("Opened ledger {} with {} segments, {} of them indexed again", directory, segments.size(),
+                recovered);
+        }
+    }
+
+    private void recover(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= fileSize) {
+            header.clear();
+            readFully(segment.channel, header, position);
+            int length = header.getInt(0);
+            if (length < 0 || position + HEADER_BYTES + length > fileSize) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            readFully(segment.channel, ByteBuffer.wrap(payload), position + HEADER_BYTES);
+            if (checksum(payload) != header.getInt(4)) {
+                break;
+            }
+            LedgerEntry entry;
+            try {
+                entry = LedgerEntry.parseFrom(payload);
+            } catch (InvalidProtocolBufferException e) {
+                break;
+            }
+            index(segment, entry, position + HEADER_BYTES, length);
+            position += HEADER_BYTES + length;
+        }
+        if (position < fileSize) {
+            LOG.warn("Truncating {} unreadable bytes at the end of ledger segment {}", fileSize - position,
+                segment.path);
+            segment.channel.truncate(position);
+            segment.channel.force(true);
+        }
+        segment.size = position;
+    }
+
+    private void write(LedgerEntry entry, Batch batch) throws IOException {
+        byte[] payload = entry.toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length)
+            .putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        long timestamp = Timestamps.toMillis(entry.getTimestamp());
+        Segment segment = activeSegment(Math.floorDiv(timestamp, bucketMillis) * bucketMillis, batch);
+        batch.marks.computeIfAbsent(segment, Mark::of);
+        long position = segment.size;
+        while (record.hasRemaining()) {
+            segment.channel.write(record, position + record.position());
+        }
+        segment.size += record.limit();
+        segment.dirty = true;
+        segment.lastAppend = ++appendSequence;
+        index(segment, entry, position + HEADER_BYTES, payload.length);
+    }
+
+    private Segment activeSegment(long bucketStart, Batch batch) throws IOException {
+        Segment segment = activeByBucket.get(bucketStart);
+        if (segment == null || segment.size >= settings.segmentBytes()) {
+            Segment full = segment;
+            SegmentKey key = new SegmentKey(bucketStart, nextSegmentId++);
+            segment = new Segment(key, directory.resolve(key.fileName()), directory.resolve(key.indexFileName()));
+            segment.channel = FileChannel.open(segment.path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment.memory = new MemoryIndex();
+            segment.lastAppend = ++appendSequence;
+            segments.put(key, segment);
+            activeByBucket.put(bucketStart, segment);
+            batch.created.add(segment);
+            if (full != null) {
+                batch.replaced.add(full);
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * Removes what a failed batch appended: the segments it created, and its entries in the segments it appended to.
+     */
+    private void rollback(Batch batch) {
+        for (Segment segment : batch.created) {
+            segments.remove(segment.key);
+            activeByBucket.remove(segment.key.bucketStart(), segment);
+            delete(segment);
+        }
+        for (Segment segment : batch.replaced) {
+            if (!batch.created.contains(segment)) {
+                activeByBucket.put(segment.key.bucketStart(), segment);
+            }
+        }
+        batch.marks.forEach((segment, mark) -> {
+            if (batch.created.contains(segment)) {
+                return;
+            }
+            segment.size = mark.size();
+            segment.count = mark.count();
+            segment.minTimestamp = mark.minTimestamp();
+            segment.maxTimestamp = mark.maxTimestamp();
+            segment.memory.truncate(mark.count());
+            try {
+                segment.channel.truncate(mark.size());
+            } catch (IOException e) {
+                LOG.warn("Failed to truncate ledger segment {} after a failed append", segment.path, e);
+            }
+        });
+    }
+
+    private Segment leastRecentlyAppended() {
+        Segment oldest = null;
+        for (Segment segment : activeByBucket.values()) {
+            if (oldest == null || segment.lastAppend < oldest.lastAppend) {
+                oldest = segment;
+            }
+        }
+        return oldest;
+    }
+
+    private void sealQuietly(Segment segment) {
+        try {
+            seal(segment);
+        } catch (IOException e) {
+            // The segment keeps its index on the heap and is scanned and indexed again on the next open
+            LOG.warn("Failed to seal ledger segment {}", segment.path, e);
+        }
+    }
+
+    /**
+     * Forces a segment to disk and writes its index next to it; the segment takes no further appends.
+     */
+    private void seal(Segment segment) throws IOException {
+        activeByBucket.remove(segment.key.bucketStart(), segment);
+        segment.channel.force(false);
+        segment.dirty = false;
+        MappedIndex.write(segment, segment.memory);
+        segment.memory = null;
+        // Reopened read-only when the segment is next read
+        segment.closeChannel();
+    }
+
+    private static void index(Segment segment, LedgerEntry entry, long offset, int length) {
+        long timestamp = Timestamps.toMillis(entry.getTimestamp());
+        segment.memory.add(offset, length, timestamp, entry.getEventType(), entry.getResourceId(),
+            entry.getSourceId());
+        segment.count++;
+        segment.minTimestamp = Math.min(segment.minTimestamp, timestamp);
+        segment.maxTimestamp = Math.max(segment.maxTimestamp, timestamp);
+    }
+
+    private static int[] eventTypeFilter(SegmentIndex index, List<String> eventTypes) {
+        if (eventTypes.isEmpty()) {
+            return null;
+        }
+        return eventTypes.stream().mapToInt(index::typeId).filter(id -> id >= 0).sorted().distinct().toArray();
+    }
+
+    /**
+     * Returns the entries of a resource and source; an empty resource ID and a null source ID don't filter, while
+     * an empty source ID matches the entries without one.
+     */
+    private static Postings postings(SegmentIndex index, String resourceId, String sourceId) {
+        Postings byResource = resourceId.isEmpty() ? null : index.byResource(resourceId);
+        Postings bySource = sourceId == null ? null : index.bySource(sourceId);
+        if (byResource == null || bySource == null) {
+            return byResource != null ? byResource : bySource;
+        }
+        return IntList.intersect(byResource, bySource);
+    }
+
+    private static LedgerEntry read(Segment segment, SegmentIndex index, int ordinal) throws IOException {
+        byte[] payload = new byte[index.length(ordinal)];
+        readFully(segment.channel(), ByteBuffer.wrap(payload), index.offset(ordinal));
+        return LedgerEntry.parseFrom(payload);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) < 0) {
+                throw new IOException("Unexpected end of ledger segment at " + position);
+            }
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void delete(Segment segment) {
+        segment.closeChannel();
+        try {
+            Files.deleteIfExists(segment.indexPath);
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete ledger segment {}", segment.path, e);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Ledger " + directory + " is closed");
+        }
+    }
+
+    /**
+     * Size of a ledger store.
+     *
+     * @param segments segment files
+     * @param sealedSegments segment files with a written index that take no further appends
+     * @param entries entries across all segments
+     * @param bytes bytes across all segments
+     */
+    public record Stats(int segments, int sealedSegments, long entries, long bytes) {
+    }
+
+    /**
+     * What one {@link #appendAll(List)} changed, to undo it if the batch fails.
+     */
+    private static final class Batch {
+        private final Map<Segment, Mark> marks = new HashMap<>();
+        private final List<Segment> created = new ArrayList<>();
+        private final List<Segment> replaced = new ArrayList<>();
+    }
+
+    /**
+     * A segment's extent before a batch appended to it.
+     */
+    private record Mark(long size, int count, long minTimestamp, long maxTimestamp) {
+
+        private static Mark of(Segment segment) {
+            return new Mark(segment.size, segment.count, segment.minTimestamp, segment.maxTimestamp);
+        }
+    }
+
+    private record SegmentKey(long bucketStart, long id) implements Comparable<SegmentKey> {
+
+        private static SegmentKey parse(String fileName) {
+            int separator = fileName.lastIndexOf('_');
+            if (separator < 1 || !fileName.endsWith(SUFFIX)) {
+                return null;
+            }
+            try {
+                return new SegmentKey(Long.parseLong(fileName.substring(0, separator)),
+                    Long.parseLong(fileName.substring(separator + 1, fileName.length() - SUFFIX.length())));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private String fileName() {
+            return bucketStart + "_" + id + SUFFIX;
+        }
+
+        private String indexFileName() {
+            return bucketStart + "_" + id + INDEX_SUFFIX;
+        }
+
+        @Override
+        public int compareTo(SegmentKey other) {
+            int byBucket = Long.compare(bucketStart, other.bucketStart);
+            return byBucket != 0 ? byBucket : Long.compare(id, other.id);
+        }
+    }
+
+    private record Cursor(SegmentKey segment, int ordinal) {
+
+        private String encode() {
+            String token = segment.bucketStart() + ":" + segment.id() + ":" + ordinal;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Cursor decode(String token) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+                if (parts.length == 3) {
+                    int ordinal = Integer.parseInt(parts[2]);
+                    if (ordinal >= 0) {
+                        return new Cursor(new SegmentKey(Long.parseLong(parts[0]), Long.parseLong(parts[1])), ordinal);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                // Malformed Base64 or number, reported below
+            }
+            throw new IllegalArgumentException("Invalid page token: " + token);
+        }
+    }
+
+    private static final class Segment {
+        private final SegmentKey key;
+        private final Path path;
+        private final Path indexPath;
+        private FileChannel channel;
+        private MemoryIndex memory;
+        private MappedIndex mapped;
+        private int count;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+        private long size;
+        private long lastAppend;
+        private volatile boolean dirty;
+
+        private Segment(SegmentKey key, Path path, Path indexPath) {
+            this.key = key;
+            this.path = path;
+            this.indexPath = indexPath;
+        }
+
+        /**
+         * Returns the heap index of an appendable segment, or maps the index file of a sealed one.
+         */
+        private synchronized SegmentIndex index() throws IOException {
+            if (memory != null) {
+                return memory;
+            }
+            if (mapped == null) {
+                mapped = MappedIndex.map(indexPath);
+            }
+            return mapped;
+        }
+
+        private synchronized FileChannel channel() throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            return channel;
+        }
+
+        private synchronized void closeChannel() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close ledger segment {}", path, e);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Entry positions, timestamps and event types of one segment, and its entries per resource and source.
+     */
+    private interface SegmentIndex {
+
+        long offset(int ordinal);
+
+        int length(int ordinal);
+
+        long timestamp(int ordinal);
+
+        int type(int ordinal);
+
+        /**
+         * Returns the segment-local ID of an event type, or -1 if no entry of the segment has it.
+         */
+        int typeId(String eventType);
+
+        Postings byResource(String resourceId);
+
+        Postings bySource(String sourceId);
+    }
+
+    /**
+     * Index of an appendable segment, on the heap.
+     */
+    private static final class MemoryIndex implements SegmentIndex {
+        private final Map<String, Integer> typeIds = new HashMap<>();
+        private final List<String> typeNames = new ArrayList<>();
+        private final Map<String, IntList> byResource = new HashMap<>();
+        private final Map<String, IntList> bySource = new HashMap<>();
+        private long[] offsets = new long[64];
+        private int[] lengths = new int[64];
+        private long[] timestamps = new long[64];
+        private int[] types = new int[64];
+        private int count;
+
+        private void add(long offset, int length, long timestamp, String eventType, String resourceId,
+                         String sourceId) {
+            if (count == offsets.length) {
+                int capacity = count * 2;
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                types = Arrays.copyOf(types, capacity);
+            }
+            offsets[count] = offset;
+            lengths[count] = length;
+            timestamps[count] = timestamp;
+            types[count] = typeIds.computeIfAbsent(eventType, type -> {
+                typeNames.add(type);
+                return typeNames.size() - 1;
+            });
+            byResource.computeIfAbsent(resourceId, id -> new IntList()).add(count);
+            // Entries without a source are listed under the empty ID, which latest() looks up
+            bySource.computeIfAbsent(sourceId, id -> new IntList()).add(count);
+            count++;
+        }
+
+        /**
+         * Drops the entries from the given ordinal on.
+         */
+        private void truncate(int count) {
+            this.count = count;
+            byResource.values().removeIf(ordinals -> ordinals.truncate(count));
+            bySource.values().removeIf(ordinals -> ordinals.truncate(count));
+        }
+
+        @Override
+        public long offset(int ordinal) {
+            return offsets[ordinal];
+        }
+
+        @Override
+        public int length(int ordinal) {
+            return lengths[ordinal];
+        }
+
+        @Override
+        public long timestamp(int ordinal) {
+            return timestamps[ordinal];
+        }
+
+        @Override
+        public int type(int ordinal) {
+            return types[ordinal];
+        }
+
+        @Override
+        public int typeId(String eventType) {
+            return typeIds.getOrDefault(eventType, -1);
+        }
+
+        @Override
+        public Postings byResource(String resourceId) {
+            return byResource.getOrDefault(resourceId, IntList.EMPTY);
+        }
+
+        @Override
+        public Postings bySource(String sourceId) {
+            return bySource.getOrDefault(sourceId, IntList.EMPTY);
+        }
+    }
+
+    /**
+     * Index of a sealed segment, memory-mapped from its index file.
+     * <p>
+     * Layout: a header ({@link #MAGIC}, version, segment size, entry count, minimum and maximum timestamp, and the
+     * positions of the sections), the event type names, one fixed-size record per entry (offset, length, timestamp,
+     * type), then the resource and the source postings. A postings section lists its keys sorted by their UTF-8
+     * bytes, each with the position and length of its key bytes and of its ascending entry ordinals.
+     */
+    private static final class MappedIndex implements SegmentIndex {
+        private static final int MAGIC = 0x4C494458;
+        private static final int VERSION = 1;
+        private static final int FILE_HEADER_BYTES = 4 + 4 + 8 + 4 + 8 + 8 + 4 * 4;
+        private static final int ENTRY_BYTES = 8 + 4 + 8 + 4;
+        private static final int KEY_BYTES = 4 * 4;
+
+        private final MappedByteBuffer buffer;
+        private final String[] typeNames;
+        private final int entriesPosition;
+        private final int resourcesPosition;
+        private final int sourcesPosition;
+
+        private MappedIndex(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            int typesPosition = buffer.getInt(36);
+            this.entriesPosition = buffer.getInt(40);
+            this.resourcesPosition = buffer.getInt(44);
+            this.sourcesPosition = buffer.getInt(48);
+            this.typeNames = new String[buffer.getInt(typesPosition)];
+            int position = typesPosition + 4;
+            for (int i = 0; i < typeNames.length; i++) {
+                byte[] name = new byte[buffer.getInt(position)];
+                buffer.get(position + 4, name);
+                typeNames[i] = new String(name, StandardCharsets.UTF_8);
+                position += 4 + name.length;
+            }
+        }
+
+        private static MappedIndex map(Path indexPath) throws IOException {
+            try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+                // The mapping stays valid after the channel is closed
+                return new MappedIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        /**
+         * Reads the header of a segment's index file into the segment, if the index exists and matches the
+         * segment file.
+         *
+         * @return true if the segment is sealed
+         */
+        private static boolean readHeader(Segment segment) throws IOException {
+            if (!Files.exists(segment.indexPath)) {
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+            try (FileChannel channel = FileChannel.open(segment.indexPath, StandardOpenOption.READ)) {
+                while (header.hasRemaining() && channel.read(header) >= 0) {
+                    // Read until the header is complete or the file ends
+                }
+            }
+            long dataSize = header.getLong(8);
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                || dataSize != Files.size(segment.path)) {
+                LOG.warn("Ignoring invalid index of ledger segment {}", segment.path);
+                Files.deleteIfExists(segment.indexPath);
+                return false;
+            }
+            segment.size = dataSize;
+            segment.count = header.getInt(16);
+            segment.minTimestamp = header.getLong(20);
+            segment.maxTimestamp = header.getLong(28);
+            return true;
+        }
+
+        private static void write(Segment segment, MemoryIndex index) throws IOException {
+            List<String> typeNames = index.typeNames;
+            int typesBytes = 4;
+            for (String name : typeNames) {
+                typesBytes += 4 + name.getBytes(StandardCharsets.UTF_8).length;
+            }
+            List<Map.Entry<byte[], IntList>> resources = sorted(index.byResource);
+            List<Map.Entry<byte[], IntList>> sources = sorted(index.bySource);
+            long typesPosition = FILE_HEADER_BYTES;
+            long entriesPosition = typesPosition + typesBytes;
+            long resourcesPosition = entriesPosition + (long) index.count * ENTRY_BYTES;
+            long sourcesPosition = resourcesPosition + postingsBytes(resources);
+            long total = sourcesPosition + postingsBytes(sources);
+            if (total > Integer.MAX_VALUE) {
+                throw new IOException("Index of ledger segment " + segment.path + " exceeds 2 GiB");
+            }
+
+            ByteBuffer out = ByteBuffer.allocate((int) total);
+            out.putInt(MAGIC).putInt(VERSION).putLong(segment.size).putInt(index.count)
+                .putLong(segment.minTimestamp).putLong(segment.maxTimestamp)
+                .putInt((int) typesPosition).putInt((int) entriesPosition).putInt((int) resourcesPosition)
+                .putInt((int) sourcesPosition);
+            out.putInt(typeNames.size());
+            for (String name : typeNames) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.putInt(bytes.length).put(bytes);
+            }
+            for (int i = 0; i < index.count; i++) {
+                out.putLong(index.offsets[i]).putInt(index.lengths[i]).putLong(index.timestamps[i])
+                    .putInt(index.types[i]);
+            }
+            putPostings(out, resources);
+            putPostings(out, sources);
+            out.flip();
+
+            // Written under a temporary name and moved into place, so a present index is always complete
+            Path temp = segment.indexPath.resolveSibling(segment.indexPath.getFileName() + TEMP_SUFFIX);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, segment.indexPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, segment.indexPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        private static List<Map.Entry<byte[], IntList>> sorted(Map<String, IntList> postings) {
+            List<Map.Entry<byte[], IntList>> entries = new ArrayList<>(postings.size());
+            for (Map.Entry<String, IntList> entry : postings.entrySet()) {
+                entries.add(Map.entry(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue()));
+            }
+            entries.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+            return entries;
+        }
+
+        private static long postingsBytes(List<Map.Entry<byte[], IntList>> postings) {
+            long bytes = 4;
+            for (Map.Entry<byte[], IntList> entry : postings) {
+                bytes += KEY_BYTES + entry.getKey().length + 4L * entry.getValue().size;
+            }
+            return bytes;
+        }
+
+        private static void putPostings(ByteBuffer out, List<Map.Entry<byte[], IntList>> postings) {
+            int keysPosition = out.position() + 4 + postings.size() * KEY_BYTES;
+            int keyBytes = 0;
+            for (Map.Entry<byte[], IntList> entry : postings) {
+                keyBytes += entry.getKey().length;
+            }
+            int keyPosition = keysPosition;
+            int ordinalPosition = keysPosition + keyBytes;
+            out.putInt(postings.size());
+            for (Map.Entry<byte[], IntList> entry : postings) {
+                out.putInt(keyPosition).putInt(entry.getKey().length).putInt(ordinalPosition)
+                    .putInt(entry.getValue().size);
+                keyPosition += entry.getKey().length;
+                ordinalPosition += 4 * entry.getValue().size;
+            }
+            for (Map.Entry<byte[], IntList> entry : postings) {
+                out.put(entry.getKey());
+            }
+            for (Map.Entry<byte[], IntList> entry : postings) {
+                IntList ordinals = entry.getValue();
+                for (int i = 0; i < ordinals.size; i++) {
+                    out.putInt(ordinals.values[i]);
+                }
+            }
+        }
+
+        @Override
+        public long offset(int ordinal) {
+            return buffer.getLong(entriesPosition + ordinal * ENTRY_BYTES);
+        }
+
+        @Override
+        public int length(int ordinal) {
+            return buffer.getInt(entriesPosition + ordinal * ENTRY_BYTES + 8);
+        }
+
+        @Override
+        public long timestamp(int ordinal) {
+            return buffer.getLong(entriesPosition + ordinal * ENTRY_BYTES + 12);
+        }
+
+        @Override
+        public int type(int ordinal) {
+            return buffer.getInt(entriesPosition + ordinal * ENTRY_BYTES + 20);
+        }
+
+        @Override
+        public int typeId(String eventType) {
+            return Arrays.asList(typeNames).indexOf(eventType);
+        }
+
+        @Override
+        public Postings byResource(String resourceId) {
+            return find(resourcesPosition, resourceId);
+        }
+
+        @Override
+        public Postings bySource(String sourceId) {
+            return find(sourcesPosition, sourceId);
+        }
+
+        private Postings find(int sectionPosition, String key) {
+            byte[] target = key.getBytes(StandardCharsets.UTF_8);
+            int low = 0;
+            int high = buffer.getInt(sectionPosition) - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int record = sectionPosition + 4 + middle * KEY_BYTES;
+                int comparison = compare(buffer.getInt(record), buffer.getInt(record + 4), target);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return new MappedPostings(buffer, buffer.getInt(record + 8), buffer.getInt(record + 12));
+                }
+            }
+            return IntList.EMPTY;
+        }
+
+        private int compare(int position, int length, byte[] target) {
+            int common = Math.min(length, target.length);
+            for (int i = 0; i < common; i++) {
+                int comparison = Byte.compareUnsigned(buffer.get(position + i), target[i]);
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+            return Integer.compare(length, target.length);
+        }
+    }
+
+    /**
+     * Ascending entry ordinals within a segment.
+     */
+    private interface Postings {
+
+        int size();
+
+        int get(int index);
+
+        /**
+         * Returns the index of the first value not below the given one.
+         */
+        default int lowerBound(int value) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (get(middle) < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    private record MappedPostings(MappedByteBuffer buffer, int position, int size) implements Postings {
+
+        @Override
+        public int get(int index) {
+            return buffer.getInt(position + 4 * index);
+        }
+    }
+
+    private static final class IntList implements Postings {
+        private static final IntList EMPTY = new IntList(new int[0]);
+
+        private int[] values;
+        private int size;
+
+        private IntList() {
+            this(new int[4]);
+        }
+
+        private IntList(int[] values) {
+            this.values = values;
+        }
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Drops the trailing values not below the limit.
+         *
+         * @return true if no values remain
+         */
+        private boolean truncate(int limit) {
+            while (size > 0 && values[size - 1] >= limit) {
+                size--;
+            }
+            return size == 0;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int get(int index) {
+            return values[index];
+        }
+
+        private static IntList intersect(Postings first, Postings second) {
+            IntList result = new IntList(new int[Math.max(1, Math.min(first.size(), second.size()))]);
+            int i = 0;
+            int j = 0;
+            while (i < first.size() && j < second.size()) {
+                int a = first.get(i);
+                int b = second.get(j);
+                if (a < b) {
+                    i++;
+                } else if (a > b) {
+                    j++;
+                } else {
+                    result.add(a);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.rokkon.pipeline.commons.ledger;
+
+import java.time.Duration;
+
+/**
+ * Settings of a {@link LedgerStore}.
+ *
+ * @param bucketWidth span of entry timestamps sharing a segment; time range queries skip whole buckets
+ * @param segmentBytes size at which a new segment file is started within a bucket
+ * @param defaultPageSize entries returned when a query sets no limit
+ * @param maxPageSize most entries returned by one query, whatever its limit
+ * @param maxUnsealedSegments segments open for appends, whose index is kept on the heap; the least recently
+ *                            appended one is sealed beyond this
+ */
+public record LedgerStoreSettings(Duration bucketWidth, long segmentBytes, int defaultPageSize, int maxPageSize,
+                                  int maxUnsealedSegments) {
+
+    /**
+     * Default settings: hourly buckets in files of up to 64 MiB, pages of 100 entries and at most 1000, and up to
+     * 16 segments open for appends.
+     */
+    public static final LedgerStoreSettings DEFAULTS =
+        new LedgerStoreSettings(Duration.ofHours(1), 64L * 1024 * 1024, 100, 1000, 16);
+
+    public LedgerStoreSettings {
+        if (bucketWidth == null || bucketWidth.toMillis() < 1) {
+            throw new IllegalArgumentException("bucketWidth must be at least one millisecond");
+        }
+        if (segmentBytes < 1) {
+            throw new IllegalArgumentException("segmentBytes must be positive");
+        }
+        if (defaultPageSize < 1 || maxPageSize < defaultPageSize) {
+            throw new IllegalArgumentException("defaultPageSize must be positive and not exceed maxPageSize");
+        }
+        if (maxUnsealedSegments < 1) {
+            throw new IllegalArgumentException("maxUnsealedSegments must be positive");
+        }
+    }
+
+    /**
+     * Settings with up to 16 segments open for appends.
+     */
+    public LedgerStoreSettings(Duration bucketWidth, long segmentBytes, int defaultPageSize, int maxPageSize) {
+        this(bucketWidth, segmentBytes, defaultPageSize, maxPageSize, 16);
+    }
+}
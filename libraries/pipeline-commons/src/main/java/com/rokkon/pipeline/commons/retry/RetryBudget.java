@@ -0,0 +1,49 @@
+package com.rokkon.pipeline.commons.retry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the retries of one step.
+ * <p>
+ * Every first attempt reported through {@link #recordAttempt()} adds {@code ratio} tokens and the bucket refills by
+ * {@code minPerSecond} tokens per second on its own; each retry takes one token. A step whose module fails every
+ * call can therefore add at most {@code ratio} retries per document on top of a small constant rate, instead of
+ * multiplying its load by {@code maxRetries}.
+ */
+final class RetryBudget {
+
+    private final double ratio;
+    private final double minPerSecond;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    RetryBudget(double ratio, double minPerSecond, int capacity, long nowNanos) {
+        this.ratio = ratio;
+        this.minPerSecond = minPerSecond;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    synchronized void recordAttempt() {
+        tokens = Math.min(capacity, tokens + ratio);
+    }
+
+    synchronized boolean tryAcquire(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + minPerSecond * elapsed / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = nowNanos;
+        }
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    synchronized double available() {
+        return tokens;
+    }
+}
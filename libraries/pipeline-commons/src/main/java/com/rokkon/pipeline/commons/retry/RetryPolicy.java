@@ -0,0 +1,93 @@
+package com.rokkon.pipeline.commons.retry;
+
+import com.rokkon.pipeline.config.model.PipelineInstance;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Retry settings of one pipeline step.
+ * <p>
+ * The backoff before retry {@code n} (1-based) is {@code backoffMs * multiplier^(n-1)}, capped at
+ * {@code maxBackoffMs}. {@link #delayMs(int, RandomGenerator)} applies "equal jitter" on top: the delay is drawn
+ * uniformly from the upper half of the backoff, so documents that failed together don't come back together, while
+ * no retry comes sooner than half the configured backoff.
+ *
+ * @param maxRetries retries after the first attempt; 0 disables retrying
+ * @param backoffMs backoff before the first retry
+ * @param maxBackoffMs upper bound of the backoff
+ * @param multiplier growth of the backoff per retry
+ */
+public record RetryPolicy(int maxRetries, long backoffMs, long maxBackoffMs, double multiplier) {
+
+    public RetryPolicy {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative.");
+        }
+        if (backoffMs < 0 || maxBackoffMs < backoffMs) {
+            throw new IllegalArgumentException("backoffMs must not be negative and not exceed maxBackoffMs.");
+        }
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException("multiplier must be at least 1.");
+        }
+    }
+
+    /**
+     * Returns the retry policy of a step.
+     *
+     * @param step the step configuration
+     * @return the policy
+     */
+    public static RetryPolicy forStep(PipelineStepConfig step) {
+        return forStep(step, null);
+    }
+
+    /**
+     * Returns the retry policy of a step as overridden by a pipeline instance.
+     *
+     * @param step the step configuration
+     * @param override the instance's override of the step, may be null
+     * @return the policy
+     */
+    public static RetryPolicy forStep(PipelineStepConfig step, PipelineInstance.StepConfigOverride override) {
+        int maxRetries = override != null && override.maxRetries() != null ? override.maxRetries() : step.maxRetries();
+        // Step configs accept multipliers below 1 and a cap below the base; neither makes sense for a backoff
+        long backoffMs = step.retryBackoffMs();
+        return new RetryPolicy(Math.max(0, maxRetries), backoffMs, Math.max(backoffMs, step.maxRetryBackoffMs()),
+            Math.max(1.0, step.retryBackoffMultiplier()));
+    }
+
+    /**
+     * Returns whether another retry is allowed.
+     *
+     * @param retry the 1-based number of the retry
+     * @return true if the retry is within {@link #maxRetries()}
+     */
+    public boolean allows(int retry) {
+        return retry >= 1 && retry <= maxRetries;
+    }
+
+    /**
+     * Returns the backoff before a retry, without jitter.
+     *
+     * @param retry the 1-based number of the retry
+     * @return the backoff in milliseconds
+     */
+    public long backoffMs(int retry) {
+        double backoff = backoffMs * Math.pow(multiplier, Math.max(0, retry - 1));
+        return (long) Math.min(maxBackoffMs, backoff);
+    }
+
+    /**
+     * Returns the jittered delay before a retry, between half and all of {@link #backoffMs(int)}.
+     *
+     * @param retry the 1-based number of the retry
+     * @param random the random source
+     * @return the delay in milliseconds
+     */
+    public long delayMs(int retry, RandomGenerator random) {
+        long backoff = backoffMs(retry);
+        long half = backoff / 2;
+        return half + random.nextLong(backoff - half + 1);
+    }
+}
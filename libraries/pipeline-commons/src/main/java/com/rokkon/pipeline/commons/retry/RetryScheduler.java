@@ -0,0 +1,401 @@
+package com.rokkon.pipeline.commons.retry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.random.RandomGenerator;
+
+/**
+ * Schedules retries of failed step invocations on a hashed timer wheel.
+ * <p>
+ * The wheel has {@link RetrySchedulerSettings#wheelSize()} slots of one {@link RetrySchedulerSettings#tick()} each.
+ * Scheduling a retry is a queue append; once per tick a single thread moves new retries into the slot of their
+ * deadline and fires the due ones of the current slot, so the cost doesn't grow with the number of waiting retries
+ * the way a priority queue's does. Retries fire at most one tick late and never early.
+ * <p>
+ * Three mechanisms keep a failing module from being flooded by its own retries:
+ * <ul>
+ *   <li>delays follow the step's {@link RetryPolicy} with jitter, spreading documents that failed together;</li>
+ *   <li>every step has a {@link RetryBudget}; a retry beyond it is rejected with {@link Outcome#BUDGET_EXHAUSTED}
+ *       and should go wherever exhausted retries go, e.g. a dead-letter topic;</li>
+ *   <li>payloads beyond {@link RetrySchedulerSettings#maxHeapBytes()} are spilled to disk, so a backlog of retries
+ *       doesn't exhaust the heap.</li>
+ * </ul>
+ * Pending retries live only in this process; {@link #close()} drops them, logging how many, and deletes the spill
+ * files. They are not recovered.
+ */
+public final class RetryScheduler implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RetryScheduler.class);
+
+    private final RetrySchedulerSettings settings;
+    private final Consumer<RetryTask> handler;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final LongSupplier nanoClock;
+    private final RandomGenerator random;
+    private final long tickNanos;
+    private final long startNanos;
+    private final List<Entry>[] wheel;
+    private final int mask;
+    private final Queue<Entry> incoming = new ConcurrentLinkedQueue<>();
+    private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+    private final RetrySpillStore spillStore;
+    private final ScheduledExecutorService ticker;
+    private final AtomicLong heapBytes = new AtomicLong();
+    private final LongAdder pending = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder retriesExhausted = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private long tick;
+    private volatile boolean closed;
+
+    /**
+     * Creates a scheduler handing due retries to the handler on virtual threads.
+     *
+     * @param settings the scheduler settings
+     * @param handler runs a due retry
+     */
+    public RetryScheduler(RetrySchedulerSettings settings, Consumer<RetryTask> handler) {
+        this(settings, handler, null, System::nanoTime, null, true);
+    }
+
+    /**
+     * Creates a scheduler; a null executor means virtual threads, a null random source means
+     * {@link ThreadLocalRandom}, and without the ticker the wheel only moves on {@link #advance(long)}.
+     */
+    @SuppressWarnings("unchecked")
+    RetryScheduler(RetrySchedulerSettings settings, Consumer<RetryTask> handler, Executor executor,
+                   LongSupplier nanoClock, RandomGenerator random, boolean startTicker) {
+        this.settings = settings;
+        this.handler = handler;
+        this.ownedExecutor = executor == null ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        this.executor = executor == null ? ownedExecutor : executor;
+        this.nanoClock = nanoClock;
+        this.random = random;
+        this.tickNanos = settings.tick().toNanos();
+        this.startNanos = nanoClock.getAsLong();
+        this.wheel = new List[settings.wheelSize()];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = settings.wheelSize() - 1;
+        this.spillStore = settings.spillDirectory() == null
+            ? null
+            : new RetrySpillStore(settings.spillDirectory(), settings.spillSegmentBytes());
+        if (startTicker) {
+            this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "retry-scheduler-tick");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ticker.scheduleAtFixedRate(this::tick, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+        } else {
+            this.ticker = null;
+        }
+    }
+
+    /**
+     * Reports a first attempt of a step, which earns the step {@link RetrySchedulerSettings#budgetRatio()} retries.
+     *
+     * @param stepName the step
+     */
+    public void recordAttempt(String stepName) {
+        budget(stepName).recordAttempt();
+    }
+
+    /**
+     * Schedules a retry if the policy and the step's budget allow it.
+     *
+     * @param policy the step's retry policy
+     * @param stepName the step
+     * @param retry the 1-based number of this retry
+     * @param payload what to hand back to the handler, typically the serialized {@code PipeStream}
+     * @return whether the retry was scheduled, and why not
+     */
+    public Outcome schedule(RetryPolicy policy, String stepName, int retry, byte[] payload) {
+        // Held until the retry is queued, so close() can't drop it unseen between the check and the enqueue
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Retry scheduler is closed");
+            }
+            if (!policy.allows(retry)) {
+                retriesExhausted.increment();
+                return Outcome.RETRIES_EXHAUSTED;
+            }
+            long now = nanoClock.getAsLong();
+            if (!budget(stepName).tryAcquire(now)) {
+                budgetExhausted.increment();
+                return Outcome.BUDGET_EXHAUSTED;
+            }
+            long delayMs = policy.delayMs(retry, random != null ? random : ThreadLocalRandom.current());
+            long delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMs);
+            long deadlineTick = (now - startNanos + delayNanos + tickNanos - 1) / tickNanos;
+            Entry entry = new Entry(stepName, retry, deadlineTick);
+            if (!spill(entry, payload)) {
+                heapBytes.addAndGet(payload.length);
+                entry.payload = payload;
+            }
+            pending.increment();
+            scheduled.increment();
+            incoming.add(entry);
+            return Outcome.SCHEDULED;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the retries a step may currently schedule.
+     *
+     * @param stepName the step
+     * @return the whole number of retries left in the step's budget
+     */
+    public long availableBudget(String stepName) {
+        return (long) budget(stepName).available();
+    }
+
+    /**
+     * Returns scheduler statistics.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        return new Stats(pending.sum(), spilled.sum(), heapBytes.get(),
+            spillStore == null ? 0 : spillStore.spilledBytes(), scheduled.sum(), fired.sum(),
+            retriesExhausted.sum(), budgetExhausted.sum(), lost.sum());
+    }
+
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        synchronized (wheel) {
+            transferIncoming();
+            long dropped = 0;
+            for (List<Entry> slot : wheel) {
+                for (Entry entry : slot) {
+                    drop(entry);
+                }
+                dropped += slot.size();
+                slot.clear();
+            }
+            if (dropped > 0) {
+                LOG.warn("Dropping {} pending retries on close", dropped);
+            }
+        }
+        if (spillStore != null) {
+            spillStore.close();
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Fires every retry due by the given time.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return the number of retries fired
+     */
+    int advance(long nowNanos) {
+        synchronized (wheel) {
+            long target = (nowNanos - startNanos) / tickNanos;
+            int count = 0;
+            if (target - tick >= wheel.length) {
+                // Fell a full turn behind, e.g. after a long pause: one pass over all slots covers every tick
+                transferIncoming();
+                for (List<Entry> slot : wheel) {
+                    count += fireDue(slot, target);
+                }
+                tick = target + 1;
+                return count;
+            }
+            while (tick <= target) {
+                transferIncoming();
+                count += fireDue(wheel[(int) (tick & mask)], tick);
+                tick++;
+            }
+            return count;
+        }
+    }
+
+    private void tick() {
+        try {
+            advance(nanoClock.getAsLong());
+        } catch (RuntimeException e) {
+            LOG.error("Retry scheduler tick failed", e);
+        }
+    }
+
+    private void transferIncoming() {
+        Entry entry;
+        while ((entry = incoming.poll()) != null) {
+            wheel[(int) (Math.max(entry.deadlineTick, tick) & mask)].add(entry);
+        }
+    }
+
+    private int fireDue(List<Entry> slot, long dueTick) {
+        int kept = 0;
+        int count = 0;
+        for (int i = 0; i < slot.size(); i++) {
+            Entry entry = slot.get(i);
+            if (entry.deadlineTick <= dueTick) {
+                fire(entry);
+                count++;
+            } else {
+                slot.set(kept++, entry);
+            }
+        }
+        slot.subList(kept, slot.size()).clear();
+        return count;
+    }
+
+    private void fire(Entry entry) {
+        pending.decrement();
+        if (entry.spilled != null) {
+            spilled.decrement();
+        } else {
+            heapBytes.addAndGet(-entry.payload.length);
+        }
+        // Reading a spilled payload is disk I/O; it must not hold up the tick, which owns the wheel lock
+        executor.execute(() -> {
+            byte[] payload;
+            if (entry.spilled != null) {
+                try {
+                    payload = spillStore.read(entry.spilled);
+                } catch (IOException e) {
+                    lost.increment();
+                    LOG.error("Failed to read spilled retry {} of step {}", entry.retry, entry.stepName, e);
+                    return;
+                }
+            } else {
+                payload = entry.payload;
+            }
+            fired.increment();
+            RetryTask task = new RetryTask(entry.stepName, entry.retry, payload);
+            try {
+                handler.accept(task);
+            } catch (RuntimeException e) {
+                LOG.warn("Retry {} of step {} failed", task.retry(), task.stepName(), e);
+            }
+        });
+    }
+
+    private void drop(Entry entry) {
+        pending.decrement();
+        if (entry.spilled != null) {
+            spilled.decrement();
+            spillStore.discard(entry.spilled);
+        } else {
+            heapBytes.addAndGet(-entry.payload.length);
+        }
+    }
+
+    private boolean spill(Entry entry, byte[] payload) {
+        if (spillStore == null || heapBytes.get() + payload.length <= settings.maxHeapBytes()) {
+            return false;
+        }
+        try {
+            entry.spilled = spillStore.write(payload);
+            spilled.increment();
+            return true;
+        } catch (IOException e) {
+            // Keeping the retry on the heap beats losing it
+            LOG.warn("Failed to spill retry {} of step {}; keeping it on the heap", entry.retry, entry.stepName, e);
+            return false;
+        }
+    }
+
+    private RetryBudget budget(String stepName) {
+        return budgets.computeIfAbsent(stepName, step -> new RetryBudget(settings.budgetRatio(),
+            settings.minRetriesPerSecond(), settings.maxRetryBurst(), nanoClock.getAsLong()));
+    }
+
+    /**
+     * Result of {@link #schedule(RetryPolicy, String, int, byte[])}.
+     */
+    public enum Outcome {
+        /** The retry will fire after its backoff. */
+        SCHEDULED,
+        /** The step's {@link RetryPolicy#maxRetries()} is used up. */
+        RETRIES_EXHAUSTED,
+        /** The step is retrying more than its budget allows. */
+        BUDGET_EXHAUSTED
+    }
+
+    /**
+     * A retry that became due.
+     *
+     * @param stepName the step to retry
+     * @param retry the 1-based number of this retry
+     * @param payload the payload given when scheduling
+     */
+    public record RetryTask(String stepName, int retry, byte[] payload) {
+    }
+
+    /**
+     * Scheduler statistics.
+     *
+     * @param pending retries waiting for their deadline
+     * @param spilled pending retries whose payload is on disk
+     * @param heapBytes payload bytes of pending retries on the heap
+     * @param spilledBytes payload bytes of pending retries on disk
+     * @param scheduled retries scheduled so far
+     * @param fired retries handed to the handler so far
+     * @param retriesExhausted retries rejected because the step's maximum was reached
+     * @param budgetExhausted retries rejected because the step's budget was used up
+     * @param lost retries whose spilled payload could not be read back
+     */
+    public record Stats(long pending, long spilled, long heapBytes, long spilledBytes, long scheduled, long fired,
+                        long retriesExhausted, long budgetExhausted, long lost) {
+    }
+
+    private static final class Entry {
+        private final String stepName;
+        private final int retry;
+        private final long deadlineTick;
+        private byte[] payload;
+        private RetrySpillStore.SpillRef spilled;
+
+        private Entry(String stepName, int retry, long deadlineTick) {
+            this.stepName = stepName;
+            this.retry = retry;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
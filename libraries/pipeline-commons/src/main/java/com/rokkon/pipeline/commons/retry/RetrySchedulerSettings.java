@@ -0,0 +1,51 @@
+package com.rokkon.pipeline.commons.retry;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of a {@link RetryScheduler}.
+ *
+ * @param tick resolution of the timer wheel; retries fire up to one tick late
+ * @param wheelSize number of wheel slots, a power of two; delays longer than {@code tick * wheelSize} take more
+ *                  than one turn of the wheel
+ * @param maxHeapBytes payload bytes kept on the heap; payloads scheduled beyond this are spilled to disk
+ * @param spillDirectory directory spill files are created in, or null to keep everything on the heap
+ * @param spillSegmentBytes size at which a new spill file is started; a file is deleted once all its retries fired
+ * @param budgetRatio retries each step may schedule per first attempt it reports
+ * @param minRetriesPerSecond retries each step may schedule per second regardless of reported attempts
+ * @param maxRetryBurst retries a step may schedule at once when its budget is full
+ */
+public record RetrySchedulerSettings(Duration tick, int wheelSize, long maxHeapBytes, Path spillDirectory,
+                                     long spillSegmentBytes, double budgetRatio, double minRetriesPerSecond,
+                                     int maxRetryBurst) {
+
+    /**
+     * Default settings: 100 ms ticks on 512 slots, 64 MiB of payloads on the heap before spilling to the temporary
+     * directory in 64 MiB files, and per step 20% retries plus 10 per second in bursts of up to 1000.
+     */
+    public static final RetrySchedulerSettings DEFAULTS = new RetrySchedulerSettings(Duration.ofMillis(100), 512,
+        64L * 1024 * 1024, Path.of(System.getProperty("java.io.tmpdir"), "pipeline-retries"), 64L * 1024 * 1024,
+        0.2, 10, 1000);
+
+    public RetrySchedulerSettings {
+        if (tick == null || tick.isNegative() || tick.isZero()) {
+            throw new IllegalArgumentException("tick must be positive");
+        }
+        if (wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize must be a power of two");
+        }
+        if (maxHeapBytes < 0) {
+            throw new IllegalArgumentException("maxHeapBytes must not be negative");
+        }
+        if (spillSegmentBytes < 1) {
+            throw new IllegalArgumentException("spillSegmentBytes must be positive");
+        }
+        if (budgetRatio < 0 || minRetriesPerSecond < 0) {
+            throw new IllegalArgumentException("budgetRatio and minRetriesPerSecond must not be negative");
+        }
+        if (maxRetryBurst < 1) {
+            throw new IllegalArgumentException("maxRetryBurst must be positive");
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.rokkon.pipeline.commons.retry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only files holding retry payloads that don't fit on the heap.
+ * <p>
+ * Payloads are appended to the current segment file until it reaches the segment size. Each segment counts its
+ * unread payloads and is deleted once the last one has been read back, so disk usage follows the retries still
+ * pending. The files only live as long as the scheduler: they are created in a fresh directory and removed on close.
+ */
+final class RetrySpillStore implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RetrySpillStore.class);
+
+    private final Path parent;
+    private final long segmentBytes;
+    private final Map<Integer, Segment> segments = new HashMap<>();
+    private Path directory;
+    private Segment current;
+    private int nextSegmentId;
+    private long spilledBytes;
+    private boolean closed;
+
+    RetrySpillStore(Path parent, long segmentBytes) {
+        this.parent = parent;
+        this.segmentBytes = segmentBytes;
+    }
+
+    synchronized SpillRef write(byte[] payload) throws IOException {
+        if (closed) {
+            throw new IOException("Retry spill store is closed");
+        }
+        if (current == null || current.size >= segmentBytes) {
+            roll();
+        }
+        long offset = current.size;
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        while (buffer.hasRemaining()) {
+            current.channel.write(buffer, offset + buffer.position());
+        }
+        current.size += payload.length;
+        current.live++;
+        spilledBytes += payload.length;
+        return new SpillRef(current.id, offset, payload.length);
+    }
+
+    /**
+     * Reads a payload back and releases its space, also if the read fails.
+     */
+    synchronized byte[] read(SpillRef ref) throws IOException {
+        Segment segment = segments.get(ref.segment());
+        if (segment == null) {
+            throw new IOException("Spill segment " + ref.segment() + " no longer exists");
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(ref.length());
+            while (buffer.hasRemaining()) {
+                if (segment.channel.read(buffer, ref.offset() + buffer.position()) < 0) {
+                    throw new IOException("Spill segment " + segment.path + " is truncated");
+                }
+            }
+            return buffer.array();
+        } finally {
+            release(segment, ref.length());
+        }
+    }
+
+    /**
+     * Releases a payload without reading it.
+     */
+    synchronized void discard(SpillRef ref) {
+        Segment segment = segments.get(ref.segment());
+        if (segment != null) {
+            release(segment, ref.length());
+        }
+    }
+
+    synchronized long spilledBytes() {
+        return spilledBytes;
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Segment segment : segments.values()) {
+            delete(segment);
+        }
+        segments.clear();
+        current = null;
+        if (directory != null) {
+            try {
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                LOG.warn("Failed to delete retry spill directory {}", directory, e);
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        if (directory == null) {
+            Files.createDirectories(parent);
+            directory = Files.createTempDirectory(parent, "retries-");
+        }
+        if (current != null && current.live == 0) {
+            delete(current);
+            segments.remove(current.id);
+        }
+        int id = nextSegmentId++;
+        Path path = directory.resolve("segment-" + id + ".spill");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        current = new Segment(id, path, channel);
+        segments.put(id, current);
+    }
+
+    private void release(Segment segment, int length) {
+        segment.live--;
+        spilledBytes -= length;
+        // The current segment is kept for further appends even when empty
+        if (segment.live == 0 && segment != current) {
+            delete(segment);
+            segments.remove(segment.id);
+        }
+    }
+
+    private static void delete(Segment segment) {
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete retry spill file {}", segment.path, e);
+        }
+    }
+
+    /**
+     * Location of a spilled payload.
+     */
+    record SpillRef(int segment, long offset, int length) {
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private int live;
+
+        private Segment(int id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+}
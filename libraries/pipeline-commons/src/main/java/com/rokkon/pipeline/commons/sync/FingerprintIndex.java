@@ -0,0 +1,703 @@
+package com.rokkon.pipeline.commons.sync;
+
+import com.rokkon.pipeline.commons.bloom.BloomFilter;
+import com.rokkon.search.model.ActionType;
+import com.rokkon.search.model.PipeDoc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Per-source index of {@link ResourceFingerprint}s that turns a connector's crawl into the changes since the last
+ * sync, so a repeat sync only sends what changed through the pipeline.
+ * <p>
+ * The index is a single file of fingerprints sorted by resource ID. Only a Bloom filter over the IDs and every
+ * {@value #SPARSE_INTERVAL}th ID with its file offset are kept in memory; a lookup the filter lets through reads one
+ * block of at most that many records. During a sync, see {@link #beginSync(boolean)}, crawled documents are
+ * compared against the index and classified as {@link ActionType#CREATE}, {@link ActionType#UPDATE} or
+ * {@link ActionType#NO_OP}. An unchanged resource only sets a bit. New and changed fingerprints are buffered in
+ * memory, up to the configured number; a full buffer is sorted and spilled to a run file next to the index, with its
+ * own Bloom filter and sparse keys, so a first sync of a large source doesn't hold all of it in memory.
+ * {@link SyncSession#finish(Consumer)} merges the runs, the buffer and the old file into a new file, which replaces
+ * the old one atomically. A full sync also reports every indexed resource the crawl did not see as deleted; an
+ * incremental sync only visits part of the source and never deletes.
+ * <p>
+ * One sync runs at a time. Sessions may be used from several crawler threads.
+ */
+public final class FingerprintIndex implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FingerprintIndex.class);
+
+    static final int SPARSE_INTERVAL = 64;
+
+    /**
+     * Changes a sync buffers in memory before spilling them to a run file, unless configured otherwise.
+     */
+    public static final int DEFAULT_MAX_BUFFERED_CHANGES = 100_000;
+
+    private static final int MAGIC = 0x46504958;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final Path file;
+    private final int maxBufferedChanges;
+    private FileChannel channel;
+    private int count;
+    private BloomFilter bloom;
+    private String[] sparseKeys = new String[0];
+    private long[] sparseOffsets = new long[0];
+    private SyncSession session;
+    private long bloomRejections;
+    private long diskLookups;
+
+    /**
+     * Opens the index stored in the given file; a missing file is an empty index.
+     *
+     * @param file the index file
+     */
+    public FingerprintIndex(Path file) {
+        this(file, DEFAULT_MAX_BUFFERED_CHANGES);
+    }
+
+    /**
+     * Opens the index stored in the given file; a missing file is an empty index.
+     *
+     * @param file the index file
+     * @param maxBufferedChanges new and changed fingerprints a sync holds in memory before spilling them to disk
+     */
+    public FingerprintIndex(Path file, int maxBufferedChanges) {
+        if (maxBufferedChanges < 1) {
+            throw new IllegalArgumentException("maxBufferedChanges must be positive");
+        }
+        this.file = file;
+        this.maxBufferedChanges = maxBufferedChanges;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open fingerprint index " + file, e);
+        }
+    }
+
+    /**
+     * Starts a sync.
+     *
+     * @param fullSync true if the crawl visits every resource of the source, as for {@code TriggerSyncRequest}
+     *                 with {@code full_sync}; only then are unseen resources deleted
+     * @return the session
+     * @throws IllegalStateException if another sync is running
+     */
+    public synchronized SyncSession beginSync(boolean fullSync) {
+        if (session != null) {
+            throw new IllegalStateException("A sync of " + file + " is already running");
+        }
+        session = new SyncSession(fullSync);
+        return session;
+    }
+
+    /**
+     * Returns the indexed fingerprint of a resource.
+     *
+     * @param resourceId the resource ID
+     * @return the fingerprint as of the last finished sync, or null if not indexed
+     */
+    public synchronized ResourceFingerprint get(String resourceId) {
+        try {
+            Located located = lookup(resourceId);
+            return located == null ? null : located.fingerprint();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read fingerprint index " + file, e);
+        }
+    }
+
+    /**
+     * Returns the index size and how lookups were answered.
+     *
+     * @return the current statistics
+     */
+    public synchronized Stats stats() {
+        return new Stats(count, bloom.bitCount() / 8, bloomRejections, diskLookups);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (session != null) {
+            session.discardRuns();
+            session = null;
+        }
+        closeChannel();
+    }
+
+    private void load() throws IOException {
+        closeChannel();
+        count = 0;
+        sparseKeys = new String[0];
+        sparseOffsets = new long[0];
+        // Left behind by a sync that never finished
+        String runPrefix = file.getFileName() + ".run";
+        try (DirectoryStream<Path> runs = Files.newDirectoryStream(file.toAbsolutePath().getParent(),
+            path -> path.getFileName().toString().startsWith(runPrefix))) {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+        if (!Files.exists(file)) {
+            bloom = new BloomFilter(0, FALSE_POSITIVE_RATE);
+            return;
+        }
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        DataInputStream input = reader(channel, 0);
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            throw new IOException("Not a fingerprint index: " + file);
+        }
+        count = input.readInt();
+        bloom = new BloomFilter(count, FALSE_POSITIVE_RATE);
+        List<String> keys = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        long offset = HEADER_BYTES;
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            byte[] record = readRecord(input);
+            String resourceId = decode(record).resourceId();
+            bloom.put(BloomFilter.hash(resourceId));
+            if (ordinal % SPARSE_INTERVAL == 0) {
+                keys.add(resourceId);
+                offsets.add(offset);
+            }
+            offset += 4 + record.length;
+        }
+        sparseKeys = keys.toArray(String[]::new);
+        sparseOffsets = offsets.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private Located lookup(String resourceId) throws IOException {
+        if (count == 0) {
+            return null;
+        }
+        if (!bloom.mightContain(BloomFilter.hash(resourceId))) {
+            bloomRejections++;
+            return null;
+        }
+        diskLookups++;
+        return scan(channel, sparseKeys, sparseOffsets, count, resourceId);
+    }
+
+    /**
+     * Finds a resource in a sorted file of fingerprints by reading the one block its sparse keys point to.
+     */
+    private static Located scan(FileChannel channel, String[] sparseKeys, long[] sparseOffsets, int count,
+                                String resourceId) throws IOException {
+        int block = Arrays.binarySearch(sparseKeys, resourceId);
+        if (block < 0) {
+            block = -block - 2;
+            if (block < 0) {
+                return null;
+            }
+        }
+        DataInputStream input = reader(channel, sparseOffsets[block]);
+        int end = Math.min(count, (block + 1) * SPARSE_INTERVAL);
+        for (int ordinal = block * SPARSE_INTERVAL; ordinal < end; ordinal++) {
+            ResourceFingerprint fingerprint = decode(readRecord(input));
+            int comparison = fingerprint.resourceId().compareTo(resourceId);
+            if (comparison == 0) {
+                return new Located(fingerprint, ordinal);
+            }
+            if (comparison > 0) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private SyncSummary merge(SyncSession sync, Consumer<String> deleted) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        BloomFilter merged = new BloomFilter(count + sync.spilled + sync.changes.size(), FALSE_POSITIVE_RATE);
+        List<String> keys = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        int written = 0;
+        int deletions = 0;
+        long offset = HEADER_BYTES;
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(0);
+            DataInputStream input = count == 0 ? null : reader(channel, HEADER_BYTES);
+            SortedChanges changes = new SortedChanges(sync);
+            ResourceFingerprint change = changes.next();
+            int ordinal = 0;
+            while (ordinal < count || change != null) {
+                ResourceFingerprint old = ordinal < count ? decode(readRecord(input)) : null;
+                while (change != null && (old == null || change.resourceId().compareTo(old.resourceId()) < 0)) {
+                    offset += write(output, change, written++, merged, keys, offsets, offset);
+                    change = changes.next();
+                }
+                if (old == null) {
+                    break;
+                }
+                if (change != null && change.resourceId().equals(old.resourceId())) {
+                    offset += write(output, change, written++, merged, keys, offsets, offset);
+                    change = changes.next();
+                } else if (sync.fullSync && !sync.seen.get(ordinal)) {
+                    deleted.accept(old.resourceId());
+                    deletions++;
+                } else {
+                    offset += write(output, old, written++, merged, keys, offsets, offset);
+                }
+                ordinal++;
+            }
+        }
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.allocate(4).putInt(0, written), 8);
+            out.force(true);
+        }
+        closeChannel();
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        count = written;
+        bloom = merged;
+        sparseKeys = keys.toArray(String[]::new);
+        sparseOffsets = offsets.stream().mapToLong(Long::longValue).toArray();
+        return new SyncSummary(sync.created, sync.updated, sync.unchanged, deletions);
+    }
+
+    private static int write(DataOutputStream output, ResourceFingerprint fingerprint, int ordinal, BloomFilter bloom,
+                             List<String> keys, List<Long> offsets, long offset) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        DataOutputStream fields = new DataOutputStream(record);
+        fields.writeUTF(fingerprint.resourceId());
+        fields.writeLong(fingerprint.contentHashHigh());
+        fields.writeLong(fingerprint.contentHashLow());
+        fields.writeUTF(fingerprint.revisionId() != null ? fingerprint.revisionId() : "");
+        fields.writeLong(fingerprint.lastModifiedMillis() != null ? fingerprint.lastModifiedMillis() : NO_TIMESTAMP);
+        output.writeInt(record.size());
+        record.writeTo(output);
+        bloom.put(BloomFilter.hash(fingerprint.resourceId()));
+        if (ordinal % SPARSE_INTERVAL == 0) {
+            keys.add(fingerprint.resourceId());
+            offsets.add(offset);
+        }
+        return 4 + record.size();
+    }
+
+    private static ResourceFingerprint decode(byte[] record) throws IOException {
+        DataInputStream fields = new DataInputStream(new ByteArrayInputStream(record));
+        String resourceId = fields.readUTF();
+        long high = fields.readLong();
+        long low = fields.readLong();
+        String revisionId = fields.readUTF();
+        long lastModified = fields.readLong();
+        return new ResourceFingerprint(resourceId, high, low, revisionId,
+            lastModified == NO_TIMESTAMP ? null : lastModified);
+    }
+
+    private static byte[] readRecord(DataInputStream input) throws IOException {
+        byte[] record = new byte[input.readInt()];
+        input.readFully(record);
+        return record;
+    }
+
+    private static DataInputStream reader(FileChannel channel, long offset) throws IOException {
+        channel.position(offset);
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 8192));
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close fingerprint index {}", file, e);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * A running sync of the index's source.
+     */
+    public final class SyncSession {
+
+        private final boolean fullSync;
+        private final BitSet seen = new BitSet();
+        private final Map<String, ResourceFingerprint> changes = new TreeMap<>();
+        private final List<ChangeRun> runs = new ArrayList<>();
+        private long spilled;
+        private int created;
+        private int updated;
+        private int unchanged;
+
+        private SyncSession(boolean fullSync) {
+            this.fullSync = fullSync;
+        }
+
+        /**
+         * Classifies a crawled document.
+         *
+         * @param doc the document as the connector would send it
+         * @return {@link ActionType#CREATE} for a new resource, {@link ActionType#UPDATE} for changed content,
+         *         {@link ActionType#NO_OP} if the document need not be sent
+         */
+        public ActionType observe(PipeDoc doc) {
+            return observe(ResourceFingerprint.of(doc));
+        }
+
+        /**
+         * Classifies a crawled resource by its fingerprint.
+         *
+         * @param fingerprint the resource's fingerprint
+         * @return the action to send the resource with, {@link ActionType#NO_OP} if none
+         */
+        public ActionType observe(ResourceFingerprint fingerprint) {
+            synchronized (FingerprintIndex.this) {
+                ensureActive();
+                ResourceFingerprint pending = pending(fingerprint.resourceId());
+                if (pending != null) {
+                    // Changed earlier in this sync
+                    if (pending.sameContent(fingerprint)) {
+                        return ActionType.NO_OP;
+                    }
+                    buffer(fingerprint);
+                    updated++;
+                    return ActionType.UPDATE;
+                }
+                Located indexed = find(fingerprint.resourceId());
+                if (indexed == null) {
+                    buffer(fingerprint);
+                    created++;
+                    return ActionType.CREATE;
+                }
+                // Set if the resource was already found unchanged in this sync, and counted then
+                boolean counted = seen.get(indexed.ordinal());
+                seen.set(indexed.ordinal());
+                if (indexed.fingerprint().sameContent(fingerprint)) {
+                    if (!indexed.fingerprint().equals(fingerprint)) {
+                        // New version markers for the same content
+                        buffer(fingerprint);
+                    }
+                    if (!counted) {
+                        unchanged++;
+                    }
+                    return ActionType.NO_OP;
+                }
+                buffer(fingerprint);
+                if (counted) {
+                    unchanged--;
+                }
+                updated++;
+                return ActionType.UPDATE;
+            }
+        }
+
+        /**
+         * Checks the source's version markers before fetching a resource's content. A resource whose revision ID
+         * matches the index, or, if the source has no revision ID, whose last modification time does, is counted as
+         * unchanged and kept on a full sync, and need not be fetched or observed.
+         *
+         * @param resourceId the resource ID
+         * @param revisionId the source's revision ID, or null if it has none
+         * @param lastModifiedMillis the source's last modification time, or null
+         * @return true if the resource is known to be unchanged
+         */
+        public boolean isUnchanged(String resourceId, String revisionId, Long lastModifiedMillis) {
+            synchronized (FingerprintIndex.this) {
+                ensureActive();
+                if (pending(resourceId) != null) {
+                    return false;
+                }
+                Located indexed = find(resourceId);
+                if (indexed == null) {
+                    return false;
+                }
+                ResourceFingerprint fingerprint = indexed.fingerprint();
+                // Modification times can repeat across revisions, so the time only counts if the source has no revision
+                boolean same = revisionId != null && !revisionId.isEmpty()
+                    ? revisionId.equals(fingerprint.revisionId())
+                    : lastModifiedMillis != null && lastModifiedMillis.equals(fingerprint.lastModifiedMillis());
+                if (same && !seen.get(indexed.ordinal())) {
+                    seen.set(indexed.ordinal());
+                    unchanged++;
+                }
+                return same;
+            }
+        }
+
+        /**
+         * Ends the sync and stores the new fingerprints.
+         *
+         * @param deleted receives the ID of every indexed resource a full sync did not see, so the caller can send
+         *                it with {@link ActionType#DELETE}
+         * @return what the sync found
+         */
+        public SyncSummary finish(Consumer<String> deleted) {
+            synchronized (FingerprintIndex.this) {
+                ensureActive();
+                try {
+                    return merge(this, deleted);
+                } catch (IOException e) {
+                    try {
+                        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".tmp"));
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                    throw new UncheckedIOException("Failed to write fingerprint index " + file, e);
+                } finally {
+                    discardRuns();
+                    session = null;
+                }
+            }
+        }
+
+        /**
+         * Ends the sync without changing the index.
+         */
+        public void abort() {
+            synchronized (FingerprintIndex.this) {
+                if (session == this) {
+                    discardRuns();
+                    session = null;
+                }
+            }
+        }
+
+        /**
+         * Returns the fingerprint this sync recorded for a changed resource, the latest one if it changed again.
+         */
+        private ResourceFingerprint pending(String resourceId) {
+            ResourceFingerprint buffered = changes.get(resourceId);
+            if (buffered != null) {
+                return buffered;
+            }
+            try {
+                for (int i = runs.size() - 1; i >= 0; i--) {
+                    ResourceFingerprint spilledChange = runs.get(i).find(resourceId);
+                    if (spilledChange != null) {
+                        return spilledChange;
+                    }
+                }
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read fingerprint index run of " + file, e);
+            }
+        }
+
+        private void buffer(ResourceFingerprint fingerprint) {
+            changes.put(fingerprint.resourceId(), fingerprint);
+            if (changes.size() < maxBufferedChanges) {
+                return;
+            }
+            Path path = file.resolveSibling(file.getFileName() + ".run" + runs.size());
+            try {
+                runs.add(ChangeRun.write(path, changes.values()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write fingerprint index run " + path, e);
+            }
+            spilled += changes.size();
+            changes.clear();
+        }
+
+        private void discardRuns() {
+            for (ChangeRun run : runs) {
+                run.delete();
+            }
+            runs.clear();
+        }
+
+        private Located find(String resourceId) {
+            try {
+                return lookup(resourceId);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read fingerprint index " + file, e);
+            }
+        }
+
+        private void ensureActive() {
+            if (session != this) {
+                throw new IllegalStateException("Sync of " + file + " has already ended");
+            }
+        }
+    }
+
+    /**
+     * What a sync found.
+     *
+     * @param created resources not indexed before
+     * @param updated resources whose content changed
+     * @param unchanged resources found unchanged
+     * @param deleted indexed resources a full sync did not see
+     */
+    public record SyncSummary(int created, int updated, int unchanged, int deleted) {
+
+        /**
+         * Returns the number of resources that have to go through the pipeline.
+         *
+         * @return created, updated and deleted resources
+         */
+        public int changed() {
+            return created + updated + deleted;
+        }
+    }
+
+    /**
+     * Fingerprint index size and lookups.
+     *
+     * @param resources indexed resources
+     * @param bloomFilterBytes memory used by the Bloom filter
+     * @param bloomRejections lookups answered by the Bloom filter alone
+     * @param diskLookups lookups that read a block of the index file
+     */
+    public record Stats(int resources, long bloomFilterBytes, long bloomRejections, long diskLookups) {
+    }
+
+    private record Located(ResourceFingerprint fingerprint, int ordinal) {
+    }
+
+    /**
+     * Changes a sync spilled to disk: a file of fingerprints sorted by resource ID, like the index itself but
+     * without a header, with its own Bloom filter and sparse keys.
+     */
+    private static final class ChangeRun {
+        private final Path path;
+        private final FileChannel channel;
+        private final int count;
+        private final BloomFilter bloom;
+        private final String[] sparseKeys;
+        private final long[] sparseOffsets;
+
+        private ChangeRun(Path path, FileChannel channel, int count, BloomFilter bloom, String[] sparseKeys,
+                          long[] sparseOffsets) {
+            this.path = path;
+            this.channel = channel;
+            this.count = count;
+            this.bloom = bloom;
+            this.sparseKeys = sparseKeys;
+            this.sparseOffsets = sparseOffsets;
+        }
+
+        private static ChangeRun write(Path path, Collection<ResourceFingerprint> sorted) throws IOException {
+            BloomFilter bloom = new BloomFilter(sorted.size(), FALSE_POSITIVE_RATE);
+            List<String> keys = new ArrayList<>();
+            List<Long> offsets = new ArrayList<>();
+            int written = 0;
+            long offset = 0;
+            try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+                for (ResourceFingerprint fingerprint : sorted) {
+                    offset += FingerprintIndex.write(output, fingerprint, written++, bloom, keys, offsets, offset);
+                }
+            }
+            return new ChangeRun(path, FileChannel.open(path, StandardOpenOption.READ), written, bloom,
+                keys.toArray(String[]::new), offsets.stream().mapToLong(Long::longValue).toArray());
+        }
+
+        private ResourceFingerprint find(String resourceId) throws IOException {
+            if (!bloom.mightContain(BloomFilter.hash(resourceId))) {
+                return null;
+            }
+            Located located = scan(channel, sparseKeys, sparseOffsets, count, resourceId);
+            return located == null ? null : located.fingerprint();
+        }
+
+        private void delete() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOG.warn("Failed to delete fingerprint index run {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * The changes of a sync in resource ID order, merged from its runs and its buffer; a resource that changed
+     * more than once appears once, with the fingerprint recorded last.
+     */
+    private static final class SortedChanges {
+        private final PriorityQueue<Cursor> queue = new PriorityQueue<>(
+            Comparator.comparing((Cursor cursor) -> cursor.current.resourceId())
+                .thenComparing(Comparator.comparingInt((Cursor cursor) -> cursor.age).reversed()));
+
+        private SortedChanges(SyncSession sync) throws IOException {
+            for (int age = 0; age < sync.runs.size(); age++) {
+                ChangeRun run = sync.runs.get(age);
+                DataInputStream input = reader(run.channel, 0);
+                int[] remaining = {run.count};
+                add(new Cursor(age, () -> remaining[0]-- > 0 ? decode(readRecord(input)) : null));
+            }
+            Iterator<ResourceFingerprint> buffered = sync.changes.values().iterator();
+            add(new Cursor(sync.runs.size(), () -> buffered.hasNext() ? buffered.next() : null));
+        }
+
+        /**
+         * Returns the next change, or null after the last.
+         */
+        private ResourceFingerprint next() throws IOException {
+            Cursor head = queue.poll();
+            if (head == null) {
+                return null;
+            }
+            ResourceFingerprint change = head.current;
+            add(head);
+            // Older versions of the same resource
+            while (!queue.isEmpty() && queue.peek().current.resourceId().equals(change.resourceId())) {
+                add(queue.poll());
+            }
+            return change;
+        }
+
+        private void add(Cursor cursor) throws IOException {
+            cursor.current = cursor.source.next();
+            if (cursor.current != null) {
+                queue.add(cursor);
+            }
+        }
+    }
+
+    private interface ChangeSource {
+
+        ResourceFingerprint next() throws IOException;
+    }
+
+    private static final class Cursor {
+        private final int age;
+        private final ChangeSource source;
+        private ResourceFingerprint current;
+
+        private Cursor(int age, ChangeSource source) {
+            this.age = age;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.rokkon.pipeline.commons.sync;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.util.Timestamps;
+import com.rokkon.search.model.PipeDoc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * What a {@link FingerprintIndex} remembers about a resource: a 128-bit content hash plus the source's own version
+ * markers.
+ *
+ * @param resourceId the resource ID, the document ID the connector sends
+ * @param contentHashHigh high 64 bits of the content hash
+ * @param contentHashLow low 64 bits of the content hash
+ * @param revisionId the source's revision ID, or null if it has none
+ * @param lastModifiedMillis the source's last modification time in epoch milliseconds, or null if unknown
+ */
+public record ResourceFingerprint(String resourceId, long contentHashHigh, long contentHashLow, String revisionId,
+                                  Long lastModifiedMillis) {
+
+    public ResourceFingerprint {
+        if (resourceId == null || resourceId.isEmpty()) {
+            throw new IllegalArgumentException("resourceId cannot be null or empty");
+        }
+        if (revisionId != null && revisionId.isEmpty()) {
+            revisionId = null;
+        }
+    }
+
+    /**
+     * Fingerprints a document as sent by a connector. The content hash covers the deterministic serialization of
+     * the document without its version markers and dates: {@code revision_id}, {@code creation_date},
+     * {@code last_modified_date} and {@code processed_date}. A resource that was touched but not changed thus keeps
+     * its content hash. A blob held by reference is covered through its SHA-256.
+     *
+     * @param doc the document
+     * @return the fingerprint
+     */
+    public static ResourceFingerprint of(PipeDoc doc) {
+        PipeDoc content = doc.toBuilder().clearRevisionId().clearCreationDate().clearLastModifiedDate()
+            .clearProcessedDate().build();
+        ByteBuffer digest = ByteBuffer.wrap(sha256(content));
+        return new ResourceFingerprint(doc.getId(), digest.getLong(), digest.getLong(),
+            doc.hasRevisionId() ? doc.getRevisionId() : null,
+            doc.hasLastModifiedDate() ? Timestamps.toMillis(doc.getLastModifiedDate()) : null);
+    }
+
+    /**
+     * Returns whether another fingerprint has the same content.
+     *
+     * @param other the other fingerprint
+     * @return true if the content hashes are equal
+     */
+    public boolean sameContent(ResourceFingerprint other) {
+        return contentHashHigh == other.contentHashHigh && contentHashLow == other.contentHashLow;
+    }
+
+    private static byte[] sha256(PipeDoc doc) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(doc.getSerializedSize());
+            CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+            // Map fields are otherwise written in no particular order
+            output.useDeterministicSerialization();
+            doc.writeTo(output);
+            output.flush();
+            return MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
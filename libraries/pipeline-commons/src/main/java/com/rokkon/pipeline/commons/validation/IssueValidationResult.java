@@ -0,0 +1,115 @@
+package com.rokkon.pipeline.commons.validation;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.rokkon.pipeline.api.validation.ValidationIssue;
+import com.rokkon.pipeline.api.validation.ValidationResult;
+
+import java.util.List;
+
+/**
+ * Validation result backed by structured {@link ValidationIssue}s, as built by {@link ValidationResultBuilder}.
+ * The string lists returned by {@link #errors()} and {@link #warnings()} are only formatted on first access.
+ * Serializes to the same JSON shape as {@link DefaultValidationResult}.
+ */
+@JsonPropertyOrder({"valid", "errors", "warnings"})
+public final class IssueValidationResult implements ValidationResult {
+
+    private final boolean valid;
+    private final List<ValidationIssue> errorIssues;
+    private final List<ValidationIssue> warningIssues;
+    private volatile List<String> errors;
+    private volatile List<String> warnings;
+
+    IssueValidationResult(boolean valid, List<ValidationIssue> errorIssues, List<ValidationIssue> warningIssues) {
+        this.valid = valid;
+        this.errorIssues = List.copyOf(errorIssues);
+        this.warningIssues = List.copyOf(warningIssues);
+    }
+
+    @Override
+    @JsonProperty("valid")
+    public boolean valid() {
+        return valid;
+    }
+
+    @Override
+    @JsonProperty("errors")
+    public List<String> errors() {
+        List<String> formatted = errors;
+        if (formatted == null) {
+            formatted = format(errorIssues);
+            errors = formatted;
+        }
+        return formatted;
+    }
+
+    @Override
+    @JsonProperty("warnings")
+    public List<String> warnings() {
+        List<String> formatted = warnings;
+        if (formatted == null) {
+            formatted = format(warningIssues);
+            warnings = formatted;
+        }
+        return formatted;
+    }
+
+    /**
+     * Returns the structured errors.
+     *
+     * @return the error issues
+     */
+    public List<ValidationIssue> errorIssues() {
+        return errorIssues;
+    }
+
+    /**
+     * Returns the structured warnings.
+     *
+     * @return the warning issues
+     */
+    public List<ValidationIssue> warningIssues() {
+        return warningIssues;
+    }
+
+    @Override
+    public ValidationResult combine(ValidationResult other) {
+        if (other == null) return this;
+        ValidationResultBuilder builder = ValidationResultBuilder.create();
+        builder.add(this);
+        builder.add(other);
+        return builder.build();
+    }
+
+    @Override
+    public boolean hasIssues() {
+        return !errorIssues.isEmpty() || !warningIssues.isEmpty();
+    }
+
+    @Override
+    public boolean hasErrors() {
+        return !errorIssues.isEmpty();
+    }
+
+    @Override
+    public boolean hasWarnings() {
+        return !warningIssues.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "IssueValidationResult(valid=" + valid + ", errors=" + errors() + ", warnings=" + warnings() + ")";
+    }
+
+    private static List<String> format(List<ValidationIssue> issues) {
+        if (issues.isEmpty()) {
+            return List.of();
+        }
+        String[] messages = new String[issues.size()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = issues.get(i).message();
+        }
+        return List.of(messages);
+    }
+}
@@ -0,0 +1,225 @@
+package com.rokkon.pipeline.commons.validation;
+
+import com.rokkon.pipeline.api.validation.ValidationIssue;
+import com.rokkon.pipeline.api.validation.ValidationIssueCollector;
+import com.rokkon.pipeline.api.validation.ValidationResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mutable accumulator for validation results.
+ * Unlike {@link ValidationResult#combine(ValidationResult)}, which copies both error lists on every call,
+ * this builder appends into a single pair of lists and only creates the immutable result once in {@link #build()}.
+ * <p>
+ * Errors and warnings are kept as structured {@link ValidationIssue}s; their messages are only formatted when
+ * someone reads {@link ValidationResult#errors()} or {@link ValidationResult#warnings()} of the built result.
+ * <p>
+ * Builders obtained from {@link #acquire()} come from a small per-thread pool and must be returned with
+ * {@link #close()}, typically via try-with-resources. Instances are not thread-safe; callers running validators
+ * concurrently should collect the individual results first and add them from a single thread.
+ */
+public final class ValidationResultBuilder implements ValidationIssueCollector, AutoCloseable {
+
+    private static final int POOL_SIZE = 4;
+    // Builders that grew beyond this are not pooled, so one huge validation doesn't pin its lists forever
+    private static final int MAX_POOLED_CAPACITY = 1024;
+    private static final ThreadLocal<ArrayDeque<ValidationResultBuilder>> POOL =
+        ThreadLocal.withInitial(() -> new ArrayDeque<>(POOL_SIZE));
+
+    private final List<ValidationIssue> errors = new ArrayList<>();
+    private final List<ValidationIssue> warnings = new ArrayList<>();
+    private final boolean pooled;
+    private boolean valid = true;
+
+    private ValidationResultBuilder(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    /**
+     * Creates a new, empty builder.
+     *
+     * @return a builder with no errors or warnings
+     */
+    public static ValidationResultBuilder create() {
+        return new ValidationResultBuilder(false);
+    }
+
+    /**
+     * Takes an empty builder from the current thread's pool, creating one if the pool is empty.
+     * The builder must be returned with {@link #close()} once the result has been built.
+     *
+     * @return a builder with no errors or warnings
+     */
+    public static ValidationResultBuilder acquire() {
+        ValidationResultBuilder builder = POOL.get().pollFirst();
+        return builder != null ? builder : new ValidationResultBuilder(true);
+    }
+
+    /**
+     * Adds an error message and marks the result as invalid.
+     *
+     * @param error the error message
+     * @return this builder
+     */
+    public ValidationResultBuilder addError(String error) {
+        addError(ValidationIssue.message(error));
+        return this;
+    }
+
+    /**
+     * Adds a warning message.
+     *
+     * @param warning the warning message
+     * @return this builder
+     */
+    public ValidationResultBuilder addWarning(String warning) {
+        addWarning(ValidationIssue.message(warning));
+        return this;
+    }
+
+    @Override
+    public void addError(ValidationIssue issue) {
+        errors.add(issue);
+        valid = false;
+    }
+
+    @Override
+    public void addWarning(ValidationIssue issue) {
+        warnings.add(issue);
+    }
+
+    /**
+     * Accumulates all errors and warnings of the given result, taking the most restrictive validity.
+     * Issues of results built by a builder are taken over without formatting their messages.
+     *
+     * @param result the result to add, ignored if null
+     */
+    @Override
+    public void add(ValidationResult result) {
+        if (result == null) {
+            return;
+        }
+        if (result instanceof IssueValidationResult issues) {
+            errors.addAll(issues.errorIssues());
+            warnings.addAll(issues.warningIssues());
+        } else {
+            for (String error : result.errors()) {
+                errors.add(ValidationIssue.message(error));
+            }
+            for (String warning : result.warnings()) {
+                warnings.add(ValidationIssue.message(warning));
+            }
+        }
+        valid = valid && result.valid();
+    }
+
+    /**
+     * Returns true if any errors have been accumulated.
+     *
+     * @return true if there are any errors
+     */
+    @Override
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    /**
+     * Returns true if the accumulated result is still valid.
+     *
+     * @return true if no invalid result or error has been added
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Discards all warnings accumulated so far.
+     *
+     * @return this builder
+     */
+    public ValidationResultBuilder clearWarnings() {
+        warnings.clear();
+        return this;
+    }
+
+    /**
+     * Records the current state so that later additions can be inspected or undone.
+     *
+     * @return the checkpoint
+     */
+    public Checkpoint checkpoint() {
+        return new Checkpoint(errors.size(), warnings.size(), valid);
+    }
+
+    /**
+     * Discards everything added since the checkpoint was taken.
+     *
+     * @param checkpoint a checkpoint taken from this builder
+     */
+    public void rollback(Checkpoint checkpoint) {
+        errors.subList(checkpoint.errorCount(), errors.size()).clear();
+        warnings.subList(checkpoint.warningCount(), warnings.size()).clear();
+        valid = checkpoint.valid();
+    }
+
+    /**
+     * Returns a copy of the errors added since the checkpoint was taken.
+     *
+     * @param checkpoint a checkpoint taken from this builder
+     * @return the errors added since the checkpoint
+     */
+    public List<ValidationIssue> errorsSince(Checkpoint checkpoint) {
+        return List.copyOf(errors.subList(checkpoint.errorCount(), errors.size()));
+    }
+
+    /**
+     * Returns a copy of the warnings added since the checkpoint was taken.
+     *
+     * @param checkpoint a checkpoint taken from this builder
+     * @return the warnings added since the checkpoint
+     */
+    public List<ValidationIssue> warningsSince(Checkpoint checkpoint) {
+        return List.copyOf(warnings.subList(checkpoint.warningCount(), warnings.size()));
+    }
+
+    /**
+     * Creates the immutable result from everything accumulated so far.
+     *
+     * @return the combined ValidationResult
+     */
+    public ValidationResult build() {
+        if (valid && errors.isEmpty() && warnings.isEmpty()) {
+            return EmptyValidationResult.instance();
+        }
+        return new IssueValidationResult(valid, errors, warnings);
+    }
+
+    /**
+     * Resets this builder and, if it was acquired from the pool, returns it to the current thread's pool.
+     */
+    @Override
+    public void close() {
+        boolean reusable = pooled && errors.size() <= MAX_POOLED_CAPACITY && warnings.size() <= MAX_POOLED_CAPACITY;
+        errors.clear();
+        warnings.clear();
+        valid = true;
+        if (reusable) {
+            ArrayDeque<ValidationResultBuilder> pool = POOL.get();
+            if (pool.size() < POOL_SIZE && !pool.contains(this)) {
+                pool.addFirst(this);
+            }
+        }
+    }
+
+    /**
+     * Position in a builder, see {@link #checkpoint()}.
+     *
+     * @param errorCount number of errors at the time of the checkpoint
+     * @param warningCount number of warnings at the time of the checkpoint
+     * @param valid validity at the time of the checkpoint
+     */
+    public record Checkpoint(int errorCount, int warningCount, boolean valid) {
+    }
+}
@@ -0,0 +1,254 @@
+package com.rokkon.pipeline.commons.vector;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import com.rokkon.search.model.ChunkEmbedding;
+import com.rokkon.search.model.Embedding;
+import com.rokkon.search.model.PackedVector;
+import com.rokkon.search.model.VectorEncoding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+/**
+ * Helpers for {@link PackedVector}, the compact alternative to {@code repeated float vector} in
+ * {@link Embedding} and {@link ChunkEmbedding}.
+ * <p>
+ * A 1024-dimension vector takes 4 KB as {@link VectorEncoding#FLOAT32}, 2 KB as {@link VectorEncoding#FLOAT16}
+ * and 1 KB as {@link VectorEncoding#INT8}. FLOAT32 is no smaller on the wire than the packed
+ * {@code repeated float}, but like the others it is never parsed into a boxed {@code List<Float>}.
+ * {@link #vector(Embedding)} and {@link #vector(ChunkEmbedding)} read either representation into a primitive
+ * {@code float[]}, so consumers don't have to care which one a producer chose.
+ * <p>
+ * Which encoding a module produces is negotiated: the module lists what it supports in
+ * {@code ServiceRegistrationResponse.supported_vector_encodings}, the engine picks one with
+ * {@link #negotiate(List, List)} and passes it in {@code ProcessConfiguration.vector_encoding}.
+ */
+public final class PackedVectors {
+
+    private PackedVectors() {
+        // Utility class
+    }
+
+    /**
+     * Packs a vector.
+     *
+     * @param values the vector values
+     * @param encoding the encoding to use; must not be {@link VectorEncoding#REPEATED_FLOAT}
+     * @return the packed vector
+     */
+    public static PackedVector pack(float[] values, VectorEncoding encoding) {
+        PackedVector.Builder builder = PackedVector.newBuilder()
+            .setEncoding(encoding)
+            .setDimensions(values.length);
+        switch (encoding) {
+            case FLOAT32 -> {
+                ByteBuffer buffer = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.asFloatBuffer().put(values);
+                builder.setData(UnsafeByteOperations.unsafeWrap(buffer.array()));
+            }
+            case FLOAT16 -> {
+                ByteBuffer buffer = ByteBuffer.allocate(values.length * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (float value : values) {
+                    buffer.putShort(Float.floatToFloat16(value));
+                }
+                builder.setData(UnsafeByteOperations.unsafeWrap(buffer.array()));
+            }
+            case INT8 -> {
+                float maxAbs = 0f;
+                for (float value : values) {
+                    maxAbs = Math.max(maxAbs, Math.abs(value));
+                }
+                float scale = maxAbs == 0f ? 1f : maxAbs / Byte.MAX_VALUE;
+                byte[] bytes = new byte[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    int quantized = Math.round(values[i] / scale);
+                    bytes[i] = (byte) Math.max(-Byte.MAX_VALUE, Math.min(Byte.MAX_VALUE, quantized));
+                }
+                builder.setData(UnsafeByteOperations.unsafeWrap(bytes)).setScale(scale);
+            }
+            default -> throw new IllegalArgumentException("Cannot pack a vector as " + encoding);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Unpacks a vector into a new array.
+     *
+     * @param packed the packed vector
+     * @return the vector values
+     * @throws IllegalArgumentException if the data doesn't match the encoding and dimensions
+     */
+    public static float[] unpack(PackedVector packed) {
+        float[] values = new float[packed.getDimensions()];
+        ByteBuffer buffer = data(packed);
+        switch (packed.getEncoding()) {
+            case FLOAT32 -> buffer.asFloatBuffer().get(values);
+            case FLOAT16 -> {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = Float.float16ToFloat(buffer.getShort());
+                }
+            }
+            case INT8 -> {
+                float scale = packed.getScale();
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = buffer.get() * scale;
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported vector encoding " + packed.getEncoding());
+        }
+        return values;
+    }
+
+    /**
+     * Returns a read-only view of a {@link VectorEncoding#FLOAT32} vector without copying its data.
+     *
+     * @param packed the packed vector
+     * @return the vector values
+     * @throws IllegalArgumentException if the vector isn't FLOAT32 or its data doesn't match the dimensions
+     */
+    public static FloatBuffer asFloatBuffer(PackedVector packed) {
+        if (packed.getEncoding() != VectorEncoding.FLOAT32) {
+            throw new IllegalArgumentException("Only FLOAT32 vectors can be viewed as FloatBuffer, not " + packed.getEncoding());
+        }
+        return data(packed).asFloatBuffer();
+    }
+
+    /**
+     * Returns the embedding's vector, whichever representation it uses.
+     *
+     * @param embedding the embedding
+     * @return the vector values
+     */
+    public static float[] vector(Embedding embedding) {
+        if (embedding.hasPackedVector()) {
+            return unpack(embedding.getPackedVector());
+        }
+        float[] values = new float[embedding.getVectorCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = embedding.getVector(i);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the chunk's vector, whichever representation it uses.
+     *
+     * @param chunk the chunk embedding
+     * @return the vector values
+     */
+    public static float[] vector(ChunkEmbedding chunk) {
+        if (chunk.hasPackedVector()) {
+            return unpack(chunk.getPackedVector());
+        }
+        float[] values = new float[chunk.getVectorCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = chunk.getVector(i);
+        }
+        return values;
+    }
+
+    /**
+     * Sets the embedding's vector in the given encoding, clearing the other representation.
+     *
+     * @param builder the embedding builder
+     * @param values the vector values
+     * @param encoding the encoding to use
+     * @return the builder
+     */
+    public static Embedding.Builder setVector(Embedding.Builder builder, float[] values, VectorEncoding encoding) {
+        builder.clearVector().clearPackedVector();
+        if (encoding == VectorEncoding.REPEATED_FLOAT) {
+            for (float value : values) {
+                builder.addVector(value);
+            }
+        } else {
+            builder.setPackedVector(pack(values, encoding));
+        }
+        return builder;
+    }
+
+    /**
+     * Sets the chunk's vector in the given encoding, clearing the other representation.
+     *
+     * @param builder the chunk embedding builder
+     * @param values the vector values
+     * @param encoding the encoding to use
+     * @return the builder
+     */
+    public static ChunkEmbedding.Builder setVector(ChunkEmbedding.Builder builder, float[] values, VectorEncoding encoding) {
+        builder.clearVector().clearPackedVector();
+        if (encoding == VectorEncoding.REPEATED_FLOAT) {
+            for (float value : values) {
+                builder.addVector(value);
+            }
+        } else {
+            builder.setPackedVector(pack(values, encoding));
+        }
+        return builder;
+    }
+
+    /**
+     * Returns the encoding the embedding's vector is stored in.
+     *
+     * @param embedding the embedding
+     * @return the encoding
+     */
+    public static VectorEncoding encodingOf(Embedding embedding) {
+        return embedding.hasPackedVector() ? embedding.getPackedVector().getEncoding() : VectorEncoding.REPEATED_FLOAT;
+    }
+
+    /**
+     * Returns the encoding the chunk's vector is stored in.
+     *
+     * @param chunk the chunk embedding
+     * @return the encoding
+     */
+    public static VectorEncoding encodingOf(ChunkEmbedding chunk) {
+        return chunk.hasPackedVector() ? chunk.getPackedVector().getEncoding() : VectorEncoding.REPEATED_FLOAT;
+    }
+
+    /**
+     * Picks the encoding to request from a module: the first of the engine's preferences the module supports.
+     * Falls back to {@link VectorEncoding#REPEATED_FLOAT}, which every module understands.
+     *
+     * @param supported encodings announced by the module
+     * @param preferred encodings the engine accepts, most preferred first
+     * @return the negotiated encoding
+     */
+    public static VectorEncoding negotiate(List<VectorEncoding> supported, List<VectorEncoding> preferred) {
+        for (VectorEncoding encoding : preferred) {
+            if (encoding == VectorEncoding.REPEATED_FLOAT || supported.contains(encoding)) {
+                return encoding;
+            }
+        }
+        return VectorEncoding.REPEATED_FLOAT;
+    }
+
+    /**
+     * Returns the number of data bytes a single value takes in the given encoding.
+     *
+     * @param encoding a packed encoding
+     * @return bytes per value
+     */
+    public static int bytesPerValue(VectorEncoding encoding) {
+        return switch (encoding) {
+            case FLOAT32 -> Float.BYTES;
+            case FLOAT16 -> Short.BYTES;
+            case INT8 -> Byte.BYTES;
+            default -> throw new IllegalArgumentException("Not a packed vector encoding: " + encoding);
+        };
+    }
+
+    private static ByteBuffer data(PackedVector packed) {
+        ByteString data = packed.getData();
+        long expected = (long) packed.getDimensions() * bytesPerValue(packed.getEncoding());
+        if (packed.getDimensions() < 0 || data.size() != expected) {
+            throw new IllegalArgumentException("Packed vector has " + data.size() + " bytes, expected " + expected
+                + " for " + packed.getDimensions() + " " + packed.getEncoding() + " values");
+        }
+        return data.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,351 @@
+package com.rokkon.pipeline.commons.wire;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.WireFormat;
+import com.rokkon.search.model.PipeDoc;
+import com.rokkon.search.model.PipeStream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads one scalar field from a serialized protobuf message without parsing the message.
+ * <p>
+ * The path is resolved against the message descriptor once; {@link #extract(byte[])} then walks the wire format with
+ * a {@link CodedInputStream}, descending only into the length-delimited fields on the path and skipping every other
+ * field by its length. Extracting {@code document.id} from a {@link PipeStream} therefore costs the same whether the
+ * document carries a few bytes of text or a large blob, and no message objects are built.
+ * <p>
+ * Paths are dot separated field names, in proto ({@code stream_id}) or JSON ({@code streamId}) form. A segment naming
+ * a {@code map<string, ...>} field is followed by the map key, as in {@code context_params.tenant_id}. The last
+ * segment must name a singular scalar or enum field; repeated fields other than maps are not supported. As in
+ * protobuf parsing, the last occurrence of a field wins. Absent fields, including proto3 fields at their default
+ * value, yield an empty result.
+ */
+public final class WireFieldExtractor {
+
+    /**
+     * Partition key alias for the ID of the document in a {@link PipeStream}; see
+     * {@code KafkaTransportConfig.partitionKeyField}.
+     */
+    public static final String PIPEDOC_ID = "pipedocId";
+
+    private static final Map<String, WireFieldExtractor> PIPE_STREAM_EXTRACTORS = new ConcurrentHashMap<>();
+
+    private final String path;
+    private final Segment[] segments;
+
+    private WireFieldExtractor(String path, Segment[] segments) {
+        this.path = path;
+        this.segments = segments;
+    }
+
+    /**
+     * Creates an extractor for a path in messages of the given type.
+     *
+     * @param type the descriptor of the serialized messages
+     * @param path the field path
+     * @return the extractor
+     * @throws IllegalArgumentException if the path does not name a singular scalar field
+     */
+    public static WireFieldExtractor forPath(Descriptor type, String path) {
+        if (path == null || path.isBlank()) {
+            throw new IllegalArgumentException("Field path cannot be null or blank");
+        }
+        String[] names = path.split("\\.");
+        List<Segment> segments = new ArrayList<>(names.length);
+        Descriptor current = type;
+        for (int i = 0; i < names.length; i++) {
+            if (current == null) {
+                throw new IllegalArgumentException("Path " + path + " continues past scalar field " + names[i - 1]);
+            }
+            FieldDescriptor field = field(current, names[i], path);
+            if (field.isMapField()) {
+                FieldDescriptor key = field.getMessageType().findFieldByNumber(1);
+                FieldDescriptor value = field.getMessageType().findFieldByNumber(2);
+                if (key.getType() != FieldDescriptor.Type.STRING) {
+                    throw new IllegalArgumentException("Map field " + field.getName() + " in path " + path
+                        + " does not have string keys");
+                }
+                if (++i == names.length) {
+                    throw new IllegalArgumentException("Path " + path + " must name a key of map field " + field.getName());
+                }
+                boolean leaf = value.getJavaType() != FieldDescriptor.JavaType.MESSAGE;
+                segments.add(new Segment(field.getNumber(), names[i], leaf ? value : null));
+                current = leaf ? null : value.getMessageType();
+            } else if (field.isRepeated()) {
+                throw new IllegalArgumentException("Repeated field " + field.getName() + " in path " + path
+                    + " is not supported");
+            } else if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+                segments.add(new Segment(field.getNumber(), null, null));
+                current = field.getMessageType();
+            } else {
+                if (field.getType() == FieldDescriptor.Type.BYTES) {
+                    throw new IllegalArgumentException("Bytes field " + field.getName() + " in path " + path
+                        + " is not supported");
+                }
+                segments.add(new Segment(field.getNumber(), null, field));
+                current = null;
+            }
+        }
+        if (current != null) {
+            throw new IllegalArgumentException("Path " + path + " names a message, not a scalar field");
+        }
+        return new WireFieldExtractor(path, segments.toArray(Segment[]::new));
+    }
+
+    /**
+     * Returns the cached extractor for a path in a serialized {@link PipeStream}.
+     * <p>
+     * Besides paths from the stream itself, {@link #PIPEDOC_ID} stands for {@code document.id}, and paths that don't
+     * start with a {@link PipeStream} field are taken relative to the document, so {@code title} reads
+     * {@code document.title}.
+     *
+     * @param path the field path
+     * @return the extractor
+     * @throws IllegalArgumentException if the path does not name a singular scalar field
+     */
+    public static WireFieldExtractor forPipeStream(String path) {
+        return PIPE_STREAM_EXTRACTORS.computeIfAbsent(path, WireFieldExtractor::createForPipeStream);
+    }
+
+    private static WireFieldExtractor createForPipeStream(String path) {
+        if (PIPEDOC_ID.equals(path)) {
+            return forPath(PipeStream.getDescriptor(), "document.id");
+        }
+        String first = path.split("\\.", 2)[0];
+        if (findField(PipeStream.getDescriptor(), first) == null
+            && findField(PipeDoc.getDescriptor(), first) != null) {
+            return forPath(PipeStream.getDescriptor(), "document." + path);
+        }
+        return forPath(PipeStream.getDescriptor(), path);
+    }
+
+    /**
+     * Returns the path this extractor reads.
+     *
+     * @return the field path
+     */
+    public String path() {
+        return path;
+    }
+
+    /**
+     * Extracts the field from a serialized message.
+     *
+     * @param message the serialized message
+     * @return the field value, or empty if the field is absent
+     * @throws UncheckedIOException if the bytes are not a valid message
+     */
+    public Optional<String> extract(byte[] message) {
+        return extract(CodedInputStream.newInstance(message));
+    }
+
+    /**
+     * Extracts the field from the remaining bytes of a buffer, without changing its position.
+     *
+     * @param message the serialized message
+     * @return the field value, or empty if the field is absent
+     * @throws UncheckedIOException if the bytes are not a valid message
+     */
+    public Optional<String> extract(ByteBuffer message) {
+        return extract(CodedInputStream.newInstance(message.duplicate()));
+    }
+
+    /**
+     * Extracts the field from a serialized message.
+     *
+     * @param message the serialized message
+     * @return the field value, or empty if the field is absent
+     * @throws UncheckedIOException if the bytes are not a valid message
+     */
+    public Optional<String> extract(ByteString message) {
+        return extract(message.newCodedInput());
+    }
+
+    private Optional<String> extract(CodedInputStream input) {
+        try {
+            return Optional.ofNullable(scan(input, 0));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path + " from serialized message", e);
+        }
+    }
+
+    /**
+     * Scans the fields of the current message up to its end, returning the last value found for the path.
+     */
+    private String scan(CodedInputStream input, int depth) throws IOException {
+        Segment segment = segments[depth];
+        String found = null;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (WireFormat.getTagFieldNumber(tag) != segment.number) {
+                input.skipField(tag);
+                continue;
+            }
+            String value;
+            if (segment.mapKey != null) {
+                value = lengthDelimited(tag) ? scanMapEntry(input, depth) : skip(input, tag);
+            } else if (segment.leaf != null) {
+                value = readScalar(input, tag, segment.leaf);
+            } else {
+                value = lengthDelimited(tag) ? scanNested(input, depth + 1) : skip(input, tag);
+            }
+            if (value != null) {
+                found = value;
+            }
+        }
+        return found;
+    }
+
+    private String scanNested(CodedInputStream input, int depth) throws IOException {
+        int limit = input.pushLimit(input.readRawVarint32());
+        String value = scan(input, depth);
+        input.popLimit(limit);
+        return value;
+    }
+
+    /**
+     * Reads one map entry, returning the value on the rest of the path if the entry has the wanted key.
+     */
+    private String scanMapEntry(CodedInputStream input, int depth) throws IOException {
+        Segment segment = segments[depth];
+        int limit = input.pushLimit(input.readRawVarint32());
+        String key = null;
+        String value = null;
+        ByteString deferred = null;
+        boolean valueSeen = false;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            int number = WireFormat.getTagFieldNumber(tag);
+            if (number == 1 && lengthDelimited(tag)) {
+                key = input.readStringRequireUtf8();
+            } else if (number == 2 && key == null) {
+                // Serializers write the key first; a value ahead of it is kept until the key is known
+                if (segment.leaf != null) {
+                    value = readScalar(input, tag, segment.leaf);
+                } else if (lengthDelimited(tag)) {
+                    deferred = input.readBytes();
+                } else {
+                    input.skipField(tag);
+                }
+                valueSeen = true;
+            } else if (number == 2 && key.equals(segment.mapKey)) {
+                value = mapValue(input, tag, depth);
+                deferred = null;
+                valueSeen = true;
+            } else {
+                input.skipField(tag);
+            }
+        }
+        input.popLimit(limit);
+        if (!segment.mapKey.equals(key == null ? "" : key)) {
+            return null;
+        }
+        if (deferred != null) {
+            return scan(deferred.newCodedInput(), depth + 1);
+        }
+        if (!valueSeen && segment.leaf != null) {
+            // Entries whose value is the default omit the value field
+            Object defaultValue = segment.leaf.getDefaultValue();
+            return defaultValue instanceof EnumValueDescriptor enumValue ? enumValue.getName() : String.valueOf(defaultValue);
+        }
+        return value;
+    }
+
+    private String mapValue(CodedInputStream input, int tag, int depth) throws IOException {
+        Segment segment = segments[depth];
+        if (segment.leaf != null) {
+            return readScalar(input, tag, segment.leaf);
+        }
+        return lengthDelimited(tag) ? scanNested(input, depth + 1) : skip(input, tag);
+    }
+
+    private static String readScalar(CodedInputStream input, int tag, FieldDescriptor field) throws IOException {
+        if (WireFormat.getTagWireType(tag) != wireType(field.getType())) {
+            return skip(input, tag);
+        }
+        return switch (field.getType()) {
+            case STRING -> input.readStringRequireUtf8();
+            case INT32 -> Integer.toString(input.readInt32());
+            case INT64 -> Long.toString(input.readInt64());
+            case UINT32 -> Integer.toUnsignedString(input.readUInt32());
+            case UINT64 -> Long.toUnsignedString(input.readUInt64());
+            case SINT32 -> Integer.toString(input.readSInt32());
+            case SINT64 -> Long.toString(input.readSInt64());
+            case FIXED32 -> Integer.toUnsignedString(input.readFixed32());
+            case FIXED64 -> Long.toUnsignedString(input.readFixed64());
+            case SFIXED32 -> Integer.toString(input.readSFixed32());
+            case SFIXED64 -> Long.toString(input.readSFixed64());
+            case FLOAT -> Float.toString(input.readFloat());
+            case DOUBLE -> Double.toString(input.readDouble());
+            case BOOL -> Boolean.toString(input.readBool());
+            case ENUM -> {
+                int number = input.readEnum();
+                EnumValueDescriptor value = field.getEnumType().findValueByNumber(number);
+                yield value != null ? value.getName() : Integer.toString(number);
+            }
+            default -> skip(input, tag);
+        };
+    }
+
+    private static int wireType(FieldDescriptor.Type type) {
+        return switch (type) {
+            case STRING, BYTES, MESSAGE -> WireFormat.WIRETYPE_LENGTH_DELIMITED;
+            case FIXED32, SFIXED32, FLOAT -> WireFormat.WIRETYPE_FIXED32;
+            case FIXED64, SFIXED64, DOUBLE -> WireFormat.WIRETYPE_FIXED64;
+            case GROUP -> WireFormat.WIRETYPE_START_GROUP;
+            default -> WireFormat.WIRETYPE_VARINT;
+        };
+    }
+
+    private static boolean lengthDelimited(int tag) {
+        return WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    }
+
+    private static String skip(CodedInputStream input, int tag) throws IOException {
+        input.skipField(tag);
+        return null;
+    }
+
+    private static FieldDescriptor field(Descriptor type, String name, String path) {
+        FieldDescriptor field = findField(type, name);
+        if (field == null) {
+            throw new IllegalArgumentException("Unknown field " + name + " in " + type.getName() + " for path " + path);
+        }
+        return field;
+    }
+
+    private static FieldDescriptor findField(Descriptor type, String name) {
+        FieldDescriptor field = type.findFieldByName(name);
+        if (field != null) {
+            return field;
+        }
+        for (FieldDescriptor candidate : type.getFields()) {
+            if (candidate.getJsonName().equals(name)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One step of a compiled path.
+     *
+     * @param number the field number
+     * @param mapKey the wanted key if the field is a map, otherwise null
+     * @param leaf the scalar field read at this step (the field itself, or the map value), or null to descend
+     */
+    private record Segment(int number, String mapKey, FieldDescriptor leaf) {
+    }
+}
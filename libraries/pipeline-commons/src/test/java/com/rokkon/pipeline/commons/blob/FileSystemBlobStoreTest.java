@@ -0,0 +1,189 @@
+package com.rokkon.pipeline.commons.blob;
+
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import com.google.protobuf.ByteString;
+import com.rokkon.search.model.Blob;
+import com.rokkon.search.model.BlobReference;
+import com.rokkon.search.model.PipeDoc;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FileSystemBlobStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void put_isContentAddressedAndDeduplicated() {
+        FileSystemBlobStore store = new FileSystemBlobStore("local", tempDir);
+        ByteString content = ByteString.copyFrom("hello blob", StandardCharsets.UTF_8);
+
+        BlobReference first = store.put(content);
+        BlobReference second = store.put(content);
+
+        assertThat(first).isEqualTo(second);
+        assertThat(first.getSha256()).isEqualTo(BlobReferences.sha256(content)).hasSize(64);
+        assertThat(first.getSizeBytes()).isEqualTo(content.size());
+        assertThat(first.getStoreId()).isEqualTo("local");
+        assertThat(store.contains(first)).isTrue();
+        assertThat(store.get(first)).contains(content);
+    }
+
+    @Test
+    void get_mapsLargeBlobs() {
+        FileSystemBlobStore store = new FileSystemBlobStore("local", tempDir, 16);
+        byte[] bytes = new byte[1024 * 1024];
+        Arrays.fill(bytes, (byte) 7);
+        ByteString content = ByteString.copyFrom(bytes);
+
+        BlobReference reference = store.put(content);
+
+        assertThat(store.get(reference)).contains(content);
+    }
+
+    @Test
+    void delete_removesContent() {
+        FileSystemBlobStore store = new FileSystemBlobStore("local", tempDir);
+        BlobReference reference = store.put(ByteString.copyFromUtf8("gone soon"));
+
+        assertThat(store.delete(reference)).isTrue();
+        assertThat(store.delete(reference)).isFalse();
+        assertThat(store.contains(reference)).isFalse();
+        assertThat(store.get(reference)).isEmpty();
+    }
+
+    @Test
+    void referencesWithoutAPlainHash_areRejected() throws Exception {
+        FileSystemBlobStore store = new FileSystemBlobStore("local", tempDir.resolve("store"));
+        Path outside = Files.writeString(tempDir.resolve("secret"), "outside the store");
+
+        for (String hash : new String[] {"../../../secret", "ab/cd/../../../secret", "ABCD" + "0".repeat(60), "",
+            "0".repeat(63), "0".repeat(64) + "/x"}) {
+            BlobReference reference = BlobReference.newBuilder().setSha256(hash).setStoreId("local").build();
+
+            assertThatThrownBy(() -> store.get(reference)).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> store.contains(reference)).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> store.delete(reference)).isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(outside).exists();
+    }
+
+    @Test
+    void get_failsForContentThatDoesNotMatchTheReference() throws Exception {
+        FileSystemBlobStore store = new FileSystemBlobStore("local", tempDir, 16, true);
+        BlobReference small = store.put(ByteString.copyFromUtf8("short"));
+        BlobReference large = store.put(ByteString.copyFromUtf8("x".repeat(1024)));
+
+        Files.writeString(tempDir.resolve(pathOf(small)), "shorT");
+        Files.writeString(tempDir.resolve(pathOf(large)), "x".repeat(1000));
+
+        assertThatThrownBy(() -> store.get(small)).isInstanceOf(UncheckedIOException.class)
+            .hasRootCauseMessage("Content of blob " + small.getSha256() + " doesn't match its hash");
+        assertThatThrownBy(() -> store.get(large)).isInstanceOf(UncheckedIOException.class)
+            .hasRootCauseMessage("Blob " + large.getSha256() + " has 1000 bytes, but its reference says 1024");
+        assertThatThrownBy(() -> store.get(small.toBuilder().setSizeBytes(4).build()))
+            .isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void get_checksOnlyTheSizeUnlessVerifyOnReadIsSet() throws Exception {
+        FileSystemBlobStore store = new FileSystemBlobStore("local", tempDir, 16);
+        BlobReference small = store.put(ByteString.copyFromUtf8("short"));
+        BlobReference large = store.put(ByteString.copyFromUtf8("x".repeat(1024)));
+        BlobReference missing = large.toBuilder().setSha256("0".repeat(64)).build();
+        assertThat(store.verify(small)).isTrue();
+        assertThat(store.verify(large)).isTrue();
+
+        Files.writeString(tempDir.resolve(pathOf(small)), "shorT");
+        Files.writeString(tempDir.resolve(pathOf(large)), "x".repeat(1000));
+
+        assertThat(store.get(small)).contains(ByteString.copyFromUtf8("shorT"));
+        assertThatThrownBy(() -> store.get(large)).isInstanceOf(UncheckedIOException.class);
+        assertThat(store.verify(small)).isFalse();
+        assertThat(store.verify(large)).isFalse();
+        assertThat(store.verify(missing)).isFalse();
+    }
+
+    @Test
+    void put_rewritesStoredBlobOfTheWrongSize() throws Exception {
+        FileSystemBlobStore store = new FileSystemBlobStore("local", tempDir);
+        ByteString content = ByteString.copyFromUtf8("x".repeat(1024));
+        BlobReference reference = store.put(content);
+        Files.writeString(tempDir.resolve(pathOf(reference)), "x".repeat(10));
+
+        assertThat(store.put(content)).isEqualTo(reference);
+
+        assertThat(store.get(reference)).contains(content);
+        assertThat(store.verify(reference)).isTrue();
+    }
+
+    private static Path pathOf(BlobReference reference) {
+        String hash = reference.getSha256();
+        return Path.of(hash.substring(0, 2), hash.substring(2, 4), hash);
+    }
+
+    @Test
+    void worksOnNonDefaultFileSystem() throws Exception {
+        try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().build()) {
+            FileSystemBlobStore store = new FileSystemBlobStore("memory", fileSystem.getPath("/blobs"), 0);
+            ByteString content = ByteString.copyFromUtf8("in memory");
+
+            BlobReference reference = store.put(content);
+
+            assertThat(store.get(reference)).contains(content);
+            assertThat(Files.exists(fileSystem.getPath("/blobs", reference.getSha256().substring(0, 2)))).isTrue();
+        }
+    }
+
+    @Test
+    void offload_replacesLargeInlineDataWithReference() {
+        InMemoryBlobStore store = new InMemoryBlobStore("memory");
+        ByteString content = ByteString.copyFromUtf8("a".repeat(100));
+        PipeDoc doc = PipeDoc.newBuilder()
+            .setId("doc-1")
+            .setBlob(Blob.newBuilder().setData(content).setMimeType("text/plain"))
+            .build();
+
+        PipeDoc offloaded = BlobReferences.offload(doc, store, 10);
+
+        assertThat(BlobReferences.isReference(offloaded.getBlob())).isTrue();
+        assertThat(offloaded.getBlob().getData()).isEmpty();
+        assertThat(offloaded.getBlob().getMimeType()).isEqualTo("text/plain");
+        assertThat(BlobReferences.size(offloaded.getBlob())).isEqualTo(100);
+        assertThat(BlobReferences.content(offloaded.getBlob(), store)).isEqualTo(content);
+        assertThat(BlobReferences.inline(offloaded.getBlob(), store).getData()).isEqualTo(content);
+        assertThat(offloaded.getSerializedSize()).isLessThan(doc.getSerializedSize());
+    }
+
+    @Test
+    void offload_keepsSmallInlineData() {
+        InMemoryBlobStore store = new InMemoryBlobStore("memory");
+        PipeDoc doc = PipeDoc.newBuilder()
+            .setId("doc-1")
+            .setBlob(Blob.newBuilder().setData(ByteString.copyFromUtf8("tiny")))
+            .build();
+
+        assertThat(BlobReferences.offload(doc, store, 10)).isSameAs(doc);
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void content_failsForMissingBlob() {
+        InMemoryBlobStore store = new InMemoryBlobStore("memory");
+        Blob blob = BlobReferences.offload(Blob.newBuilder().setData(ByteString.copyFromUtf8("content")).build(), store, 0);
+        store.delete(blob.getReference());
+
+        assertThatThrownBy(() -> BlobReferences.content(blob, store))
+            .isInstanceOf(BlobNotFoundException.class);
+    }
+}
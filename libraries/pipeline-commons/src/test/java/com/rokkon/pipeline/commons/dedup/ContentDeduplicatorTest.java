@@ -0,0 +1,133 @@
+package com.rokkon.pipeline.commons.dedup;
+
+import com.google.protobuf.ByteString;
+import com.rokkon.connector.coordinator.ConnectorPolicy;
+import com.rokkon.pipeline.commons.blob.BlobReferences;
+import com.rokkon.search.engine.ConnectorRequest;
+import com.rokkon.search.model.ActionType;
+import com.rokkon.search.model.Blob;
+import com.rokkon.search.model.BlobReference;
+import com.rokkon.search.model.PipeDoc;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContentDeduplicatorTest {
+
+    private static final DedupSettings SETTINGS = new DedupSettings(1000, 0.01);
+
+    @TempDir
+    Path tempDir;
+
+    private static PipeDoc doc(String id, String body) {
+        return PipeDoc.newBuilder().setId(id).setBody(body).build();
+    }
+
+    private static ConnectorRequest request(String connectorId, PipeDoc doc) {
+        return ConnectorRequest.newBuilder().setConnectorType("web").setConnectorId(connectorId).setDocument(doc)
+            .build();
+    }
+
+    @Test
+    void normalizedBodyAndBlob_identifyDuplicates() {
+        try (ContentDeduplicator dedup = new ContentDeduplicator(null, SETTINGS)) {
+            ByteString attachment = ByteString.copyFrom("%PDF-1.7 report", StandardCharsets.UTF_8);
+            Blob inline = Blob.newBuilder().setData(attachment).build();
+            Blob reference = Blob.newBuilder().setReference(BlobReference.newBuilder()
+                .setSha256(BlobReferences.sha256(attachment)).setSizeBytes(attachment.size()).setStoreId("local"))
+                .build();
+
+            assertThat(dedup.isDuplicate("web", doc("a", "Quarterly  Report\n2024"))).isFalse();
+            assertThat(dedup.isDuplicate("mirror", doc("b", " quarterly report 2024 "))).isTrue();
+            assertThat(dedup.isDuplicate("web", doc("c", "Quarterly report 2025"))).isFalse();
+            assertThat(dedup.isDuplicate("mail", doc("d", "").toBuilder().setBlob(inline).build())).isFalse();
+            assertThat(dedup.isDuplicate("drive", doc("e", "").toBuilder().setBlob(reference).build())).isTrue();
+            assertThat(dedup.isDuplicate("web", PipeDoc.newBuilder().setId("f").build())).isFalse();
+
+            ContentDeduplicator.Stats stats = dedup.stats();
+            assertThat(stats.entries()).isEqualTo(3);
+            assertThat(stats.connectors().get("mirror").duplicateRate()).isEqualTo(1.0);
+            assertThat(stats.connectors().get("web"))
+                .isEqualTo(new ContentDeduplicator.ConnectorStats(2, 0, 1));
+        }
+    }
+
+    @Test
+    void documentThatBroughtTheContent_isNeverItsDuplicate() {
+        try (ContentDeduplicator dedup = new ContentDeduplicator(tempDir, SETTINGS)) {
+            assertThat(dedup.isDuplicate("web", doc("a", "same text"))).isFalse();
+            // Resent, e.g. after its pipeline run failed
+            assertThat(dedup.isDuplicate("web", doc("a", "Same text"))).isFalse();
+            assertThat(dedup.isDuplicate("web", doc("b", "same text"))).isTrue();
+            assertThat(dedup.isDuplicate("web", doc("", "other text"))).isFalse();
+            assertThat(dedup.isDuplicate("web", doc("", "other text"))).isTrue();
+        }
+
+        try (ContentDeduplicator dedup = new ContentDeduplicator(tempDir, SETTINGS)) {
+            assertThat(dedup.isDuplicate("web", doc("a", "same text"))).isFalse();
+            assertThat(dedup.isDuplicate("web", doc("c", "same text"))).isTrue();
+        }
+    }
+
+    @Test
+    void referenceWithoutHash_isNoContent() {
+        try (ContentDeduplicator dedup = new ContentDeduplicator(null, SETTINGS)) {
+            Blob unhashed = Blob.newBuilder().setReference(BlobReference.newBuilder().setStoreId("local")).build();
+
+            assertThat(dedup.isDuplicate("drive", doc("a", "").toBuilder().setBlob(unhashed).build())).isFalse();
+            assertThat(dedup.isDuplicate("drive", doc("b", "").toBuilder().setBlob(unhashed).build())).isFalse();
+            assertThat(dedup.stats().connectors().get("drive").skipped()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void deduplicate_marksDuplicatesNoOpOnlyWhenPolicyEnabled() {
+        try (ContentDeduplicator dedup = new ContentDeduplicator(null, SETTINGS)) {
+            ConnectorPolicy enabled = ConnectorPolicy.newBuilder().setConnectorId("web").setDeduplicationEnabled(true)
+                .build();
+            ConnectorPolicy disabled = ConnectorPolicy.newBuilder().setConnectorId("feed").build();
+            ConnectorRequest first = request("web", doc("a", "same text"));
+
+            assertThat(dedup.deduplicate(enabled, first)).isSameAs(first);
+            assertThat(dedup.deduplicate(enabled, request("web", doc("b", "Same text"))).getActionType())
+                .isEqualTo(ActionType.NO_OP);
+            assertThat(dedup.deduplicate(disabled, request("feed", doc("c", "same text"))).hasActionType()).isFalse();
+            ConnectorRequest update = request("web", doc("a", "same text")).toBuilder()
+                .setActionType(ActionType.UPDATE).build();
+            assertThat(dedup.deduplicate(enabled, update)).isSameAs(update);
+            assertThat(dedup.stats().connectors()).doesNotContainKey("feed");
+        }
+    }
+
+    @Test
+    void seenSet_survivesRestartAndForgetsOldestGeneration() throws Exception {
+        try (ContentDeduplicator dedup = new ContentDeduplicator(tempDir, SETTINGS)) {
+            for (int i = 0; i < 300; i++) {
+                dedup.isDuplicate("web", doc("doc-" + i, "body " + i));
+            }
+        }
+
+        try (ContentDeduplicator dedup = new ContentDeduplicator(tempDir, SETTINGS)) {
+            assertThat(dedup.stats().entries()).isEqualTo(300);
+            assertThat(dedup.isDuplicate("web", doc("copy", "BODY 5"))).isTrue();
+
+            for (int i = 300; i < 1300; i++) {
+                assertThat(dedup.isDuplicate("web", doc("doc-" + i, "body " + i))).isFalse();
+            }
+
+            assertThat(dedup.isDuplicate("web", doc("copy", "body 1200"))).isTrue();
+            assertThat(dedup.isDuplicate("web", doc("copy", "body 10"))).isFalse();
+            assertThat(dedup.stats().entries()).isLessThanOrEqualTo(SETTINGS.maxEntries());
+            assertThat(dedup.stats().bloomRejections()).isGreaterThan(900);
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).hasSize(2);
+        }
+    }
+}
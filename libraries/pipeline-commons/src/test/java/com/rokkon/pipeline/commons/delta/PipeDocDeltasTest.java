@@ -0,0 +1,122 @@
+package com.rokkon.pipeline.commons.delta;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.FieldMask;
+import com.rokkon.search.model.Blob;
+import com.rokkon.search.model.Embedding;
+import com.rokkon.search.model.PipeDoc;
+import com.rokkon.search.sdk.ProcessResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PipeDocDeltasTest {
+
+    private static PipeDoc document() {
+        return PipeDoc.newBuilder()
+            .setId("doc-1")
+            .setTitle("Title")
+            .setBody("body ".repeat(1000))
+            .addKeywords("first")
+            .putNamedEmbeddings("title", Embedding.newBuilder().addVector(1f).addVector(2f).build())
+            .putMetadata("source", "test")
+            .setBlob(Blob.newBuilder().setData(ByteString.copyFrom(new byte[10_000])).setMimeType("application/pdf"))
+            .build();
+    }
+
+    @Test
+    void diff_andMerge_roundTripAdditions() {
+        PipeDoc original = document();
+        PipeDoc updated = original.toBuilder()
+            .addKeywords("second")
+            .putNamedEmbeddings("body", Embedding.newBuilder().addVector(3f).build())
+            .setTitle("New title")
+            .build();
+
+        Optional<PipeDocDeltas.Delta> delta = PipeDocDeltas.diff(original, updated);
+
+        assertThat(delta).isPresent();
+        assertThat(delta.get().mask().getPathsList()).containsExactlyInAnyOrder("title", "keywords", "named_embeddings");
+        assertThat(delta.get().partial().getKeywordsList()).containsExactly("second");
+        assertThat(delta.get().partial().getNamedEmbeddingsMap()).containsOnlyKeys("body");
+        assertThat(delta.get().partial().hasBody()).isFalse();
+        assertThat(PipeDocDeltas.merge(original, delta.get().partial(), delta.get().mask())).isEqualTo(updated);
+    }
+
+    @Test
+    void diff_clearsRemovedSingularFields() {
+        PipeDoc original = document();
+        PipeDoc updated = original.toBuilder().clearTitle().build();
+
+        PipeDocDeltas.Delta delta = PipeDocDeltas.diff(original, updated).orElseThrow();
+
+        assertThat(delta.mask().getPathsList()).containsExactly("title");
+        assertThat(PipeDocDeltas.merge(original, delta.partial(), delta.mask())).isEqualTo(updated);
+    }
+
+    @Test
+    void diff_isEmptyForChangesThatAreNotAdditive() {
+        PipeDoc original = document();
+
+        assertThat(PipeDocDeltas.diff(original, original.toBuilder().clearKeywords().build())).isEmpty();
+        assertThat(PipeDocDeltas.diff(original, original.toBuilder().removeNamedEmbeddings("title").build())).isEmpty();
+    }
+
+    @Test
+    void merge_upsertsMapEntries() {
+        PipeDoc original = document();
+        Embedding replacement = Embedding.newBuilder().addVector(9f).build();
+        PipeDoc partial = PipeDoc.newBuilder().putNamedEmbeddings("title", replacement).build();
+
+        PipeDoc merged = PipeDocDeltas.merge(original, partial,
+            FieldMask.newBuilder().addPaths("named_embeddings").build());
+
+        assertThat(merged.getNamedEmbeddingsMap()).containsOnlyKeys("title");
+        assertThat(merged.getNamedEmbeddingsOrThrow("title")).isEqualTo(replacement);
+    }
+
+    @Test
+    void merge_followsNestedPaths() {
+        PipeDoc original = document();
+        PipeDoc partial = PipeDoc.newBuilder().setBlob(Blob.newBuilder().setMimeType("text/plain")).build();
+
+        PipeDoc merged = PipeDocDeltas.merge(original, partial, FieldMask.newBuilder().addPaths("blob.mime_type").build());
+
+        assertThat(merged.getBlob().getMimeType()).isEqualTo("text/plain");
+        assertThat(merged.getBlob().getData()).isEqualTo(original.getBlob().getData());
+    }
+
+    @Test
+    void merge_rejectsUnknownPaths() {
+        FieldMask mask = FieldMask.newBuilder().addPaths("no_such_field").build();
+
+        assertThatThrownBy(() -> PipeDocDeltas.merge(document(), PipeDoc.getDefaultInstance(), mask))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("no_such_field");
+    }
+
+    @Test
+    void toDeltaResponse_shrinksResponseAndResolvesToFullDocument() {
+        PipeDoc input = document();
+        PipeDoc output = input.toBuilder().addKeywords("added").build();
+        ProcessResponse full = ProcessResponse.newBuilder().setSuccess(true).setOutputDoc(output).build();
+
+        ProcessResponse delta = PipeDocDeltas.toDeltaResponse(input, full);
+
+        assertThat(delta.hasOutputDocMask()).isTrue();
+        assertThat(delta.getSerializedSize()).isLessThan(full.getSerializedSize() / 10);
+        assertThat(PipeDocDeltas.resolveOutput(input, delta)).isEqualTo(output);
+        assertThat(PipeDocDeltas.resolveOutput(input, full)).isEqualTo(output);
+    }
+
+    @Test
+    void resolveOutput_keepsInputWithoutOutputDoc() {
+        PipeDoc input = document();
+
+        assertThat(PipeDocDeltas.resolveOutput(input, ProcessResponse.newBuilder().setSuccess(true).build()))
+            .isSameAs(input);
+    }
+}
@@ -0,0 +1,310 @@
+package com.rokkon.pipeline.commons.grpc.channel;
+
+import com.rokkon.pipeline.engine.grpc.discovery.ServiceDiscovery;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.operators.multi.processors.BroadcastProcessor;
+import io.smallrye.stork.api.ServiceInstance;
+import io.smallrye.stork.impl.DefaultServiceInstance;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link GrpcChannelManager} using in-memory channels.
+ */
+class GrpcChannelManagerTest {
+
+    private static final MethodDescriptor.Marshaller<String> STRINGS = new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            try {
+                return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    private static final MethodDescriptor<String, String> ECHO = MethodDescriptor.<String, String>newBuilder()
+        .setType(MethodDescriptor.MethodType.UNARY)
+        .setFullMethodName("test.Echo/Echo")
+        .setRequestMarshaller(STRINGS)
+        .setResponseMarshaller(STRINGS)
+        .build();
+
+    private static final ChannelPoolSettings SETTINGS =
+        new ChannelPoolSettings(2, Duration.ofMinutes(1), Duration.ofHours(1), 1024);
+
+    private static final ServiceInstance FIRST = new DefaultServiceInstance(1, "10.0.0.1", 9000, Optional.empty(), false);
+    private static final ServiceInstance SECOND = new DefaultServiceInstance(2, "10.0.0.2", 9000, Optional.empty(), false);
+
+    private final AtomicInteger watches = new AtomicInteger();
+    private volatile BroadcastProcessor<List<ServiceInstance>> membership = BroadcastProcessor.create();
+    private final List<FakeChannel> opened = new ArrayList<>();
+    private final GrpcChannelManager manager = new GrpcChannelManager(new FakeDiscovery(), SETTINGS, instance -> {
+        FakeChannel channel = new FakeChannel(instance.getHost());
+        opened.add(channel);
+        return channel;
+    });
+
+    @AfterEach
+    void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    void channel_reusesConnectionWhileIdle() {
+        PooledChannel first = manager.channel("echo", FIRST);
+        start(first).finish(Status.OK);
+        PooledChannel second = manager.channel("echo", FIRST);
+
+        assertThat(second).isSameAs(first);
+        assertThat(opened).hasSize(1);
+        assertThat(manager.channel("echo").await().atMost(Duration.ofSeconds(1))).isSameAs(first);
+    }
+
+    @Test
+    void channel_opensSubchannelsUpToLimitWhenBusy() {
+        PooledChannel first = manager.channel("echo", FIRST);
+        start(first);
+        PooledChannel second = manager.channel("echo", FIRST);
+        start(second);
+        PooledChannel third = manager.channel("echo", FIRST);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.subchannel()).isEqualTo(1);
+        assertThat(third).isIn(first, second);
+        assertThat(opened).hasSize(2);
+    }
+
+    @Test
+    void membershipChange_closesChannelsOfRemovedInstances() {
+        manager.channel("echo", FIRST);
+        manager.channel("echo", SECOND);
+
+        membership.onNext(List.of(SECOND));
+
+        assertThat(opened).hasSize(2);
+        assertThat(opened.get(0).isShutdown()).isTrue();
+        assertThat(opened.get(1).isShutdown()).isFalse();
+        assertThat(manager.stats()).extracting(GrpcChannelManager.ChannelStats::host).containsExactly("10.0.0.2");
+    }
+
+    @Test
+    void failedWatch_isSubscribedToAgain() throws InterruptedException {
+        manager.channel("echo", FIRST);
+        manager.channel("echo", SECOND);
+        BroadcastProcessor<List<ServiceInstance>> failed = membership;
+        membership = BroadcastProcessor.create();
+
+        failed.onError(new IllegalStateException("Discovery unavailable"));
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!opened.get(0).isShutdown() && System.nanoTime() < deadline) {
+            membership.onNext(List.of(SECOND));
+            Thread.sleep(10);
+        }
+        assertThat(watches).hasValue(2);
+        assertThat(opened.get(0).isShutdown()).isTrue();
+        assertThat(opened.get(1).isShutdown()).isFalse();
+    }
+
+    @Test
+    void closeIdle_closesOnlyChannelsWithoutCallsAndRetiresEmptyServices() {
+        PooledChannel busy = manager.channel("busy", FIRST);
+        FakeCall call = start(busy);
+        manager.channel("idle", SECOND);
+        long later = System.nanoTime() + Duration.ofMinutes(2).toNanos();
+
+        assertThat(manager.closeIdle(later)).isEqualTo(1);
+        assertThat(opened.get(1).isShutdown()).isTrue();
+        assertThat(manager.stats()).extracting(GrpcChannelManager.ChannelStats::serviceName).containsExactly("busy");
+
+        call.finish(Status.OK);
+        assertThat(manager.closeIdle(later)).isEqualTo(1);
+        assertThat(manager.stats()).isEmpty();
+
+        PooledChannel reopened = manager.channel("idle", SECOND);
+        assertThat(reopened).isNotNull();
+        assertThat(opened).hasSize(3);
+    }
+
+    @Test
+    void closeIdle_keepsChannelsJustHandedOut() {
+        PooledChannel first = manager.channel("echo", FIRST);
+        long handedOut = System.nanoTime();
+        PooledChannel reused = manager.channel("echo", FIRST);
+
+        // No call was made on the reused channel yet, but it is no longer idle since it was handed out
+        assertThat(reused).isSameAs(first);
+        assertThat(manager.closeIdle(handedOut + SETTINGS.idleTimeout().toNanos() - 1)).isZero();
+        assertThat(opened.get(0).isShutdown()).isFalse();
+    }
+
+    @Test
+    void metrics_recordCallsFailuresAndInFlight() {
+        PooledChannel channel = manager.channel("echo", FIRST);
+        start(channel).finish(Status.OK);
+        start(channel).finish(Status.UNAVAILABLE);
+        start(channel);
+
+        ChannelMetrics.Snapshot snapshot = channel.metrics().snapshot();
+        assertThat(snapshot.calls()).isEqualTo(2);
+        assertThat(snapshot.failures()).isEqualTo(1);
+        assertThat(snapshot.inFlight()).isEqualTo(1);
+        assertThat(snapshot.maxLatency()).isGreaterThanOrEqualTo(snapshot.averageLatency());
+    }
+
+    @Test
+    void close_shutsDownEverythingAndRejectsNewChannels() {
+        manager.channel("echo", FIRST);
+
+        manager.close();
+
+        assertThat(opened.get(0).isShutdown()).isTrue();
+        assertThatThrownBy(() -> manager.channel("echo", FIRST)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void settings_rejectInvalidValues() {
+        assertThatThrownBy(() -> new ChannelPoolSettings(0, Duration.ofMinutes(1), Duration.ofSeconds(1), 1024))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ChannelPoolSettings(1, Duration.ZERO, Duration.ofSeconds(1), 1024))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static FakeCall start(PooledChannel channel) {
+        ClientCall<String, String> call = channel.newCall(ECHO, CallOptions.DEFAULT);
+        call.start(new ClientCall.Listener<>() {
+        }, new Metadata());
+        return FakeCall.last;
+    }
+
+    private class FakeDiscovery implements ServiceDiscovery {
+        @Override
+        public Uni<ServiceInstance> discoverService(String serviceName) {
+            return Uni.createFrom().item(FIRST);
+        }
+
+        @Override
+        public Uni<List<ServiceInstance>> discoverAllInstances(String serviceName) {
+            return Uni.createFrom().item(List.of(FIRST, SECOND));
+        }
+
+        @Override
+        public Multi<List<ServiceInstance>> watchInstances(String serviceName) {
+            return Multi.createFrom().deferred(() -> {
+                watches.incrementAndGet();
+                return membership;
+            });
+        }
+    }
+
+    private static final class FakeCall extends ClientCall<String, String> {
+        static FakeCall last;
+
+        private Listener<String> listener;
+
+        FakeCall() {
+            last = this;
+        }
+
+        void finish(Status status) {
+            listener.onClose(status, new Metadata());
+        }
+
+        @Override
+        public void start(Listener<String> responseListener, Metadata headers) {
+            this.listener = responseListener;
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+        }
+
+        @Override
+        public void halfClose() {
+        }
+
+        @Override
+        public void sendMessage(String message) {
+        }
+    }
+
+    private static final class FakeChannel extends ManagedChannel {
+        private final String authority;
+        private volatile boolean shutdown;
+
+        FakeChannel(String authority) {
+            this.authority = authority;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method,
+                                                             CallOptions callOptions) {
+            return (ClientCall<ReqT, RespT>) new FakeCall();
+        }
+
+        @Override
+        public String authority() {
+            return authority;
+        }
+
+        @Override
+        public ManagedChannel shutdown() {
+            shutdown = true;
+            return this;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public ManagedChannel shutdownNow() {
+            return shutdown();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+    }
+}
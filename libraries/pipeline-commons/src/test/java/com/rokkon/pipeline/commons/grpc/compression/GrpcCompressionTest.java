@@ -0,0 +1,151 @@
+package com.rokkon.pipeline.commons.grpc.compression;
+
+import com.rokkon.pipeline.config.model.CompressionPolicy;
+import com.rokkon.search.model.PipeDoc;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for compression negotiation and the size-threshold interceptor.
+ */
+class GrpcCompressionTest {
+
+    private static final MethodDescriptor<PipeDoc, PipeDoc> PROCESS = MethodDescriptor.<PipeDoc, PipeDoc>newBuilder()
+        .setType(MethodDescriptor.MethodType.UNARY)
+        .setFullMethodName("test.Processor/Process")
+        .setRequestMarshaller(ProtoUtils.marshaller(PipeDoc.getDefaultInstance()))
+        .setResponseMarshaller(ProtoUtils.marshaller(PipeDoc.getDefaultInstance()))
+        .build();
+
+    @Test
+    void advertise_roundTripsThroughRegistrationMetadata() {
+        String value = GrpcCompression.advertise(EnumSet.of(CompressionPolicy.Codec.GZIP, CompressionPolicy.Codec.ZSTD));
+
+        assertThat(value).isEqualTo("gzip,zstd");
+        assertThat(GrpcCompression.advertised(Map.of(GrpcCompression.ACCEPT_ENCODING_KEY, " ZSTD , gzip, br")))
+            .containsExactlyInAnyOrder(CompressionPolicy.Codec.GZIP, CompressionPolicy.Codec.ZSTD);
+        assertThat(GrpcCompression.advertised(Map.of())).isEmpty();
+    }
+
+    @Test
+    void negotiate_fallsBackToGzipWhenZstdNotAdvertised() {
+        CompressionPolicy zstd = new CompressionPolicy(CompressionPolicy.Codec.ZSTD, 1024);
+
+        assertThat(GrpcCompression.negotiate(zstd, Set.of(CompressionPolicy.Codec.ZSTD))).isEqualTo(zstd);
+        assertThat(GrpcCompression.negotiate(zstd, Set.of()))
+            .isEqualTo(new CompressionPolicy(CompressionPolicy.Codec.GZIP, 1024));
+        assertThat(GrpcCompression.negotiate(CompressionPolicy.of(CompressionPolicy.Codec.GZIP), Set.of()).codec())
+            .isEqualTo(CompressionPolicy.Codec.GZIP);
+        assertThat(GrpcCompression.negotiate(CompressionPolicy.NONE, Set.of(CompressionPolicy.Codec.ZSTD)).enabled())
+            .isFalse();
+    }
+
+    @Test
+    void interceptor_compressesOnlyMessagesAboveThreshold() {
+        RecordingChannel channel = new RecordingChannel();
+        Channel intercepted = ClientInterceptors.intercept(channel,
+            new CompressionInterceptor(new CompressionPolicy(CompressionPolicy.Codec.ZSTD, 1024)));
+
+        ClientCall<PipeDoc, PipeDoc> call = intercepted.newCall(PROCESS, CallOptions.DEFAULT);
+        call.start(new ClientCall.Listener<>() {
+        }, new Metadata());
+        call.sendMessage(PipeDoc.newBuilder().setId("small").build());
+        call.sendMessage(PipeDoc.newBuilder().setId("large").setBody("text ".repeat(1000)).build());
+
+        assertThat(channel.options.getCompressor()).isEqualTo("zstd");
+        assertThat(channel.compression).containsExactly(false, true);
+    }
+
+    @Test
+    void interceptor_leavesCallsAloneWhenDisabled() {
+        RecordingChannel channel = new RecordingChannel();
+        Channel intercepted = ClientInterceptors.intercept(channel, new CompressionInterceptor(CompressionPolicy.NONE));
+
+        ClientCall<PipeDoc, PipeDoc> call = intercepted.newCall(PROCESS, CallOptions.DEFAULT);
+        call.sendMessage(PipeDoc.newBuilder().setBody("text ".repeat(1000)).build());
+
+        assertThat(channel.options.getCompressor()).isNull();
+        assertThat(channel.compression).isEmpty();
+    }
+
+    @Test
+    void zstdCodec_roundTripsAndShrinksText() throws Exception {
+        ZstdCodec codec = new ZstdCodec();
+        byte[] text = "The quick brown fox jumps over the lazy dog. ".repeat(500).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = codec.compress(compressed)) {
+            out.write(text);
+        }
+        byte[] restored;
+        try (InputStream in = codec.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+            restored = in.readAllBytes();
+        }
+
+        assertThat(restored).isEqualTo(text);
+        assertThat(compressed.size()).isLessThan(text.length / 10);
+        assertThat(GrpcCompression.decompressorRegistry().getKnownMessageEncodings()).contains("gzip", "zstd");
+        assertThat(GrpcCompression.compressorRegistry().lookupCompressor("zstd")).isNotNull();
+    }
+
+    private static final class RecordingChannel extends Channel {
+        private final List<Boolean> compression = new ArrayList<>();
+        private CallOptions options;
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method,
+                                                             CallOptions callOptions) {
+            options = callOptions;
+            return new ClientCall<>() {
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                }
+
+                @Override
+                public void request(int numMessages) {
+                }
+
+                @Override
+                public void cancel(String message, Throwable cause) {
+                }
+
+                @Override
+                public void halfClose() {
+                }
+
+                @Override
+                public void sendMessage(ReqT message) {
+                }
+
+                @Override
+                public void setMessageCompression(boolean enabled) {
+                    compression.add(enabled);
+                }
+            };
+        }
+
+        @Override
+        public String authority() {
+            return "test";
+        }
+    }
+}
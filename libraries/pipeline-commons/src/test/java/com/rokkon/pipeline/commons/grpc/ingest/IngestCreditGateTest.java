@@ -0,0 +1,97 @@
+package com.rokkon.pipeline.commons.grpc.ingest;
+
+import com.rokkon.search.engine.ProcessResponse;
+import com.rokkon.search.engine.ProcessStatus;
+import com.rokkon.search.model.PipeStream;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.smallrye.mutiny.operators.multi.processors.UnicastProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IngestCreditGateTest {
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean halfClosed = new AtomicBoolean();
+    private final UnicastProcessor<ProcessResponse> engine = UnicastProcessor.create();
+
+    private IngestCreditGate open(String... streamIds) {
+        List<PipeStream> streams = List.of(streamIds).stream()
+            .map(id -> PipeStream.newBuilder().setStreamId(id).build())
+            .toList();
+        IngestCreditGate gate = IngestCreditGate.open(Multi.createFrom().iterable(streams), outbound -> {
+            outbound.subscribe().with(stream -> sent.add(stream.getStreamId()), failure -> { },
+                () -> halfClosed.set(true));
+            return engine;
+        });
+        gate.responses().subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+        return gate;
+    }
+
+    private static ProcessResponse response(String streamId, ProcessStatus status, int credits) {
+        return ProcessResponse.newBuilder().setStreamId(streamId).setStatus(status).setCredits(credits).build();
+    }
+
+    @Test
+    void sourceIsOnlyPulledAsCreditsAreGranted() {
+        IngestCreditGate gate = open("a", "b", "c");
+
+        assertThat(sent).isEmpty();
+        engine.onNext(response("", ProcessStatus.FLOW_CONTROL, 2));
+
+        assertThat(sent).containsExactly("a", "b");
+        assertThat(gate.availableCredits()).isZero();
+
+        engine.onNext(response("a", ProcessStatus.THROTTLED, 1));
+
+        assertThat(sent).containsExactly("a", "b", "c");
+        assertThat(gate.throttled()).isTrue();
+    }
+
+    @Test
+    void rejectedStreamsAreSentAgainBeforeNewOnes() {
+        IngestCreditGate gate = open("a", "b", "c");
+        engine.onNext(response("", ProcessStatus.FLOW_CONTROL, 2));
+
+        engine.onNext(response("a", ProcessStatus.REJECTED, 0));
+
+        assertThat(gate.pendingRetries()).isEqualTo(1);
+        assertThat(gate.throttled()).isTrue();
+
+        engine.onNext(response("b", ProcessStatus.ACCEPTED, 1));
+
+        assertThat(sent).containsExactly("a", "b", "a");
+        assertThat(gate.pendingRetries()).isZero();
+        assertThat(gate.retried()).isEqualTo(1);
+        assertThat(gate.throttled()).isFalse();
+
+        engine.onNext(response("a", ProcessStatus.ACCEPTED, 1));
+
+        assertThat(sent).containsExactly("a", "b", "a", "c");
+    }
+
+    @Test
+    void callIsHalfClosedOnlyOnceEveryStreamIsAnswered() {
+        open("a", "b");
+        engine.onNext(response("", ProcessStatus.FLOW_CONTROL, 4));
+
+        assertThat(sent).containsExactly("a", "b");
+        assertThat(halfClosed).isFalse();
+
+        engine.onNext(response("a", ProcessStatus.ACCEPTED, 0));
+        engine.onNext(response("b", ProcessStatus.REJECTED, 0));
+
+        assertThat(halfClosed).isFalse();
+
+        engine.onNext(response("", ProcessStatus.FLOW_CONTROL, 1));
+        engine.onNext(response("b", ProcessStatus.ERROR, 0));
+
+        assertThat(sent).containsExactly("a", "b", "b");
+        assertThat(halfClosed).isTrue();
+    }
+}
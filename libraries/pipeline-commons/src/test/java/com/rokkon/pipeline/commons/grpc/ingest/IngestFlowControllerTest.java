@@ -0,0 +1,104 @@
+package com.rokkon.pipeline.commons.grpc.ingest;
+
+import com.rokkon.search.engine.ProcessResponse;
+import com.rokkon.search.engine.ProcessStatus;
+import com.rokkon.search.model.PipeStream;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IngestFlowControllerTest {
+
+    private final AtomicInteger downstream = new AtomicInteger();
+
+    private static PipeStream stream(String id) {
+        return PipeStream.newBuilder().setStreamId(id).build();
+    }
+
+    private static ProcessResponse accepted(PipeStream stream) {
+        return ProcessResponse.newBuilder().setStreamId(stream.getStreamId()).setStatus(ProcessStatus.ACCEPTED).build();
+    }
+
+    @Test
+    void windows_neverGrantMoreThanCapacityOrMaxWindow() {
+        IngestFlowController controller = new IngestFlowController(10, 4, 0.8, downstream::get, Duration.ofMillis(10));
+
+        assertThat(controller.openWindow().open().getCredits()).isEqualTo(4);
+        assertThat(controller.openWindow().open().getCredits()).isEqualTo(4);
+        ProcessResponse third = controller.openWindow().open();
+        ProcessResponse fourth = controller.openWindow().open();
+
+        assertThat(third.getStatus()).isEqualTo(ProcessStatus.FLOW_CONTROL);
+        assertThat(third.getCredits()).isEqualTo(2);
+        assertThat(fourth.getCredits()).isZero();
+        assertThat(controller.outstandingCredits()).isEqualTo(10);
+    }
+
+    @Test
+    void streamsWithoutCredits_areRejectedAndResponsesThrottleAboveTheWatermark() {
+        IngestFlowController controller = new IngestFlowController(10, 4, 0.8, downstream::get, Duration.ofMillis(10));
+        IngestFlowController.Window window = controller.openWindow();
+        window.open();
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(window.admit()).isTrue();
+        }
+        assertThat(window.admit()).isFalse();
+        assertThat(window.rejected(stream("late")).getStatus()).isEqualTo(ProcessStatus.REJECTED);
+        assertThat(controller.depth()).isEqualTo(4);
+
+        // 4 admitted plus 4 downstream plus 2 new credits are above the 8-stream watermark
+        downstream.set(4);
+        ProcessResponse response = window.respond(accepted(stream("a")));
+
+        assertThat(response.getCredits()).isEqualTo(2);
+        assertThat(response.getStatus()).isEqualTo(ProcessStatus.THROTTLED);
+        assertThat(response.getQueueDepth()).isEqualTo(8);
+    }
+
+    @Test
+    void releaseAndClose_returnCapacity() {
+        IngestFlowController controller = new IngestFlowController(4, 4, 1.0, downstream::get, Duration.ofMillis(10));
+        IngestFlowController.Window first = controller.openWindow();
+        first.open();
+        first.admit();
+        IngestFlowController.Window second = controller.openWindow();
+
+        assertThat(second.open().getCredits()).isZero();
+        assertThat(second.replenish()).isNull();
+
+        controller.release();
+        first.close();
+
+        assertThat(controller.depth()).isZero();
+        assertThat(controller.outstandingCredits()).isZero();
+        assertThat(second.replenish().getCredits()).isEqualTo(4);
+    }
+
+    @Test
+    void creditGate_deliversEveryStreamThroughASmallEngineWithoutRejections() {
+        IngestFlowController controller = new IngestFlowController(3, 2, 0.5, downstream::get, Duration.ofMillis(5));
+        List<PipeStream> streams = IntStream.range(0, 50).mapToObj(i -> stream("s" + i)).toList();
+
+        IngestCreditGate gate = IngestCreditGate.open(Multi.createFrom().iterable(streams),
+            sent -> controller.serve(sent, stream -> Uni.createFrom().item(accepted(stream))
+                .onItem().delayIt().by(Duration.ofMillis(1))));
+        List<ProcessResponse> responses = gate.responses()
+            .select().where(response -> response.getStatus() != ProcessStatus.FLOW_CONTROL)
+            .select().first(streams.size())
+            .collect().asList().await().atMost(Duration.ofSeconds(10));
+
+        assertThat(responses).extracting(ProcessResponse::getStreamId)
+            .containsExactlyInAnyOrderElementsOf(streams.stream().map(PipeStream::getStreamId).toList());
+        assertThat(responses).extracting(ProcessResponse::getStatus)
+            .containsOnly(ProcessStatus.ACCEPTED, ProcessStatus.THROTTLED);
+        assertThat(controller.depth()).isZero();
+    }
+}
@@ -0,0 +1,141 @@
+package com.rokkon.pipeline.commons.grpc.processor;
+
+import com.rokkon.search.model.PipeDoc;
+import com.rokkon.search.sdk.ProcessBatchItem;
+import com.rokkon.search.sdk.ProcessBatchItemResult;
+import com.rokkon.search.sdk.ProcessBatchRequest;
+import com.rokkon.search.sdk.ProcessBatchResponse;
+import com.rokkon.search.sdk.ProcessConfiguration;
+import com.rokkon.search.sdk.ProcessRequest;
+import com.rokkon.search.sdk.ProcessResponse;
+import com.rokkon.search.sdk.RegistrationRequest;
+import com.rokkon.search.sdk.ServiceMetadata;
+import com.rokkon.search.sdk.ServiceRegistrationResponse;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ProcessBatchSupportTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private static ProcessBatchItem item(String id, int bodyLength) {
+        return ProcessBatchItem.newBuilder()
+            .setItemId(id)
+            .setDocument(PipeDoc.newBuilder().setId(id).setBody("x".repeat(bodyLength)))
+            .build();
+    }
+
+    private static ProcessBatchRequest batch(List<ProcessBatchItem> items) {
+        return ProcessBatchRequest.newBuilder()
+            .addAllItems(items)
+            .setConfig(ProcessConfiguration.newBuilder().putConfigParams("mode", "fast"))
+            .setMetadata(ServiceMetadata.newBuilder().setPipelineName("pipeline").setPipeStepName("step"))
+            .build();
+    }
+
+    private static List<String> itemIds(ProcessBatchRequest batch) {
+        return batch.getItemsList().stream().map(ProcessBatchItem::getItemId).toList();
+    }
+
+    @Test
+    void split_respectsItemAndByteLimitsAndKeepsSharedParts() {
+        ProcessBatchRequest batch = batch(List.of(
+            item("a", 100), item("b", 100), item("c", 100), item("d", 100), item("e", 100)));
+
+        assertThat(ProcessBatchSupport.split(batch, 0, 0)).containsExactly(batch);
+        assertThat(ProcessBatchSupport.split(batch, 2, 0)).extracting(ProcessBatchSupportTest::itemIds)
+            .containsExactly(List.of("a", "b"), List.of("c", "d"), List.of("e"));
+
+        long maxBytes = batch(List.of(item("a", 100), item("b", 100), item("c", 100))).getSerializedSize();
+        List<ProcessBatchRequest> parts = ProcessBatchSupport.split(batch, 0, maxBytes);
+
+        assertThat(parts).extracting(ProcessBatchSupportTest::itemIds)
+            .containsExactly(List.of("a", "b", "c"), List.of("d", "e"));
+        assertThat(parts).allSatisfy(part -> {
+            assertThat(part.getSerializedSize()).isLessThanOrEqualTo(maxBytes);
+            assertThat(part.getConfig()).isEqualTo(batch.getConfig());
+            assertThat(part.getMetadata()).isEqualTo(batch.getMetadata());
+        });
+    }
+
+    @Test
+    void split_sendsAnOversizedItemAlone() {
+        ProcessBatchRequest batch = batch(List.of(item("small", 10), item("huge", 10_000), item("tail", 10)));
+
+        List<ProcessBatchRequest> parts = ProcessBatchSupport.split(batch, 0, 1_000);
+
+        assertThat(parts).extracting(ProcessBatchSupportTest::itemIds)
+            .containsExactly(List.of("small"), List.of("huge"), List.of("tail"));
+    }
+
+    @Test
+    void processBatch_mapsEveryResultToItsItemInRequestOrder() {
+        ProcessBatchRequest batch = batch(List.of(item("a", 1), item("fail", 1), item("c", 3), item("d", 2)));
+
+        ProcessBatchResponse response = ProcessBatchSupport.processBatch(batch, request -> {
+            String id = request.getDocument().getId();
+            if (id.equals("fail")) {
+                throw new IllegalStateException("bad document");
+            }
+            // Longer bodies finish first, so results complete out of order
+            return Uni.createFrom().item(ProcessResponse.newBuilder().setSuccess(true)
+                    .setOutputDoc(request.getDocument()).build())
+                .onItem().delayIt().by(Duration.ofMillis(50L / request.getDocument().getBody().length()));
+        }, 4).await().atMost(TIMEOUT);
+
+        assertThat(response.getResultsList()).extracting(ProcessBatchItemResult::getItemId)
+            .containsExactly("a", "fail", "c", "d");
+        assertThat(response.getResultsList()).extracting(result -> result.getResponse().getOutputDoc().getId())
+            .containsExactly("a", "", "c", "d");
+        assertThat(response.getFailedCount()).isEqualTo(1);
+        assertThat(response.getResults(1).getResponse().getErrorDetails().getFieldsOrThrow("error_message")
+            .getStringValue()).isEqualTo("bad document");
+    }
+
+    @Test
+    void batchingProcessor_advertisesAndEnforcesItsByteLimit() {
+        BatchingPipeStepProcessor processor = processor(500);
+        ServiceRegistrationResponse registration = processor.getServiceRegistration(
+            RegistrationRequest.getDefaultInstance()).await().atMost(TIMEOUT);
+
+        assertThat(ProcessBatchSupport.maxBatchBytes(registration)).isEqualTo(500);
+        assertThat(ProcessBatchSupport.maxBatchBytes(ServiceRegistrationResponse.getDefaultInstance())).isZero();
+        assertThat(processor.processDataBatch(batch(List.of(item("a", 10)))).await().atMost(TIMEOUT)
+            .getResultsCount()).isEqualTo(1);
+        assertThatThrownBy(() -> processor.processDataBatch(batch(List.of(item("a", 1_000)))).await().atMost(TIMEOUT))
+            .isInstanceOfSatisfying(StatusRuntimeException.class,
+                e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+    }
+
+    private static BatchingPipeStepProcessor processor(long maxBatchBytes) {
+        return new BatchingPipeStepProcessor() {
+            @Override
+            public Uni<ProcessResponse> processData(ProcessRequest request) {
+                return Uni.createFrom().item(ProcessResponse.newBuilder().setSuccess(true).build());
+            }
+
+            @Override
+            public Uni<ProcessResponse> testProcessData(ProcessRequest request) {
+                return processData(request);
+            }
+
+            @Override
+            public Uni<ServiceRegistrationResponse> getServiceRegistration(RegistrationRequest request) {
+                return Uni.createFrom().item(withCapabilities(ServiceRegistrationResponse.newBuilder()).build());
+            }
+
+            @Override
+            protected long maxBatchBytes() {
+                return maxBatchBytes;
+            }
+        };
+    }
+}
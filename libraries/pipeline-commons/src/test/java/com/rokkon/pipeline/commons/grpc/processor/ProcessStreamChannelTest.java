@@ -0,0 +1,143 @@
+package com.rokkon.pipeline.commons.grpc.processor;
+
+import com.rokkon.search.model.PipeDoc;
+import com.rokkon.search.sdk.ProcessRequest;
+import com.rokkon.search.sdk.ProcessResponse;
+import com.rokkon.search.sdk.ProcessStreamRequest;
+import com.rokkon.search.sdk.ProcessStreamResponse;
+import com.rokkon.search.sdk.StreamingCapability;
+import io.grpc.StatusRuntimeException;
+import io.smallrye.mutiny.helpers.test.UniAssertSubscriber;
+import io.smallrye.mutiny.operators.multi.processors.UnicastProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProcessStreamChannelTest {
+
+    private final List<ProcessStreamRequest> sent = new CopyOnWriteArrayList<>();
+    private UnicastProcessor<ProcessStreamResponse> module;
+    private boolean outboundCompleted;
+
+    @BeforeEach
+    void setUp() {
+        module = UnicastProcessor.create();
+    }
+
+    private ProcessStreamChannel open(StreamingCapability capability, int maxQueued) {
+        return ProcessStreamChannel.open(requests -> {
+            requests.subscribe().with(sent::add, failure -> { }, () -> outboundCompleted = true);
+            return module;
+        }, capability, maxQueued);
+    }
+
+    private static ProcessRequest request(String id) {
+        return ProcessRequest.newBuilder().setDocument(PipeDoc.newBuilder().setId(id)).build();
+    }
+
+    private static UniAssertSubscriber<ProcessResponse> call(ProcessStreamChannel channel, String id) {
+        return channel.process(request(id)).subscribe().withSubscriber(UniAssertSubscriber.create());
+    }
+
+    private static ProcessResponse response(String id) {
+        return ProcessResponse.newBuilder().setSuccess(true).setOutputDoc(PipeDoc.newBuilder().setId(id)).build();
+    }
+
+    private List<String> sentIds() {
+        return sent.stream().map(request -> request.getRequest().getDocument().getId()).toList();
+    }
+
+    @Test
+    void callsWaitForCreditsAndFailWhenTheQueueIsFull() {
+        ProcessStreamChannel channel = open(null, 2);
+
+        UniAssertSubscriber<ProcessResponse> first = call(channel, "a");
+        UniAssertSubscriber<ProcessResponse> second = call(channel, "b");
+        UniAssertSubscriber<ProcessResponse> rejected = call(channel, "c");
+
+        assertThat(sent).isEmpty();
+        assertThat(channel.queued()).isEqualTo(2);
+        rejected.assertFailedWith(StatusRuntimeException.class, "RESOURCE_EXHAUSTED");
+
+        module.onNext(ProcessStreamSupport.window(1, 0));
+
+        assertThat(sentIds()).containsExactly("a");
+        assertThat(channel.availableCredits()).isZero();
+        assertThat(channel.inFlight()).isEqualTo(1);
+        assertThat(channel.queued()).isEqualTo(1);
+        first.assertNotTerminated();
+        second.assertNotTerminated();
+    }
+
+    @Test
+    void resultsCompleteTheirCallAndReplenishCredits() {
+        ProcessStreamChannel channel = open(StreamingCapability.newBuilder().setMaxInFlight(1).build(), 10);
+        module.onNext(ProcessStreamSupport.window(5, 0));
+
+        UniAssertSubscriber<ProcessResponse> first = call(channel, "a");
+        UniAssertSubscriber<ProcessResponse> second = call(channel, "b");
+
+        // Credits are available, but the advertised in-flight limit holds the second call back
+        assertThat(sentIds()).containsExactly("a");
+        assertThat(channel.queued()).isEqualTo(1);
+
+        module.onNext(ProcessStreamSupport.result(sent.get(0).getCorrelationId(), response("a"), 0));
+
+        first.assertItem(response("a"));
+        assertThat(sentIds()).containsExactly("a", "b");
+        assertThat(channel.availableCredits()).isEqualTo(3);
+
+        module.onNext(ProcessStreamSupport.result(sent.get(1).getCorrelationId(), response("b"), 1));
+
+        second.assertItem(response("b"));
+        assertThat(channel.inFlight()).isZero();
+        assertThat(channel.availableCredits()).isEqualTo(4);
+    }
+
+    @Test
+    void cancelledCallsAreNeverSent() {
+        ProcessStreamChannel channel = open(null, 10);
+
+        UniAssertSubscriber<ProcessResponse> cancelled = call(channel, "a");
+        UniAssertSubscriber<ProcessResponse> kept = call(channel, "b");
+        cancelled.cancel();
+
+        assertThat(channel.queued()).isEqualTo(1);
+        module.onNext(ProcessStreamSupport.window(2, 0));
+
+        assertThat(sentIds()).containsExactly("b");
+        assertThat(channel.availableCredits()).isEqualTo(1);
+        kept.assertNotTerminated();
+    }
+
+    @Test
+    void closeFailsOutstandingCallsAndCompletesTheStream() {
+        ProcessStreamChannel channel = open(null, 10);
+        module.onNext(ProcessStreamSupport.window(1, 0));
+        UniAssertSubscriber<ProcessResponse> inFlight = call(channel, "a");
+        UniAssertSubscriber<ProcessResponse> queued = call(channel, "b");
+
+        channel.close();
+
+        inFlight.assertFailedWith(StatusRuntimeException.class, "CANCELLED");
+        queued.assertFailedWith(StatusRuntimeException.class, "CANCELLED");
+        assertThat(outboundCompleted).isTrue();
+        assertThat(channel.isOpen()).isFalse();
+        call(channel, "c").assertFailedWith(StatusRuntimeException.class, "UNAVAILABLE");
+    }
+
+    @Test
+    void moduleCompletionFailsOutstandingCalls() {
+        ProcessStreamChannel channel = open(null, 10);
+        UniAssertSubscriber<ProcessResponse> queued = call(channel, "a");
+
+        module.onComplete();
+
+        queued.assertFailedWith(StatusRuntimeException.class, "completed by module");
+        assertThat(channel.isOpen()).isFalse();
+    }
+}
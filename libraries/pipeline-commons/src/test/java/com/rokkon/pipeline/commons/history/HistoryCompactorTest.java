@@ -0,0 +1,141 @@
+package com.rokkon.pipeline.commons.history;
+
+import com.rokkon.pipeline.commons.blob.InMemoryBlobStore;
+import com.rokkon.pipeline.config.model.HistoryPolicy;
+import com.rokkon.search.model.ErrorData;
+import com.rokkon.search.model.FailedStepInputState;
+import com.rokkon.search.model.PipeDoc;
+import com.rokkon.search.model.PipeStream;
+import com.rokkon.search.model.StepExecutionRecord;
+import com.rokkon.search.sdk.ServiceMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HistoryCompactorTest {
+
+    private static StepExecutionRecord record(int hop) {
+        return StepExecutionRecord.newBuilder()
+            .setHopNumber(hop)
+            .setStepName("step-" + hop)
+            .setStatus("SUCCESS")
+            .addProcessorLogs("processed hop " + hop)
+            .addProcessorLogs("x".repeat(200))
+            .build();
+    }
+
+    private static PipeStream stream(int hops) {
+        PipeStream.Builder builder = PipeStream.newBuilder()
+            .setStreamId("stream-1")
+            .setCurrentHopNumber(hops + 1);
+        IntStream.rangeClosed(1, hops).forEach(hop -> builder.addHistory(record(hop)));
+        return builder.build();
+    }
+
+    @Test
+    void keepAll_returnsSameStreamAndRecordsBytes() {
+        HistoryMetrics metrics = new HistoryMetrics();
+        HistoryCompactor compactor = new HistoryCompactor(HistoryPolicy.KEEP_ALL, metrics);
+        PipeStream stream = stream(3);
+
+        assertThat(compactor.compact(stream)).isSameAs(stream);
+
+        HistoryMetrics.Stats stats = metrics.stats();
+        assertThat(stats.dispatches()).isEqualTo(1);
+        assertThat(stats.bytesAfter()).isEqualTo(HistoryCompactor.historyBytes(stream.getHistoryList()));
+        assertThat(stats.savedBytes()).isZero();
+    }
+
+    @Test
+    void keepLast_dropsOldestRecords() {
+        HistoryMetrics metrics = new HistoryMetrics();
+        HistoryCompactor compactor = new HistoryCompactor(HistoryPolicy.keepLast(2), metrics);
+
+        PipeStream compacted = compactor.compact(stream(5));
+
+        assertThat(compacted.getHistoryList()).extracting(StepExecutionRecord::getStepName)
+            .containsExactly("step-4", "step-5");
+        assertThat(compacted.getCompactedHistoryRecords()).isEqualTo(3);
+
+        PipeStream next = compactor.compact(compacted.toBuilder().addHistory(record(6)).build());
+        assertThat(next.getHistoryList()).extracting(StepExecutionRecord::getStepName)
+            .containsExactly("step-5", "step-6");
+        assertThat(next.getCompactedHistoryRecords()).isEqualTo(4);
+        assertThat(metrics.stats().recordsDropped()).isEqualTo(4);
+        assertThat(metrics.stats().savedBytes()).isPositive();
+    }
+
+    @Test
+    void summary_stripsLogsAndCapturedInput() {
+        HistoryCompactor compactor = new HistoryCompactor(
+            new HistoryPolicy(null, HistoryPolicy.LogRetention.SUMMARY), new HistoryMetrics());
+        StepExecutionRecord failed = record(1).toBuilder()
+            .setStatus("FAILURE")
+            .setErrorInfo(ErrorData.newBuilder()
+                .setErrorMessage("boom")
+                .setErrorCode("E1")
+                .setTechnicalDetails("stack trace")
+                .setOriginatingStepName("step-1")
+                .setInputStateAtFailure(FailedStepInputState.newBuilder()
+                    .setDocState(PipeDoc.newBuilder().setId("doc").setBody("y".repeat(1000)))))
+            .build();
+        PipeStream stream = PipeStream.newBuilder().setStreamId("s").addHistory(failed).build();
+
+        PipeStream compacted = compactor.compact(stream);
+
+        StepExecutionRecord summary = compacted.getHistory(0);
+        assertThat(summary.getProcessorLogsList()).isEmpty();
+        assertThat(summary.getStatus()).isEqualTo("FAILURE");
+        assertThat(summary.getErrorInfo().getErrorMessage()).isEqualTo("boom");
+        assertThat(summary.getErrorInfo().getErrorCode()).isEqualTo("E1");
+        assertThat(summary.getErrorInfo().hasInputStateAtFailure()).isFalse();
+        assertThat(summary.getErrorInfo().hasTechnicalDetails()).isFalse();
+        assertThat(compacted.getCompactedHistoryRecords()).isZero();
+        assertThat(compactor.compact(compacted)).isSameAs(compacted);
+    }
+
+    @Test
+    void offload_movesLogsToStore() {
+        InMemoryBlobStore store = new InMemoryBlobStore("logs");
+        HistoryMetrics metrics = new HistoryMetrics();
+        HistoryCompactor compactor = new HistoryCompactor(
+            new HistoryPolicy(null, HistoryPolicy.LogRetention.OFFLOAD), store, metrics);
+        PipeStream stream = stream(2);
+
+        PipeStream compacted = compactor.compact(stream);
+
+        assertThat(compacted.getHistoryList()).allSatisfy(record -> {
+            assertThat(record.getProcessorLogsList()).isEmpty();
+            assertThat(record.hasProcessorLogsRef()).isTrue();
+        });
+        assertThat(HistoryCompactor.processorLogs(compacted.getHistory(1), store))
+            .isEqualTo(stream.getHistory(1).getProcessorLogsList());
+        assertThat(metrics.stats().logsOffloaded()).isEqualTo(2);
+        assertThat(metrics.stats().bytesAfter()).isLessThan(metrics.stats().bytesBefore());
+        assertThat(compactor.compact(compacted)).isSameAs(compacted);
+    }
+
+    @Test
+    void offload_requiresStore() {
+        assertThatThrownBy(() -> new HistoryCompactor(
+            new HistoryPolicy(null, HistoryPolicy.LogRetention.OFFLOAD), new HistoryMetrics()))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void compactsServiceMetadata() {
+        HistoryCompactor compactor = new HistoryCompactor(HistoryPolicy.keepLast(1), new HistoryMetrics());
+        ServiceMetadata metadata = ServiceMetadata.newBuilder()
+            .setStreamId("stream-1")
+            .addAllHistory(stream(3).getHistoryList())
+            .build();
+
+        ServiceMetadata compacted = compactor.compact(metadata);
+
+        assertThat(compacted.getHistoryCount()).isEqualTo(1);
+        assertThat(compacted.getCompactedHistoryRecords()).isEqualTo(2);
+    }
+}
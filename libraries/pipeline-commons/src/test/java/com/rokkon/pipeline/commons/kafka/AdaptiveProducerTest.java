@@ -0,0 +1,173 @@
+package com.rokkon.pipeline.commons.kafka;
+
+import com.rokkon.pipeline.config.model.AdaptiveBatching;
+import com.rokkon.pipeline.config.model.KafkaTransportConfig;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests adaptive batching against {@link MockProducer}, Kafka's in-JVM producer stand-in.
+ */
+public class AdaptiveProducerTest {
+
+    private static final AdaptiveBatching ONE_SECOND_WINDOWS = new AdaptiveBatching(null, null, null, null, 1000);
+
+    private final AtomicLong now = new AtomicLong(System.nanoTime());
+    private final List<MockProducer<String, byte[]>> producers = new ArrayList<>();
+    private final List<Map<String, Object>> producerProperties = new ArrayList<>();
+
+    private AdaptiveProducer<String, byte[]> adaptiveProducer(AdaptiveBatching bounds) {
+        KafkaTransportConfig config = new KafkaTransportConfig("docs", null, null, null, null, null, bounds);
+        return new AdaptiveProducer<>(config, Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "in-jvm:9092"),
+            properties -> {
+                producerProperties.add(properties);
+                MockProducer<String, byte[]> producer =
+                    new MockProducer<>(true, null, new StringSerializer(), new ByteArraySerializer());
+                producers.add(producer);
+                return producer;
+            }, now::get);
+    }
+
+    private void send(AdaptiveProducer<String, byte[]> producer, int records, int recordBytes, long spacingMillis) {
+        byte[] value = new byte[recordBytes];
+        for (int i = 0; i < records; i++) {
+            producer.send(new ProducerRecord<>("docs", "doc-" + i, value), null);
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(spacingMillis));
+        }
+    }
+
+    @Test
+    void largeRecordsAtHighRate_growBatchAndLingerToFillTime() throws InterruptedException {
+        AdaptiveProducer<String, byte[]> producer = adaptiveProducer(ONE_SECOND_WINDOWS);
+        assertThat(producerProperties.get(0))
+            .containsEntry(ProducerConfig.BATCH_SIZE_CONFIG, 16384)
+            .containsEntry(ProducerConfig.LINGER_MS_CONFIG, 10)
+            .containsEntry(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "in-jvm:9092");
+
+        send(producer, 1000, 64 * 1024, 1);
+        send(producer, 1, 64 * 1024, 0);
+
+        AdaptiveBatchController.Stats stats = producer.stats();
+        assertThat(stats.decision()).isEqualTo(AdaptiveBatchController.Decision.FILL_TIME);
+        assertThat(stats.batchSize()).isEqualTo(1024 * 1024);
+        assertThat(stats.lingerMs()).isEqualTo(16);
+        assertThat(stats.averageRecordBytes()).isEqualTo(64 * 1024);
+        assertThat(stats.recordsPerSecond()).isEqualTo(1000);
+        assertThat(stats.reconfigurations()).isEqualTo(1);
+
+        assertThat(producers).hasSize(2);
+        assertThat(producerProperties.get(1))
+            .containsEntry(ProducerConfig.BATCH_SIZE_CONFIG, 1024 * 1024)
+            .containsEntry(ProducerConfig.LINGER_MS_CONFIG, 16);
+        assertThat(producers.get(0).history()).hasSize(1000);
+        assertThat(producers.get(1).history()).hasSize(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!producers.get(0).closed() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(producers.get(0).closed()).isTrue();
+    }
+
+    @Test
+    void steadyTraffic_keepsProducerWithinHysteresis() {
+        AdaptiveProducer<String, byte[]> producer = adaptiveProducer(ONE_SECOND_WINDOWS);
+        send(producer, 1000, 64 * 1024, 1);
+        send(producer, 1000, 60 * 1024, 1);
+        send(producer, 1, 64 * 1024, 0);
+
+        assertThat(producer.stats().decision()).isEqualTo(AdaptiveBatchController.Decision.UNCHANGED);
+        assertThat(producer.stats().reconfigurations()).isEqualTo(1);
+        assertThat(producers).hasSize(2);
+    }
+
+    @Test
+    void sparseTraffic_dropsLingerToMinimum() {
+        AdaptiveProducer<String, byte[]> producer = adaptiveProducer(ONE_SECOND_WINDOWS);
+        send(producer, 3, 1024, 600);
+
+        assertThat(producer.stats().decision()).isEqualTo(AdaptiveBatchController.Decision.SPARSE_TRAFFIC);
+        assertThat(producer.stats().lingerMs()).isZero();
+        assertThat(producer.stats().batchSize()).isEqualTo(16384);
+        assertThat(producerProperties.get(1)).containsEntry(ProducerConfig.LINGER_MS_CONFIG, 0);
+    }
+
+    @Test
+    void adjustAfterClose_keepsClosedProducerAndRejectsSend() {
+        AdaptiveProducer<String, byte[]> producer = adaptiveProducer(ONE_SECOND_WINDOWS);
+        send(producer, 1000, 64 * 1024, 1);
+
+        producer.close();
+
+        assertThatThrownBy(() -> send(producer, 1, 64 * 1024, 0))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Producer for topic docs is closed");
+        assertThat(producers).hasSize(1);
+        assertThat(producer.producer()).isSameAs(producers.get(0));
+        assertThat(producers.get(0).closed()).isTrue();
+    }
+
+    @Test
+    void idleWindow_keepsSettings() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(ONE_SECOND_WINDOWS, 32768, 5, 0);
+
+        AdaptiveBatchController.Stats stats = controller.evaluate(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(stats.decision()).isEqualTo(AdaptiveBatchController.Decision.IDLE);
+        assertThat(stats.changed()).isFalse();
+        assertThat(controller.batchSize()).isEqualTo(32768);
+        assertThat(controller.lingerMs()).isEqualTo(5);
+    }
+
+    @Test
+    void highSendLatency_raisesLinger() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(ONE_SECOND_WINDOWS, 16384, 10, 0);
+        for (int i = 0; i < 1000; i++) {
+            controller.recordSent(64 * 1024);
+            controller.recordAcknowledged(TimeUnit.MILLISECONDS.toNanos(100), true);
+        }
+
+        AdaptiveBatchController.Stats stats = controller.evaluate(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(stats.decision()).isEqualTo(AdaptiveBatchController.Decision.BACKPRESSURE);
+        assertThat(stats.lingerMs()).isEqualTo(32);
+        assertThat(stats.averageSendLatencyMs()).isEqualTo(100);
+    }
+
+    @Test
+    void boundsAreRespected() {
+        AdaptiveBatching narrow = new AdaptiveBatching(16384, 65536, 5, 20, 1000);
+        AdaptiveBatchController controller = new AdaptiveBatchController(narrow, 1, 1000, 0);
+        assertThat(controller.batchSize()).isEqualTo(16384);
+        assertThat(controller.lingerMs()).isEqualTo(20);
+
+        for (int i = 0; i < 1000; i++) {
+            controller.recordSent(1024 * 1024);
+        }
+        AdaptiveBatchController.Stats stats = controller.evaluate(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(stats.batchSize()).isEqualTo(65536);
+        assertThat(stats.lingerMs()).isBetween(5, 20);
+    }
+
+    @Test
+    void requiresAdaptiveBatchingConfig() {
+        KafkaTransportConfig config = new KafkaTransportConfig("docs", null, null, null, null, null);
+
+        assertThatThrownBy(() -> new AdaptiveProducer<String, byte[]>(config, Map.of(), properties -> null))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("does not enable adaptive batching");
+    }
+}
@@ -0,0 +1,324 @@
+package com.rokkon.pipeline.commons.kafka;
+
+import com.rokkon.pipeline.config.model.KafkaInputDefinition;
+import com.rokkon.search.model.PipeDoc;
+import com.rokkon.search.model.PipeStream;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests key-ordered consumption against {@link MockConsumer}, Kafka's in-JVM consumer stand-in.
+ */
+public class KeyOrderedConsumerTest {
+
+    private static final String TOPIC = "pipeline.chunker.output";
+    private static final TopicPartition PARTITION_0 = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition(TOPIC, 1);
+    private static final KafkaInputDefinition BY_RECORD_KEY = new KafkaInputDefinition(
+        List.of(TOPIC), "embedder", Map.of(), KafkaInputDefinition.ProcessingOrder.KEY, null);
+
+    private static <V> MockConsumer<String, V> mockConsumer(TopicPartition... partitions) {
+        MockConsumer<String, V> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(partitions));
+        for (TopicPartition partition : partitions) {
+            consumer.updateBeginningOffsets(Map.of(partition, 0L));
+        }
+        return consumer;
+    }
+
+    private static void addRecords(MockConsumer<String, String> consumer, TopicPartition partition, int count, int keys) {
+        for (int offset = 0; offset < count; offset++) {
+            consumer.addRecord(new ConsumerRecord<>(partition.topic(), partition.partition(), offset,
+                "key-" + (offset % keys), "value-" + offset));
+        }
+    }
+
+    private static void pollUntilDone(KeyOrderedConsumer<?, ?> consumer, long records) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            consumer.pollOnce(Duration.ofMillis(5));
+            KeyOrderedConsumer.Stats stats = consumer.stats();
+            if (stats.processed() + stats.failed() >= records && stats.buffered() == 0) {
+                consumer.pollOnce(Duration.ZERO);
+                return;
+            }
+        }
+        throw new AssertionError("Records not processed in time: " + consumer.stats());
+    }
+
+    private static Long committed(MockConsumer<?, ?> consumer, TopicPartition partition) {
+        OffsetAndMetadata offset = consumer.committed(Set.of(partition)).get(partition);
+        return offset == null ? null : offset.offset();
+    }
+
+    /**
+     * Records per key in processing order plus concurrency per key and overall.
+     */
+    private static final class Recorder {
+        final Map<Object, List<Long>> offsetsByKey = new ConcurrentHashMap<>();
+        final Map<Object, AtomicInteger> runningByKey = new ConcurrentHashMap<>();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger maxRunningPerKey = new AtomicInteger();
+
+        void record(Object key, long offset) throws InterruptedException {
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            int perKey = runningByKey.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            maxRunningPerKey.accumulateAndGet(perKey, Math::max);
+            offsetsByKey.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(offset);
+            Thread.sleep(2);
+            runningByKey.get(key).decrementAndGet();
+            running.decrementAndGet();
+        }
+    }
+
+    @Test
+    void keyMode_keepsKeyOrderAndCapsParallelism() {
+        MockConsumer<String, String> mock = mockConsumer(PARTITION_0);
+        addRecords(mock, PARTITION_0, 200, 10);
+        Recorder recorder = new Recorder();
+        KeyOrderedConsumer<String, String> consumer = new KeyOrderedConsumer<>(mock, BY_RECORD_KEY, 4,
+            record -> recorder.record(record.key(), record.offset()));
+
+        pollUntilDone(consumer, 200);
+
+        assertThat(recorder.offsetsByKey).hasSize(10);
+        recorder.offsetsByKey.values().forEach(offsets -> assertThat(offsets).hasSize(20).isSorted());
+        assertThat(recorder.maxRunningPerKey.get()).isEqualTo(1);
+        assertThat(recorder.maxRunning.get()).isBetween(2, 4);
+        assertThat(committed(mock, PARTITION_0)).isEqualTo(200L);
+        assertThat(consumer.stats().processed()).isEqualTo(200);
+        assertThat(consumer.stats().activeKeys()).isZero();
+    }
+
+    @Test
+    void partitionMode_processesEachPartitionSequentially() {
+        MockConsumer<String, String> mock = mockConsumer(PARTITION_0, PARTITION_1);
+        addRecords(mock, PARTITION_0, 50, 50);
+        addRecords(mock, PARTITION_1, 50, 50);
+        Recorder recorder = new Recorder();
+        KafkaInputDefinition input = new KafkaInputDefinition(List.of(TOPIC), "embedder", Map.of());
+        KeyOrderedConsumer<String, String> consumer = new KeyOrderedConsumer<>(mock, input, 8,
+            record -> recorder.record(record.partition(), record.offset()));
+
+        pollUntilDone(consumer, 100);
+
+        assertThat(recorder.maxRunningPerKey.get()).isEqualTo(1);
+        assertThat(recorder.offsetsByKey.get(0)).hasSize(50).isSorted();
+        assertThat(recorder.offsetsByKey.get(1)).hasSize(50).isSorted();
+        assertThat(committed(mock, PARTITION_0)).isEqualTo(50L);
+        assertThat(committed(mock, PARTITION_1)).isEqualTo(50L);
+    }
+
+    @Test
+    void orderingKeyField_ordersByPipeDocIdInsteadOfRecordKey() {
+        MockConsumer<String, byte[]> mock = mockConsumer(PARTITION_0);
+        for (int offset = 0; offset < 60; offset++) {
+            byte[] stream = PipeStream.newBuilder()
+                .setStreamId(UUID.randomUUID().toString())
+                .setDocument(PipeDoc.newBuilder().setId("doc-" + (offset % 3)))
+                .build()
+                .toByteArray();
+            mock.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, UUID.randomUUID().toString(), stream));
+        }
+        Recorder recorder = new Recorder();
+        KafkaInputDefinition input = new KafkaInputDefinition(
+            List.of(TOPIC), "embedder", Map.of(), KafkaInputDefinition.ProcessingOrder.KEY, "pipedocId");
+        KeyOrderedConsumer<String, byte[]> consumer = new KeyOrderedConsumer<>(mock, input, 8,
+            record -> recorder.record(PipeStream.parseFrom(record.value()).getDocument().getId(), record.offset()));
+
+        pollUntilDone(consumer, 60);
+
+        assertThat(recorder.offsetsByKey).containsOnlyKeys("doc-0", "doc-1", "doc-2");
+        recorder.offsetsByKey.values().forEach(offsets -> assertThat(offsets).hasSize(20).isSorted());
+        assertThat(recorder.maxRunningPerKey.get()).isEqualTo(1);
+    }
+
+    @Test
+    void commit_stopsAtLowestRecordInFlight() throws InterruptedException {
+        MockConsumer<String, String> mock = mockConsumer(PARTITION_0);
+        addRecords(mock, PARTITION_0, 10, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        KeyOrderedConsumer<String, String> consumer = new KeyOrderedConsumer<>(mock, BY_RECORD_KEY, 4, record -> {
+            if (record.offset() == 0) {
+                release.await();
+            }
+        });
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (consumer.stats().processed() < 9 && System.nanoTime() < deadline) {
+            consumer.pollOnce(Duration.ofMillis(5));
+        }
+        consumer.pollOnce(Duration.ZERO);
+
+        assertThat(consumer.stats().processed()).isEqualTo(9);
+        assertThat(committed(mock, PARTITION_0)).isNull();
+
+        release.countDown();
+        pollUntilDone(consumer, 10);
+
+        assertThat(committed(mock, PARTITION_0)).isEqualTo(10L);
+    }
+
+    @Test
+    void failedRecord_doesNotHoldBackCommit() {
+        MockConsumer<String, String> mock = mockConsumer(PARTITION_0);
+        addRecords(mock, PARTITION_0, 3, 3);
+        KeyOrderedConsumer<String, String> consumer = new KeyOrderedConsumer<>(mock, BY_RECORD_KEY, 2, record -> {
+            if (record.offset() == 1) {
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        pollUntilDone(consumer, 3);
+
+        assertThat(consumer.stats().failed()).isEqualTo(1);
+        assertThat(consumer.stats().processed()).isEqualTo(2);
+        assertThat(committed(mock, PARTITION_0)).isEqualTo(3L);
+    }
+
+    private static void releaseLater(CountDownLatch release) {
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+    }
+
+    @Test
+    void revoke_waitsForInFlightRecordsThenCommits() throws InterruptedException {
+        MockConsumer<String, String> mock = mockConsumer(PARTITION_0);
+        addRecords(mock, PARTITION_0, 5, 5);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        KeyOrderedConsumer<String, String> consumer = new KeyOrderedConsumer<>(mock, BY_RECORD_KEY, 4, record -> {
+            if (record.offset() == 2) {
+                started.countDown();
+                release.await();
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (consumer.stats().processed() < 4 && System.nanoTime() < deadline) {
+            consumer.pollOnce(Duration.ofMillis(5));
+        }
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        releaseLater(release);
+        consumer.rebalanceListener().onPartitionsRevoked(List.of(PARTITION_0));
+
+        assertThat(consumer.stats().processed()).isEqualTo(5);
+        assertThat(committed(mock, PARTITION_0)).isEqualTo(5L);
+    }
+
+    @Test
+    void rebalance_dropsQueuedRecordsOfRevokedPartitionAndCommitsBelowThem() throws InterruptedException {
+        MockConsumer<String, String> mock = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        List<Long> offsets = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        KeyOrderedConsumer<String, String> consumer = new KeyOrderedConsumer<>(mock, BY_RECORD_KEY, 4, record -> {
+            offsets.add(record.offset());
+            started.countDown();
+            release.await();
+        });
+        consumer.subscribe();
+        mock.rebalance(List.of(PARTITION_0));
+        mock.updateBeginningOffsets(Map.of(PARTITION_0, 0L));
+        addRecords(mock, PARTITION_0, 5, 1);
+        consumer.pollOnce(Duration.ZERO);
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        releaseLater(release);
+        mock.rebalance(List.of());
+        // Committed offsets are only reported for assigned partitions
+        mock.rebalance(List.of(PARTITION_0));
+
+        Thread.sleep(50);
+        assertThat(offsets).containsExactly(0L);
+        assertThat(consumer.stats().processed()).isEqualTo(1);
+        assertThat(consumer.stats().buffered()).isZero();
+        assertThat(committed(mock, PARTITION_0)).isEqualTo(1L);
+    }
+
+    @Test
+    void lostPartition_dropsQueuedRecordsWithoutCommitting() throws InterruptedException {
+        MockConsumer<String, String> mock = mockConsumer(PARTITION_0);
+        addRecords(mock, PARTITION_0, 5, 1);
+        List<Long> offsets = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        KeyOrderedConsumer<String, String> consumer = new KeyOrderedConsumer<>(mock, BY_RECORD_KEY, 4, record -> {
+            offsets.add(record.offset());
+            started.countDown();
+            release.await();
+        });
+        consumer.pollOnce(Duration.ZERO);
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        consumer.rebalanceListener().onPartitionsLost(List.of(PARTITION_0));
+        release.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (consumer.stats().buffered() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        consumer.pollOnce(Duration.ZERO);
+        assertThat(offsets).containsExactly(0L);
+        assertThat(consumer.stats().buffered()).isZero();
+        assertThat(committed(mock, PARTITION_0)).isNull();
+    }
+
+    @Test
+    void tooManyBufferedRecords_pauseUntilDrained() {
+        int records = KeyOrderedConsumer.BUFFERED_RECORDS_PER_SLOT + 10;
+        MockConsumer<String, String> mock = mockConsumer(PARTITION_0);
+        addRecords(mock, PARTITION_0, records, records);
+        CountDownLatch release = new CountDownLatch(1);
+        KeyOrderedConsumer<String, String> consumer = new KeyOrderedConsumer<>(mock, BY_RECORD_KEY, 1,
+            record -> release.await());
+
+        consumer.pollOnce(Duration.ZERO);
+
+        assertThat(consumer.stats().paused()).isTrue();
+        assertThat(mock.paused()).containsExactly(PARTITION_0);
+
+        release.countDown();
+        pollUntilDone(consumer, records);
+
+        assertThat(consumer.stats().paused()).isFalse();
+        assertThat(mock.paused()).isEmpty();
+        assertThat(committed(mock, PARTITION_0)).isEqualTo((long) records);
+    }
+
+    @Test
+    void rejectsNonPositiveParallelism() {
+        MockConsumer<String, String> mock = mockConsumer(PARTITION_0);
+
+        assertThatThrownBy(() -> new KeyOrderedConsumer<>(mock, BY_RECORD_KEY, 0, record -> { }))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("maxParallelism must be positive.");
+    }
+}
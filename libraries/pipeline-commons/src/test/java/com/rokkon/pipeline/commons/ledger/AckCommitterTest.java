@@ -0,0 +1,150 @@
+package com.rokkon.pipeline.commons.ledger;
+
+import com.rokkon.connector.coordinator.AckProcessedBatchRequest;
+import com.rokkon.connector.coordinator.AckProcessedBatchResponse;
+import com.rokkon.connector.coordinator.AckProcessedRequest;
+import com.rokkon.connector.coordinator.ConnectorStatus;
+import com.rokkon.connector.coordinator.LedgerEntry;
+import com.rokkon.connector.coordinator.QueryLedgerRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AckCommitterTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @TempDir
+    Path tempDir;
+
+    private static AckProcessedBatchRequest batch(String connectorId, String syncId, int from, int count) {
+        AckProcessedBatchRequest.Builder batch = AckProcessedBatchRequest.newBuilder()
+            .setConnectorId(connectorId).setSourceId(connectorId + "-source");
+        for (int i = from; i < from + count; i++) {
+            AckProcessedRequest.Builder ack = AckProcessedRequest.newBuilder().setSyncId(syncId)
+                .setResourceId("doc-" + i).setSuccess(i % 10 != 0);
+            if (i % 10 == 0) {
+                ack.setErrorMessage("parse failed for doc-" + i);
+            } else {
+                ack.setStreamId("stream-" + i);
+            }
+            batch.addAcks(ack);
+        }
+        return batch.build();
+    }
+
+    @Test
+    void queuedBatches_shareOneCommitAndCoalesceCounters() throws Exception {
+        try (LedgerStore ledger = new LedgerStore(tempDir, LedgerStoreSettings.DEFAULTS);
+             AckCommitter committer = new AckCommitter(ledger, AckCommitterSettings.DEFAULTS, () -> NOW, false)) {
+            CompletableFuture<AckProcessedBatchResponse> first = committer.submit(batch("wiki", "sync-1", 0, 20));
+            CompletableFuture<AckProcessedBatchResponse> second = committer.submit(batch("wiki", "sync-1", 20, 20));
+            CompletableFuture<AckProcessedBatchResponse> other = committer.submit(batch("drive", "sync-9", 0, 5));
+            assertThat(first).isNotDone();
+
+            assertThat(committer.commitPending()).isEqualTo(45);
+
+            assertThat(first.get().getAcknowledged()).isEqualTo(20);
+            assertThat(second.get().getAcknowledged()).isEqualTo(20);
+            assertThat(other.get().getAcknowledged()).isEqualTo(5);
+            assertThat(committer.stats().commits()).isEqualTo(1);
+            assertThat(committer.stats().pendingAcks()).isZero();
+
+            List<LedgerEntry> failures = ledger.query(QueryLedgerRequest.newBuilder().setSourceId("wiki-source")
+                .addEventTypes(AckCommitter.SYNC_FAILED).build()).getEntriesList();
+            assertThat(failures).extracting(LedgerEntry::getResourceId)
+                .containsExactly("doc-0", "doc-10", "doc-20", "doc-30");
+            assertThat(failures.get(0).getSyncId()).isEqualTo("sync-1");
+            assertThat(failures.get(0).getEventDetails().getFieldsOrThrow("error_message").getStringValue())
+                .isEqualTo("parse failed for doc-0");
+            assertThat(ledger.latest("doc-7", "wiki-source")).map(LedgerEntry::getEventType)
+                .contains(AckCommitter.SYNC_SUCCESS);
+
+            ConnectorStatus status = committer.applyCounters(ConnectorStatus.newBuilder().setConnectorId("wiki")).build();
+            assertThat(status.getCurrentSyncId()).isEqualTo("sync-1");
+            assertThat(status.getItemsProcessedCurrentSync()).isEqualTo(40);
+            assertThat(status.getTotalItemsProcessed()).isEqualTo(40);
+            assertThat(status.getTotalErrors()).isEqualTo(4);
+            assertThat(status.getLastErrorMessage()).isEqualTo("parse failed for doc-30");
+        }
+    }
+
+    @Test
+    void interleavedSyncs_areCountedApart() {
+        try (LedgerStore ledger = new LedgerStore(tempDir, LedgerStoreSettings.DEFAULTS);
+             AckCommitter committer = new AckCommitter(ledger, AckCommitterSettings.DEFAULTS, () -> NOW, false)) {
+            committer.submit(batch("wiki", "sync-1", 0, 10));
+            committer.submit(batch("wiki", "sync-2", 0, 3));
+            committer.submit(batch("wiki", "sync-1", 10, 5));
+            committer.commitPending();
+
+            ConnectorStatus last = committer.applyCounters(ConnectorStatus.newBuilder().setConnectorId("wiki")).build();
+            ConnectorStatus other = committer.applyCounters(ConnectorStatus.newBuilder().setConnectorId("wiki")
+                .setCurrentSyncId("sync-2")).build();
+
+            assertThat(last.getCurrentSyncId()).isEqualTo("sync-1");
+            assertThat(last.getItemsProcessedCurrentSync()).isEqualTo(15);
+            assertThat(other.getItemsProcessedCurrentSync()).isEqualTo(3);
+            assertThat(last.getTotalItemsProcessed()).isEqualTo(18);
+        }
+    }
+
+    @Test
+    void invalidAcksAreRejectedAndFullQueueRefuses() throws Exception {
+        try (LedgerStore ledger = new LedgerStore(tempDir, LedgerStoreSettings.DEFAULTS);
+             AckCommitter committer = new AckCommitter(ledger, new AckCommitterSettings(10, Duration.ZERO, 30),
+                 () -> NOW, false)) {
+            AckProcessedBatchRequest invalid = batch("wiki", "sync-1", 0, 3).toBuilder()
+                .addAcks(AckProcessedRequest.newBuilder().setResourceId("doc-x").setSuccess(true)).build();
+            CompletableFuture<AckProcessedBatchResponse> mixed = committer.submit(invalid);
+            committer.submit(batch("wiki", "sync-1", 3, 25));
+            CompletableFuture<AckProcessedBatchResponse> refused = committer.submit(batch("wiki", "sync-1", 28, 5));
+
+            assertThatThrownBy(refused::join).hasCauseInstanceOf(RejectedExecutionException.class);
+            committer.commitPending();
+
+            assertThat(mixed.get().getAcknowledged()).isEqualTo(3);
+            assertThat(mixed.get().getRejected()).isEqualTo(1);
+            assertThat(committer.stats().refused()).isEqualTo(1);
+            assertThat(committer.stats().rejected()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void concurrentConnectors_allAcksBecomeDurable() throws Exception {
+        try (LedgerStore ledger = new LedgerStore(tempDir, LedgerStoreSettings.DEFAULTS);
+             AckCommitter committer = new AckCommitter(ledger, AckCommitterSettings.DEFAULTS)) {
+            List<Thread> connectors = new ArrayList<>();
+            for (int c = 0; c < 8; c++) {
+                String connectorId = "connector-" + c;
+                List<CompletableFuture<AckProcessedBatchResponse>> own = new ArrayList<>();
+                connectors.add(Thread.ofVirtual().start(() -> {
+                    for (int b = 0; b < 50; b++) {
+                        own.add(committer.submit(batch(connectorId, "sync-1", b * 20, 20)));
+                    }
+                    own.forEach(CompletableFuture::join);
+                }));
+            }
+            for (Thread connector : connectors) {
+                connector.join(TimeUnit.SECONDS.toMillis(30));
+            }
+
+            assertThat(committer.stats().acknowledged()).isEqualTo(8 * 50 * 20);
+            assertThat(committer.stats().commits()).isLessThanOrEqualTo(8 * 50);
+            assertThat(ledger.stats().entries()).isEqualTo(8 * 50 * 20);
+            ConnectorStatus status = committer.applyCounters(ConnectorStatus.newBuilder().setConnectorId("connector-3"))
+                .build();
+            assertThat(status.getItemsProcessedCurrentSync()).isEqualTo(50 * 20);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.rokkon.pipeline.commons.ledger;
+
+import com.google.protobuf.util.Timestamps;
+import com.rokkon.connector.coordinator.LedgerEntry;
+import com.rokkon.connector.coordinator.QueryLedgerRequest;
+import com.rokkon.connector.coordinator.QueryLedgerResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LedgerStoreTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+    private static final LedgerStoreSettings SETTINGS = new LedgerStoreSettings(Duration.ofHours(1), 1024, 10, 50);
+
+    @TempDir
+    Path tempDir;
+
+    private static LedgerEntry entry(String resourceId, String sourceId, String eventType, long timestamp) {
+        return LedgerEntry.newBuilder().setResourceId(resourceId).setSourceId(sourceId).setEventType(eventType)
+            .setTimestamp(Timestamps.fromMillis(timestamp)).build();
+    }
+
+    private static List<String> resources(QueryLedgerResponse response) {
+        return response.getEntriesList().stream().map(LedgerEntry::getResourceId).toList();
+    }
+
+    @Test
+    void query_filtersByResourceSourceTimeAndEventType() {
+        try (LedgerStore store = new LedgerStore(tempDir, SETTINGS)) {
+            for (int hour = 0; hour < 5; hour++) {
+                store.append(entry("doc-1", "wiki", "UPDATED", hour * HOUR + 10));
+                store.append(entry("doc-2", "wiki", "SYNC_SUCCESS", hour * HOUR + 20));
+                store.append(entry("doc-1", "drive", "SYNC_FAILED", hour * HOUR + 30));
+            }
+
+            QueryLedgerResponse doc1 = store.query(QueryLedgerRequest.newBuilder().setResourceId("doc-1")
+                .setSince(Timestamps.fromMillis(HOUR + 10)).setUntil(Timestamps.fromMillis(3 * HOUR + 10)).build());
+            QueryLedgerResponse wikiDoc1 = store.query(QueryLedgerRequest.newBuilder().setResourceId("doc-1")
+                .setSourceId("wiki").build());
+            QueryLedgerResponse failures = store.query(QueryLedgerRequest.newBuilder()
+                .addEventTypes("SYNC_FAILED").addEventTypes("NEVER_SEEN").build());
+
+            assertThat(doc1.getEntriesList()).extracting(entry -> Timestamps.toMillis(entry.getTimestamp()))
+                .containsExactly(HOUR + 10, HOUR + 30, 2 * HOUR + 10, 2 * HOUR + 30);
+            assertThat(doc1.getNextPageToken()).isEmpty();
+            assertThat(wikiDoc1.getEntriesList()).hasSize(5).allMatch(entry -> entry.getEventType().equals("UPDATED"));
+            assertThat(failures.getEntriesList()).hasSize(5).allMatch(entry -> entry.getSourceId().equals("drive"));
+            assertThat(store.query(QueryLedgerRequest.newBuilder().setResourceId("missing").build()).getEntriesList())
+                .isEmpty();
+        }
+    }
+
+    @Test
+    void query_pagesThroughAllEntriesOnce() {
+        try (LedgerStore store = new LedgerStore(tempDir, SETTINGS)) {
+            for (int i = 0; i < 95; i++) {
+                store.append(entry("doc-" + i, i % 2 == 0 ? "even" : "odd", "CREATED", i * HOUR / 10));
+            }
+
+            List<String> seen = new ArrayList<>();
+            String token = "";
+            int pages = 0;
+            do {
+                QueryLedgerResponse page = store.query(QueryLedgerRequest.newBuilder().setSourceId("odd").setLimit(7)
+                    .setPageToken(token).build());
+                assertThat(page.getEntriesCount()).isLessThanOrEqualTo(7);
+                seen.addAll(resources(page));
+                token = page.getNextPageToken();
+                pages++;
+            } while (!token.isEmpty());
+
+            assertThat(seen).hasSize(47).doesNotHaveDuplicates().allMatch(id -> Integer.parseInt(id.substring(4)) % 2 == 1);
+            assertThat(pages).isEqualTo(7);
+            assertThat(store.query(QueryLedgerRequest.newBuilder().setLimit(1000).build()).getEntriesCount())
+                .isEqualTo(SETTINGS.maxPageSize());
+            assertThatThrownBy(() -> store.query(QueryLedgerRequest.newBuilder().setPageToken("bogus!").build()))
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void latest_returnsNewestEntryOfResource() {
+        try (LedgerStore store = new LedgerStore(tempDir, SETTINGS, () -> 5 * HOUR)) {
+            store.append(entry("doc-1", "wiki", "CREATED", HOUR));
+            store.append(entry("doc-1", "wiki", "UPDATED", 3 * HOUR));
+            store.append(entry("doc-1", "wiki", "SYNC_FAILED", 2 * HOUR));
+            store.append(LedgerEntry.newBuilder().setResourceId("doc-2").setSourceId("wiki").setEventType("DELETED")
+                .build());
+
+            assertThat(store.latest("doc-1", "wiki")).map(LedgerEntry::getEventType).contains("UPDATED");
+            assertThat(store.latest("doc-2", "wiki")).map(entry -> Timestamps.toMillis(entry.getTimestamp()))
+                .contains(5 * HOUR);
+            assertThat(store.latest("doc-1", "drive")).isEmpty();
+        }
+    }
+
+    @Test
+    void reopen_readsSealedIndexesWithoutScanningSegments() throws IOException {
+        LedgerStoreSettings settings = new LedgerStoreSettings(Duration.ofHours(1), 4096, 10, 50, 2);
+        int entries = 20_000;
+        try (LedgerStore store = new LedgerStore(tempDir, settings)) {
+            for (int i = 0; i < entries; i++) {
+                store.append(entry("doc-" + (i % 5000), i % 3 == 0 ? "wiki" : "drive", i % 2 == 0 ? "CREATED" : "UPDATED",
+                    i * HOUR / 1000));
+            }
+            // Only the segments of the two most recently appended buckets are still open
+            assertThat(store.stats().segments() - store.stats().sealedSegments()).isLessThanOrEqualTo(2);
+        }
+        Path first;
+        long firstSize;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            first = files.filter(path -> path.toString().endsWith(".ledger")).min(Path::compareTo).orElseThrow();
+        }
+        firstSize = Files.size(first);
+        // A scan would find the broken checksum and truncate the segment
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f, 0x7f, 0x7f, 0x7f}), 4);
+        }
+
+        try (LedgerStore store = new LedgerStore(tempDir, settings)) {
+            assertThat(store.stats().entries()).isEqualTo(entries);
+            assertThat(store.stats().sealedSegments()).isEqualTo(store.stats().segments());
+            assertThat(Files.size(first)).isEqualTo(firstSize);
+
+            QueryLedgerResponse doc = store.query(QueryLedgerRequest.newBuilder().setResourceId("doc-4321")
+                .setSourceId("drive").build());
+            assertThat(doc.getEntriesList()).extracting(entry -> Timestamps.toMillis(entry.getTimestamp()))
+                .containsExactly(4321 * HOUR / 1000, 14321 * HOUR / 1000, 19321 * HOUR / 1000);
+            assertThat(store.query(QueryLedgerRequest.newBuilder().setResourceId("doc-4321").addEventTypes("CREATED")
+                .build()).getEntriesCount()).isZero();
+            assertThat(store.latest("doc-4321", "wiki")).map(entry -> Timestamps.toMillis(entry.getTimestamp()))
+                .contains(9321 * HOUR / 1000);
+            assertThat(store.latest("doc-4321", "")).isEmpty();
+
+            store.append(entry("doc-4321", "wiki", "DELETED", 30 * HOUR));
+            assertThat(store.latest("doc-4321", "wiki")).map(LedgerEntry::getEventType).contains("DELETED");
+        }
+    }
+
+    @Test
+    void reopen_rebuildsIndexAndDropsTornTail() throws IOException {
+        try (LedgerStore store = new LedgerStore(tempDir, SETTINGS)) {
+            for (int i = 0; i < 40; i++) {
+                store.append(entry("doc-" + (i % 4), "wiki", "UPDATED", i * HOUR / 4));
+            }
+            store.sync();
+        }
+        Path last;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            last = files.filter(path -> path.toString().endsWith(".ledger")).max(Path::compareTo).orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 42}));
+        }
+
+        long tornSize = Files.size(last);
+
+        try (LedgerStore store = new LedgerStore(tempDir, SETTINGS)) {
+            assertThat(store.stats().entries()).isEqualTo(40);
+            assertThat(Files.size(last)).isEqualTo(tornSize - 5);
+            assertThat(store.stats().sealedSegments()).isEqualTo(store.stats().segments() - 1);
+            assertThat(store.query(QueryLedgerRequest.newBuilder().setResourceId("doc-3").build()).getEntriesCount())
+                .isEqualTo(10);
+
+            store.append(entry("doc-9", "wiki", "CREATED", 9 * HOUR + 1));
+            assertThat(store.latest("doc-9", "wiki")).isPresent();
+        }
+    }
+
+    @Test
+    void appendAll_writesNothingIfAnEntryFails() throws IOException {
+        try (LedgerStore store = new LedgerStore(tempDir, SETTINGS)) {
+            store.append(entry("doc-0", "wiki", "CREATED", 10));
+            Path first = tempDir.resolve("0_0.ledger");
+            long size = Files.size(first);
+            // The next segment's file already exists, so starting it fails
+            Files.createFile(tempDir.resolve(HOUR + "_1.ledger"));
+
+            assertThatThrownBy(() -> store.appendAll(List.of(entry("doc-1", "wiki", "CREATED", 20),
+                entry("doc-2", "drive", "CREATED", 30), entry("doc-3", "wiki", "CREATED", HOUR))))
+                .isInstanceOf(UncheckedIOException.class);
+
+            assertThat(Files.size(first)).isEqualTo(size);
+            assertThat(store.stats().entries()).isEqualTo(1);
+            assertThat(resources(store.query(QueryLedgerRequest.getDefaultInstance()))).containsExactly("doc-0");
+            assertThat(store.query(QueryLedgerRequest.newBuilder().setSourceId("drive").build()).getEntriesList())
+                .isEmpty();
+
+            store.appendAll(List.of(entry("doc-1", "wiki", "CREATED", 20), entry("doc-3", "wiki", "CREATED", HOUR)));
+            assertThat(resources(store.query(QueryLedgerRequest.getDefaultInstance())))
+                .containsExactly("doc-0", "doc-1", "doc-3");
+        }
+    }
+
+    @Test
+    void dropBucketsBefore_deletesWholeBucketsOnly() {
+        try (LedgerStore store = new LedgerStore(tempDir, SETTINGS)) {
+            for (int hour = 0; hour < 4; hour++) {
+                store.append(entry("doc-" + hour, "wiki", "CREATED", hour * HOUR));
+            }
+
+            assertThat(store.dropBucketsBefore(Instant.ofEpochMilli(2 * HOUR + 30))).isEqualTo(2);
+
+            assertThat(resources(store.query(QueryLedgerRequest.getDefaultInstance()))).containsExactly("doc-2", "doc-3");
+            assertThat(store.latest("doc-0", "wiki")).isEmpty();
+            assertThat(store.stats().segments()).isEqualTo(2);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.rokkon.pipeline.commons.retry;
+
+import com.rokkon.pipeline.config.model.PipelineInstance;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
+import com.rokkon.pipeline.config.model.StepType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RetrySchedulerTest {
+
+    private static final RetryPolicy FIXED_100_MS = new RetryPolicy(3, 100, 100, 1.0);
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicLong now = new AtomicLong(System.nanoTime());
+    private final List<RetryScheduler.RetryTask> fired = new ArrayList<>();
+
+    private RetrySchedulerSettings settings(long maxHeapBytes, double ratio, double minPerSecond, int burst) {
+        return new RetrySchedulerSettings(Duration.ofMillis(10), 8, maxHeapBytes, tempDir, 64, ratio, minPerSecond, burst);
+    }
+
+    private RetryScheduler scheduler(RetrySchedulerSettings settings) {
+        return new RetryScheduler(settings, fired::add, Runnable::run, now::get, new Random(42), false);
+    }
+
+    private int advanceBy(RetryScheduler scheduler, long millis) {
+        return scheduler.advance(now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis)));
+    }
+
+    @Test
+    void policy_followsStepSettingsAndInstanceOverride() {
+        PipelineStepConfig step = new PipelineStepConfig("embed", StepType.PIPELINE, null, null, null, List.of(),
+            null, 3, 100L, 1000L, 3.0, null, new PipelineStepConfig.ProcessorInfo("embedder", null));
+
+        RetryPolicy policy = RetryPolicy.forStep(step);
+        assertThat(policy.maxRetries()).isEqualTo(3);
+        assertThat(policy.backoffMs(1)).isEqualTo(100);
+        assertThat(policy.backoffMs(2)).isEqualTo(300);
+        assertThat(policy.backoffMs(3)).isEqualTo(900);
+        assertThat(policy.backoffMs(4)).isEqualTo(1000);
+        assertThat(policy.allows(3)).isTrue();
+        assertThat(policy.allows(4)).isFalse();
+
+        PipelineInstance.StepConfigOverride override = new PipelineInstance.StepConfigOverride(null, null, 5, null, null);
+        assertThat(RetryPolicy.forStep(step, override).maxRetries()).isEqualTo(5);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(policy.delayMs(2, random)).isBetween(150L, 300L);
+        }
+    }
+
+    @Test
+    void retry_firesAfterItsDelayAndNotBefore() {
+        RetryScheduler scheduler = scheduler(settings(1024, 0.2, 0, 100));
+
+        assertThat(scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[]{1, 2, 3}))
+            .isEqualTo(RetryScheduler.Outcome.SCHEDULED);
+        assertThat(advanceBy(scheduler, 49)).isZero();
+        assertThat(scheduler.stats().pending()).isEqualTo(1);
+
+        assertThat(advanceBy(scheduler, 61)).isEqualTo(1);
+        assertThat(fired).singleElement().satisfies(task -> {
+            assertThat(task.stepName()).isEqualTo("embed");
+            assertThat(task.retry()).isEqualTo(1);
+            assertThat(task.payload()).containsExactly(1, 2, 3);
+        });
+        assertThat(scheduler.stats().pending()).isZero();
+        assertThat(scheduler.stats().heapBytes()).isZero();
+    }
+
+    @Test
+    void longDelays_takeSeveralTurnsOfTheWheel() {
+        RetryScheduler scheduler = scheduler(settings(1024, 0.2, 0, 100));
+        RetryPolicy oneSecond = new RetryPolicy(1, 1000, 1000, 1.0);
+        scheduler.schedule(oneSecond, "embed", 1, new byte[1]);
+
+        // The wheel spans 80 ms, so the retry passes its slot several times before it is due
+        for (int elapsed = 10; elapsed < 500; elapsed += 10) {
+            assertThat(advanceBy(scheduler, 10)).isZero();
+        }
+        int count = 0;
+        for (int elapsed = 500; elapsed <= 1010; elapsed += 10) {
+            count += advanceBy(scheduler, 10);
+        }
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    void fallingBehind_firesEverythingDue() {
+        RetryScheduler scheduler = scheduler(settings(1024, 0.2, 0, 100));
+        for (int i = 0; i < 50; i++) {
+            scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[]{(byte) i});
+        }
+        scheduler.schedule(new RetryPolicy(1, 60_000, 60_000, 1.0), "embed", 1, new byte[1]);
+
+        assertThat(advanceBy(scheduler, 5_000)).isEqualTo(50);
+        assertThat(scheduler.stats().pending()).isEqualTo(1);
+        assertThat(advanceBy(scheduler, 60_000)).isEqualTo(1);
+    }
+
+    @Test
+    void schedule_rejectsRetriesBeyondPolicy() {
+        RetryScheduler scheduler = scheduler(settings(1024, 0.2, 0, 100));
+        RetryPolicy twice = new RetryPolicy(2, 100, 100, 1.0);
+
+        assertThat(scheduler.schedule(twice, "embed", 2, new byte[1])).isEqualTo(RetryScheduler.Outcome.SCHEDULED);
+        assertThat(scheduler.schedule(twice, "embed", 3, new byte[1]))
+            .isEqualTo(RetryScheduler.Outcome.RETRIES_EXHAUSTED);
+        assertThat(scheduler.stats().retriesExhausted()).isEqualTo(1);
+    }
+
+    @Test
+    void budget_limitsRetriesPerStep() {
+        RetryScheduler scheduler = scheduler(settings(1024, 0.5, 10, 5));
+        for (int i = 0; i < 5; i++) {
+            assertThat(scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[1]))
+                .isEqualTo(RetryScheduler.Outcome.SCHEDULED);
+        }
+        assertThat(scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[1]))
+            .isEqualTo(RetryScheduler.Outcome.BUDGET_EXHAUSTED);
+        assertThat(scheduler.schedule(FIXED_100_MS, "chunk", 1, new byte[1]))
+            .isEqualTo(RetryScheduler.Outcome.SCHEDULED);
+
+        scheduler.recordAttempt("embed");
+        scheduler.recordAttempt("embed");
+        assertThat(scheduler.availableBudget("embed")).isEqualTo(1);
+        assertThat(scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[1]))
+            .isEqualTo(RetryScheduler.Outcome.SCHEDULED);
+        assertThat(scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[1]))
+            .isEqualTo(RetryScheduler.Outcome.BUDGET_EXHAUSTED);
+
+        // Ten retries per second floor
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[1]))
+            .isEqualTo(RetryScheduler.Outcome.SCHEDULED);
+        assertThat(scheduler.stats().budgetExhausted()).isEqualTo(2);
+    }
+
+    @Test
+    void payloadsBeyondHeapLimit_areSpilledAndReadBack() throws IOException {
+        RetryScheduler scheduler = scheduler(settings(100, 0.2, 0, 100));
+        for (int i = 0; i < 5; i++) {
+            byte[] payload = new byte[60];
+            Arrays.fill(payload, (byte) i);
+            scheduler.schedule(FIXED_100_MS, "embed", 1, payload);
+        }
+
+        RetryScheduler.Stats stats = scheduler.stats();
+        assertThat(stats.pending()).isEqualTo(5);
+        assertThat(stats.spilled()).isEqualTo(4);
+        assertThat(stats.heapBytes()).isEqualTo(60);
+        assertThat(stats.spilledBytes()).isEqualTo(240);
+        assertThat(spillFiles()).isNotEmpty();
+
+        assertThat(advanceBy(scheduler, 200)).isEqualTo(5);
+
+        assertThat(fired).hasSize(5);
+        for (RetryScheduler.RetryTask task : fired) {
+            byte[] expected = new byte[60];
+            Arrays.fill(expected, task.payload()[0]);
+            assertThat(task.payload()).isEqualTo(expected);
+        }
+        assertThat(fired).extracting(task -> (int) task.payload()[0]).containsExactlyInAnyOrder(0, 1, 2, 3, 4);
+        assertThat(scheduler.stats().spilled()).isZero();
+        assertThat(scheduler.stats().spilledBytes()).isZero();
+
+        scheduler.close();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void unreadableSpill_isCountedLostAndReleasedOffTheTick() throws IOException {
+        List<Runnable> tasks = new ArrayList<>();
+        RetryScheduler scheduler = new RetryScheduler(settings(100, 1.0, 0, 100), fired::add, tasks::add, now::get,
+            new Random(42), false);
+        for (int i = 0; i < 4; i++) {
+            scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[60]);
+        }
+
+        assertThat(advanceBy(scheduler, 200)).isEqualTo(4);
+        assertThat(scheduler.stats().spilledBytes()).isEqualTo(180);
+        for (Path file : spillFiles()) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(10);
+            }
+        }
+        tasks.forEach(Runnable::run);
+
+        RetryScheduler.Stats stats = scheduler.stats();
+        assertThat(fired).hasSize(1);
+        assertThat(stats.fired()).isEqualTo(1);
+        assertThat(stats.lost()).isEqualTo(3);
+        assertThat(stats.spilledBytes()).isZero();
+        scheduler.close();
+    }
+
+    @Test
+    void close_releasesPendingRetriesAndRejectsNewOnes() throws IOException {
+        RetryScheduler scheduler = scheduler(settings(100, 1.0, 0, 100));
+        for (int i = 0; i < 4; i++) {
+            scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[60]);
+        }
+        assertThat(scheduler.stats().spilled()).isEqualTo(3);
+
+        scheduler.close();
+
+        RetryScheduler.Stats stats = scheduler.stats();
+        assertThat(stats.pending()).isZero();
+        assertThat(stats.spilled()).isZero();
+        assertThat(stats.heapBytes()).isZero();
+        assertThat(stats.spilledBytes()).isZero();
+        assertThat(spillFiles()).isEmpty();
+        assertThatThrownBy(() -> scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[1]))
+            .isInstanceOf(IllegalStateException.class);
+        scheduler.close();
+    }
+
+    @Test
+    void close_racingWithSchedule_neverLeavesRetriesBehind() throws Exception {
+        RetryScheduler scheduler = scheduler(settings(100, 1.0, 0, 1_000_000));
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        CountDownLatch started = new CountDownLatch(4);
+        try {
+            List<Future<?>> producers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                producers.add(threads.submit(() -> {
+                    scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[60]);
+                    started.countDown();
+                    while (true) {
+                        try {
+                            scheduler.schedule(FIXED_100_MS, "embed", 1, new byte[60]);
+                        } catch (IllegalStateException closed) {
+                            return;
+                        }
+                    }
+                }));
+            }
+            started.await();
+            scheduler.close();
+            for (Future<?> producer : producers) {
+                producer.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        // Every retry scheduled before close was dropped with it, none slipped in afterwards
+        assertThat(scheduler.stats().scheduled()).isGreaterThanOrEqualTo(4);
+        assertThat(scheduler.stats().pending()).isZero();
+        assertThat(scheduler.stats().spilledBytes()).isZero();
+        assertThat(spillFiles()).isEmpty();
+    }
+
+    private List<Path> spillFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            return files.filter(path -> path.toString().endsWith(".spill")).toList();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.rokkon.pipeline.commons.sync;
+
+import com.google.protobuf.util.Timestamps;
+import com.rokkon.search.model.ActionType;
+import com.rokkon.search.model.PipeDoc;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FingerprintIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<Path> runFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(file -> file.getFileName().toString().contains(".run")).toList();
+        }
+    }
+
+    private static PipeDoc doc(int i, String body) {
+        return PipeDoc.newBuilder().setId(String.format("doc-%05d", i)).setBody(body).setRevisionId("r-" + body)
+            .setLastModifiedDate(Timestamps.fromMillis(1_000L * i)).build();
+    }
+
+    private static FingerprintIndex.SyncSummary initialSync(FingerprintIndex index, int resources) {
+        FingerprintIndex.SyncSession sync = index.beginSync(true);
+        for (int i = 0; i < resources; i++) {
+            assertThat(sync.observe(doc(i, "v1"))).isEqualTo(ActionType.CREATE);
+        }
+        return sync.finish(id -> {
+        });
+    }
+
+    @Test
+    void repeatFullSync_emitsOnlyChanges() {
+        Path file = tempDir.resolve("wiki.fpi");
+        try (FingerprintIndex index = new FingerprintIndex(file)) {
+            assertThat(initialSync(index, 1000)).isEqualTo(new FingerprintIndex.SyncSummary(1000, 0, 0, 0));
+        }
+
+        try (FingerprintIndex index = new FingerprintIndex(file)) {
+            assertThat(index.stats().resources()).isEqualTo(1000);
+            FingerprintIndex.SyncSession sync = index.beginSync(true);
+            List<ActionType> actions = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                if (i % 100 == 7) {
+                    continue;
+                }
+                actions.add(sync.observe(doc(i, i % 250 == 3 ? "v2" : "v1")));
+            }
+            actions.add(sync.observe(doc(5000, "v1")));
+            List<String> deleted = new ArrayList<>();
+
+            FingerprintIndex.SyncSummary summary = sync.finish(deleted::add);
+
+            assertThat(summary).isEqualTo(new FingerprintIndex.SyncSummary(1, 4, 986, 10));
+            assertThat(summary.changed()).isEqualTo(15);
+            assertThat(actions).filteredOn(action -> action == ActionType.NO_OP).hasSize(986);
+            assertThat(deleted).hasSize(10).contains("doc-00007", "doc-00907");
+            assertThat(index.get("doc-00007")).isNull();
+            assertThat(index.get("doc-05000")).isNotNull();
+            assertThat(index.get("doc-00003").sameContent(ResourceFingerprint.of(doc(3, "v2")))).isTrue();
+            assertThat(index.stats().resources()).isEqualTo(991);
+        }
+    }
+
+    @Test
+    void incrementalSync_neverDeletesAndSkipsFetchByRevision() {
+        try (FingerprintIndex index = new FingerprintIndex(tempDir.resolve("drive.fpi"))) {
+            initialSync(index, 200);
+
+            FingerprintIndex.SyncSession sync = index.beginSync(false);
+            assertThat(sync.isUnchanged("doc-00010", "r-v1", null)).isTrue();
+            // The revision decides when the source has one, the modification time only when it doesn't
+            assertThat(sync.isUnchanged("doc-00011", "r-v2", 11_000L)).isFalse();
+            assertThat(sync.isUnchanged("doc-00011", null, 11_000L)).isTrue();
+            assertThat(sync.isUnchanged("doc-00013", null, 0L)).isFalse();
+            assertThat(sync.isUnchanged("doc-00012", "r-v2", 0L)).isFalse();
+            assertThat(sync.observe(doc(12, "v2"))).isEqualTo(ActionType.UPDATE);
+            assertThat(sync.observe(doc(12, "v2"))).isEqualTo(ActionType.NO_OP);
+            assertThat(sync.isUnchanged("doc-09999", "r-v1", null)).isFalse();
+            List<String> deleted = new ArrayList<>();
+
+            assertThat(sync.finish(deleted::add)).isEqualTo(new FingerprintIndex.SyncSummary(0, 1, 2, 0));
+            assertThat(deleted).isEmpty();
+            assertThat(index.stats().resources()).isEqualTo(200);
+            assertThat(index.get("doc-00012").revisionId()).isEqualTo("r-v2");
+        }
+    }
+
+    @Test
+    void touchedButUnchangedDocument_isUnchangedAndKeepsNewMarkers() {
+        try (FingerprintIndex index = new FingerprintIndex(tempDir.resolve("touched.fpi"))) {
+            initialSync(index, 10);
+            PipeDoc touched = doc(4, "v1").toBuilder().setRevisionId("r-v1-touched")
+                .setLastModifiedDate(Timestamps.fromMillis(99_000L)).setCreationDate(Timestamps.fromMillis(1L)).build();
+
+            assertThat(ResourceFingerprint.of(touched).sameContent(ResourceFingerprint.of(doc(4, "v1")))).isTrue();
+            FingerprintIndex.SyncSession sync = index.beginSync(false);
+            assertThat(sync.observe(touched)).isEqualTo(ActionType.NO_OP);
+
+            assertThat(sync.finish(id -> {
+            })).isEqualTo(new FingerprintIndex.SyncSummary(0, 0, 1, 0));
+            assertThat(index.get("doc-00004").revisionId()).isEqualTo("r-v1-touched");
+            assertThat(index.get("doc-00004").lastModifiedMillis()).isEqualTo(99_000L);
+        }
+    }
+
+    @Test
+    void changesBeyondTheBuffer_areSpilledAndMerged() throws IOException {
+        try (FingerprintIndex index = new FingerprintIndex(tempDir.resolve("large.fpi"), 100)) {
+            FingerprintIndex.SyncSession sync = index.beginSync(true);
+            for (int i = 999; i >= 0; i--) {
+                assertThat(sync.observe(doc(i, "v1"))).isEqualTo(ActionType.CREATE);
+            }
+            assertThat(runFiles()).hasSize(10);
+
+            // Resources already spilled are still recognized, and the version observed last is kept
+            assertThat(sync.observe(doc(999, "v1"))).isEqualTo(ActionType.NO_OP);
+            assertThat(sync.observe(doc(998, "v2"))).isEqualTo(ActionType.UPDATE);
+            assertThat(sync.isUnchanged("doc-00997", "r-v1", null)).isFalse();
+
+            assertThat(sync.finish(id -> {
+            })).isEqualTo(new FingerprintIndex.SyncSummary(1000, 1, 0, 0));
+            assertThat(runFiles()).isEmpty();
+            assertThat(index.stats().resources()).isEqualTo(1000);
+            assertThat(index.get("doc-00998").revisionId()).isEqualTo("r-v2");
+            assertThat(index.get("doc-00000")).isNotNull();
+        }
+    }
+
+    @Test
+    void resourceObservedTwice_isCountedOnce() {
+        try (FingerprintIndex index = new FingerprintIndex(tempDir.resolve("twice.fpi"))) {
+            initialSync(index, 10);
+            FingerprintIndex.SyncSession sync = index.beginSync(false);
+
+            assertThat(sync.observe(doc(1, "v1"))).isEqualTo(ActionType.NO_OP);
+            assertThat(sync.observe(doc(1, "v1"))).isEqualTo(ActionType.NO_OP);
+            assertThat(sync.isUnchanged("doc-00002", "r-v1", null)).isTrue();
+            assertThat(sync.observe(doc(2, "v1"))).isEqualTo(ActionType.NO_OP);
+            assertThat(sync.observe(doc(3, "v1"))).isEqualTo(ActionType.NO_OP);
+            assertThat(sync.observe(doc(3, "v2"))).isEqualTo(ActionType.UPDATE);
+
+            assertThat(sync.finish(id -> {
+            })).isEqualTo(new FingerprintIndex.SyncSummary(0, 1, 2, 0));
+        }
+    }
+
+    @Test
+    void lookupsOfUnknownResources_areMostlyAnsweredByTheBloomFilter() {
+        try (FingerprintIndex index = new FingerprintIndex(tempDir.resolve("web.fpi"))) {
+            initialSync(index, 5000);
+            FingerprintIndex.SyncSession sync = index.beginSync(false);
+            for (int i = 10_000; i < 20_000; i++) {
+                sync.observe(doc(i, "v1"));
+            }
+            sync.abort();
+
+            assertThat(index.stats().bloomRejections()).isGreaterThan(9_700);
+            assertThat(index.stats().resources()).isEqualTo(5000);
+            assertThatThrownBy(() -> sync.observe(doc(1, "v1"))).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    void onlyOneSyncAtATime() {
+        try (FingerprintIndex index = new FingerprintIndex(tempDir.resolve("one.fpi"))) {
+            FingerprintIndex.SyncSession sync = index.beginSync(true);
+
+            assertThatThrownBy(() -> index.beginSync(false)).isInstanceOf(IllegalStateException.class);
+            sync.finish(id -> {
+            });
+            assertThat(index.beginSync(false)).isNotNull();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.rokkon.pipeline.commons.validation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rokkon.pipeline.api.validation.ValidationIssue;
+import com.rokkon.pipeline.api.validation.ValidationResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ValidationResultBuilderTest {
+
+    @Test
+    void build_withoutIssues_returnsEmptyResult() {
+        try (ValidationResultBuilder builder = ValidationResultBuilder.acquire()) {
+            assertThat(builder.build()).isSameAs(EmptyValidationResult.instance());
+        }
+    }
+
+    @Test
+    void issues_areFormattedOnlyWhenRead() {
+        AtomicInteger formatted = new AtomicInteger();
+        Object arg = new Object() {
+            @Override
+            public String toString() {
+                formatted.incrementAndGet();
+                return "step-1";
+            }
+        };
+
+        ValidationResult result;
+        try (ValidationResultBuilder builder = ValidationResultBuilder.acquire()) {
+            builder.addError("test.code", "step-1", "stepName", "Step '%s': broken", arg);
+            result = builder.build();
+        }
+
+        assertThat(result.valid()).isFalse();
+        assertThat(result.hasErrors()).isTrue();
+        assertThat(formatted.get()).isZero();
+
+        assertThat(result.errors()).containsExactly("Step 'step-1': broken");
+        assertThat(result.errors()).containsExactly("Step 'step-1': broken");
+        assertThat(formatted.get()).isEqualTo(1);
+    }
+
+    @Test
+    void issue_copiesItsArguments() {
+        Object[] args = {"step-1"};
+        ValidationIssue issue = ValidationIssue.of("test.code", "step-1", null, "Step '%s': broken", args);
+
+        args[0] = "changed";
+
+        assertThat(issue.args()).containsExactly("step-1");
+        assertThat(issue.message()).isEqualTo("Step 'step-1': broken");
+    }
+
+    @Test
+    void add_takesOverStructuredIssues() {
+        ValidationResult first = ValidationResultBuilder.create()
+            .addWarning("plain warning")
+            .build();
+        ValidationResultBuilder second = ValidationResultBuilder.create();
+        second.addError("code.a", "s1", "field", "Error %d", 1);
+
+        second.add(first);
+        ValidationResult combined = second.build();
+
+        IssueValidationResult issues = (IssueValidationResult) combined;
+        assertThat(issues.errorIssues()).extracting(ValidationIssue::code).containsExactly("code.a");
+        assertThat(issues.errorIssues()).extracting(ValidationIssue::stepId).containsExactly("s1");
+        assertThat(combined.errors()).containsExactly("Error 1");
+        assertThat(combined.warnings()).containsExactly("plain warning");
+    }
+
+    @Test
+    void add_keepsInvalidResultWithoutErrors() {
+        ValidationResult result = ValidationResultBuilder.create()
+            .add(ValidationResultFactory.failure(List.of()))
+            .build();
+
+        assertThat(result.valid()).isFalse();
+        assertThat(result.errors()).isEmpty();
+    }
+
+    @Test
+    void rollback_discardsIssuesSinceCheckpoint() {
+        ValidationResultBuilder builder = ValidationResultBuilder.create();
+        builder.addWarning("kept");
+        ValidationResultBuilder.Checkpoint checkpoint = builder.checkpoint();
+        builder.addError("discarded");
+        builder.addWarning("also discarded");
+
+        assertThat(builder.errorsSince(checkpoint)).extracting(ValidationIssue::message).containsExactly("discarded");
+
+        builder.rollback(checkpoint);
+
+        assertThat(builder.isValid()).isTrue();
+        assertThat(builder.hasErrors()).isFalse();
+        assertThat(builder.build().warnings()).containsExactly("kept");
+    }
+
+    @Test
+    void close_returnsResetBuilderToPool() {
+        ValidationResultBuilder builder = ValidationResultBuilder.acquire();
+        builder.addError("error");
+        ValidationResult result = builder.build();
+        builder.close();
+
+        try (ValidationResultBuilder reused = ValidationResultBuilder.acquire()) {
+            assertThat(reused).isSameAs(builder);
+            assertThat(reused.isValid()).isTrue();
+            assertThat(reused.hasErrors()).isFalse();
+        }
+        // Results built before the builder was reused are unaffected
+        assertThat(result.errors()).containsExactly("error");
+    }
+
+    @Test
+    void issueResult_serializesLikeDefaultResult() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        ValidationResult issues = ValidationResultBuilder.create()
+            .addError("error")
+            .addWarning("warning")
+            .build();
+        ValidationResult plain = ValidationResultFactory.failure(List.of("error"), List.of("warning"));
+
+        assertThat(mapper.writeValueAsString(issues)).isEqualTo(mapper.writeValueAsString(plain));
+    }
+}
@@ -0,0 +1,135 @@
+package com.rokkon.pipeline.commons.vector;
+
+import com.google.protobuf.ByteString;
+import com.rokkon.search.model.ChunkEmbedding;
+import com.rokkon.search.model.Embedding;
+import com.rokkon.search.model.PackedVector;
+import com.rokkon.search.model.VectorEncoding;
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+public class PackedVectorsTest {
+
+    private static final int DIMENSIONS = 1024;
+
+    private static float[] randomVector(long seed) {
+        Random random = new Random(seed);
+        float[] values = new float[DIMENSIONS];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        // Include the edge cases a real embedding can contain
+        values[0] = 0f;
+        values[1] = 1e-6f;
+        values[2] = -5f;
+        return values;
+    }
+
+    @Test
+    void float32_roundTripsExactly() {
+        float[] values = randomVector(1);
+
+        PackedVector packed = PackedVectors.pack(values, VectorEncoding.FLOAT32);
+
+        assertThat(packed.getData().size()).isEqualTo(DIMENSIONS * 4);
+        assertThat(PackedVectors.unpack(packed)).containsExactly(values);
+        FloatBuffer view = PackedVectors.asFloatBuffer(packed);
+        assertThat(view.isReadOnly()).isTrue();
+        assertThat(view.remaining()).isEqualTo(DIMENSIONS);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            assertThat(view.get(i)).isEqualTo(values[i]);
+        }
+    }
+
+    @Test
+    void float16_staysWithinHalfPrecision() {
+        float[] values = randomVector(2);
+
+        PackedVector packed = PackedVectors.pack(values, VectorEncoding.FLOAT16);
+        float[] unpacked = PackedVectors.unpack(packed);
+
+        assertThat(packed.getData().size()).isEqualTo(DIMENSIONS * 2);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            // Half precision keeps 11 significant bits, subnormals are spaced 2^-24 apart
+            double bound = Math.max(Math.abs(values[i]) * 0x1p-11, 0x1p-25);
+            assertThat((double) Math.abs(unpacked[i] - values[i])).as("value %d", i).isLessThanOrEqualTo(bound);
+        }
+        assertThat(PackedVectors.unpack(PackedVectors.pack(unpacked, VectorEncoding.FLOAT16))).containsExactly(unpacked);
+    }
+
+    @Test
+    void int8_errorIsAtMostHalfAQuantizationStep() {
+        float[] values = randomVector(3);
+
+        PackedVector packed = PackedVectors.pack(values, VectorEncoding.INT8);
+        float[] unpacked = PackedVectors.unpack(packed);
+
+        assertThat(packed.getData().size()).isEqualTo(DIMENSIONS);
+        assertThat(packed.getScale()).isEqualTo(5f / 127, offset(1e-6f));
+        assertThat(unpacked[0]).isZero();
+        assertThat(unpacked[2]).isEqualTo(-5f, offset(1e-5f));
+        for (int i = 0; i < DIMENSIONS; i++) {
+            assertThat(Math.abs(unpacked[i] - values[i])).as("value %d", i)
+                .isLessThanOrEqualTo(packed.getScale() / 2 * 1.0001f);
+        }
+    }
+
+    @Test
+    void int8_packsAZeroVector() {
+        PackedVector packed = PackedVectors.pack(new float[4], VectorEncoding.INT8);
+
+        assertThat(packed.getScale()).isEqualTo(1f);
+        assertThat(PackedVectors.unpack(packed)).containsExactly(0f, 0f, 0f, 0f);
+    }
+
+    @Test
+    void invalidVectors_areRejected() {
+        PackedVector packed = PackedVectors.pack(new float[] {1f, 2f}, VectorEncoding.FLOAT32);
+
+        assertThatThrownBy(() -> PackedVectors.pack(new float[] {1f}, VectorEncoding.REPEATED_FLOAT))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PackedVectors.unpack(packed.toBuilder().setDimensions(3).build()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Packed vector has 8 bytes, expected 12 for 3 FLOAT32 values");
+        assertThatThrownBy(() -> PackedVectors.unpack(packed.toBuilder().setData(ByteString.copyFrom(new byte[7])).build()))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PackedVectors.asFloatBuffer(PackedVectors.pack(new float[] {1f}, VectorEncoding.INT8)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void vectorAndSetVector_handleBothRepresentations() {
+        float[] values = {0.25f, -0.5f, 1f};
+
+        Embedding repeated = PackedVectors.setVector(Embedding.newBuilder(), values, VectorEncoding.REPEATED_FLOAT)
+            .build();
+        Embedding packed = PackedVectors.setVector(repeated.toBuilder(), values, VectorEncoding.FLOAT16).build();
+        ChunkEmbedding chunk = PackedVectors.setVector(ChunkEmbedding.newBuilder(), values, VectorEncoding.INT8)
+            .build();
+
+        assertThat(repeated.getVectorList()).containsExactly(0.25f, -0.5f, 1f);
+        assertThat(PackedVectors.encodingOf(repeated)).isEqualTo(VectorEncoding.REPEATED_FLOAT);
+        assertThat(packed.getVectorCount()).isZero();
+        assertThat(PackedVectors.encodingOf(packed)).isEqualTo(VectorEncoding.FLOAT16);
+        assertThat(PackedVectors.vector(repeated)).containsExactly(values);
+        assertThat(PackedVectors.vector(packed)).containsExactly(values);
+        assertThat(PackedVectors.encodingOf(chunk)).isEqualTo(VectorEncoding.INT8);
+        assertThat(PackedVectors.vector(chunk)).hasSize(3);
+    }
+
+    @Test
+    void negotiate_picksTheFirstPreferenceTheModuleSupports() {
+        List<VectorEncoding> preferred = List.of(VectorEncoding.INT8, VectorEncoding.FLOAT16, VectorEncoding.FLOAT32);
+
+        assertThat(PackedVectors.negotiate(List.of(VectorEncoding.FLOAT32, VectorEncoding.FLOAT16), preferred))
+            .isEqualTo(VectorEncoding.FLOAT16);
+        assertThat(PackedVectors.negotiate(List.of(), preferred)).isEqualTo(VectorEncoding.REPEATED_FLOAT);
+    }
+}
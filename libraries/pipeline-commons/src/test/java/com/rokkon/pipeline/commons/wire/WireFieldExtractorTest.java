@@ -0,0 +1,109 @@
+package com.rokkon.pipeline.commons.wire;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import com.rokkon.search.model.ActionType;
+import com.rokkon.search.model.Blob;
+import com.rokkon.search.model.PipeDoc;
+import com.rokkon.search.model.PipeStream;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WireFieldExtractorTest {
+
+    private static PipeStream stream() {
+        return PipeStream.newBuilder()
+            .setStreamId("stream-1")
+            .setCurrentPipelineName("pipeline")
+            .setCurrentHopNumber(7)
+            .setActionType(ActionType.UPDATE)
+            .putContextParams("tenant_id", "acme")
+            .putContextParams("empty", "")
+            .setDocument(PipeDoc.newBuilder()
+                .setId("doc-1")
+                .setTitle("Title")
+                .setBody("body ".repeat(1000))
+                .setCreationDate(Timestamp.newBuilder().setSeconds(1_700_000_000L))
+                .putMetadata("source", "crawler")
+                .setBlob(Blob.newBuilder().setData(ByteString.copyFrom(new byte[100_000]))))
+            .build();
+    }
+
+    @Test
+    void extract_readsDocumentIdAndRelativePaths() {
+        byte[] bytes = stream().toByteArray();
+
+        assertThat(WireFieldExtractor.forPipeStream(WireFieldExtractor.PIPEDOC_ID).extract(bytes)).contains("doc-1");
+        assertThat(WireFieldExtractor.forPipeStream("document.id").extract(bytes)).contains("doc-1");
+        assertThat(WireFieldExtractor.forPipeStream("title").extract(bytes)).contains("Title");
+        assertThat(WireFieldExtractor.forPipeStream("streamId").extract(bytes)).contains("stream-1");
+        assertThat(WireFieldExtractor.forPipeStream("creationDate.seconds").extract(bytes)).contains("1700000000");
+    }
+
+    @Test
+    void extract_readsScalarsEnumsAndMapValues() {
+        byte[] bytes = stream().toByteArray();
+
+        assertThat(WireFieldExtractor.forPipeStream("current_hop_number").extract(bytes)).contains("7");
+        assertThat(WireFieldExtractor.forPipeStream("action_type").extract(bytes)).contains("UPDATE");
+        assertThat(WireFieldExtractor.forPipeStream("context_params.tenant_id").extract(bytes)).contains("acme");
+        assertThat(WireFieldExtractor.forPipeStream("context_params.empty").extract(bytes)).contains("");
+        assertThat(WireFieldExtractor.forPipeStream("context_params.missing").extract(bytes)).isEmpty();
+        assertThat(WireFieldExtractor.forPipeStream("metadata.source").extract(bytes)).contains("crawler");
+    }
+
+    @Test
+    void extract_emptyForAbsentFields() {
+        byte[] bytes = PipeStream.newBuilder().setStreamId("stream-2").build().toByteArray();
+
+        assertThat(WireFieldExtractor.forPipeStream(WireFieldExtractor.PIPEDOC_ID).extract(bytes)).isEmpty();
+        assertThat(WireFieldExtractor.forPipeStream("target_step_name").extract(bytes)).isEmpty();
+        assertThat(WireFieldExtractor.forPipeStream(WireFieldExtractor.PIPEDOC_ID).extract(new byte[0])).isEmpty();
+    }
+
+    @Test
+    void extract_lastOccurrenceWinsLikeParsing() {
+        byte[] first = stream().toByteArray();
+        byte[] second = PipeStream.newBuilder().setDocument(PipeDoc.newBuilder().setId("doc-2")).build().toByteArray();
+        byte[] concatenated = new byte[first.length + second.length];
+        System.arraycopy(first, 0, concatenated, 0, first.length);
+        System.arraycopy(second, 0, concatenated, first.length, second.length);
+
+        assertThat(WireFieldExtractor.forPipeStream(WireFieldExtractor.PIPEDOC_ID).extract(concatenated))
+            .contains("doc-2");
+        assertThat(WireFieldExtractor.forPipeStream("title").extract(concatenated)).contains("Title");
+    }
+
+    @Test
+    void extract_fromBufferLeavesPositionUntouched() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(stream().getSerializedSize());
+        buffer.put(stream().toByteArray()).flip();
+
+        assertThat(WireFieldExtractor.forPipeStream(WireFieldExtractor.PIPEDOC_ID).extract(buffer)).contains("doc-1");
+        assertThat(buffer.position()).isZero();
+        assertThat(WireFieldExtractor.forPipeStream("stream_id").extract(stream().toByteString())).contains("stream-1");
+    }
+
+    @Test
+    void forPath_rejectsUnsupportedPaths() {
+        assertThatThrownBy(() -> WireFieldExtractor.forPath(PipeStream.getDescriptor(), "document"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("names a message");
+        assertThatThrownBy(() -> WireFieldExtractor.forPath(PipeStream.getDescriptor(), "history.step_name"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Repeated field");
+        assertThatThrownBy(() -> WireFieldExtractor.forPath(PipeStream.getDescriptor(), "document.nope"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unknown field");
+        assertThatThrownBy(() -> WireFieldExtractor.forPath(PipeStream.getDescriptor(), "context_params"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("must name a key");
+        assertThatThrownBy(() -> WireFieldExtractor.forPath(PipeStream.getDescriptor(), "stream_id.more"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("continues past");
+    }
+}
@@ -2,6 +2,7 @@ plugins {
     `java-library`
     id("io.quarkus")
     id("org.kordamp.gradle.jandex") version "1.1.0"
+    id("me.champeau.jmh")
 }
 
 group = "com.pipeline"
@@ -30,4 +31,3 @@ tasks.named("compileJava") {
 tasks.named("compileTestJava") {
     dependsOn(tasks.named("jandex"))
 }
-
@@ -0,0 +1,131 @@
+package com.rokkon.pipeline.engine.validation.benchmark;
+
+import com.rokkon.pipeline.api.validation.PipelineConfigValidatable;
+import com.rokkon.pipeline.api.validation.ValidationMode;
+import com.rokkon.pipeline.api.validation.ValidationResult;
+import com.rokkon.pipeline.config.model.PipelineClusterConfig;
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
+import com.rokkon.pipeline.engine.validation.CompositeValidator;
+import com.rokkon.pipeline.engine.validation.CompositeValidatorBuilder;
+import com.rokkon.pipeline.engine.validation.ValidationResultCache;
+import com.rokkon.pipeline.engine.validation.validators.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures full validator chains built with {@link CompositeValidatorBuilder}: sequential and parallel execution,
+ * cached re-validation, incremental validation of a single-step change, and validating every pipeline of a cluster.
+ * <p>
+ * Run with {@code ./gradlew :libraries:validators:jmh -Pjmh.includes=CompositeValidatorBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeValidatorBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int steps;
+
+    @Param({"3"})
+    public int fanOut;
+
+    @Param({"24"})
+    public int pipelinesPerCluster;
+
+    private CompositeValidator<PipelineConfigValidatable> sequential;
+    private CompositeValidator<PipelineConfigValidatable> parallel;
+    private CompositeValidator<PipelineConfigValidatable> cached;
+    private CompositeValidator<PipelineConfigValidatable> incremental;
+    private PipelineConfig pipeline;
+    private PipelineConfig updatedPipeline;
+    private PipelineClusterConfig cluster;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sequential = chain().build();
+        parallel = chain().withParallelExecution(null).build();
+        cached = chain().build().withResultCache(new ValidationResultCache());
+        incremental = chain().build();
+
+        SyntheticPipelineGenerator generator = SyntheticPipelineGenerator.builder()
+            .steps(steps)
+            .fanOut(fanOut)
+            .kafkaRatio(0.5)
+            .cycles(2)
+            .build();
+        pipeline = generator.generatePipeline("benchmark-pipeline");
+        updatedPipeline = withChangedStep(pipeline);
+        cluster = SyntheticPipelineGenerator.builder()
+            .steps(Math.max(1, steps / pipelinesPerCluster))
+            .fanOut(fanOut)
+            .kafkaRatio(0.5)
+            .cycles(1)
+            .build()
+            .generateCluster("benchmark", pipelinesPerCluster);
+
+        // Prime the cache and the per-step memo so the benchmarks measure the steady state
+        cached.validate(pipeline, ValidationMode.PRODUCTION);
+        incremental.validateUpdate(pipeline, pipeline, ValidationMode.PRODUCTION);
+    }
+
+    @Benchmark
+    public ValidationResult sequentialChain() {
+        return sequential.validate(pipeline, ValidationMode.PRODUCTION);
+    }
+
+    @Benchmark
+    public ValidationResult parallelChain() {
+        return parallel.validate(pipeline, ValidationMode.PRODUCTION);
+    }
+
+    @Benchmark
+    public ValidationResult cachedChain() {
+        return cached.validate(pipeline, ValidationMode.PRODUCTION);
+    }
+
+    @Benchmark
+    public ValidationResult incrementalSingleStepChange() {
+        return incremental.validateUpdate(pipeline, updatedPipeline, ValidationMode.PRODUCTION);
+    }
+
+    @Benchmark
+    public void clusterChain(Blackhole blackhole) {
+        for (PipelineConfig clusterPipeline : cluster.pipelineGraphConfig().pipelines().values()) {
+            blackhole.consume(sequential.validate(clusterPipeline, ValidationMode.PRODUCTION));
+        }
+    }
+
+    private static CompositeValidatorBuilder<PipelineConfigValidatable> chain() {
+        return CompositeValidatorBuilder.<PipelineConfigValidatable>create()
+            .withName("BenchmarkPipelineValidator")
+            .addValidator(new RequiredFieldsValidator())
+            .addValidator(new NamingConventionValidator())
+            .addValidator(new StepReferenceValidator())
+            .addValidator(new ProcessorInfoValidator())
+            .addValidator(new RetryConfigValidator())
+            .addValidator(new TransportConfigValidator())
+            .addValidator(new OutputRoutingValidator())
+            .addValidator(new KafkaTopicNamingValidator())
+            .addValidator(new IntraPipelineLoopValidator())
+            .addValidator(new StepTypeValidator());
+    }
+
+    private static PipelineConfig withChangedStep(PipelineConfig pipeline) {
+        Map<String, PipelineStepConfig> steps = new LinkedHashMap<>(pipeline.pipelineSteps());
+        String stepId = steps.keySet().stream().skip(steps.size() / 2).findFirst().orElseThrow();
+        PipelineStepConfig step = steps.get(stepId);
+        steps.put(stepId, new PipelineStepConfig(
+            step.stepName(), step.stepType(), "Changed " + step.description(), step.customConfigSchemaId(),
+            step.customConfig(), step.kafkaInputs(), step.outputs(), step.maxRetries(), step.retryBackoffMs(),
+            step.maxRetryBackoffMs(), step.retryBackoffMultiplier(), step.stepTimeoutMs(), step.processorInfo()));
+        return new PipelineConfig(pipeline.name(), steps);
+    }
+}
@@ -0,0 +1,71 @@
+package com.rokkon.pipeline.engine.validation.benchmark;
+
+import com.rokkon.pipeline.api.validation.ConfigValidator;
+import com.rokkon.pipeline.api.validation.PipelineConfigValidatable;
+import com.rokkon.pipeline.api.validation.ValidationResult;
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.engine.validation.validators.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Measures the cost of each individual pipeline validator on generated pipelines of increasing size.
+ * <p>
+ * Run with {@code ./gradlew :libraries:validators:jmh -Pjmh.includes=PipelineValidatorBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineValidatorBenchmark {
+
+    private static final Map<String, Supplier<ConfigValidator<PipelineConfigValidatable>>> VALIDATORS = Map.of(
+        "RequiredFieldsValidator", RequiredFieldsValidator::new,
+        "NamingConventionValidator", NamingConventionValidator::new,
+        "StepReferenceValidator", StepReferenceValidator::new,
+        "ProcessorInfoValidator", ProcessorInfoValidator::new,
+        "RetryConfigValidator", RetryConfigValidator::new,
+        "TransportConfigValidator", TransportConfigValidator::new,
+        "OutputRoutingValidator", OutputRoutingValidator::new,
+        "KafkaTopicNamingValidator", KafkaTopicNamingValidator::new,
+        "IntraPipelineLoopValidator", IntraPipelineLoopValidator::new,
+        "StepTypeValidator", StepTypeValidator::new
+    );
+
+    @Param({"RequiredFieldsValidator", "NamingConventionValidator", "StepReferenceValidator",
+            "ProcessorInfoValidator", "RetryConfigValidator", "TransportConfigValidator",
+            "OutputRoutingValidator", "KafkaTopicNamingValidator", "IntraPipelineLoopValidator",
+            "StepTypeValidator"})
+    public String validatorName;
+
+    @Param({"100", "1000", "5000"})
+    public int steps;
+
+    @Param({"3"})
+    public int fanOut;
+
+    private ConfigValidator<PipelineConfigValidatable> validator;
+    private PipelineConfig pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        validator = VALIDATORS.get(validatorName).get();
+        pipeline = SyntheticPipelineGenerator.builder()
+            .steps(steps)
+            .fanOut(fanOut)
+            .kafkaRatio(0.5)
+            .cycles(2)
+            .build()
+            .generatePipeline("benchmark-pipeline");
+    }
+
+    @Benchmark
+    public ValidationResult validate() {
+        return validator.validate(pipeline);
+    }
+}
@@ -0,0 +1,245 @@
+package com.rokkon.pipeline.engine.validation.benchmark;
+
+import com.rokkon.pipeline.config.model.GrpcTransportConfig;
+import com.rokkon.pipeline.config.model.KafkaInputDefinition;
+import com.rokkon.pipeline.config.model.KafkaTransportConfig;
+import com.rokkon.pipeline.config.model.PipelineClusterConfig;
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.config.model.PipelineGraphConfig;
+import com.rokkon.pipeline.config.model.PipelineModuleConfiguration;
+import com.rokkon.pipeline.config.model.PipelineModuleMap;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
+import com.rokkon.pipeline.config.model.StepType;
+import com.rokkon.pipeline.config.model.TransportType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates large, realistic pipeline graphs for benchmarking validation.
+ * <p>
+ * A generated pipeline is a layered graph: step 0 is the {@link StepType#INITIAL_PIPELINE} entry point, every
+ * other step routes to up to {@code fanOut} of the following steps, and steps without downstream targets are
+ * {@link StepType#SINK}s. Each edge is a Kafka or gRPC output according to the configured Kafka ratio; Kafka
+ * edges also add a matching {@link KafkaInputDefinition} to the target step. {@code cycles} back edges are added
+ * on purpose so loop detection has something to find.
+ * <p>
+ * Generation is deterministic for a given seed, so benchmark runs are comparable.
+ */
+public final class SyntheticPipelineGenerator {
+
+    private static final String[] MODULES = {"tika-parser", "chunker", "embedder", "opensearch-sink", "echo"};
+
+    private final int steps;
+    private final int fanOut;
+    private final double kafkaRatio;
+    private final int cycles;
+    private final long seed;
+
+    private SyntheticPipelineGenerator(Builder builder) {
+        this.steps = builder.steps;
+        this.fanOut = builder.fanOut;
+        this.kafkaRatio = builder.kafkaRatio;
+        this.cycles = builder.cycles;
+        this.seed = builder.seed;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Generates a single pipeline.
+     *
+     * @param pipelineName The name of the pipeline; also used as topic prefix
+     * @return the generated pipeline
+     */
+    public PipelineConfig generatePipeline(String pipelineName) {
+        Random random = new Random(seed ^ pipelineName.hashCode());
+        List<String> stepIds = new ArrayList<>(steps);
+        for (int i = 0; i < steps; i++) {
+            stepIds.add(String.format("step-%05d", i));
+        }
+
+        // Wire the layered graph, remembering the Kafka topics each step listens to
+        Map<String, Map<String, PipelineStepConfig.OutputTarget>> outputs = new HashMap<>();
+        Map<String, List<String>> listenTopics = new HashMap<>();
+        for (int i = 0; i < steps - 1; i++) {
+            int targets = 1 + random.nextInt(fanOut);
+            for (int t = 0; t < targets; t++) {
+                int target = Math.min(steps - 1, i + 1 + random.nextInt(Math.max(1, fanOut * 2)));
+                addEdge(pipelineName, stepIds.get(i), stepIds.get(target), random, outputs, listenTopics);
+            }
+        }
+
+        // Deliberate back edges; never from the last step, so it stays a sink
+        for (int c = 0; c < cycles && steps > 2; c++) {
+            int from = 1 + random.nextInt(steps - 2);
+            int to = random.nextInt(from);
+            addEdge(pipelineName, stepIds.get(from), stepIds.get(to), random, outputs, listenTopics);
+        }
+
+        Map<String, PipelineStepConfig> pipelineSteps = new LinkedHashMap<>();
+        for (int i = 0; i < steps; i++) {
+            String stepId = stepIds.get(i);
+            Map<String, PipelineStepConfig.OutputTarget> stepOutputs = outputs.getOrDefault(stepId, Map.of());
+            StepType type = i == 0 ? StepType.INITIAL_PIPELINE : stepOutputs.isEmpty() ? StepType.SINK : StepType.PIPELINE;
+            List<KafkaInputDefinition> kafkaInputs = listenTopics.containsKey(stepId)
+                ? List.of(new KafkaInputDefinition(listenTopics.get(stepId), pipelineName + ".consumer-group", Map.of()))
+                : List.of();
+
+            pipelineSteps.put(stepId, new PipelineStepConfig(
+                stepId,
+                type,
+                "Synthetic " + type.name().toLowerCase() + " step " + i,
+                null,
+                null,
+                kafkaInputs,
+                stepOutputs,
+                3,
+                1000L,
+                30000L,
+                2.0,
+                60000L,
+                new PipelineStepConfig.ProcessorInfo(MODULES[i % MODULES.length], null)));
+        }
+        return new PipelineConfig(pipelineName, pipelineSteps);
+    }
+
+    /**
+     * Generates a cluster of pipelines, including a module map and the Kafka topic and gRPC service whitelists
+     * that the generated pipelines use.
+     *
+     * @param clusterName The name of the cluster
+     * @param pipelines The number of pipelines to generate
+     * @return the generated cluster configuration
+     */
+    public PipelineClusterConfig generateCluster(String clusterName, int pipelines) {
+        Map<String, PipelineConfig> pipelineConfigs = new LinkedHashMap<>();
+        Set<String> topics = new HashSet<>();
+        for (int p = 0; p < pipelines; p++) {
+            String pipelineName = String.format("%s-pipeline-%03d", clusterName, p);
+            PipelineConfig pipeline = generatePipeline(pipelineName);
+            pipelineConfigs.put(pipelineName, pipeline);
+            for (PipelineStepConfig step : pipeline.pipelineSteps().values()) {
+                for (PipelineStepConfig.OutputTarget output : step.outputs().values()) {
+                    if (output.kafkaTransport() != null) {
+                        topics.add(output.kafkaTransport().topic());
+                    }
+                }
+            }
+        }
+
+        Map<String, PipelineModuleConfiguration> modules = new LinkedHashMap<>();
+        for (String module : MODULES) {
+            modules.put(module, new PipelineModuleConfiguration(module, module, null));
+        }
+
+        return new PipelineClusterConfig(
+            clusterName,
+            new PipelineGraphConfig(pipelineConfigs),
+            new PipelineModuleMap(modules),
+            pipelineConfigs.isEmpty() ? null : pipelineConfigs.keySet().iterator().next(),
+            topics,
+            Set.of(MODULES));
+    }
+
+    private void addEdge(String pipelineName, String from, String to, Random random,
+                         Map<String, Map<String, PipelineStepConfig.OutputTarget>> outputs,
+                         Map<String, List<String>> listenTopics) {
+        Map<String, PipelineStepConfig.OutputTarget> stepOutputs = outputs.computeIfAbsent(from, id -> new LinkedHashMap<>());
+        String outputName = stepOutputs.isEmpty() ? "default" : "to-" + to;
+        if (stepOutputs.containsKey(outputName)) {
+            return;
+        }
+
+        if (random.nextDouble() < kafkaRatio) {
+            String topic = pipelineName + "." + to + ".input";
+            stepOutputs.put(outputName, new PipelineStepConfig.OutputTarget(
+                to, TransportType.KAFKA, null, new KafkaTransportConfig(topic, null, null, null, null, null)));
+            List<String> topics = listenTopics.computeIfAbsent(to, id -> new ArrayList<>());
+            if (!topics.contains(topic)) {
+                topics.add(topic);
+            }
+        } else {
+            stepOutputs.put(outputName, new PipelineStepConfig.OutputTarget(
+                to, TransportType.GRPC, new GrpcTransportConfig(to, Map.of("timeout", "5000")), null));
+        }
+    }
+
+    /**
+     * Builder for {@link SyntheticPipelineGenerator}.
+     */
+    public static final class Builder {
+        private int steps = 100;
+        private int fanOut = 2;
+        private double kafkaRatio = 0.5;
+        private int cycles = 0;
+        private long seed = 42L;
+
+        private Builder() {
+        }
+
+        /**
+         * @param steps number of steps per pipeline, at least 1
+         */
+        public Builder steps(int steps) {
+            if (steps < 1) {
+                throw new IllegalArgumentException("steps must be at least 1");
+            }
+            this.steps = steps;
+            return this;
+        }
+
+        /**
+         * @param fanOut maximum number of outputs per step, at least 1
+         */
+        public Builder fanOut(int fanOut) {
+            if (fanOut < 1) {
+                throw new IllegalArgumentException("fanOut must be at least 1");
+            }
+            this.fanOut = fanOut;
+            return this;
+        }
+
+        /**
+         * @param kafkaRatio fraction of outputs that use Kafka instead of gRPC, between 0.0 and 1.0
+         */
+        public Builder kafkaRatio(double kafkaRatio) {
+            if (kafkaRatio < 0.0 || kafkaRatio > 1.0) {
+                throw new IllegalArgumentException("kafkaRatio must be between 0.0 and 1.0");
+            }
+            this.kafkaRatio = kafkaRatio;
+            return this;
+        }
+
+        /**
+         * @param cycles number of back edges to add to each pipeline
+         */
+        public Builder cycles(int cycles) {
+            if (cycles < 0) {
+                throw new IllegalArgumentException("cycles cannot be negative");
+            }
+            this.cycles = cycles;
+            return this;
+        }
+
+        /**
+         * @param seed random seed; the same seed always produces the same pipelines
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticPipelineGenerator build() {
+            return new SyntheticPipelineGenerator(this);
+        }
+    }
+}
@@ -39,7 +39,6 @@ public class CompositePipelineConfigValidator implements PipelineConfigValidator
     }
 
     public void setValidators(List<ConfigValidator<PipelineConfigValidatable>> validators) {
-        composite.getValidators().clear();
-        composite.getValidators().addAll(validators);
+        composite.setValidators(validators);
     }
 }
\ No newline at end of file
@@ -1,26 +1,56 @@
 package com.rokkon.pipeline.engine.validation;
 
 import com.rokkon.pipeline.api.validation.*;
-import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
+import com.rokkon.pipeline.commons.validation.ValidationResultBuilder;
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
 import org.jboss.logging.Logger;
-import com.rokkon.pipeline.commons.validation.EmptyValidationResult;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
 
 
 /**
  * A validator that combines multiple validators and runs them in priority order.
- * 
+ * <p>
+ * By default validators run sequentially. When parallel execution is enabled, validators are grouped
+ * into priority bands of {@link #PRIORITY_BAND_WIDTH}; the bands run in order, and the validators inside
+ * a band run concurrently on the configured executor. Results are always accumulated in priority order,
+ * so the combined result is identical to a sequential run.
+ * <p>
+ * An optional {@link ValidationResultCache} lets repeated validation of an unchanged configuration
+ * skip the validators entirely. {@link #validateUpdate} validates a new version of a pipeline incrementally,
+ * re-running the per-step checks of {@link StepScopedValidator}s only for the steps that changed.
+ *
  * @param <T> The type of object being validated
  */
 public class CompositeValidator<T extends ConfigValidatable> implements ConfigValidator<T> {
 
     private static final Logger LOG = Logger.getLogger(CompositeValidator.class);
 
+    /**
+     * Width of a priority band. Validators whose priorities fall into the same band
+     * (e.g. 200 and 250) are considered independent and may run concurrently.
+     */
+    public static final int PRIORITY_BAND_WIDTH = 100;
+
     private final List<ConfigValidator<T>> validators;
     private final String name;
+    private volatile boolean parallel = false;
+    private volatile boolean failFast = false;
+    private volatile Executor executor = ForkJoinPool.commonPool();
+    private volatile ValidationResultCache resultCache;
+    private final StepResultMemo stepResultMemo = new StepResultMemo();
+    private volatile String validatorSetVersion;
 
     /**
      * Default constructor for CDI.
@@ -44,7 +74,7 @@ public class CompositeValidator<T extends ConfigValidatable> implements ConfigVa
 
     /**
      * Adds a validator to this composite.
-     * 
+     *
      * @param validator The validator to add
      * @return This composite for fluent API
      */
@@ -52,6 +82,46 @@ public class CompositeValidator<T extends ConfigValidatable> implements ConfigVa
         validators.add(validator);
         // Re-sort by priority
         validators.sort(Comparator.comparingInt(ConfigValidator::getPriority));
+        validatorSetVersion = null;
+        return this;
+    }
+
+    /**
+     * Enables concurrent execution of validators within the same priority band.
+     *
+     * @param executor The executor to run validators on, or null for the common fork-join pool
+     * @return This composite for fluent API
+     */
+    public CompositeValidator<T> withParallelExecution(Executor executor) {
+        this.parallel = true;
+        this.executor = executor != null ? executor : ForkJoinPool.commonPool();
+        this.validatorSetVersion = null;
+        return this;
+    }
+
+    /**
+     * Enables or disables short-circuiting. When enabled, no further priority band
+     * is started once a validator has reported an error. The band that reported the
+     * error always runs to completion, so sequential and parallel runs give the same result.
+     *
+     * @param failFast true to stop at the first band that produced errors
+     * @return This composite for fluent API
+     */
+    public CompositeValidator<T> withFailFast(boolean failFast) {
+        this.failFast = failFast;
+        this.validatorSetVersion = null;
+        return this;
+    }
+
+    /**
+     * Enables result caching. Validating a configuration that is structurally identical to one
+     * validated before, in the same mode and with the same validator set, returns the cached result.
+     *
+     * @param resultCache The cache to use, or null to disable caching
+     * @return This composite for fluent API
+     */
+    public CompositeValidator<T> withResultCache(ValidationResultCache resultCache) {
+        this.resultCache = resultCache;
         return this;
     }
 
@@ -64,14 +134,127 @@ public class CompositeValidator<T extends ConfigValidatable> implements ConfigVa
     /**
      * Validates an object using the specified validation mode.
      * Only runs validators that support the given mode.
-     * 
+     *
      * @param object The object to validate
      * @param mode The validation mode to use
      * @return The combined validation result
      */
     public ValidationResult validate(T object, ValidationMode mode) {
-        LOG.debugf("CompositeValidator.validate called with %d validators in %s mode", validators.size(), mode);
-        ValidationResult result = EmptyValidationResult.instance();
+        ValidationResultCache cache = resultCache;
+        if (cache != null) {
+            String fingerprint = ConfigFingerprint.of(object);
+            if (fingerprint != null) {
+                ValidationResultCache.Key key = new ValidationResultCache.Key(fingerprint, mode, getValidatorSetVersion());
+                return cache.getOrValidate(key, () -> runValidators(object, mode));
+            }
+        }
+        return runValidators(object, mode);
+    }
+
+    /**
+     * Validates a new version of a pipeline, reusing the per-step results of steps that did not change.
+     * <p>
+     * Validators implementing {@link StepScopedValidator} only re-run their per-step checks for added and
+     * changed steps and for the steps whose outputs reference an added or removed step; all other validators
+     * run in full. The result has the same validity and messages as {@link #validate(ConfigValidatable, ValidationMode)},
+     * although messages of step-scoped validators may be ordered differently.
+     * Falls back to a full validation when the objects are not pipeline configurations, there is no previous
+     * version, or the pipeline was renamed.
+     *
+     * @param previous The currently stored version, may be null
+     * @param updated The new version to validate
+     * @param mode The validation mode to use
+     * @return The combined validation result
+     */
+    public ValidationResult validateUpdate(T previous, T updated, ValidationMode mode) {
+        if (!(previous instanceof PipelineConfig prior) || !(updated instanceof PipelineConfig current)
+                || current.pipelineSteps() == null || current.pipelineSteps().isEmpty()
+                || !Objects.equals(prior.name(), current.name())) {
+            return validate(updated, mode);
+        }
+
+        ValidationResultCache cache = resultCache;
+        if (cache != null) {
+            String fingerprint = ConfigFingerprint.of(updated);
+            if (fingerprint != null) {
+                ValidationResultCache.Key key = new ValidationResultCache.Key(fingerprint, mode, getValidatorSetVersion());
+                return cache.getOrValidate(key, () -> runValidatorsIncrementally(prior, updated, mode));
+            }
+        }
+        return runValidatorsIncrementally(prior, updated, mode);
+    }
+
+    private ValidationResult runValidators(T object, ValidationMode mode) {
+        LOG.debugf("CompositeValidator.validate called with %d validators in %s mode (parallel=%s, failFast=%s)",
+            validators.size(), mode, parallel, failFast);
+        return runBands(mode, (validator, builder) -> runValidator(validator, object, mode, builder));
+    }
+
+    private ValidationResult runValidatorsIncrementally(PipelineConfig previous, T object, ValidationMode mode) {
+        PipelineConfig updated = (PipelineConfig) object;
+        StepDiff diff = StepDiff.between(previous, updated);
+        Set<String> affected = diff.affectedSteps(updated);
+        String pipelineKey = updated.name() + '|' + getValidatorSetVersion();
+        stepResultMemo.retainSteps(pipelineKey, updated.pipelineSteps().keySet());
+        LOG.debugf("CompositeValidator.validateUpdate for pipeline '%s' in %s mode: %d added, %d removed, %d changed, %d steps to revalidate",
+            updated.name(), mode, diff.added().size(), diff.removed().size(), diff.changed().size(), affected.size());
+
+        return runBands(mode, (validator, builder) -> {
+            if (validator instanceof StepScopedValidator scoped) {
+                runStepScopedValidator(validator, scoped, updated, affected, pipelineKey, mode, builder);
+            } else {
+                runValidator(validator, object, mode, builder);
+            }
+        });
+    }
+
+    private ValidationResult runBands(ValidationMode mode, BiConsumer<ConfigValidator<T>, ValidationResultBuilder> runner) {
+        try (ValidationResultBuilder builder = ValidationResultBuilder.acquire()) {
+            for (List<ConfigValidator<T>> band : priorityBands(mode)) {
+                if (parallel && band.size() > 1) {
+                    List<CompletableFuture<ValidationResult>> futures = new ArrayList<>(band.size());
+                    for (ConfigValidator<T> validator : band) {
+                        futures.add(CompletableFuture.supplyAsync(() -> {
+                            try (ValidationResultBuilder validatorBuilder = ValidationResultBuilder.acquire()) {
+                                runner.accept(validator, validatorBuilder);
+                                return validatorBuilder.build();
+                            }
+                        }, executor));
+                    }
+                    // Join in priority order so the accumulated result matches a sequential run
+                    for (CompletableFuture<ValidationResult> future : futures) {
+                        builder.add(future.join());
+                    }
+                } else {
+                    // Like a parallel run, a band always runs to completion; fail-fast only skips later bands
+                    for (ConfigValidator<T> validator : band) {
+                        runner.accept(validator, builder);
+                    }
+                }
+
+                if (failFast && builder.hasErrors()) {
+                    LOG.debugf("Fail-fast enabled, skipping remaining validators after errors in %s", name);
+                    break;
+                }
+            }
+
+            ValidationResult result = builder.build();
+            if (LOG.isDebugEnabled()) {
+                // Only format the messages when they are actually logged
+                LOG.debugf("CompositeValidator final result: valid=%s, errors=%s, warnings=%s",
+                    result.valid(), result.errors(), result.warnings());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Groups the validators that support the given mode into priority bands, preserving priority order.
+     */
+    private List<List<ConfigValidator<T>>> priorityBands(ValidationMode mode) {
+        List<List<ConfigValidator<T>>> bands = new ArrayList<>();
+        List<ConfigValidator<T>> current = null;
+        int currentBand = Integer.MIN_VALUE;
 
         for (ConfigValidator<T> validator : validators) {
             // Check if this validator supports the current mode
@@ -80,36 +263,146 @@ public class CompositeValidator<T extends ConfigValidatable> implements ConfigVa
                 continue;
             }
 
-            try {
-                LOG.debugf("Running validator: %s", validator.getValidatorName());
-                ValidationResult validatorResult;
+            int band = Math.floorDiv(validator.getPriority(), PRIORITY_BAND_WIDTH);
+            if (current == null || band != currentBand) {
+                current = new ArrayList<>();
+                bands.add(current);
+                currentBand = band;
+            }
+            current.add(validator);
+        }
+        return bands;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runValidator(ConfigValidator<T> validator, T object, ValidationMode mode, ValidationResultBuilder builder) {
+        ValidationResultBuilder.Checkpoint checkpoint = builder.checkpoint();
+        try {
+            LOG.debugf("Running validator: %s", validator.getValidatorName());
 
-                // Check if validator is mode-aware
-                if (validator instanceof ModeAwareValidator) {
-                    validatorResult = ((ModeAwareValidator<T>) validator).validate(object, mode);
+            // Check if validator is mode-aware
+            if (validator instanceof ModeAwareValidator) {
+                ((ModeAwareValidator<T>) validator).validateInto(object, mode, builder);
+            } else {
+                validator.validateInto(object, builder);
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debugf("Validator %s returned: valid=%s, %d errors, %d warnings",
+                    validator.getValidatorName(), builder.isValid(),
+                    builder.errorsSince(checkpoint).size(), builder.warningsSince(checkpoint).size());
+            }
+        } catch (Exception e) {
+            // Discard whatever the validator reported before failing
+            builder.rollback(checkpoint);
+            addValidatorFailure(validator, e, builder);
+        }
+    }
+
+    /**
+     * Runs a step-scoped validator, taking the per-step results of unaffected steps from the memo.
+     */
+    private void runStepScopedValidator(ConfigValidator<T> validator, StepScopedValidator scoped,
+                                        PipelineConfig config, Set<String> affected, String pipelineKey,
+                                        ValidationMode mode, ValidationResultBuilder builder) {
+        ValidationResultBuilder.Checkpoint start = builder.checkpoint();
+        try {
+            LOG.debugf("Running validator incrementally: %s", validator.getValidatorName());
+            scoped.validatePipeline(config, mode, builder);
+
+            String validatorKey = validator.getValidatorName() + '|' + mode;
+            Set<String> stepIds = config.pipelineSteps().keySet();
+            for (var entry : config.pipelineSteps().entrySet()) {
+                String stepId = entry.getKey();
+                PipelineStepConfig step = entry.getValue();
+                Set<String> resolvedReferences = scoped.stepScope() == StepScopedValidator.StepScope.NEIGHBOURHOOD
+                    ? resolvedReferences(step, stepIds)
+                    : Set.of();
+
+                StepResultMemo.Entry memoized = affected.contains(stepId)
+                    ? null
+                    : stepResultMemo.get(pipelineKey, stepId, validatorKey, step, resolvedReferences);
+                if (memoized == null) {
+                    ValidationResultBuilder.Checkpoint stepStart = builder.checkpoint();
+                    scoped.validateStep(config, stepId, step, mode, builder);
+                    stepResultMemo.put(pipelineKey, stepId, validatorKey, new StepResultMemo.Entry(
+                        step, resolvedReferences, builder.errorsSince(stepStart), builder.warningsSince(stepStart)));
                 } else {
-                    validatorResult = validator.validate(object);
+                    memoized.errors().forEach(builder::addError);
+                    memoized.warnings().forEach(builder::addWarning);
+                }
+            }
+
+            if (!scoped.reportsWarningsOnFailure()) {
+                List<ValidationIssue> errors = builder.errorsSince(start);
+                if (!errors.isEmpty()) {
+                    builder.rollback(start);
+                    errors.forEach(builder::addError);
                 }
+            }
+        } catch (Exception e) {
+            builder.rollback(start);
+            addValidatorFailure(validator, e, builder);
+        }
+    }
+
+    private static Set<String> resolvedReferences(PipelineStepConfig step, Set<String> stepIds) {
+        Set<String> resolved = new HashSet<>(StepDiff.referencedStepIds(step));
+        resolved.retainAll(stepIds);
+        return resolved;
+    }
+
+    private void addValidatorFailure(ConfigValidator<T> validator, Exception e, ValidationResultBuilder builder) {
+        // Log the error and add it to the validation result
+        LOG.error("Validator exception", e);
+        builder.addError("validator.exception", null, null,
+            "Validator '%s' threw an exception: %s", validator.getValidatorName(), e.getMessage());
+    }
 
-                LOG.debugf("Validator %s returned: valid=%s, errors=%s, warnings=%s", 
-                    validator.getValidatorName(), validatorResult.valid(), 
-                    validatorResult.errors(), validatorResult.warnings());
-                result = result.combine(validatorResult);
-            } catch (Exception e) {
-                // Log the error and add it to the validation result
-                String errorMessage = String.format(
-                    "Validator '%s' threw an exception: %s",
-                    validator.getValidatorName(),
-                    e.getMessage()
-                );
-                LOG.error("Validator exception", e);
-                result = result.combine(ValidationResultFactory.failure(errorMessage));
+    /**
+     * Returns a version identifier for the current validator set and execution settings. It changes
+     * whenever a validator is added or removed or the execution mode is reconfigured,
+     * which keeps cached results from being reused across different validator chains. The version is
+     * computed once and kept until the next such change.
+     *
+     * @return The validator set version
+     */
+    public String getValidatorSetVersion() {
+        String version = validatorSetVersion;
+        if (version == null) {
+            // Fail-fast results are partial, so they must never be shared with full runs
+            StringBuilder signature = new StringBuilder(name)
+                .append("|failFast=").append(failFast)
+                .append("|parallel=").append(parallel);
+            for (ConfigValidator<T> validator : validators) {
+                signature.append('|')
+                    .append(validator.getClass().getName())
+                    .append(':').append(validator.getValidatorName())
+                    .append(':').append(validator.getPriority())
+                    .append(':').append(new TreeSet<>(validator.supportedModes()));
             }
+            version = ConfigFingerprint.sha256(signature.toString());
+            validatorSetVersion = version;
         }
+        return version;
+    }
 
-        LOG.debugf("CompositeValidator final result: valid=%s, errors=%s, warnings=%s", 
-            result.valid(), result.errors(), result.warnings());
-        return result;
+    /**
+     * Returns the result cache, if caching is enabled.
+     *
+     * @return The cache, or null when caching is disabled
+     */
+    public ValidationResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Returns the memo of per-step results used by {@link #validateUpdate}.
+     *
+     * @return The step result memo
+     */
+    public StepResultMemo getStepResultMemo() {
+        return stepResultMemo;
     }
 
     @Override
@@ -123,11 +416,43 @@ public class CompositeValidator<T extends ConfigValidatable> implements ConfigVa
     }
 
     /**
-     * Returns the list of validators in this composite.
-     * 
-     * @return The list of validators
+     * Returns whether validators within a priority band run concurrently.
+     *
+     * @return true if parallel execution is enabled
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Returns whether validation stops after the first band that produced errors.
+     *
+     * @return true if fail-fast is enabled
+     */
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * Replaces all validators of this composite.
+     *
+     * @param replacement The new validators
+     * @return This composite for fluent API
+     */
+    public CompositeValidator<T> setValidators(List<ConfigValidator<T>> replacement) {
+        validators.clear();
+        validators.addAll(replacement);
+        validators.sort(Comparator.comparingInt(ConfigValidator::getPriority));
+        validatorSetVersion = null;
+        return this;
+    }
+
+    /**
+     * Returns the validators in this composite, ordered by priority.
+     *
+     * @return An unmodifiable snapshot of the validators
      */
     public List<ConfigValidator<T>> getValidators() {
-        return validators;
+        return List.copyOf(validators);
     }
 }
@@ -9,6 +9,7 @@ import com.rokkon.pipeline.api.validation.ValidationResult;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Builder for creating CompositeValidator instances.
@@ -20,6 +21,9 @@ public class CompositeValidatorBuilder<T extends ConfigValidatable> {
 
     private String name = "CompositeValidator";
     private final List<ConfigValidator<T>> validators = new ArrayList<>();
+    private boolean parallel = false;
+    private Executor executor;
+    private boolean failFast = false;
 
     /**
      * Default constructor. Use the static create() method to instantiate.
@@ -83,6 +87,29 @@ public class CompositeValidatorBuilder<T extends ConfigValidatable> {
         return this;
     }
 
+    /**
+     * Runs validators within the same priority band concurrently.
+     * 
+     * @param executor The executor to run validators on, or null for the common fork-join pool
+     * @return This builder instance for method chaining
+     */
+    public CompositeValidatorBuilder<T> withParallelExecution(Executor executor) {
+        this.parallel = true;
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Stops running further priority bands once a validator has reported an error.
+     * 
+     * @param failFast true to short-circuit on the first errors
+     * @return This builder instance for method chaining
+     */
+    public CompositeValidatorBuilder<T> withFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
     /**
      * Creates an empty validator that always returns success.
      * Useful for testing when you don't want validation to interfere.
@@ -134,6 +161,10 @@ public class CompositeValidatorBuilder<T extends ConfigValidatable> {
      * @return A new CompositeValidator instance with the configured settings
      */
     public CompositeValidator<T> build() {
-        return new CompositeValidator<>(name, validators);
+        CompositeValidator<T> composite = new CompositeValidator<>(name, validators);
+        if (parallel) {
+            composite.withParallelExecution(executor);
+        }
+        return composite.withFailFast(failFast);
     }
 }
@@ -0,0 +1,71 @@
+package com.rokkon.pipeline.engine.validation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import com.rokkon.pipeline.api.validation.ConfigValidatable;
+import com.rokkon.pipeline.util.ObjectMapperFactory;
+import org.jboss.logging.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Computes a stable structural hash of a configuration object.
+ * <p>
+ * The configuration is serialized with the same canonical settings as {@code JsonOrderingCustomizer}
+ * (properties and map entries sorted, plus sorted properties inside free-form {@code JsonNode} configs),
+ * so two logically identical configurations always produce the same fingerprint regardless of map
+ * iteration order.
+ */
+public final class ConfigFingerprint {
+
+    private static final Logger LOG = Logger.getLogger(ConfigFingerprint.class);
+
+    private static final ObjectMapper CANONICAL_MAPPER = ObjectMapperFactory.createConfiguredMapper()
+            .configure(JsonNodeFeature.WRITE_PROPERTIES_SORTED, true);
+
+    private ConfigFingerprint() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Returns the SHA-256 fingerprint of the given configuration.
+     *
+     * @param config the configuration to fingerprint
+     * @return the hex encoded fingerprint, or null if the configuration is null or cannot be serialized
+     */
+    public static String of(ConfigValidatable config) {
+        if (config == null) {
+            return null;
+        }
+        try {
+            byte[] canonical = CANONICAL_MAPPER.writeValueAsBytes(config);
+            return sha256(canonical);
+        } catch (JsonProcessingException e) {
+            LOG.debugf("Unable to fingerprint %s: %s", config.getClass().getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of the given string.
+     *
+     * @param value the value to hash
+     * @return the hex encoded digest
+     */
+    static String sha256(String value) {
+        return sha256(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory on every Java platform
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.rokkon.pipeline.engine.validation;
+
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The step-level difference between two versions of a pipeline configuration.
+ * Steps are compared by ID and by value, so a step counts as changed whenever any part of its configuration differs.
+ *
+ * @param added Step IDs that only exist in the updated pipeline
+ * @param removed Step IDs that only exist in the previous pipeline
+ * @param changed Step IDs that exist in both pipelines with a different configuration
+ * @param unchanged Step IDs that exist in both pipelines with an equal configuration
+ */
+public record StepDiff(Set<String> added, Set<String> removed, Set<String> changed, Set<String> unchanged) {
+
+    public StepDiff {
+        added = Set.copyOf(added);
+        removed = Set.copyOf(removed);
+        changed = Set.copyOf(changed);
+        unchanged = Set.copyOf(unchanged);
+    }
+
+    /**
+     * Computes the difference between two pipeline versions.
+     *
+     * @param previous The previous pipeline, may be null
+     * @param updated The updated pipeline, may be null
+     * @return the step-level difference
+     */
+    public static StepDiff between(PipelineConfig previous, PipelineConfig updated) {
+        Map<String, PipelineStepConfig> before = steps(previous);
+        Map<String, PipelineStepConfig> after = steps(updated);
+
+        Set<String> added = new HashSet<>();
+        Set<String> changed = new HashSet<>();
+        Set<String> unchanged = new HashSet<>();
+        for (var entry : after.entrySet()) {
+            if (!before.containsKey(entry.getKey())) {
+                added.add(entry.getKey());
+            } else if (Objects.equals(before.get(entry.getKey()), entry.getValue())) {
+                unchanged.add(entry.getKey());
+            } else {
+                changed.add(entry.getKey());
+            }
+        }
+
+        Set<String> removed = new HashSet<>(before.keySet());
+        removed.removeAll(after.keySet());
+        return new StepDiff(added, removed, changed, unchanged);
+    }
+
+    /**
+     * Returns true if both pipeline versions contain exactly the same steps.
+     *
+     * @return true if no step was added, removed or changed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    /**
+     * Returns the steps of the updated pipeline whose per-step validation results may differ from the previous
+     * version: every added or changed step, plus the neighbourhood of steps whose outputs reference a step
+     * that was added or removed.
+     *
+     * @param updated The updated pipeline this diff was computed for
+     * @return the IDs of the steps that must be validated again
+     */
+    public Set<String> affectedSteps(PipelineConfig updated) {
+        Set<String> affected = new HashSet<>(added);
+        affected.addAll(changed);
+        if (added.isEmpty() && removed.isEmpty()) {
+            return affected;
+        }
+
+        for (var entry : steps(updated).entrySet()) {
+            for (String reference : referencedStepIds(entry.getValue())) {
+                if (added.contains(reference) || removed.contains(reference)) {
+                    affected.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Returns every step ID a step may reference through its outputs, either as the target step name
+     * or as an internal gRPC service name.
+     *
+     * @param step The step configuration, may be null
+     * @return the referenced step IDs
+     */
+    public static Set<String> referencedStepIds(PipelineStepConfig step) {
+        if (step == null || step.outputs() == null || step.outputs().isEmpty()) {
+            return Set.of();
+        }
+
+        Set<String> references = new HashSet<>();
+        for (PipelineStepConfig.OutputTarget output : step.outputs().values()) {
+            if (output == null) {
+                continue;
+            }
+            if (output.targetStepName() != null) {
+                references.add(output.targetStepName());
+            }
+            if (output.grpcTransport() != null && output.grpcTransport().serviceName() != null) {
+                references.add(output.grpcTransport().serviceName());
+            }
+        }
+        return references;
+    }
+
+    private static Map<String, PipelineStepConfig> steps(PipelineConfig config) {
+        return config == null || config.pipelineSteps() == null ? Map.of() : config.pipelineSteps();
+    }
+}
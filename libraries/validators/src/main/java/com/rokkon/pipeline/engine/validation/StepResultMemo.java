@@ -0,0 +1,144 @@
+package com.rokkon.pipeline.engine.validation;
+
+import com.rokkon.pipeline.api.validation.ValidationIssue;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoized per-step results of {@link StepScopedValidator}s, used by {@link CompositeValidator#validateUpdate}.
+ * <p>
+ * Results are grouped per pipeline, and the least recently used pipelines are dropped once
+ * {@link #DEFAULT_MAXIMUM_PIPELINES} is exceeded. Every entry remembers the step configuration it was computed
+ * for and which of the step's references resolved at the time, so an entry is only reused when both still match.
+ */
+public class StepResultMemo {
+
+    /**
+     * Default maximum number of pipelines whose step results are kept.
+     */
+    public static final int DEFAULT_MAXIMUM_PIPELINES = 256;
+
+    private final int maximumPipelines;
+    private final Map<String, Map<String, Map<String, Entry>>> pipelines;
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder recomputed = new LongAdder();
+
+    public StepResultMemo() {
+        this(DEFAULT_MAXIMUM_PIPELINES);
+    }
+
+    public StepResultMemo(int maximumPipelines) {
+        if (maximumPipelines < 1) {
+            throw new IllegalArgumentException("maximumPipelines must be at least 1");
+        }
+        this.maximumPipelines = maximumPipelines;
+        this.pipelines = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Map<String, Entry>>> eldest) {
+                return size() > StepResultMemo.this.maximumPipelines;
+            }
+        };
+    }
+
+    /**
+     * Returns the memoized result for a step if it is still valid for the given step configuration and
+     * resolved references.
+     */
+    Entry get(String pipelineKey, String stepId, String validatorKey, PipelineStepConfig step, Set<String> resolvedReferences) {
+        Entry entry = stepEntries(pipelineKey, stepId).get(validatorKey);
+        if (entry != null && Objects.equals(entry.step(), step) && entry.resolvedReferences().equals(resolvedReferences)) {
+            reused.increment();
+            return entry;
+        }
+        return null;
+    }
+
+    void put(String pipelineKey, String stepId, String validatorKey, Entry entry) {
+        recomputed.increment();
+        stepEntries(pipelineKey, stepId).put(validatorKey, entry);
+    }
+
+    /**
+     * Drops the results of all steps that no longer exist in the pipeline.
+     */
+    void retainSteps(String pipelineKey, Set<String> stepIds) {
+        pipelineEntries(pipelineKey).keySet().retainAll(stepIds);
+    }
+
+    private Map<String, Entry> stepEntries(String pipelineKey, String stepId) {
+        return pipelineEntries(pipelineKey).computeIfAbsent(stepId, id -> new ConcurrentHashMap<>());
+    }
+
+    private Map<String, Map<String, Entry>> pipelineEntries(String pipelineKey) {
+        synchronized (pipelines) {
+            return pipelines.computeIfAbsent(pipelineKey, key -> new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Removes all memoized results.
+     */
+    public void invalidateAll() {
+        synchronized (pipelines) {
+            pipelines.clear();
+        }
+    }
+
+    /**
+     * Returns the number of pipelines with memoized results.
+     *
+     * @return number of pipelines
+     */
+    public int size() {
+        synchronized (pipelines) {
+            return pipelines.size();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the reuse counters.
+     *
+     * @return the memo statistics
+     */
+    public Stats stats() {
+        return new Stats(reused.sum(), recomputed.sum(), size());
+    }
+
+    /**
+     * A memoized per-step result.
+     *
+     * @param step the step configuration the result was computed for
+     * @param resolvedReferences the step's references that existed in the pipeline at the time
+     * @param errors the step's errors
+     * @param warnings the step's warnings
+     */
+    record Entry(PipelineStepConfig step, Set<String> resolvedReferences, List<ValidationIssue> errors, List<ValidationIssue> warnings) {
+    }
+
+    /**
+     * Point-in-time memo statistics.
+     *
+     * @param reused number of per-step results taken from the memo
+     * @param recomputed number of per-step results that had to be computed
+     * @param pipelines current number of pipelines with memoized results
+     */
+    public record Stats(long reused, long recomputed, int pipelines) {
+
+        /**
+         * Returns the fraction of per-step results taken from the memo.
+         *
+         * @return reuse rate between 0.0 and 1.0
+         */
+        public double reuseRate() {
+            long total = reused + recomputed;
+            return total == 0 ? 0.0 : (double) reused / total;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.rokkon.pipeline.engine.validation;
+
+import com.rokkon.pipeline.api.validation.ValidationIssueCollector;
+import com.rokkon.pipeline.api.validation.ValidationMode;
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
+
+/**
+ * A pipeline validator whose checks can be split into pipeline-level checks and independent per-step checks.
+ * <p>
+ * Implementations let {@link CompositeValidator#validateUpdate} reuse the per-step results of steps that
+ * did not change between two versions of a pipeline, instead of re-running the whole validator.
+ * For a given validator the union of {@link #validatePipeline} and {@link #validateStep} for every step
+ * must report the same errors and warnings as a full validation of the pipeline.
+ */
+public interface StepScopedValidator {
+
+    /**
+     * Describes what the per-step result of a validator depends on.
+     */
+    enum StepScope {
+        /**
+         * The per-step result depends only on the step itself (and the pipeline name).
+         */
+        STEP_LOCAL,
+        /**
+         * The per-step result also depends on which step IDs exist in the pipeline,
+         * e.g. because the step's outputs must reference existing steps.
+         */
+        NEIGHBOURHOOD
+    }
+
+    /**
+     * Returns what the per-step results of this validator depend on.
+     *
+     * @return the step scope
+     */
+    StepScope stepScope();
+
+    /**
+     * Runs the checks that need to see the whole pipeline, e.g. pipeline name rules or duplicate detection.
+     *
+     * @param config The pipeline configuration, never null
+     * @param mode The validation mode
+     * @param issues The collector to report errors and warnings into
+     */
+    default void validatePipeline(PipelineConfig config, ValidationMode mode, ValidationIssueCollector issues) {
+        // Most validators only have per-step checks
+    }
+
+    /**
+     * Runs the checks for a single step.
+     *
+     * @param config The pipeline configuration the step belongs to, never null
+     * @param stepId The ID of the step
+     * @param step The step configuration, may be null
+     * @param mode The validation mode
+     * @param issues The collector to report errors and warnings into
+     */
+    void validateStep(PipelineConfig config, String stepId, PipelineStepConfig step, ValidationMode mode,
+                      ValidationIssueCollector issues);
+
+    /**
+     * Returns whether a failed validation still reports its warnings. Validators that only report warnings
+     * for otherwise valid configurations return false.
+     *
+     * @return true if warnings are kept alongside errors
+     */
+    default boolean reportsWarningsOnFailure() {
+        return true;
+    }
+}
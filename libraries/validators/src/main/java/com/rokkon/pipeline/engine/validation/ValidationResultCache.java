@@ -0,0 +1,138 @@
+package com.rokkon.pipeline.engine.validation;
+
+import com.rokkon.pipeline.api.validation.ValidationMode;
+import com.rokkon.pipeline.api.validation.ValidationResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of validation results.
+ * <p>
+ * Entries are keyed by the structural fingerprint of the validated configuration, the
+ * {@link ValidationMode} and the version of the validator set that produced them, so a result is only
+ * reused for an identical configuration validated by an identical chain. This relies on validators
+ * being pure functions of the configuration, which is true for all validators in this module.
+ */
+public class ValidationResultCache {
+
+    /**
+     * Default maximum number of cached results.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final int maximumSize;
+    private final Map<Key, ValidationResult> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ValidationResultCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public ValidationResultCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be at least 1");
+        }
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ValidationResult> eldest) {
+                boolean evict = size() > ValidationResultCache.this.maximumSize;
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result for the key, or computes, caches and returns it.
+     * The computation runs outside the cache lock, so concurrent misses for the same key may both validate.
+     *
+     * @param key the cache key
+     * @param validation the validation to run on a miss
+     * @return the cached or freshly computed result
+     */
+    public ValidationResult getOrValidate(Key key, Supplier<ValidationResult> validation) {
+        ValidationResult cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        ValidationResult result = validation.get();
+        synchronized (entries) {
+            entries.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the current number of cached results.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the hit, miss and eviction counters.
+     *
+     * @return the cache statistics
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size());
+    }
+
+    /**
+     * Cache key.
+     *
+     * @param fingerprint structural hash of the validated configuration
+     * @param mode validation mode the result was produced for
+     * @param validatorSetVersion version of the validator chain that produced the result
+     */
+    public record Key(String fingerprint, ValidationMode mode, String validatorSetVersion) {
+    }
+
+    /**
+     * Point-in-time cache statistics.
+     *
+     * @param hits number of lookups answered from the cache
+     * @param misses number of lookups that required validation
+     * @param evictions number of entries evicted because the cache was full
+     * @param size current number of entries
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+
+        /**
+         * Returns the fraction of lookups answered from the cache.
+         *
+         * @return hit rate between 0.0 and 1.0
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+}
@@ -2,11 +2,13 @@ package com.rokkon.pipeline.engine.validation;
 
 import com.rokkon.pipeline.config.model.PipelineConfig;
 import com.rokkon.pipeline.config.model.PipelineClusterConfig;
+import com.rokkon.pipeline.api.validation.ConfigValidatable;
 import com.rokkon.pipeline.api.validation.ConfigValidator;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Instance;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import java.util.ArrayList;
@@ -28,6 +30,18 @@ public class ValidatorProducer {
     @Inject
     Instance<ConfigValidator<PipelineClusterConfig>> clusterValidators;
     
+    @ConfigProperty(name = "pipeline.validation.parallel.enabled", defaultValue = "false")
+    boolean parallelEnabled;
+    
+    @ConfigProperty(name = "pipeline.validation.fail-fast", defaultValue = "false")
+    boolean failFast;
+    
+    @ConfigProperty(name = "pipeline.validation.cache.enabled", defaultValue = "false")
+    boolean cacheEnabled;
+    
+    @ConfigProperty(name = "pipeline.validation.cache.maximum-size", defaultValue = "1000")
+    int cacheMaximumSize;
+    
     /**
      * Produces the default CompositeValidator for PipelineConfig validation.
      * This validator respects the supportedModes() method of each validator.
@@ -47,8 +61,16 @@ public class ValidatorProducer {
             }
         }
         
-        LOG.infof("Created CompositeValidator for PipelineConfig with %d validators", validators.size());
-        return new CompositeValidator<>("PipelineConfigComposite", validators);
+        LOG.infof("Created CompositeValidator for PipelineConfig with %d validators (parallel=%s, failFast=%s)", 
+            validators.size(), parallelEnabled, failFast);
+        CompositeValidator<PipelineConfig> composite = configureExecution(
+            new CompositeValidator<>("PipelineConfigComposite", validators));
+        if (cacheEnabled) {
+            // Pipelines are re-validated on every create/update, per mode, and on whitelist changes
+            LOG.infof("Validation result cache enabled for PipelineConfig (maximum-size=%d)", cacheMaximumSize);
+            composite.withResultCache(new ValidationResultCache(cacheMaximumSize));
+        }
+        return composite;
     }
     
     /**
@@ -70,6 +92,17 @@ public class ValidatorProducer {
         }
         
         LOG.infof("Created CompositeValidator for PipelineClusterConfig with %d validators", validators.size());
-        return new CompositeValidator<>("PipelineClusterConfigComposite", validators);
+        return configureExecution(new CompositeValidator<>("PipelineClusterConfigComposite", validators));
+    }
+    
+    /**
+     * Applies the configured execution mode (parallel priority bands, fail-fast) to a composite.
+     */
+    private <T extends ConfigValidatable> CompositeValidator<T> configureExecution(
+            CompositeValidator<T> composite) {
+        if (parallelEnabled) {
+            composite.withParallelExecution(null);
+        }
+        return composite.withFailFast(failFast);
     }
 }
\ No newline at end of file
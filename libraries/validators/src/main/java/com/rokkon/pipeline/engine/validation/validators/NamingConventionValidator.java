@@ -6,16 +6,17 @@ import com.rokkon.pipeline.config.model.TransportType;
 import com.rokkon.pipeline.config.model.KafkaTransportConfig;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidator;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidatable;
+import com.rokkon.pipeline.api.validation.ValidationIssueCollector;
+import com.rokkon.pipeline.api.validation.ValidationMode;
 import com.rokkon.pipeline.api.validation.ValidationResult;
-import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
+import com.rokkon.pipeline.commons.validation.ValidationResultBuilder;
+import com.rokkon.pipeline.engine.validation.StepScopedValidator;
 import jakarta.enterprise.context.ApplicationScoped;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.regex.Pattern;
 
 @ApplicationScoped
-public class NamingConventionValidator implements PipelineConfigValidator {
+public class NamingConventionValidator implements PipelineConfigValidator, StepScopedValidator {
     
     private static final Pattern PIPELINE_NAME_PATTERN = Pattern.compile("^[a-zA-Z0-9][a-zA-Z0-9-]*[a-zA-Z0-9]$");
     private static final Pattern STEP_NAME_PATTERN = Pattern.compile("^[a-zA-Z0-9][a-zA-Z0-9-]*[a-zA-Z0-9]$");
@@ -29,59 +30,77 @@ public class NamingConventionValidator implements PipelineConfigValidator {
     
     @Override
     public ValidationResult validate(PipelineConfigValidatable validatable) {
+        try (ValidationResultBuilder builder = ValidationResultBuilder.acquire()) {
+            validateInto(validatable, builder);
+            return builder.build();
+        }
+    }
+    
+    @Override
+    public void validateInto(PipelineConfigValidatable validatable, ValidationIssueCollector issues) {
         PipelineConfig config = (PipelineConfig) validatable;
         if (config == null) {
-            return ValidationResultFactory.success();
+            return;
         }
         
-        List<String> errors = new ArrayList<>();
-        List<String> warnings = new ArrayList<>();
-        
         // Validate pipeline name format
         if (config.name() != null) {
-            validatePipelineName(config.name(), errors, warnings);
+            validatePipelineName(config.name(), issues);
         }
         
         // Validate step names and topic naming conventions
         if (config.pipelineSteps() != null) {
-            for (PipelineStepConfig step : config.pipelineSteps().values()) {
-                validateStep(config.name(), step, errors, warnings);
+            for (var entry : config.pipelineSteps().entrySet()) {
+                validateStep(config.name(), entry.getKey(), entry.getValue(), issues);
             }
         }
-        
-        if (!errors.isEmpty()) {
-            return ValidationResultFactory.failure(errors, warnings);
-        } else if (!warnings.isEmpty()) {
-            return ValidationResultFactory.successWithWarnings(warnings);
-        } else {
-            return ValidationResultFactory.success();
+    }
+    
+    @Override
+    public StepScope stepScope() {
+        return StepScope.STEP_LOCAL;
+    }
+    
+    @Override
+    public void validatePipeline(PipelineConfig config, ValidationMode mode, ValidationIssueCollector issues) {
+        if (config.name() != null) {
+            validatePipelineName(config.name(), issues);
         }
     }
     
-    private void validatePipelineName(String pipelineName, List<String> errors, List<String> warnings) {
+    @Override
+    public void validateStep(PipelineConfig config, String stepId, PipelineStepConfig step, ValidationMode mode,
+                             ValidationIssueCollector issues) {
+        validateStep(config.name(), stepId, step, issues);
+    }
+    
+    private void validatePipelineName(String pipelineName, ValidationIssueCollector issues) {
         if (pipelineName.contains(".")) {
-            errors.add("Pipeline name '" + pipelineName + "' cannot contain dots - dots are reserved as delimiters in topic naming convention");
+            issues.addError("naming.pipeline.dots", null, "name",
+                "Pipeline name '%s' cannot contain dots - dots are reserved as delimiters in topic naming convention", pipelineName);
         }
         
         if (!PIPELINE_NAME_PATTERN.matcher(pipelineName).matches()) {
-            errors.add("Pipeline name '" + pipelineName + "' must contain only alphanumeric characters and hyphens, starting and ending with alphanumeric");
+            issues.addError("naming.pipeline.pattern", null, "name",
+                "Pipeline name '%s' must contain only alphanumeric characters and hyphens, starting and ending with alphanumeric", pipelineName);
         }
         
         if (pipelineName.length() > 50) {
-            warnings.add("Pipeline name '" + pipelineName + "' is longer than 50 characters, which may cause topic name length issues");
+            issues.addWarning("naming.pipeline.length", null, "name",
+                "Pipeline name '%s' is longer than 50 characters, which may cause topic name length issues", pipelineName);
         }
     }
     
-    private void validateStep(String pipelineName, PipelineStepConfig step, List<String> errors, List<String> warnings) {
+    private void validateStep(String pipelineName, String stepId, PipelineStepConfig step, ValidationIssueCollector issues) {
         if (step.stepName() != null) {
-            validateStepName(step.stepName(), errors, warnings);
+            validateStepName(stepId, step.stepName(), issues);
         }
         
         // Validate Kafka transport naming conventions for outputs
         if (step.outputs() != null) {
             step.outputs().forEach((outputName, transport) -> {
                 if (transport.transportType() == TransportType.KAFKA && transport.kafkaTransport() != null) {
-                    validateKafkaTransportNaming(pipelineName, step.stepName(), transport.kafkaTransport(), errors, warnings);
+                    validateKafkaTransportNaming(pipelineName, stepId, step.stepName(), transport.kafkaTransport(), issues);
                 }
             });
         }
@@ -90,96 +109,113 @@ public class NamingConventionValidator implements PipelineConfigValidator {
         if (step.kafkaInputs() != null) {
             for (var kafkaInput : step.kafkaInputs()) {
                 if (kafkaInput.consumerGroupId() != null) {
-                    validateConsumerGroupNaming(pipelineName, kafkaInput.consumerGroupId(), errors, warnings);
+                    validateConsumerGroupNaming(pipelineName, stepId, kafkaInput.consumerGroupId(), issues);
                 }
             }
         }
     }
     
-    private void validateStepName(String stepName, List<String> errors, List<String> warnings) {
+    private void validateStepName(String stepId, String stepName, ValidationIssueCollector issues) {
         if (stepName.contains(".")) {
-            errors.add("Step name '" + stepName + "' cannot contain dots - dots are reserved as delimiters in topic naming convention");
+            issues.addError("naming.step.dots", stepId, "stepName",
+                "Step name '%s' cannot contain dots - dots are reserved as delimiters in topic naming convention", stepName);
         }
         
         if (!STEP_NAME_PATTERN.matcher(stepName).matches()) {
-            errors.add("Step name '" + stepName + "' must contain only alphanumeric characters and hyphens, starting and ending with alphanumeric");
+            issues.addError("naming.step.pattern", stepId, "stepName",
+                "Step name '%s' must contain only alphanumeric characters and hyphens, starting and ending with alphanumeric", stepName);
         }
         
         if (stepName.length() > 50) {
-            warnings.add("Step name '" + stepName + "' is longer than 50 characters, which may cause topic name length issues");
+            issues.addWarning("naming.step.length", stepId, "stepName",
+                "Step name '%s' is longer than 50 characters, which may cause topic name length issues", stepName);
         }
     }
     
-    private void validateKafkaTransportNaming(String pipelineName, String stepName, KafkaTransportConfig kafka, List<String> errors, List<String> warnings) {
+    private void validateKafkaTransportNaming(String pipelineName, String stepId, String stepName, KafkaTransportConfig kafka,
+                                              ValidationIssueCollector issues) {
         if (kafka.topic() != null) {
-            validateTopicNaming(pipelineName, stepName, kafka.topic(), errors, warnings);
-            validateTopicConstraints(kafka.topic(), errors, warnings);
+            validateTopicNaming(pipelineName, stepId, stepName, kafka.topic(), issues);
+            validateTopicConstraints(stepId, kafka.topic(), issues);
             
             // Validate derived DLQ topic
             String dlqTopic = kafka.getDlqTopic();
             if (dlqTopic != null) {
-                validateDlqTopicNaming(pipelineName, stepName, dlqTopic, errors, warnings);
-                validateTopicConstraints(dlqTopic, errors, warnings);
+                validateDlqTopicNaming(pipelineName, stepId, stepName, dlqTopic, issues);
+                validateTopicConstraints(stepId, dlqTopic, issues);
             }
         }
         
         // Validate partition key field (should be pipedocId)
         if (kafka.partitionKeyField() != null && !kafka.partitionKeyField().equals("pipedocId")) {
-            warnings.add("Partition key field '" + kafka.partitionKeyField() + "' is not the recommended 'pipedocId'. " +
-                        "Using 'pipedocId' ensures CRUD operations don't clash out-of-order.");
+            issues.addWarning("naming.partition-key", stepId, "kafkaTransport.partitionKeyField",
+                "Partition key field '%s' is not the recommended 'pipedocId'. " +
+                "Using 'pipedocId' ensures CRUD operations don't clash out-of-order.", kafka.partitionKeyField());
         }
     }
     
-    private void validateTopicNaming(String pipelineName, String stepName, String topic, List<String> errors, List<String> warnings) {
+    private void validateTopicNaming(String pipelineName, String stepId, String stepName, String topic,
+                                     ValidationIssueCollector issues) {
         String expectedTopic = pipelineName + "." + stepName + ".input";
         
         if (!topic.equals(expectedTopic)) {
             if (EXPECTED_TOPIC_PATTERN.matcher(topic).matches()) {
-                warnings.add("Topic '" + topic + "' doesn't follow the expected naming convention. Expected: '" + expectedTopic + "'");
+                issues.addWarning("naming.topic.unexpected", stepId, "kafkaTransport.topic",
+                    "Topic '%s' doesn't follow the expected naming convention. Expected: '%s'", topic, expectedTopic);
             } else {
-                errors.add("Topic '" + topic + "' doesn't follow the required naming pattern '{pipeline-name}.{step-name}.input'");
+                issues.addError("naming.topic.pattern", stepId, "kafkaTransport.topic",
+                    "Topic '%s' doesn't follow the required naming pattern '{pipeline-name}.{step-name}.input'", topic);
             }
         }
     }
     
-    private void validateDlqTopicNaming(String pipelineName, String stepName, String dlqTopic, List<String> errors, List<String> warnings) {
+    private void validateDlqTopicNaming(String pipelineName, String stepId, String stepName, String dlqTopic,
+                                        ValidationIssueCollector issues) {
         String expectedDlqTopic = pipelineName + "." + stepName + ".input.dlq";
         
         if (!dlqTopic.equals(expectedDlqTopic)) {
             if (EXPECTED_DLQ_PATTERN.matcher(dlqTopic).matches()) {
-                warnings.add("DLQ topic '" + dlqTopic + "' doesn't follow the expected naming convention. Expected: '" + expectedDlqTopic + "'");
+                issues.addWarning("naming.dlq-topic.unexpected", stepId, "kafkaTransport.topic",
+                    "DLQ topic '%s' doesn't follow the expected naming convention. Expected: '%s'", dlqTopic, expectedDlqTopic);
             } else {
-                errors.add("DLQ topic '" + dlqTopic + "' doesn't follow the required naming pattern '{pipeline-name}.{step-name}.input.dlq'");
+                issues.addError("naming.dlq-topic.pattern", stepId, "kafkaTransport.topic",
+                    "DLQ topic '%s' doesn't follow the required naming pattern '{pipeline-name}.{step-name}.input.dlq'", dlqTopic);
             }
         }
     }
     
-    private void validateConsumerGroupNaming(String pipelineName, String consumerGroup, List<String> errors, List<String> warnings) {
+    private void validateConsumerGroupNaming(String pipelineName, String stepId, String consumerGroup,
+                                             ValidationIssueCollector issues) {
         String expectedConsumerGroup = pipelineName + ".consumer-group";
         
         if (!consumerGroup.equals(expectedConsumerGroup)) {
             if (EXPECTED_CONSUMER_GROUP_PATTERN.matcher(consumerGroup).matches()) {
-                warnings.add("Consumer group '" + consumerGroup + "' doesn't follow the expected naming convention. Expected: '" + expectedConsumerGroup + "'");
+                issues.addWarning("naming.consumer-group.unexpected", stepId, "kafkaInputs.consumerGroupId",
+                    "Consumer group '%s' doesn't follow the expected naming convention. Expected: '%s'", consumerGroup, expectedConsumerGroup);
             } else {
-                errors.add("Consumer group '" + consumerGroup + "' doesn't follow the required naming pattern '{pipeline-name}.consumer-group'");
+                issues.addError("naming.consumer-group.pattern", stepId, "kafkaInputs.consumerGroupId",
+                    "Consumer group '%s' doesn't follow the required naming pattern '{pipeline-name}.consumer-group'", consumerGroup);
             }
         }
     }
     
-    private void validateTopicConstraints(String topic, List<String> errors, List<String> warnings) {
+    private void validateTopicConstraints(String stepId, String topic, ValidationIssueCollector issues) {
         // Validate character pattern
         if (!TOPIC_CHAR_PATTERN.matcher(topic).matches()) {
-            errors.add("Topic '" + topic + "' contains invalid characters. Only alphanumeric, dots, underscores, and hyphens are allowed.");
+            issues.addError("naming.topic.characters", stepId, "kafkaTransport.topic",
+                "Topic '%s' contains invalid characters. Only alphanumeric, dots, underscores, and hyphens are allowed.", topic);
         }
         
         // Validate length
         if (topic.length() > MAX_TOPIC_LENGTH) {
-            errors.add("Topic '" + topic + "' exceeds maximum length of " + MAX_TOPIC_LENGTH + " characters.");
+            issues.addError("naming.topic.length", stepId, "kafkaTransport.topic",
+                "Topic '%s' exceeds maximum length of %d characters.", topic, MAX_TOPIC_LENGTH);
         }
         
         // Validate not just dots
         if (topic.equals(".") || topic.equals("..")) {
-            errors.add("Topic name '" + topic + "' cannot be just dots.");
+            issues.addError("naming.topic.dots", stepId, "kafkaTransport.topic",
+                "Topic name '%s' cannot be just dots.", topic);
         }
     }
     
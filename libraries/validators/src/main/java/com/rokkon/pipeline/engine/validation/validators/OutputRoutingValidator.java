@@ -3,14 +3,14 @@ package com.rokkon.pipeline.engine.validation.validators;
 import com.rokkon.pipeline.config.model.*;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidator;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidatable;
+import com.rokkon.pipeline.api.validation.ValidationIssueCollector;
 import com.rokkon.pipeline.api.validation.ValidationMode;
 import com.rokkon.pipeline.api.validation.ValidationResult;
-import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
+import com.rokkon.pipeline.commons.validation.ValidationResultBuilder;
+import com.rokkon.pipeline.engine.validation.StepScopedValidator;
 import jakarta.enterprise.context.ApplicationScoped;
 
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -18,88 +18,100 @@ import java.util.Set;
  * Ensures that output routes are properly configured and referenced steps exist.
  */
 @ApplicationScoped
-public class OutputRoutingValidator implements PipelineConfigValidator {
+public class OutputRoutingValidator implements PipelineConfigValidator, StepScopedValidator {
 
     @Override
     public ValidationResult validate(PipelineConfigValidatable validatable) {
+        try (ValidationResultBuilder builder = ValidationResultBuilder.acquire()) {
+            validateInto(validatable, builder);
+            return builder.build();
+        }
+    }
+
+    @Override
+    public void validateInto(PipelineConfigValidatable validatable, ValidationIssueCollector issues) {
         PipelineConfig config = (PipelineConfig) validatable;
-        List<String> errors = new ArrayList<>();
-        List<String> warnings = new ArrayList<>();
 
         if (config == null || config.pipelineSteps() == null) {
-            errors.add("Pipeline configuration or steps cannot be null");
-            return ValidationResultFactory.failure(errors, warnings);
+            issues.addError("pipeline.steps.null", null, null, "Pipeline configuration or steps cannot be null");
+            return;
         }
 
         Set<String> stepIds = config.pipelineSteps().keySet();
 
         for (var entry : config.pipelineSteps().entrySet()) {
-            String stepId = entry.getKey();
-            PipelineStepConfig step = entry.getValue();
-            validateStepOutputs(stepId, step, stepIds, errors, warnings);
+            validateStepOutputs(entry.getKey(), entry.getValue(), stepIds, issues);
         }
+    }
 
-        return errors.isEmpty() ? 
-            (warnings.isEmpty() ? ValidationResultFactory.success() : ValidationResultFactory.successWithWarnings(warnings)) : 
-            ValidationResultFactory.failure(errors, warnings);
+    @Override
+    public StepScope stepScope() {
+        // Target steps must exist in the pipeline
+        return StepScope.NEIGHBOURHOOD;
+    }
+
+    @Override
+    public void validateStep(PipelineConfig config, String stepId, PipelineStepConfig step, ValidationMode mode,
+                             ValidationIssueCollector issues) {
+        validateStepOutputs(stepId, step, config.pipelineSteps().keySet(), issues);
     }
 
     private void validateStepOutputs(String stepId, PipelineStepConfig step, 
-                                   Set<String> allStepIds, List<String> errors, List<String> warnings) {
+                                   Set<String> allStepIds, ValidationIssueCollector issues) {
         if (step == null || step.outputs() == null) {
             return;
         }
 
-        String prefix = String.format("Step '%s'", stepId);
-
         // Check if step has outputs defined
         if (step.outputs().isEmpty() && step.stepType() != StepType.SINK) {
-            warnings.add(String.format("%s: No outputs defined for non-SINK step", prefix));
+            issues.addWarning("routing.outputs.missing", stepId, "outputs",
+                "Step '%s': No outputs defined for non-SINK step", stepId);
         }
 
         // SINK steps should not have outputs
         if (step.stepType() == StepType.SINK && !step.outputs().isEmpty()) {
-            errors.add(String.format("%s: SINK steps should not have outputs", prefix));
+            issues.addError("routing.sink.outputs", stepId, "outputs",
+                "Step '%s': SINK steps should not have outputs", stepId);
         }
 
         // Validate each output
         for (var outputEntry : step.outputs().entrySet()) {
-            String outputName = outputEntry.getKey();
-            PipelineStepConfig.OutputTarget output = outputEntry.getValue();
-            
-            validateOutput(prefix, outputName, output, allStepIds, errors, warnings);
+            validateOutput(stepId, outputEntry.getKey(), outputEntry.getValue(), allStepIds, issues);
         }
 
         // Check for duplicate output names
-        validateDuplicateOutputs(prefix, step, errors);
+        validateDuplicateOutputs(stepId, step, issues);
 
         // Warn if only one output but it's not named "default"
         if (step.outputs().size() == 1 && !step.outputs().containsKey("default")) {
-            warnings.add(String.format("%s: Single output should be named 'default' for clarity", prefix));
+            issues.addWarning("routing.output.not-default", stepId, "outputs",
+                "Step '%s': Single output should be named 'default' for clarity", stepId);
         }
     }
 
-    private void validateOutput(String stepPrefix, String outputName, 
+    private void validateOutput(String stepId, String outputName, 
                                PipelineStepConfig.OutputTarget output,
-                               Set<String> allStepIds, List<String> errors, List<String> warnings) {
+                               Set<String> allStepIds, ValidationIssueCollector issues) {
+        String field = "outputs." + outputName;
         if (output == null) {
-            errors.add(String.format("%s output '%s': Output target cannot be null", stepPrefix, outputName));
+            issues.addError("routing.output.null", stepId, field,
+                "Step '%s' output '%s': Output target cannot be null", stepId, outputName);
             return;
         }
 
-        String outputPrefix = String.format("%s output '%s'", stepPrefix, outputName);
-
         // Validate target step exists (if specified)
         if (output.targetStepName() != null && !output.targetStepName().isEmpty()) {
             if (!allStepIds.contains(output.targetStepName())) {
-                errors.add(String.format("%s: Target step '%s' does not exist in pipeline", 
-                          outputPrefix, output.targetStepName()));
+                issues.addError("routing.target.missing", stepId, field + ".targetStepName",
+                    "Step '%s' output '%s': Target step '%s' does not exist in pipeline",
+                    stepId, outputName, output.targetStepName());
             }
         }
 
         // Validate transport type
         if (output.transportType() == null) {
-            errors.add(String.format("%s: Transport type must be specified", outputPrefix));
+            issues.addError("routing.transport.missing", stepId, field + ".transportType",
+                "Step '%s' output '%s': Transport type must be specified", stepId, outputName);
             return;
         }
 
@@ -107,52 +119,58 @@ public class OutputRoutingValidator implements PipelineConfigValidator {
         switch (output.transportType()) {
             case KAFKA:
                 if (output.kafkaTransport() == null) {
-                    errors.add(String.format("%s: Kafka transport config required for KAFKA transport type", 
-                              outputPrefix));
+                    issues.addError("routing.kafka.missing", stepId, field + ".kafkaTransport",
+                        "Step '%s' output '%s': Kafka transport config required for KAFKA transport type", stepId, outputName);
                 } else {
-                    validateKafkaTransport(outputPrefix, output.kafkaTransport(), errors, warnings);
+                    validateKafkaTransport(stepId, outputName, output.kafkaTransport(), issues);
                 }
                 if (output.grpcTransport() != null) {
-                    warnings.add(String.format("%s: gRPC config specified but transport type is KAFKA", 
-                                outputPrefix));
+                    issues.addWarning("routing.grpc.unused", stepId, field + ".grpcTransport",
+                        "Step '%s' output '%s': gRPC config specified but transport type is KAFKA", stepId, outputName);
                 }
                 break;
                 
             case GRPC:
                 if (output.grpcTransport() == null) {
-                    errors.add(String.format("%s: gRPC transport config required for GRPC transport type", 
-                              outputPrefix));
+                    issues.addError("routing.grpc.missing", stepId, field + ".grpcTransport",
+                        "Step '%s' output '%s': gRPC transport config required for GRPC transport type", stepId, outputName);
                 } else {
-                    validateGrpcTransport(outputPrefix, output.grpcTransport(), errors, warnings);
+                    validateGrpcTransport(stepId, outputName, output.grpcTransport(), issues);
                 }
                 if (output.kafkaTransport() != null) {
-                    warnings.add(String.format("%s: Kafka config specified but transport type is GRPC", 
-                                outputPrefix));
+                    issues.addWarning("routing.kafka.unused", stepId, field + ".kafkaTransport",
+                        "Step '%s' output '%s': Kafka config specified but transport type is GRPC", stepId, outputName);
                 }
                 break;
         }
     }
 
-    private void validateKafkaTransport(String prefix, KafkaTransportConfig config, 
-                                      List<String> errors, List<String> warnings) {
+    private void validateKafkaTransport(String stepId, String outputName, KafkaTransportConfig config, 
+                                      ValidationIssueCollector issues) {
+        String field = "outputs." + outputName + ".kafkaTransport";
         if (config.topic() == null || config.topic().isEmpty()) {
-            errors.add(String.format("%s: Kafka topic must be specified", prefix));
+            issues.addError("routing.kafka.topic.missing", stepId, field + ".topic",
+                "Step '%s' output '%s': Kafka topic must be specified", stepId, outputName);
         }
 
         // Validate batch settings
         if (config.batchSize() != null && config.batchSize() <= 0) {
-            errors.add(String.format("%s: Batch size must be positive (was %d)", prefix, config.batchSize()));
+            issues.addError("routing.kafka.batch-size.non-positive", stepId, field + ".batchSize",
+                "Step '%s' output '%s': Batch size must be positive (was %d)", stepId, outputName, config.batchSize());
         }
 
         if (config.lingerMs() != null && config.lingerMs() < 0) {
-            errors.add(String.format("%s: Linger ms cannot be negative (was %d)", prefix, config.lingerMs()));
+            issues.addError("routing.kafka.linger.negative", stepId, field + ".lingerMs",
+                "Step '%s' output '%s': Linger ms cannot be negative (was %d)", stepId, outputName, config.lingerMs());
         }
     }
 
-    private void validateGrpcTransport(String prefix, GrpcTransportConfig config, 
-                                     List<String> errors, List<String> warnings) {
+    private void validateGrpcTransport(String stepId, String outputName, GrpcTransportConfig config, 
+                                     ValidationIssueCollector issues) {
+        String field = "outputs." + outputName + ".grpcTransport";
         if (config.serviceName() == null || config.serviceName().isEmpty()) {
-            errors.add(String.format("%s: gRPC service name must be specified", prefix));
+            issues.addError("routing.grpc.service.missing", stepId, field + ".serviceName",
+                "Step '%s' output '%s': gRPC service name must be specified", stepId, outputName);
         }
 
         // GrpcTransportConfig only has serviceName and grpcClientProperties
@@ -162,21 +180,23 @@ public class OutputRoutingValidator implements PipelineConfigValidator {
             try {
                 long timeout = Long.parseLong(timeoutStr);
                 if (timeout <= 0) {
-                    errors.add(String.format("%s: Timeout must be positive (was %s ms)", prefix, timeoutStr));
+                    issues.addError("routing.grpc.timeout.non-positive", stepId, field + ".grpcClientProperties",
+                        "Step '%s' output '%s': Timeout must be positive (was %s ms)", stepId, outputName, timeoutStr);
                 }
             } catch (NumberFormatException e) {
-                errors.add(String.format("%s: Timeout must be a valid number (was '%s')", prefix, timeoutStr));
+                issues.addError("routing.grpc.timeout.invalid", stepId, field + ".grpcClientProperties",
+                    "Step '%s' output '%s': Timeout must be a valid number (was '%s')", stepId, outputName, timeoutStr);
             }
         }
     }
 
-    private void validateDuplicateOutputs(String prefix, PipelineStepConfig step, List<String> errors) {
+    private void validateDuplicateOutputs(String stepId, PipelineStepConfig step, ValidationIssueCollector issues) {
         // Check for case-insensitive duplicates
         Set<String> lowerCaseNames = new HashSet<>();
         for (String outputName : step.outputs().keySet()) {
             if (!lowerCaseNames.add(outputName.toLowerCase())) {
-                errors.add(String.format("%s: Duplicate output name '%s' (case-insensitive)", 
-                          prefix, outputName));
+                issues.addError("routing.output.duplicate", stepId, "outputs",
+                    "Step '%s': Duplicate output name '%s' (case-insensitive)", stepId, outputName);
             }
         }
     }
@@ -4,13 +4,13 @@ import com.rokkon.pipeline.config.model.PipelineConfig;
 import com.rokkon.pipeline.config.model.PipelineStepConfig;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidator;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidatable;
+import com.rokkon.pipeline.api.validation.ValidationIssueCollector;
 import com.rokkon.pipeline.api.validation.ValidationMode;
 import com.rokkon.pipeline.api.validation.ValidationResult;
-import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
+import com.rokkon.pipeline.commons.validation.ValidationResultBuilder;
+import com.rokkon.pipeline.engine.validation.StepScopedValidator;
 import jakarta.enterprise.context.ApplicationScoped;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -18,85 +18,96 @@ import java.util.Set;
  * Ensures each step has valid processor configuration (either gRPC or internal).
  */
 @ApplicationScoped
-public class ProcessorInfoValidator implements PipelineConfigValidator {
+public class ProcessorInfoValidator implements PipelineConfigValidator, StepScopedValidator {
     
     @Override
     public ValidationResult validate(PipelineConfigValidatable validatable) {
+        try (ValidationResultBuilder builder = ValidationResultBuilder.acquire()) {
+            validateInto(validatable, builder);
+            return builder.build();
+        }
+    }
+    
+    @Override
+    public void validateInto(PipelineConfigValidatable validatable, ValidationIssueCollector issues) {
         PipelineConfig config = (PipelineConfig) validatable;
         if (config == null || config.pipelineSteps() == null || config.pipelineSteps().isEmpty()) {
-            return ValidationResultFactory.success();
+            return;
         }
         
-        List<String> errors = new ArrayList<>();
-        List<String> warnings = new ArrayList<>();
-        
         for (var entry : config.pipelineSteps().entrySet()) {
-            String stepId = entry.getKey();
-            PipelineStepConfig step = entry.getValue();
+            validateStep(config, entry.getKey(), entry.getValue(), ValidationMode.PRODUCTION, issues);
+        }
+    }
+    
+    @Override
+    public StepScope stepScope() {
+        return StepScope.STEP_LOCAL;
+    }
+    
+    @Override
+    public void validateStep(PipelineConfig config, String stepId, PipelineStepConfig step, ValidationMode mode,
+                             ValidationIssueCollector issues) {
+        if (step == null) {
+            return; // Let RequiredFieldsValidator handle this
+        }
+        
+        // ProcessorInfo is required and validated in the model constructor
+        // Here we can add additional business logic validation
+        if (step.processorInfo() != null) {
+            PipelineStepConfig.ProcessorInfo processorInfo = step.processorInfo();
             
-            if (step == null) {
-                continue; // Let RequiredFieldsValidator handle this
+            // Check gRPC service name format
+            if (processorInfo.grpcServiceName() != null && !processorInfo.grpcServiceName().isBlank()) {
+                String serviceName = processorInfo.grpcServiceName();
+                
+                // Validate gRPC service name format
+                if (serviceName.length() < 3) {
+                    issues.addError("processor.grpc-service.too-short", stepId, "processorInfo.grpcServiceName",
+                        "Step '%s': gRPC service name '%s' is too short (minimum 3 characters)", stepId, serviceName);
+                }
+                
+                if (serviceName.length() > 100) {
+                    issues.addWarning("processor.grpc-service.too-long", stepId, "processorInfo.grpcServiceName",
+                        "Step '%s': gRPC service name '%s' is very long (over 100 characters)", stepId, serviceName);
+                }
+                
+                // Check for common naming patterns (allow colons for host:port)
+                if (!serviceName.matches("^[a-zA-Z][a-zA-Z0-9-._:]*$")) {
+                    issues.addError("processor.grpc-service.invalid", stepId, "processorInfo.grpcServiceName",
+                        "Step '%s': gRPC service name '%s' should start with a letter and contain only alphanumeric characters, hyphens, dots, underscores, and colons",
+                        stepId, serviceName);
+                }
+                
+                // Warn about localhost references in production
+                if (serviceName.contains("localhost") || serviceName.contains("127.0.0.1")) {
+                    issues.addWarning("processor.grpc-service.localhost", stepId, "processorInfo.grpcServiceName",
+                        "Step '%s': gRPC service name contains localhost reference - ensure this is intentional", stepId);
+                }
             }
             
-            String stepPrefix = "Step '" + stepId + "': ";
-            
-            // ProcessorInfo is required and validated in the model constructor
-            // Here we can add additional business logic validation
-            if (step.processorInfo() != null) {
-                PipelineStepConfig.ProcessorInfo processorInfo = step.processorInfo();
+            // Check internal processor bean name format
+            if (processorInfo.internalProcessorBeanName() != null && !processorInfo.internalProcessorBeanName().isBlank()) {
+                String beanName = processorInfo.internalProcessorBeanName();
                 
-                // Check gRPC service name format
-                if (processorInfo.grpcServiceName() != null && !processorInfo.grpcServiceName().isBlank()) {
-                    String serviceName = processorInfo.grpcServiceName();
-                    
-                    // Validate gRPC service name format
-                    if (serviceName.length() < 3) {
-                        errors.add(stepPrefix + "gRPC service name '" + serviceName + "' is too short (minimum 3 characters)");
-                    }
-                    
-                    if (serviceName.length() > 100) {
-                        warnings.add(stepPrefix + "gRPC service name '" + serviceName + "' is very long (over 100 characters)");
-                    }
-                    
-                    // Check for common naming patterns (allow colons for host:port)
-                    if (!serviceName.matches("^[a-zA-Z][a-zA-Z0-9-._:]*$")) {
-                        errors.add(stepPrefix + "gRPC service name '" + serviceName + 
-                                 "' should start with a letter and contain only alphanumeric characters, hyphens, dots, underscores, and colons");
-                    }
-                    
-                    // Warn about localhost references in production
-                    if (serviceName.contains("localhost") || serviceName.contains("127.0.0.1")) {
-                        warnings.add(stepPrefix + "gRPC service name contains localhost reference - ensure this is intentional");
-                    }
+                // Validate bean name format (Java identifier conventions)
+                if (!beanName.matches("^[a-zA-Z_$][a-zA-Z0-9_$]*$")) {
+                    issues.addError("processor.bean-name.invalid", stepId, "processorInfo.internalProcessorBeanName",
+                        "Step '%s': Internal processor bean name '%s' must be a valid Java identifier", stepId, beanName);
                 }
                 
-                // Check internal processor bean name format
-                if (processorInfo.internalProcessorBeanName() != null && !processorInfo.internalProcessorBeanName().isBlank()) {
-                    String beanName = processorInfo.internalProcessorBeanName();
-                    
-                    // Validate bean name format (Java identifier conventions)
-                    if (!beanName.matches("^[a-zA-Z_$][a-zA-Z0-9_$]*$")) {
-                        errors.add(stepPrefix + "Internal processor bean name '" + beanName + 
-                                 "' must be a valid Java identifier");
-                    }
-                    
-                    if (beanName.length() > 50) {
-                        warnings.add(stepPrefix + "Internal processor bean name '" + beanName + 
-                                   "' is very long (over 50 characters)");
-                    }
-                    
-                    // Warn about common bean name issues
-                    if (beanName.equals("processor") || beanName.equals("service") || beanName.equals("bean")) {
-                        warnings.add(stepPrefix + "Internal processor bean name '" + beanName + 
-                                   "' is too generic - consider a more descriptive name");
-                    }
+                if (beanName.length() > 50) {
+                    issues.addWarning("processor.bean-name.too-long", stepId, "processorInfo.internalProcessorBeanName",
+                        "Step '%s': Internal processor bean name '%s' is very long (over 50 characters)", stepId, beanName);
+                }
+                
+                // Warn about common bean name issues
+                if (beanName.equals("processor") || beanName.equals("service") || beanName.equals("bean")) {
+                    issues.addWarning("processor.bean-name.generic", stepId, "processorInfo.internalProcessorBeanName",
+                        "Step '%s': Internal processor bean name '%s' is too generic - consider a more descriptive name", stepId, beanName);
                 }
             }
         }
-        
-        return errors.isEmpty() ? 
-            (warnings.isEmpty() ? ValidationResultFactory.success() : ValidationResultFactory.successWithWarnings(warnings)) : 
-            ValidationResultFactory.failure(errors, warnings);
     }
     
     @Override
@@ -4,13 +4,13 @@ import com.rokkon.pipeline.config.model.PipelineConfig;
 import com.rokkon.pipeline.config.model.PipelineStepConfig;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidator;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidatable;
+import com.rokkon.pipeline.api.validation.ValidationIssueCollector;
+import com.rokkon.pipeline.api.validation.ValidationMode;
 import com.rokkon.pipeline.api.validation.ValidationResult;
-import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
+import com.rokkon.pipeline.commons.validation.ValidationResultBuilder;
+import com.rokkon.pipeline.engine.validation.StepScopedValidator;
 import jakarta.enterprise.context.ApplicationScoped;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Validates business-level required field rules that aren't enforced by model constructors.
  * 
@@ -30,7 +30,7 @@ import java.util.List;
  * High priority (10) - runs early to catch basic business rule violations.
  */
 @ApplicationScoped
-public class RequiredFieldsValidator implements PipelineConfigValidator {
+public class RequiredFieldsValidator implements PipelineConfigValidator, StepScopedValidator {
 
     /**
      * Default constructor for CDI injection.
@@ -41,73 +41,82 @@ public class RequiredFieldsValidator implements PipelineConfigValidator {
 
     @Override
     public ValidationResult validate(PipelineConfigValidatable validatable) {
+        try (ValidationResultBuilder builder = ValidationResultBuilder.acquire()) {
+            validateInto(validatable, builder);
+            return builder.build();
+        }
+    }
+
+    @Override
+    public void validateInto(PipelineConfigValidatable validatable, ValidationIssueCollector issues) {
         PipelineConfig config = (PipelineConfig) validatable;
-        List<String> errors = new ArrayList<>();
-        List<String> warnings = new ArrayList<>();
 
         if (config == null) {
-            return ValidationResultFactory.failure("Pipeline configuration cannot be null");
+            issues.addError("pipeline.null", null, null, "Pipeline configuration cannot be null");
+            return;
         }
 
         // Pipelines can start empty - no steps required initially
         // Steps will be added after services are whitelisted
         if (config.pipelineSteps() != null && !config.pipelineSteps().isEmpty()) {
             for (var entry : config.pipelineSteps().entrySet()) {
-                String stepId = entry.getKey();
-                PipelineStepConfig step = entry.getValue();
-
-                validateStep(stepId, step, errors, warnings);
+                validateStep(entry.getKey(), entry.getValue(), issues);
             }
         }
+    }
 
-        if (!errors.isEmpty()) {
-            return ValidationResultFactory.failure(errors, warnings);
-        } else if (!warnings.isEmpty()) {
-            return ValidationResultFactory.successWithWarnings(warnings);
-        } else {
-            return ValidationResultFactory.success();
-        }
+    @Override
+    public StepScope stepScope() {
+        return StepScope.STEP_LOCAL;
     }
 
-    private void validateStep(String stepId, PipelineStepConfig step, List<String> errors, List<String> warnings) {
-        String stepPrefix = "Step '" + stepId + "': ";
+    @Override
+    public void validateStep(PipelineConfig config, String stepId, PipelineStepConfig step, ValidationMode mode,
+                             ValidationIssueCollector issues) {
+        validateStep(stepId, step, issues);
+    }
 
+    private void validateStep(String stepId, PipelineStepConfig step, ValidationIssueCollector issues) {
         if (step == null) {
-            errors.add(stepPrefix + "Step configuration cannot be null");
+            issues.addError("step.null", stepId, null, "Step '%s': Step configuration cannot be null", stepId);
             return;
         }
 
         // Business rule: Steps should have meaningful descriptions
         if (step.description() == null || step.description().isBlank()) {
-            warnings.add(stepPrefix + "Step should have a meaningful description");
+            issues.addWarning("step.description.missing", stepId, "description",
+                "Step '%s': Step should have a meaningful description", stepId);
         }
 
         // Note: Transport configuration validation is handled by OutputTarget constructor
 
         // Business validation of retry configuration ranges
-        validateRetryConfiguration(stepPrefix, step, errors, warnings);
+        validateRetryConfiguration(stepId, step, issues);
     }
 
 
-    private void validateRetryConfiguration(String stepPrefix, PipelineStepConfig step, 
-                                          List<String> errors, List<String> warnings) {
+    private void validateRetryConfiguration(String stepId, PipelineStepConfig step, ValidationIssueCollector issues) {
         // Business validation of retry values (models already enforce non-negative)
         if (step.maxRetries() != null && step.maxRetries() > 10) {
-            warnings.add(stepPrefix + "Max retries (" + step.maxRetries() + ") is unusually high, consider if this is intended");
+            issues.addWarning("step.max-retries.high", stepId, "maxRetries",
+                "Step '%s': Max retries (%d) is unusually high, consider if this is intended", stepId, step.maxRetries());
         }
 
         if (step.retryBackoffMs() != null && step.retryBackoffMs() > 60000) {
-            warnings.add(stepPrefix + "Retry backoff (" + step.retryBackoffMs() + "ms) is over 1 minute, consider if this is intended");
+            issues.addWarning("step.retry-backoff.high", stepId, "retryBackoffMs",
+                "Step '%s': Retry backoff (%dms) is over 1 minute, consider if this is intended", stepId, step.retryBackoffMs());
         }
 
         if (step.stepTimeoutMs() != null && step.stepTimeoutMs() > 300000) {
-            warnings.add(stepPrefix + "Step timeout (" + step.stepTimeoutMs() + "ms) is over 5 minutes, consider if this is intended");
+            issues.addWarning("step.timeout.high", stepId, "stepTimeoutMs",
+                "Step '%s': Step timeout (%dms) is over 5 minutes, consider if this is intended", stepId, step.stepTimeoutMs());
         }
 
         // Logical validation between retry values
         if (step.retryBackoffMs() != null && step.maxRetryBackoffMs() != null && 
             step.retryBackoffMs() > step.maxRetryBackoffMs()) {
-            errors.add(stepPrefix + "Initial retry backoff cannot be greater than max retry backoff");
+            issues.addError("step.retry-backoff.exceeds-max", stepId, "retryBackoffMs",
+                "Step '%s': Initial retry backoff cannot be greater than max retry backoff", stepId);
         }
     }
 
@@ -3,13 +3,13 @@ package com.rokkon.pipeline.engine.validation.validators;
 import com.rokkon.pipeline.config.model.*;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidator;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidatable;
+import com.rokkon.pipeline.api.validation.ValidationIssueCollector;
+import com.rokkon.pipeline.api.validation.ValidationMode;
 import com.rokkon.pipeline.api.validation.ValidationResult;
-import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
+import com.rokkon.pipeline.commons.validation.ValidationResultBuilder;
+import com.rokkon.pipeline.engine.validation.StepScopedValidator;
 import jakarta.enterprise.context.ApplicationScoped;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Validates retry configuration parameters across all pipeline steps.
  * Ensures retry settings are reasonable and will not cause system instability.
@@ -17,7 +17,7 @@ import java.util.List;
  * focuses on business rule validation.
  */
 @ApplicationScoped
-public class RetryConfigValidator implements PipelineConfigValidator {
+public class RetryConfigValidator implements PipelineConfigValidator, StepScopedValidator {
 
     private static final int MAX_RETRY_ATTEMPTS = 100;
     private static final int WARN_RETRY_ATTEMPTS = 10;
@@ -28,85 +28,103 @@ public class RetryConfigValidator implements PipelineConfigValidator {
 
     @Override
     public ValidationResult validate(PipelineConfigValidatable validatable) {
+        try (ValidationResultBuilder builder = ValidationResultBuilder.acquire()) {
+            validateInto(validatable, builder);
+            return builder.build();
+        }
+    }
+
+    @Override
+    public void validateInto(PipelineConfigValidatable validatable, ValidationIssueCollector issues) {
         PipelineConfig config = (PipelineConfig) validatable;
-        List<String> errors = new ArrayList<>();
-        List<String> warnings = new ArrayList<>();
 
         if (config == null || config.pipelineSteps() == null) {
-            errors.add("Pipeline configuration or steps cannot be null");
-            return ValidationResultFactory.failure(errors, warnings);
+            issues.addError("pipeline.steps.null", null, null, "Pipeline configuration or steps cannot be null");
+            return;
         }
 
         for (var entry : config.pipelineSteps().entrySet()) {
-            String stepId = entry.getKey();
-            PipelineStepConfig step = entry.getValue();
-            validateStepRetryConfig(stepId, step, errors, warnings);
+            validateStepRetryConfig(entry.getKey(), entry.getValue(), issues);
         }
+    }
+
+    @Override
+    public StepScope stepScope() {
+        return StepScope.STEP_LOCAL;
+    }
 
-        return errors.isEmpty() ? 
-            (warnings.isEmpty() ? ValidationResultFactory.success() : ValidationResultFactory.successWithWarnings(warnings)) : 
-            ValidationResultFactory.failure(errors, warnings);
+    @Override
+    public void validateStep(PipelineConfig config, String stepId, PipelineStepConfig step, ValidationMode mode,
+                             ValidationIssueCollector issues) {
+        validateStepRetryConfig(stepId, step, issues);
     }
 
-    private void validateStepRetryConfig(String stepId, PipelineStepConfig step, List<String> errors, List<String> warnings) {
+    private void validateStepRetryConfig(String stepId, PipelineStepConfig step, ValidationIssueCollector issues) {
         if (step == null) {
             return;
         }
 
-        String prefix = String.format("Step '%s' retry config", stepId);
-
         // Validate max retries (model already prevents negative values)
         if (step.maxRetries() != null) {
             if (step.maxRetries() > MAX_RETRY_ATTEMPTS) {
-                errors.add(String.format("%s: maxRetries exceeds maximum allowed value of %d (was %d)", 
-                          prefix, MAX_RETRY_ATTEMPTS, step.maxRetries()));
+                issues.addError("retry.max-retries.exceeded", stepId, "maxRetries",
+                    "Step '%s' retry config: maxRetries exceeds maximum allowed value of %d (was %d)",
+                    stepId, MAX_RETRY_ATTEMPTS, step.maxRetries());
             } else if (step.maxRetries() > WARN_RETRY_ATTEMPTS) {
-                warnings.add(String.format("%s: high number of retry attempts (%d) may cause processing delays", 
-                            prefix, step.maxRetries()));
+                issues.addWarning("retry.max-retries.high", stepId, "maxRetries",
+                    "Step '%s' retry config: high number of retry attempts (%d) may cause processing delays",
+                    stepId, step.maxRetries());
             }
         }
 
         // Validate retry backoff (model already prevents negative values)
         if (step.retryBackoffMs() != null) {
             if (step.retryBackoffMs() > MAX_BACKOFF_MS) {
-                errors.add(String.format("%s: retryBackoffMs exceeds maximum allowed value of %d ms (was %d)", 
-                          prefix, MAX_BACKOFF_MS, step.retryBackoffMs()));
+                issues.addError("retry.backoff.exceeded", stepId, "retryBackoffMs",
+                    "Step '%s' retry config: retryBackoffMs exceeds maximum allowed value of %d ms (was %d)",
+                    stepId, MAX_BACKOFF_MS, step.retryBackoffMs());
             } else if (step.retryBackoffMs() > WARN_BACKOFF_MS) {
-                warnings.add(String.format("%s: high retry backoff (%d ms) may cause significant processing delays", 
-                            prefix, step.retryBackoffMs()));
+                issues.addWarning("retry.backoff.high", stepId, "retryBackoffMs",
+                    "Step '%s' retry config: high retry backoff (%d ms) may cause significant processing delays",
+                    stepId, step.retryBackoffMs());
             }
         }
 
         // Validate step timeout (model already prevents negative values)
         if (step.stepTimeoutMs() != null) {
             if (step.stepTimeoutMs() > MAX_TIMEOUT_MS) {
-                errors.add(String.format("%s: stepTimeoutMs exceeds maximum allowed value of %d ms (was %d)", 
-                          prefix, MAX_TIMEOUT_MS, step.stepTimeoutMs()));
+                issues.addError("retry.timeout.exceeded", stepId, "stepTimeoutMs",
+                    "Step '%s' retry config: stepTimeoutMs exceeds maximum allowed value of %d ms (was %d)",
+                    stepId, MAX_TIMEOUT_MS, step.stepTimeoutMs());
             } else if (step.stepTimeoutMs() > WARN_TIMEOUT_MS) {
-                warnings.add(String.format("%s: high step timeout (%d ms) may cause processing delays", 
-                            prefix, step.stepTimeoutMs()));
+                issues.addWarning("retry.timeout.high", stepId, "stepTimeoutMs",
+                    "Step '%s' retry config: high step timeout (%d ms) may cause processing delays",
+                    stepId, step.stepTimeoutMs());
             }
         }
 
         // Check for logical issues
         if (step.maxRetries() != null && step.maxRetries() == 0 && step.retryBackoffMs() != null && step.retryBackoffMs() > 0) {
-            warnings.add(String.format("%s: retryBackoffMs defined but maxRetries is 0 (retries disabled)", prefix));
+            issues.addWarning("retry.backoff.unused", stepId, "retryBackoffMs",
+                "Step '%s' retry config: retryBackoffMs defined but maxRetries is 0 (retries disabled)", stepId);
         }
 
         // Check timeout vs retry relationship
         if (step.stepTimeoutMs() != null && step.retryBackoffMs() != null && step.maxRetries() != null && step.maxRetries() > 0) {
             long totalRetryTime = step.retryBackoffMs() * step.maxRetries();
             if (totalRetryTime > step.stepTimeoutMs()) {
-                warnings.add(String.format("%s: total retry time (%d ms) may exceed step timeout (%d ms)", 
-                            prefix, totalRetryTime, step.stepTimeoutMs()));
+                issues.addWarning("retry.total-time.exceeds-timeout", stepId, "stepTimeoutMs",
+                    "Step '%s' retry config: total retry time (%d ms) may exceed step timeout (%d ms)",
+                    stepId, totalRetryTime, step.stepTimeoutMs());
             }
         }
 
         // Check for max retry backoff if it exists in the model
         if (step.retryBackoffMs() != null && step.maxRetryBackoffMs() != null) {
             if (step.retryBackoffMs() > step.maxRetryBackoffMs()) {
-                errors.add(String.format("%s: initial retry backoff (%d ms) cannot exceed max retry backoff (%d ms)", 
-                          prefix, step.retryBackoffMs(), step.maxRetryBackoffMs()));
+                issues.addError("retry.backoff.exceeds-max", stepId, "retryBackoffMs",
+                    "Step '%s' retry config: initial retry backoff (%d ms) cannot exceed max retry backoff (%d ms)",
+                    stepId, step.retryBackoffMs(), step.maxRetryBackoffMs());
             }
         }
     }
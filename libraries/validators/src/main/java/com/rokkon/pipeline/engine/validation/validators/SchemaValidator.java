@@ -5,15 +5,15 @@ import com.rokkon.pipeline.config.model.PipelineConfig;
 import com.rokkon.pipeline.config.model.PipelineStepConfig;
 import com.rokkon.pipeline.config.model.StepType;
 import com.rokkon.pipeline.api.validation.ModeAwareValidator;
+import com.rokkon.pipeline.api.validation.ValidationIssueCollector;
 import com.rokkon.pipeline.api.validation.ValidationMode;
 import com.rokkon.pipeline.api.validation.ValidationResult;
-import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
+import com.rokkon.pipeline.commons.validation.ValidationResultBuilder;
+import com.rokkon.pipeline.engine.validation.StepScopedValidator;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.jboss.logging.Logger;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -25,7 +25,7 @@ import java.util.Set;
  * - PRODUCTION mode: Strict validation, all required fields must be present
  */
 @ApplicationScoped
-public class SchemaValidator implements ModeAwareValidator<PipelineConfig> {
+public class SchemaValidator implements ModeAwareValidator<PipelineConfig>, StepScopedValidator {
     
     private static final Logger LOG = Logger.getLogger(SchemaValidator.class);
     
@@ -34,77 +34,99 @@ public class SchemaValidator implements ModeAwareValidator<PipelineConfig> {
     
     @Override
     public ValidationResult validate(PipelineConfig config, ValidationMode mode) {
-        List<String> errors = new ArrayList<>();
-        List<String> warnings = new ArrayList<>();
-        
-        // Basic structure validation (all modes)
-        if (config == null) {
-            errors.add("Pipeline configuration cannot be null");
-            return ValidationResultFactory.failure(errors);
-        }
-        
-        // Name validation
-        if (config.name() == null || config.name().isBlank()) {
-            if (mode == ValidationMode.DESIGN) {
-                warnings.add("Pipeline name is missing - required before deployment");
-            } else {
-                errors.add("Pipeline name is required");
+        try (ValidationResultBuilder builder = ValidationResultBuilder.acquire()) {
+            // Basic structure validation (all modes)
+            if (config == null) {
+                return builder.addError("Pipeline configuration cannot be null").build();
             }
-        } else if (!isValidName(config.name())) {
-            errors.add("Pipeline name contains invalid characters. Use only letters, numbers, hyphens, and underscores");
-        }
-        
-        // Pipeline steps validation
-        if (config.pipelineSteps() == null || config.pipelineSteps().isEmpty()) {
-            if (mode == ValidationMode.DESIGN) {
-                warnings.add("No pipeline steps defined yet");
+            
+            // Name validation
+            validatePipelineName(config, mode, builder);
+            
+            // Pipeline steps validation
+            if (config.pipelineSteps() == null || config.pipelineSteps().isEmpty()) {
+                if (mode == ValidationMode.DESIGN) {
+                    builder.addWarning("No pipeline steps defined yet");
+                } else {
+                    builder.addError("Pipeline must have at least one step");
+                }
             } else {
-                errors.add("Pipeline must have at least one step");
-            }
-        } else {
-            // Validate each step
-            for (var entry : config.pipelineSteps().entrySet()) {
-                String stepId = entry.getKey();
-                PipelineStepConfig step = entry.getValue();
+                // Validate each step
+                for (var entry : config.pipelineSteps().entrySet()) {
+                    validateStep(entry.getKey(), entry.getValue(), mode, builder);
+                }
                 
-                validateStep(stepId, step, mode, errors, warnings);
+                // Check for required step types in production mode
+                if (mode == ValidationMode.PRODUCTION) {
+                    validateStepTypes(config, builder);
+                }
             }
             
-            // Check for required step types in production mode
-            if (mode == ValidationMode.PRODUCTION) {
-                validateStepTypes(config, errors);
+            // Warnings are only reported for valid configurations
+            if (builder.hasErrors()) {
+                builder.clearWarnings();
             }
+            return builder.build();
         }
-        
-        if (!errors.isEmpty()) {
-            return ValidationResultFactory.failure(errors);
-        } else if (!warnings.isEmpty()) {
-            return ValidationResultFactory.successWithWarnings(warnings);
-        } else {
-            return ValidationResultFactory.success();
+    }
+    
+    @Override
+    public StepScope stepScope() {
+        return StepScope.STEP_LOCAL;
+    }
+    
+    @Override
+    public void validatePipeline(PipelineConfig config, ValidationMode mode, ValidationIssueCollector issues) {
+        validatePipelineName(config, mode, issues);
+        if (mode == ValidationMode.PRODUCTION && config.pipelineSteps() != null && !config.pipelineSteps().isEmpty()) {
+            validateStepTypes(config, issues);
         }
     }
     
-    private void validateStep(String stepId, PipelineStepConfig step, ValidationMode mode, 
-                            List<String> errors, List<String> warnings) {
-        String prefix = "Step '" + stepId + "': ";
-        
+    @Override
+    public void validateStep(PipelineConfig config, String stepId, PipelineStepConfig step, ValidationMode mode,
+                             ValidationIssueCollector issues) {
+        validateStep(stepId, step, mode, issues);
+    }
+    
+    @Override
+    public boolean reportsWarningsOnFailure() {
+        return false;
+    }
+    
+    private void validatePipelineName(PipelineConfig config, ValidationMode mode, ValidationIssueCollector issues) {
+        if (config.name() == null || config.name().isBlank()) {
+            if (mode == ValidationMode.DESIGN) {
+                issues.addWarning("schema.pipeline.name.missing", null, "name",
+                    "Pipeline name is missing - required before deployment");
+            } else {
+                issues.addError("schema.pipeline.name.required", null, "name", "Pipeline name is required");
+            }
+        } else if (!isValidName(config.name())) {
+            issues.addError("schema.pipeline.name.invalid", null, "name",
+                "Pipeline name contains invalid characters. Use only letters, numbers, hyphens, and underscores");
+        }
+    }
+    
+    private void validateStep(String stepId, PipelineStepConfig step, ValidationMode mode, ValidationIssueCollector issues) {
         // Step name validation
         if (step.stepName() == null || step.stepName().isBlank()) {
-            errors.add(prefix + "Step name is required");
+            issues.addError("schema.step.name.required", stepId, "stepName", "Step '%s': Step name is required", stepId);
         }
         
         // Step type validation
         if (step.stepType() == null) {
-            errors.add(prefix + "Step type is required");
+            issues.addError("schema.step.type.required", stepId, "stepType", "Step '%s': Step type is required", stepId);
         }
         
         // Processor info validation
         if (step.processorInfo() == null) {
             if (mode == ValidationMode.DESIGN) {
-                warnings.add(prefix + "Processor not configured yet");
+                issues.addWarning("schema.step.processor.missing", stepId, "processorInfo",
+                    "Step '%s': Processor not configured yet", stepId);
             } else {
-                errors.add(prefix + "Processor information is required");
+                issues.addError("schema.step.processor.required", stepId, "processorInfo",
+                    "Step '%s': Processor information is required", stepId);
             }
         } else {
             // Validate processor info has either gRPC service or bean name
@@ -115,9 +137,11 @@ public class SchemaValidator implements ModeAwareValidator<PipelineConfig> {
             
             if (!hasGrpc && !hasBean) {
                 if (mode == ValidationMode.DESIGN) {
-                    warnings.add(prefix + "Processor type not selected (gRPC service or internal processor)");
+                    issues.addWarning("schema.step.processor.type-missing", stepId, "processorInfo",
+                        "Step '%s': Processor type not selected (gRPC service or internal processor)", stepId);
                 } else {
-                    errors.add(prefix + "Processor must specify either gRPC service or internal processor");
+                    issues.addError("schema.step.processor.type-required", stepId, "processorInfo",
+                        "Step '%s': Processor must specify either gRPC service or internal processor", stepId);
                 }
             }
         }
@@ -126,9 +150,11 @@ public class SchemaValidator implements ModeAwareValidator<PipelineConfig> {
         if (step.stepType() != null && step.stepType() != StepType.SINK) {
             if (step.outputs() == null || step.outputs().isEmpty()) {
                 if (mode == ValidationMode.DESIGN || mode == ValidationMode.TESTING) {
-                    warnings.add(prefix + "No outputs defined - step results won't be routed");
+                    issues.addWarning("schema.step.outputs.missing", stepId, "outputs",
+                        "Step '%s': No outputs defined - step results won't be routed", stepId);
                 } else {
-                    errors.add(prefix + "Non-sink steps must have at least one output");
+                    issues.addError("schema.step.outputs.required", stepId, "outputs",
+                        "Step '%s': Non-sink steps must have at least one output", stepId);
                 }
             }
         }
@@ -138,44 +164,50 @@ public class SchemaValidator implements ModeAwareValidator<PipelineConfig> {
             if (step.customConfig() == null || 
                 (step.customConfig().jsonConfig() == null && 
                  (step.customConfig().configParams() == null || step.customConfig().configParams().isEmpty()))) {
-                warnings.add(prefix + "Schema ID specified but no configuration provided");
+                issues.addWarning("schema.step.custom-config.missing", stepId, "customConfig",
+                    "Step '%s': Schema ID specified but no configuration provided", stepId);
             }
         }
         
         // Retry configuration validation
-        validateRetryConfig(prefix, step, mode, errors, warnings);
+        validateRetryConfig(stepId, step, issues);
     }
     
-    private void validateRetryConfig(String prefix, PipelineStepConfig step, ValidationMode mode,
-                                   List<String> errors, List<String> warnings) {
+    private void validateRetryConfig(String stepId, PipelineStepConfig step, ValidationIssueCollector issues) {
         if (step.maxRetries() != null && step.maxRetries() < 0) {
-            errors.add(prefix + "Max retries cannot be negative");
+            issues.addError("schema.step.max-retries.negative", stepId, "maxRetries",
+                "Step '%s': Max retries cannot be negative", stepId);
         }
         
         if (step.retryBackoffMs() != null && step.retryBackoffMs() < 0) {
-            errors.add(prefix + "Retry backoff cannot be negative");
+            issues.addError("schema.step.retry-backoff.negative", stepId, "retryBackoffMs",
+                "Step '%s': Retry backoff cannot be negative", stepId);
         }
         
         if (step.maxRetryBackoffMs() != null && step.maxRetryBackoffMs() < 0) {
-            errors.add(prefix + "Max retry backoff cannot be negative");
+            issues.addError("schema.step.max-retry-backoff.negative", stepId, "maxRetryBackoffMs",
+                "Step '%s': Max retry backoff cannot be negative", stepId);
         }
         
         if (step.retryBackoffMultiplier() != null && step.retryBackoffMultiplier() <= 0) {
-            errors.add(prefix + "Retry backoff multiplier must be positive");
+            issues.addError("schema.step.retry-multiplier.non-positive", stepId, "retryBackoffMultiplier",
+                "Step '%s': Retry backoff multiplier must be positive", stepId);
         }
         
         if (step.stepTimeoutMs() != null && step.stepTimeoutMs() <= 0) {
-            errors.add(prefix + "Step timeout must be positive");
+            issues.addError("schema.step.timeout.non-positive", stepId, "stepTimeoutMs",
+                "Step '%s': Step timeout must be positive", stepId);
         }
         
         // Logical validation
         if (step.retryBackoffMs() != null && step.maxRetryBackoffMs() != null && 
             step.retryBackoffMs() > step.maxRetryBackoffMs()) {
-            warnings.add(prefix + "Initial retry backoff is greater than max retry backoff");
+            issues.addWarning("schema.step.retry-backoff.exceeds-max", stepId, "retryBackoffMs",
+                "Step '%s': Initial retry backoff is greater than max retry backoff", stepId);
         }
     }
     
-    private void validateStepTypes(PipelineConfig config, List<String> errors) {
+    private void validateStepTypes(PipelineConfig config, ValidationIssueCollector issues) {
         boolean hasInitial = false;
         boolean hasRegular = false;
         
@@ -188,7 +220,8 @@ public class SchemaValidator implements ModeAwareValidator<PipelineConfig> {
         }
         
         if (!hasInitial) {
-            errors.add("Pipeline must have at least one INITIAL_PIPELINE step as entry point");
+            issues.addError("schema.pipeline.initial-step.missing", null, "pipelineSteps",
+                "Pipeline must have at least one INITIAL_PIPELINE step as entry point");
         }
     }
     
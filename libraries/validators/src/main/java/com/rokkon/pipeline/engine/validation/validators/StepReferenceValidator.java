@@ -5,8 +5,11 @@ import com.rokkon.pipeline.config.model.PipelineStepConfig;
 import com.rokkon.pipeline.config.model.TransportType;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidator;
 import com.rokkon.pipeline.api.validation.PipelineConfigValidatable;
+import com.rokkon.pipeline.api.validation.ValidationIssueCollector;
+import com.rokkon.pipeline.api.validation.ValidationMode;
 import com.rokkon.pipeline.api.validation.ValidationResult;
-import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
+import com.rokkon.pipeline.commons.validation.ValidationResultBuilder;
+import com.rokkon.pipeline.engine.validation.StepScopedValidator;
 import jakarta.enterprise.context.ApplicationScoped;
 
 import java.util.*;
@@ -16,63 +19,78 @@ import java.util.*;
  * Checks for duplicate step names and validates internal gRPC references.
  */
 @ApplicationScoped
-public class StepReferenceValidator implements PipelineConfigValidator {
+public class StepReferenceValidator implements PipelineConfigValidator, StepScopedValidator {
     
     @Override
     public ValidationResult validate(PipelineConfigValidatable validatable) {
+        try (ValidationResultBuilder builder = ValidationResultBuilder.acquire()) {
+            validateInto(validatable, builder);
+            return builder.build();
+        }
+    }
+    
+    @Override
+    public void validateInto(PipelineConfigValidatable validatable, ValidationIssueCollector issues) {
         PipelineConfig config = (PipelineConfig) validatable;
         if (config == null || config.pipelineSteps() == null || config.pipelineSteps().isEmpty()) {
-            return ValidationResultFactory.success();
+            return;
         }
         
-        List<String> errors = new ArrayList<>();
-        List<String> warnings = new ArrayList<>();
-        
-        // Collect all valid step IDs
-        Set<String> validStepIds = new HashSet<>(config.pipelineSteps().keySet());
-        
         // Check for duplicate step names
-        Set<String> stepNames = new HashSet<>();
+        validatePipeline(config, ValidationMode.PRODUCTION, issues);
+        
+        // Validate all references
         for (var entry : config.pipelineSteps().entrySet()) {
-            String stepId = entry.getKey();
-            PipelineStepConfig step = entry.getValue();
-            
+            validateStep(config, entry.getKey(), entry.getValue(), ValidationMode.PRODUCTION, issues);
+        }
+    }
+    
+    @Override
+    public StepScope stepScope() {
+        // References are only valid as long as the referenced steps exist
+        return StepScope.NEIGHBOURHOOD;
+    }
+    
+    @Override
+    public void validatePipeline(PipelineConfig config, ValidationMode mode, ValidationIssueCollector issues) {
+        Set<String> stepNames = new HashSet<>();
+        for (PipelineStepConfig step : config.pipelineSteps().values()) {
             if (step != null && step.stepName() != null && !step.stepName().isBlank()) {
                 if (!stepNames.add(step.stepName())) {
-                    errors.add("Duplicate step name found: " + step.stepName());
+                    issues.addError("reference.step-name.duplicate", null, "stepName",
+                        "Duplicate step name found: %s", step.stepName());
                 }
             }
         }
+    }
+    
+    @Override
+    public void validateStep(PipelineConfig config, String stepId, PipelineStepConfig step, ValidationMode mode,
+                             ValidationIssueCollector issues) {
+        if (step == null || step.outputs() == null) {
+            return;
+        }
         
-        // Validate all references
-        for (var entry : config.pipelineSteps().entrySet()) {
-            String stepId = entry.getKey();
-            PipelineStepConfig step = entry.getValue();
+        Set<String> validStepIds = config.pipelineSteps().keySet();
+        for (var outputEntry : step.outputs().entrySet()) {
+            String outputKey = outputEntry.getKey();
+            var output = outputEntry.getValue();
             
-            if (step != null && step.outputs() != null) {
-                for (var outputEntry : step.outputs().entrySet()) {
-                    String outputKey = outputEntry.getKey();
-                    var output = outputEntry.getValue();
-                    
-                    if (output != null && 
-                        output.transportType() == TransportType.GRPC && 
-                        output.grpcTransport() != null && 
-                        output.grpcTransport().serviceName() != null &&
-                        !output.grpcTransport().serviceName().isBlank()) {
-                        
-                        String targetService = output.grpcTransport().serviceName();
-                        
-                        // Check if this looks like an internal reference (no dots, suggesting it's not a FQDN)
-                        if (!targetService.contains(".") && !validStepIds.contains(targetService)) {
-                            errors.add("Step '" + stepId + "' output '" + outputKey + 
-                                     "' references non-existent target step '" + targetService + "'");
-                        }
-                    }
+            if (output != null && 
+                output.transportType() == TransportType.GRPC && 
+                output.grpcTransport() != null && 
+                output.grpcTransport().serviceName() != null &&
+                !output.grpcTransport().serviceName().isBlank()) {
+                
+                String targetService = output.grpcTransport().serviceName();
+                
+                // Check if this looks like an internal reference (no dots, suggesting it's not a FQDN)
+                if (!targetService.contains(".") && !validStepIds.contains(targetService)) {
+                    issues.addError("reference.target.missing", stepId, "outputs." + outputKey,
+                        "Step '%s' output '%s' references non-existent target step '%s'", stepId, outputKey, targetService);
                 }
             }
         }
-        
-        return errors.isEmpty() ? ValidationResultFactory.successWithWarnings(warnings) : ValidationResultFactory.failure(errors, warnings);
     }
     
     @Override
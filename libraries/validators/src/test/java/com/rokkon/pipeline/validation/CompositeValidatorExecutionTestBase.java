@@ -0,0 +1,158 @@
+package com.rokkon.pipeline.validation;
+
+import com.rokkon.pipeline.api.validation.ConfigValidator;
+import com.rokkon.pipeline.api.validation.ValidationMode;
+import com.rokkon.pipeline.api.validation.ValidationResult;
+import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.engine.validation.CompositeValidator;
+import com.rokkon.pipeline.engine.validation.CompositeValidatorBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public abstract class CompositeValidatorExecutionTestBase {
+
+    protected abstract List<ConfigValidator<PipelineConfig>> getValidators();
+
+    @Test
+    void testParallelResultMatchesSequential() {
+        PipelineConfig config = new PipelineConfig("test", null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CompositeValidator<PipelineConfig> sequential = CompositeValidatorBuilder.<PipelineConfig>create()
+                .addValidators(getValidators())
+                .build();
+            CompositeValidator<PipelineConfig> parallel = CompositeValidatorBuilder.<PipelineConfig>create()
+                .addValidators(getValidators())
+                .withParallelExecution(executor)
+                .build();
+
+            ValidationResult sequentialResult = sequential.validate(config, ValidationMode.PRODUCTION);
+            ValidationResult parallelResult = parallel.validate(config, ValidationMode.PRODUCTION);
+
+            assertThat(parallel.isParallel()).isTrue();
+            assertThat(parallelResult.valid()).isEqualTo(sequentialResult.valid());
+            assertThat(parallelResult.errors()).containsExactlyElementsOf(sequentialResult.errors());
+            assertThat(parallelResult.warnings()).containsExactlyElementsOf(sequentialResult.warnings());
+            assertThat(parallel.getValidatorSetVersion()).isNotEqualTo(sequential.getValidatorSetVersion());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailFastFinishesTheFailingBandInBothModes() {
+        PipelineConfig config = new PipelineConfig("test", null);
+        ConfigValidator<PipelineConfig> afterFailure = validator("AfterEarlyFailure", 90,
+            () -> ValidationResultFactory.successWithWarnings(List.of("Same band warning")));
+
+        CompositeValidator<PipelineConfig> sequential = CompositeValidatorBuilder.<PipelineConfig>create()
+            .addValidators(getValidators())
+            .addValidator(afterFailure)
+            .withFailFast(true)
+            .build();
+        CompositeValidator<PipelineConfig> parallel = CompositeValidatorBuilder.<PipelineConfig>create()
+            .addValidators(getValidators())
+            .addValidator(afterFailure)
+            .withParallelExecution(null)
+            .withFailFast(true)
+            .build();
+
+        ValidationResult sequentialResult = sequential.validate(config, ValidationMode.PRODUCTION);
+        ValidationResult parallelResult = parallel.validate(config, ValidationMode.PRODUCTION);
+
+        assertThat(sequentialResult.errors()).containsExactly("Early band failure");
+        assertThat(sequentialResult.warnings()).containsExactly("Early warning", "Same band warning");
+        assertThat(parallelResult.errors()).containsExactlyElementsOf(sequentialResult.errors());
+        assertThat(parallelResult.warnings()).containsExactlyElementsOf(sequentialResult.warnings());
+    }
+
+    @Test
+    void testFailFastSkipsLaterPriorityBands() {
+        PipelineConfig config = new PipelineConfig("test", null);
+        AtomicInteger lateInvocations = new AtomicInteger();
+
+        CompositeValidator<PipelineConfig> composite = CompositeValidatorBuilder.<PipelineConfig>create()
+            .addValidators(getValidators())
+            .addValidator(validator("LateValidator", 900, () -> {
+                lateInvocations.incrementAndGet();
+                return ValidationResultFactory.success();
+            }))
+            .withParallelExecution(null)
+            .withFailFast(true)
+            .build();
+
+        ValidationResult result = composite.validate(config, ValidationMode.PRODUCTION);
+
+        assertThat(result.valid()).isFalse();
+        assertThat(result.errors()).contains("Early band failure");
+        assertThat(lateInvocations.get()).isZero();
+    }
+
+    @Test
+    void testExceptionInParallelValidatorIsReported() {
+        PipelineConfig config = new PipelineConfig("test", null);
+
+        CompositeValidator<PipelineConfig> composite = CompositeValidatorBuilder.<PipelineConfig>create()
+            .addValidator(validator("Exploding", 10, () -> {
+                throw new IllegalStateException("boom");
+            }))
+            .addValidator(validator("Quiet", 20, ValidationResultFactory::success))
+            .withParallelExecution(null)
+            .build();
+
+        ValidationResult result = composite.validate(config, ValidationMode.PRODUCTION);
+
+        assertThat(result.valid()).isFalse();
+        assertThat(result.errors()).containsExactly("Validator 'Exploding' threw an exception: boom");
+    }
+
+    @Test
+    void testValidatorsCanOnlyBeReplacedThroughTheComposite() {
+        CompositeValidator<PipelineConfig> composite = CompositeValidatorBuilder.<PipelineConfig>create()
+            .addValidator(validator("Second", 20, ValidationResultFactory::success))
+            .build();
+        String version = composite.getValidatorSetVersion();
+
+        assertThatThrownBy(() -> composite.getValidators().clear())
+            .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(composite.getValidatorSetVersion()).isEqualTo(version);
+
+        composite.setValidators(List.of(
+            validator("Second", 20, ValidationResultFactory::success),
+            validator("First", 10, ValidationResultFactory::success)));
+
+        assertThat(composite.getValidators()).extracting(ConfigValidator::getValidatorName)
+            .containsExactly("First", "Second");
+        assertThat(composite.getValidatorSetVersion()).isNotEqualTo(version);
+    }
+
+    protected static ConfigValidator<PipelineConfig> validator(String name, int priority,
+                                                              Supplier<ValidationResult> body) {
+        return new ConfigValidator<>() {
+            @Override
+            public ValidationResult validate(PipelineConfig config) {
+                return body.get();
+            }
+
+            @Override
+            public String getValidatorName() {
+                return name;
+            }
+
+            @Override
+            public int getPriority() {
+                return priority;
+            }
+        };
+    }
+}
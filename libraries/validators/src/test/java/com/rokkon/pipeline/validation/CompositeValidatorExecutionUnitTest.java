@@ -0,0 +1,26 @@
+package com.rokkon.pipeline.validation;
+
+import com.rokkon.pipeline.api.validation.ConfigValidator;
+import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.testing.util.UnifiedTestProfile;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+
+import java.util.List;
+
+@QuarkusTest
+@TestProfile(UnifiedTestProfile.class)
+class CompositeValidatorExecutionUnitTest extends CompositeValidatorExecutionTestBase {
+
+    @Override
+    protected List<ConfigValidator<PipelineConfig>> getValidators() {
+        // Two validators share the first band, two more share the second band
+        return List.of(
+            validator("EarlyWarning", 10, () -> ValidationResultFactory.successWithWarnings(List.of("Early warning"))),
+            validator("EarlyFailure", 50, () -> ValidationResultFactory.failure("Early band failure")),
+            validator("MiddleFailure", 200, () -> ValidationResultFactory.failure("Middle band failure")),
+            validator("MiddleWarning", 250, () -> ValidationResultFactory.successWithWarnings(List.of("Middle warning")))
+        );
+    }
+}
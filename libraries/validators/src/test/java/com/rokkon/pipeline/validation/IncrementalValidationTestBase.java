@@ -0,0 +1,139 @@
+package com.rokkon.pipeline.validation;
+
+import com.rokkon.pipeline.api.validation.PipelineConfigValidatable;
+import com.rokkon.pipeline.api.validation.ValidationMode;
+import com.rokkon.pipeline.api.validation.ValidationResult;
+import com.rokkon.pipeline.config.model.GrpcTransportConfig;
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
+import com.rokkon.pipeline.config.model.StepType;
+import com.rokkon.pipeline.config.model.TransportType;
+import com.rokkon.pipeline.engine.validation.CompositeValidator;
+import com.rokkon.pipeline.engine.validation.StepDiff;
+import com.rokkon.pipeline.engine.validation.StepResultMemo;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public abstract class IncrementalValidationTestBase {
+
+    /**
+     * Creates a fresh composite with the validators under test.
+     */
+    protected abstract CompositeValidator<PipelineConfigValidatable> createValidator();
+
+    @Test
+    void testStepDiffIncludesNeighbourhoodOfRemovedSteps() {
+        PipelineConfig previous = pipeline(Map.of(
+            "source", step("source", StepType.INITIAL_PIPELINE, "enricher"),
+            "enricher", step("enricher", StepType.PIPELINE, "sink"),
+            "sink", step("sink", StepType.SINK, null)));
+        PipelineConfig updated = pipeline(Map.of(
+            "source", step("source", StepType.INITIAL_PIPELINE, "enricher"),
+            "enricher", step("enricher", StepType.PIPELINE, "archive"),
+            "archive", step("archive", StepType.SINK, null)));
+
+        StepDiff diff = StepDiff.between(previous, updated);
+
+        assertThat(diff.added()).containsExactly("archive");
+        assertThat(diff.removed()).containsExactly("sink");
+        assertThat(diff.changed()).containsExactly("enricher");
+        assertThat(diff.unchanged()).containsExactly("source");
+        assertThat(diff.affectedSteps(updated)).containsExactlyInAnyOrder("archive", "enricher");
+        assertThat(StepDiff.between(previous, previous).isEmpty()).isTrue();
+    }
+
+    @Test
+    void testIncrementalResultMatchesFullValidation() {
+        CompositeValidator<PipelineConfigValidatable> incremental = createValidator();
+        PipelineConfig previous = pipeline(Map.of(
+            "source", step("source", StepType.INITIAL_PIPELINE, "enricher"),
+            "enricher", step("enricher", StepType.PIPELINE, "sink"),
+            "sink", step("sink", StepType.SINK, null)));
+        incremental.validateUpdate(null, previous, ValidationMode.PRODUCTION);
+
+        // Removing the sink breaks the reference of the unchanged enricher step
+        Map<String, PipelineStepConfig> steps = new HashMap<>(previous.pipelineSteps());
+        steps.remove("sink");
+        steps.put("source", step("source", StepType.INITIAL_PIPELINE, "enricher", 500));
+        PipelineConfig updated = pipeline(steps);
+
+        ValidationResult incrementalResult = incremental.validateUpdate(previous, updated, ValidationMode.PRODUCTION);
+        ValidationResult fullResult = createValidator().validate(updated, ValidationMode.PRODUCTION);
+
+        assertThat(incrementalResult.valid()).isFalse();
+        assertThat(incrementalResult.valid()).isEqualTo(fullResult.valid());
+        assertThat(new HashSet<>(incrementalResult.errors())).isEqualTo(new HashSet<>(fullResult.errors()));
+        assertThat(new HashSet<>(incrementalResult.warnings())).isEqualTo(new HashSet<>(fullResult.warnings()));
+        assertThat(incrementalResult.errors()).anyMatch(error -> error.contains("'sink'"));
+    }
+
+    @Test
+    void testUnchangedStepsAreNotRevalidated() {
+        CompositeValidator<PipelineConfigValidatable> validator = createValidator();
+        Map<String, PipelineStepConfig> steps = new HashMap<>();
+        steps.put("source", step("source", StepType.INITIAL_PIPELINE, "step-0"));
+        for (int i = 0; i < 20; i++) {
+            steps.put("step-" + i, step("step-" + i, StepType.PIPELINE, i < 19 ? "step-" + (i + 1) : "sink"));
+        }
+        steps.put("sink", step("sink", StepType.SINK, null));
+        PipelineConfig previous = pipeline(steps);
+        validator.validateUpdate(null, previous, ValidationMode.PRODUCTION);
+        validator.validateUpdate(previous, previous, ValidationMode.PRODUCTION);
+        StepResultMemo.Stats before = validator.getStepResultMemo().stats();
+
+        Map<String, PipelineStepConfig> changed = new HashMap<>(steps);
+        changed.put("step-7", step("step-7", StepType.PIPELINE, "step-8", 1000));
+        PipelineConfig updated = pipeline(changed);
+        ValidationResult result = validator.validateUpdate(previous, updated, ValidationMode.PRODUCTION);
+        StepResultMemo.Stats after = validator.getStepResultMemo().stats();
+
+        ValidationResult fullResult = createValidator().validate(updated, ValidationMode.PRODUCTION);
+        assertThat(result.valid()).isEqualTo(fullResult.valid());
+        assertThat(new HashSet<>(result.errors())).isEqualTo(new HashSet<>(fullResult.errors()));
+        assertThat(new HashSet<>(result.warnings())).isEqualTo(new HashSet<>(fullResult.warnings()));
+
+        long stepScopedValidators = after.recomputed() - before.recomputed();
+        long reused = after.reused() - before.reused();
+        // Only step-7 is recomputed, once per step-scoped validator; the other 21 steps are reused
+        assertThat(stepScopedValidators).isPositive();
+        assertThat(reused).isEqualTo(stepScopedValidators * (steps.size() - 1));
+    }
+
+    @Test
+    void testRenamedPipelineFallsBackToFullValidation() {
+        CompositeValidator<PipelineConfigValidatable> validator = createValidator();
+        PipelineConfig previous = pipeline(Map.of("sink", step("sink", StepType.SINK, null)));
+        PipelineConfig renamed = new PipelineConfig("renamed-pipeline", previous.pipelineSteps());
+
+        ValidationResult result = validator.validateUpdate(previous, renamed, ValidationMode.PRODUCTION);
+
+        assertThat(validator.getStepResultMemo().stats().recomputed()).isZero();
+        assertThat(new HashSet<>(result.errors()))
+            .isEqualTo(new HashSet<>(createValidator().validate(renamed, ValidationMode.PRODUCTION).errors()));
+    }
+
+    private static PipelineConfig pipeline(Map<String, PipelineStepConfig> steps) {
+        return new PipelineConfig("incremental-pipeline", steps);
+    }
+
+    private static PipelineStepConfig step(String name, StepType type, String target) {
+        return step(name, type, target, 100);
+    }
+
+    private static PipelineStepConfig step(String name, StepType type, String target, long retryBackoffMs) {
+        Map<String, PipelineStepConfig.OutputTarget> outputs = target == null
+            ? Map.of()
+            : Map.of("default", new PipelineStepConfig.OutputTarget(
+                target, TransportType.GRPC, new GrpcTransportConfig(target, Map.of()), null));
+        return new PipelineStepConfig(
+            name, type, "Step " + name, null, null, null, outputs,
+            3, retryBackoffMs, 10000L, 2.0, 30000L,
+            new PipelineStepConfig.ProcessorInfo(name + "-service", null));
+    }
+}
@@ -0,0 +1,31 @@
+package com.rokkon.pipeline.validation;
+
+import com.rokkon.pipeline.api.validation.ConfigValidator;
+import com.rokkon.pipeline.api.validation.PipelineConfigValidatable;
+import com.rokkon.pipeline.engine.validation.CompositeValidator;
+import com.rokkon.pipeline.engine.validation.validators.*;
+import com.rokkon.pipeline.testing.util.UnifiedTestProfile;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+
+import java.util.List;
+
+@QuarkusTest
+@TestProfile(UnifiedTestProfile.class)
+class IncrementalValidationUnitTest extends IncrementalValidationTestBase {
+
+    @Override
+    protected CompositeValidator<PipelineConfigValidatable> createValidator() {
+        List<ConfigValidator<PipelineConfigValidatable>> validators = List.of(
+            new RequiredFieldsValidator(),
+            new NamingConventionValidator(),
+            new RetryConfigValidator(),
+            new OutputRoutingValidator(),
+            new ProcessorInfoValidator(),
+            new StepReferenceValidator(),
+            new StepTypeValidator(),
+            new TransportConfigValidator()
+        );
+        return new CompositeValidator<>("IncrementalTestValidator", validators);
+    }
+}
@@ -0,0 +1,106 @@
+package com.rokkon.pipeline.validation;
+
+import com.rokkon.pipeline.api.validation.ConfigValidator;
+import com.rokkon.pipeline.api.validation.ValidationMode;
+import com.rokkon.pipeline.api.validation.ValidationResult;
+import com.rokkon.pipeline.commons.validation.ValidationResultFactory;
+import com.rokkon.pipeline.config.model.PipelineConfig;
+import com.rokkon.pipeline.config.model.PipelineStepConfig;
+import com.rokkon.pipeline.config.model.StepType;
+import com.rokkon.pipeline.engine.validation.CompositeValidator;
+import com.rokkon.pipeline.engine.validation.ConfigFingerprint;
+import com.rokkon.pipeline.engine.validation.ValidationResultCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public abstract class ValidationResultCacheTestBase {
+
+    protected abstract ValidationResultCache createCache();
+
+    @Test
+    void testFingerprintIgnoresMapOrdering() {
+        PipelineStepConfig.ProcessorInfo processorInfo = new PipelineStepConfig.ProcessorInfo("echo-service", null);
+        PipelineStepConfig first = new PipelineStepConfig("first", StepType.INITIAL_PIPELINE, processorInfo);
+        PipelineStepConfig second = new PipelineStepConfig("second", StepType.SINK, processorInfo);
+
+        Map<String, PipelineStepConfig> ordered = new LinkedHashMap<>();
+        ordered.put("first", first);
+        ordered.put("second", second);
+        Map<String, PipelineStepConfig> reversed = new LinkedHashMap<>();
+        reversed.put("second", second);
+        reversed.put("first", first);
+
+        String fingerprint = ConfigFingerprint.of(new PipelineConfig("test-pipeline", ordered));
+        assertThat(fingerprint).isNotNull();
+        assertThat(ConfigFingerprint.of(new PipelineConfig("test-pipeline", reversed))).isEqualTo(fingerprint);
+        assertThat(ConfigFingerprint.of(new PipelineConfig("other-pipeline", ordered))).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void testUnchangedConfigSkipsValidation() {
+        AtomicInteger invocations = new AtomicInteger();
+        CompositeValidator<PipelineConfig> composite = compositeCounting(invocations)
+            .withResultCache(createCache());
+        PipelineConfig config = new PipelineConfig("test-pipeline", null);
+
+        ValidationResult first = composite.validate(config, ValidationMode.PRODUCTION);
+        ValidationResult second = composite.validate(new PipelineConfig("test-pipeline", null), ValidationMode.PRODUCTION);
+
+        assertThat(invocations.get()).isEqualTo(1);
+        assertThat(second.errors()).isEqualTo(first.errors());
+        assertThat(composite.getResultCache().stats().hits()).isEqualTo(1);
+        assertThat(composite.getResultCache().stats().misses()).isEqualTo(1);
+        assertThat(composite.getResultCache().stats().hitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void testModeAndValidatorSetArePartOfTheKey() {
+        AtomicInteger invocations = new AtomicInteger();
+        CompositeValidator<PipelineConfig> composite = compositeCounting(invocations)
+            .withResultCache(createCache());
+        PipelineConfig config = new PipelineConfig("test-pipeline", null);
+
+        composite.validate(config, ValidationMode.PRODUCTION);
+        composite.validate(config, ValidationMode.DESIGN);
+        assertThat(invocations.get()).isEqualTo(2);
+
+        String versionBefore = composite.getValidatorSetVersion();
+        composite.addValidator(new ConfigValidator<>() {
+            @Override
+            public ValidationResult validate(PipelineConfig config) {
+                return ValidationResultFactory.success();
+            }
+
+            @Override
+            public String getValidatorName() {
+                return "AddedLater";
+            }
+        });
+        assertThat(composite.getValidatorSetVersion()).isNotEqualTo(versionBefore);
+
+        composite.validate(config, ValidationMode.PRODUCTION);
+        assertThat(invocations.get()).isEqualTo(3);
+    }
+
+    private static CompositeValidator<PipelineConfig> compositeCounting(AtomicInteger invocations) {
+        ConfigValidator<PipelineConfig> counting = new ConfigValidator<>() {
+            @Override
+            public ValidationResult validate(PipelineConfig config) {
+                invocations.incrementAndGet();
+                return ValidationResultFactory.successWithWarnings(List.of("Counted"));
+            }
+
+            @Override
+            public String getValidatorName() {
+                return "CountingValidator";
+            }
+        };
+        return new CompositeValidator<>("CacheTestComposite", List.of(counting));
+    }
+}
@@ -0,0 +1,16 @@
+package com.rokkon.pipeline.validation;
+
+import com.rokkon.pipeline.engine.validation.ValidationResultCache;
+import com.rokkon.pipeline.testing.util.UnifiedTestProfile;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+
+@QuarkusTest
+@TestProfile(UnifiedTestProfile.class)
+class ValidationResultCacheUnitTest extends ValidationResultCacheTestBase {
+
+    @Override
+    protected ValidationResultCache createCache() {
+        return new ValidationResultCache(16);
+    }
+}